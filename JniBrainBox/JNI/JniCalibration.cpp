@@ -113,4 +113,92 @@ JNIEXPORT jfloatArray JNICALL Java_com_mybraintech_android_jnibrainbox_Calibrati
         (JNIEnv *env, jobject obj)
 {
     return getJFloatArrayFromVector(env, getHandle<Calibration<double>>(env, obj)->calibration.iaf);
-}
\ No newline at end of file
+}
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    compute_calibration_flat
+ * Signature: ([FIIII[FI)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_compute_1calibration_1flat
+        (JNIEnv *env, jobject obj, jfloatArray j_signals, jint offset, jint channel_stride, jint nb_channels,
+         jint nb_samples, jfloatArray j_qualities, jint nb_qualities)
+{
+    int error_code = 0;
+    try {
+        auto *c = getHandle<Calibration<double>>(env, obj);
+        getMatrixFromFloatArray(env, j_signals, offset, channel_stride, nb_channels, nb_samples, c->signals);
+        getMatrixFromFloatArray(env, j_qualities, 0, nb_qualities, nb_channels, nb_qualities, c->qualities);
+        c->calibration = bb::calibration(c->settings, c->signals, c->qualities);
+        error_code = c->calibration.error_code;
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during compute_calibration_flat");
+    }
+    return error_code;
+}
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    compute_calibration_buffer
+ * Signature: (Ljava/nio/FloatBuffer;IIIILjava/nio/FloatBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_compute_1calibration_1buffer
+        (JNIEnv *env, jobject obj, jobject j_signals, jint offset, jint channel_stride, jint nb_channels,
+         jint nb_samples, jobject j_qualities, jint qualities_offset, jint nb_qualities)
+{
+    int error_code = 0;
+    try {
+        auto *c = getHandle<Calibration<double>>(env, obj);
+        getMatrixFromDirectBuffer(env, j_signals, offset, channel_stride, nb_channels, nb_samples, c->signals);
+        getMatrixFromDirectBuffer(env, j_qualities, qualities_offset, nb_qualities, nb_channels, nb_qualities, c->qualities);
+        c->calibration = bb::calibration(c->settings, c->signals, c->qualities);
+        error_code = c->calibration.error_code;
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during compute_calibration_buffer");
+    }
+    return error_code;
+}
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    copy_smoothed_rms
+ * Signature: ([F)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_copy_1smoothed_1rms
+        (JNIEnv *env, jobject obj, jfloatArray output)
+{
+    try {
+        auto &smoothed_rms = getHandle<Calibration<double>>(env, obj)->calibration.smoothed_rms;
+        copyVectorToJFloatArray(env, smoothed_rms, output);
+        return smoothed_rms.size();
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during copy_smoothed_rms");
+    }
+    return 0;
+}
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    copy_iaf
+ * Signature: ([F)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_copy_1iaf
+        (JNIEnv *env, jobject obj, jfloatArray output)
+{
+    try {
+        auto &iaf = getHandle<Calibration<double>>(env, obj)->calibration.iaf;
+        copyVectorToJFloatArray(env, iaf, output);
+        return iaf.size();
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during copy_iaf");
+    }
+    return 0;
+}
@@ -22,8 +22,10 @@ Java_com_mybraintech_android_jnibrainbox_QualityChecker_new_1quality_1checker
         bb::Settings<double> settings{};
         settings.sampling_rate = static_cast<double>(sampling_rate);
         auto csptr_settings = std::make_shared<const bb::Settings<double>>(settings);
-        auto *qc = new bb::QualityChecker<double>{bb::TrainingData<double>::GetGoodTraining()};
-        qc->WithSettings(csptr_settings);
+        auto *qc = new QualityChecker<double>{
+            .qc = bb::QualityChecker<double>{bb::TrainingData<double>::GetGoodTraining()}
+        };
+        qc->qc.WithSettings(csptr_settings);
         setHandle(env, obj, qc);
     } catch (std::exception e) {
         ThrowException(env, e.what());
@@ -41,7 +43,7 @@ JNIEXPORT void JNICALL
 Java_com_mybraintech_android_jnibrainbox_QualityChecker_destroy_1quality_1checker
 (JNIEnv *env , jobject obj)
 {
-    auto * p = getHandle<bb::QualityChecker<double>>(env, obj);
+    auto * p = getHandle<QualityChecker<double>>(env, obj);
     delete p;
 }
 
@@ -57,7 +59,7 @@ Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checke
     jfloatArray result;
     try {
         auto signals = getMatrixFromObjectArray<double>(env, matrix);
-        auto qr = getHandle<bb::QualityChecker<double>>(env, obj)->compute(signals);
+        auto qr = getHandle<QualityChecker<double>>(env, obj)->qc.compute(signals);
         result = getJFloatArrayFromVector(env, qr.quality);
     } catch (std::exception e) {
         ThrowException(env, e.what());
@@ -67,3 +69,48 @@ Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checke
     return result;
 }
 
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_QualityChecker
+ * Method:    compute_quality_checker_flat
+ * Signature: ([FIIII[F)V
+ */
+JNIEXPORT void JNICALL
+Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checker_1flat
+(JNIEnv *env, jobject obj, jfloatArray j_signals, jint offset, jint channel_stride, jint nb_channels,
+ jint nb_samples, jfloatArray j_qualities)
+{
+    try {
+        auto *qc = getHandle<QualityChecker<double>>(env, obj);
+        getMatrixFromFloatArray(env, j_signals, offset, channel_stride, nb_channels, nb_samples, qc->signals);
+        auto qr = qc->qc.compute(qc->signals);
+        copyVectorToJFloatArray(env, qr.quality, j_qualities);
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during compute_quality_checker_flat");
+    }
+}
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_QualityChecker
+ * Method:    compute_quality_checker_buffer
+ * Signature: (Ljava/nio/FloatBuffer;IIIILjava/nio/FloatBuffer;I)V
+ */
+JNIEXPORT void JNICALL
+Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checker_1buffer
+(JNIEnv *env, jobject obj, jobject j_signals, jint offset, jint channel_stride, jint nb_channels,
+ jint nb_samples, jobject j_qualities, jint qualities_offset)
+{
+    try {
+        auto *qc = getHandle<QualityChecker<double>>(env, obj);
+        getMatrixFromDirectBuffer(env, j_signals, offset, channel_stride, nb_channels, nb_samples, qc->signals);
+        auto qr = qc->qc.compute(qc->signals);
+        jfloat *qualities = getDirectBufferFloats(env, j_qualities, qualities_offset, qr.quality.size());
+        for (unsigned int it = 0; it < qr.quality.size(); it++)
+            qualities[qualities_offset + it] = static_cast<jfloat>(qr.quality[it]);
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during compute_quality_checker_buffer");
+    }
+}
@@ -72,6 +72,55 @@ JNIEXPORT jfloat JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_com
     return volume;
 }
 
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_RelaxIndex
+ * Method:    compute_flat
+ * Signature: ([FIIII[F)F
+ */
+JNIEXPORT jfloat JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_compute_1flat
+        (JNIEnv *env, jobject obj, jfloatArray j_signals, jint offset, jint channel_stride, jint nb_channels,
+         jint nb_samples, jfloatArray j_quality)
+{
+    jfloat volume = 0;
+    try {
+        auto* ri = getHandle<RelaxIndex<double>>(env, obj);
+        getMatrixFromFloatArray(env, j_signals, offset, channel_stride, nb_channels, nb_samples, ri->signals);
+        getVectorFromFloatArray(env, j_quality, nb_channels, ri->qualities);
+        volume = ri->ris.compute(ri->signals, ri->qualities).volum;
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during relax_index_compute_flat");
+    }
+    return volume;
+}
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_RelaxIndex
+ * Method:    compute_buffer
+ * Signature: (Ljava/nio/FloatBuffer;IIIILjava/nio/FloatBuffer;I)F
+ */
+JNIEXPORT jfloat JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_compute_1buffer
+        (JNIEnv *env, jobject obj, jobject j_signals, jint offset, jint channel_stride, jint nb_channels,
+         jint nb_samples, jobject j_quality, jint quality_offset)
+{
+    jfloat volume = 0;
+    try {
+        auto* ri = getHandle<RelaxIndex<double>>(env, obj);
+        getMatrixFromDirectBuffer(env, j_signals, offset, channel_stride, nb_channels, nb_samples, ri->signals);
+        jfloat *quality = getDirectBufferFloats(env, j_quality, quality_offset, nb_channels);
+        ri->qualities.resize(nb_channels);
+        for (int it = 0; it < nb_channels; it++)
+            ri->qualities[it] = static_cast<double>(quality[quality_offset + it]);
+        volume = ri->ris.compute(ri->signals, ri->qualities).volum;
+    } catch (std::exception e) {
+        ThrowException(env, e.what());
+    } catch (...) {
+        ThrowException(env, "Unknown exception during relax_index_compute_buffer");
+    }
+    return volume;
+}
+
 /*
  * Class:     com_mybraintech_android_jnibrainbox_RelaxIndex
  * Method:    end_session
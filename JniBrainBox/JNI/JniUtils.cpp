@@ -99,12 +99,89 @@ jfloatArray getJFloatArrayFromVector(JNIEnv* env, const std::vector<T>& array) {
     return result;
 }
 
+template <typename T>
+void copyToMatrix(const jfloat *data, int offset, int channel_stride, int channels, int samples, bb::Matrix<T> &matrix) {
+    auto size = matrix.size();
+    if (size.first != channels || size.second != samples)
+        matrix = bb::Matrix<T>(channels, samples);
+    for (int channelIndex = 0; channelIndex < channels; channelIndex++) {
+        const jfloat *channel = data + offset + channelIndex * channel_stride;
+        for (int dataPoint = 0; dataPoint < samples; dataPoint++) {
+            matrix(channelIndex, dataPoint) = static_cast<T>(channel[dataPoint]);
+        }
+    }
+}
+
+template <typename T>
+void getMatrixFromFloatArray(JNIEnv *env, jfloatArray array, int offset, int channel_stride, int channels,
+                             int samples, bb::Matrix<T> &matrix) {
+    if (channels <= 0 || samples <= 0 || offset < 0 || channel_stride < samples
+        || offset + (channels - 1) * channel_stride + samples > env->GetArrayLength(array))
+        throw std::runtime_error("signal dimensions do not match the array");
+    // no JNI call is allowed until the array is released
+    auto *data = static_cast<jfloat *>(env->GetPrimitiveArrayCritical(array, NULL));
+    if (data == NULL)
+        throw std::runtime_error("Can't access the signal array");
+    copyToMatrix(data, offset, channel_stride, channels, samples, matrix);
+    env->ReleasePrimitiveArrayCritical(array, data, JNI_ABORT);
+}
+
+// the Java wrappers check that the buffers are in the native byte order : the floats are read as they are
+jfloat *getDirectBufferFloats(JNIEnv *env, jobject buffer, int offset, int size) {
+    auto *data = static_cast<jfloat *>(env->GetDirectBufferAddress(buffer));
+    if (data == NULL)
+        throw std::runtime_error("the buffer is not a direct buffer");
+    if (offset < 0 || offset + size > env->GetDirectBufferCapacity(buffer))
+        throw std::runtime_error("the buffer is too small");
+    return data;
+}
+
+template <typename T>
+void getMatrixFromDirectBuffer(JNIEnv *env, jobject buffer, int offset, int channel_stride, int channels,
+                               int samples, bb::Matrix<T> &matrix) {
+    if (channels <= 0 || samples <= 0 || channel_stride < samples)
+        throw std::runtime_error("invalid signal dimensions");
+    jfloat *data = getDirectBufferFloats(env, buffer, offset, (channels - 1) * channel_stride + samples);
+    copyToMatrix(data, offset, channel_stride, channels, samples, matrix);
+}
+
+template <typename T>
+void getVectorFromFloatArray(JNIEnv *env, jfloatArray input, int size, std::vector<T> &vector) {
+    if (size < 0 || env->GetArrayLength(input) < size)
+        throw std::runtime_error("the array is too small");
+    vector.resize((unsigned long) size);
+    auto *data = static_cast<jfloat *>(env->GetPrimitiveArrayCritical(input, NULL));
+    if (data == NULL)
+        throw std::runtime_error("Can't access the array");
+    for (int dataPoint = 0; dataPoint < size; dataPoint++)
+        vector[dataPoint] = static_cast<T>(data[dataPoint]);
+    env->ReleasePrimitiveArrayCritical(input, data, JNI_ABORT);
+}
+
+template <typename T>
+void copyVectorToJFloatArray(JNIEnv *env, const std::vector<T> &array, jfloatArray output) {
+    if (env->GetArrayLength(output) < (jsize) array.size())
+        throw std::runtime_error("the output array is too small");
+    auto *data = static_cast<jfloat *>(env->GetPrimitiveArrayCritical(output, NULL));
+    if (data == NULL)
+        throw std::runtime_error("Can't access the output array");
+    for (unsigned int it = 0; it < array.size(); it++)
+        data[it] = static_cast<jfloat>(array[it]);
+    env->ReleasePrimitiveArrayCritical(output, data, 0);
+}
+
 template bb::Matrix<double> getMatrixFromObjectArray(JNIEnv *env, jobjectArray matrix);
 template std::vector<double> getVectorFromJFloatArray(JNIEnv *env, jfloatArray input);
 template jfloatArray getJFloatArrayFromVector(JNIEnv* env, const std::vector<double>& array);
-template bb::QualityChecker<double> *getHandle(JNIEnv *env, jobject obj);
-template void setHandle(JNIEnv *env, jobject obj, bb::QualityChecker<double> *t);
+template QualityChecker<double> *getHandle(JNIEnv *env, jobject obj);
+template void setHandle(JNIEnv *env, jobject obj, QualityChecker<double> *t);
 template Calibration<double> *getHandle(JNIEnv *env, jobject obj);
 template void setHandle(JNIEnv *env, jobject obj, Calibration<double> *t);
 template RelaxIndex<double> *getHandle(JNIEnv *env, jobject obj);
 template void setHandle(JNIEnv *env, jobject obj, RelaxIndex<double> *t);
+template void getMatrixFromFloatArray(JNIEnv *env, jfloatArray array, int offset, int channel_stride, int channels,
+                                      int samples, bb::Matrix<double> &matrix);
+template void getMatrixFromDirectBuffer(JNIEnv *env, jobject buffer, int offset, int channel_stride, int channels,
+                                        int samples, bb::Matrix<double> &matrix);
+template void getVectorFromFloatArray(JNIEnv *env, jfloatArray input, int size, std::vector<double> &vector);
+template void copyVectorToJFloatArray(JNIEnv *env, const std::vector<double> &array, jfloatArray output);
@@ -6,15 +6,26 @@
 #include <BrainBox/Settings.hpp>
 #include <BrainBox/Calibration.hpp>
 #include <BrainBox/RelaxIndex.hpp>
+#include <BrainBox/QualityChecker.hpp>
 #include <jni.h>
 #include <tuple>
 
 namespace bb = brainbox;
 
+template <typename T>
+struct QualityChecker {
+    bb::QualityChecker<T> qc;
+    // reused by the flat array and direct buffer calls
+    bb::Matrix<T> signals;
+};
+
 template <typename T>
 struct Calibration {
     bb::Settings<double> settings;
     bb::CalibrationOutputData<T> calibration;
+    // reused by the flat array and direct buffer calls
+    bb::Matrix<T> signals;
+    bb::Matrix<T> qualities;
 };
 
 
@@ -22,6 +33,9 @@ template <typename T>
 struct RelaxIndex {
     bb::RelaxIndexSession<T> ris;
     bb::RelaxIndexSessionOutputData<T> session;
+    // reused by the flat array and direct buffer calls
+    bb::Matrix<T> signals;
+    std::vector<T> qualities;
 };
 
 void ThrowException(JNIEnv *env, const char* msg);
@@ -44,4 +58,43 @@ std::vector<T> getVectorFromJFloatArray(JNIEnv *env, jfloatArray input);
 template <typename T>
 bb::Matrix<T> getMatrixFromObjectArray(JNIEnv *env, jobjectArray matrix);
 template <typename T>
-jfloatArray getJFloatArrayFromVector(JNIEnv* env, const std::vector<T>& array);
\ No newline at end of file
+jfloatArray getJFloatArrayFromVector(JNIEnv* env, const std::vector<T>& array);
+
+/**
+ * Copies a channel-major float array, channel c starting at offset + c * channel_stride, into the matrix.
+ * The matrix is only reallocated when the dimensions change.
+ */
+template <typename T>
+void copyToMatrix(const jfloat *data, int offset, int channel_stride, int channels, int samples, bb::Matrix<T> &matrix);
+
+/**
+ * Same as copyToMatrix, reads the java array without copying it.
+ */
+template <typename T>
+void getMatrixFromFloatArray(JNIEnv *env, jfloatArray array, int offset, int channel_stride, int channels,
+                             int samples, bb::Matrix<T> &matrix);
+
+/**
+ * Same as copyToMatrix, reads a direct java.nio.FloatBuffer.
+ */
+template <typename T>
+void getMatrixFromDirectBuffer(JNIEnv *env, jobject buffer, int offset, int channel_stride, int channels,
+                               int samples, bb::Matrix<T> &matrix);
+
+/**
+ * @return the address of a direct java.nio.FloatBuffer, it throws if the buffer is not direct
+ * or has less than size floats after offset.
+ */
+jfloat *getDirectBufferFloats(JNIEnv *env, jobject buffer, int offset, int size);
+
+/**
+ * Reads the size first floats of a java array into the vector, which keeps its capacity.
+ */
+template <typename T>
+void getVectorFromFloatArray(JNIEnv *env, jfloatArray input, int size, std::vector<T> &vector);
+
+/**
+ * Writes the vector into a java array of at least array.size() floats.
+ */
+template <typename T>
+void copyVectorToJFloatArray(JNIEnv *env, const std::vector<T> &array, jfloatArray output);
@@ -71,6 +71,38 @@ JNIEXPORT jfloatArray JNICALL Java_com_mybraintech_android_jnibrainbox_Calibrati
 JNIEXPORT jfloatArray JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_get_1iaf
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    compute_calibration_flat
+ * Signature: ([FIIII[FI)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_compute_1calibration_1flat
+  (JNIEnv *, jobject, jfloatArray, jint, jint, jint, jint, jfloatArray, jint);
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    compute_calibration_buffer
+ * Signature: (Ljava/nio/FloatBuffer;IIIILjava/nio/FloatBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_compute_1calibration_1buffer
+  (JNIEnv *, jobject, jobject, jint, jint, jint, jint, jobject, jint, jint);
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    copy_smoothed_rms
+ * Signature: ([F)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_copy_1smoothed_1rms
+  (JNIEnv *, jobject, jfloatArray);
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_Calibration
+ * Method:    copy_iaf
+ * Signature: ([F)I
+ */
+JNIEXPORT jint JNICALL Java_com_mybraintech_android_jnibrainbox_Calibration_copy_1iaf
+  (JNIEnv *, jobject, jfloatArray);
+
 #ifdef __cplusplus
 }
 #endif
@@ -31,6 +31,22 @@ JNIEXPORT void JNICALL Java_com_mybraintech_android_jnibrainbox_QualityChecker_d
 JNIEXPORT jfloatArray JNICALL Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checker
   (JNIEnv *, jobject, jobjectArray);
 
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_QualityChecker
+ * Method:    compute_quality_checker_flat
+ * Signature: ([FIIII[F)V
+ */
+JNIEXPORT void JNICALL Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checker_1flat
+  (JNIEnv *, jobject, jfloatArray, jint, jint, jint, jint, jfloatArray);
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_QualityChecker
+ * Method:    compute_quality_checker_buffer
+ * Signature: (Ljava/nio/FloatBuffer;IIIILjava/nio/FloatBuffer;I)V
+ */
+JNIEXPORT void JNICALL Java_com_mybraintech_android_jnibrainbox_QualityChecker_compute_1quality_1checker_1buffer
+  (JNIEnv *, jobject, jobject, jint, jint, jint, jint, jobject, jint);
+
 #ifdef __cplusplus
 }
 #endif
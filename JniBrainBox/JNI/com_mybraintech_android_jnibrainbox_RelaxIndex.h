@@ -31,6 +31,22 @@ JNIEXPORT void JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_destr
 JNIEXPORT jfloat JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_compute
   (JNIEnv *, jobject, jobjectArray, jfloatArray);
 
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_RelaxIndex
+ * Method:    compute_flat
+ * Signature: ([FIIII[F)F
+ */
+JNIEXPORT jfloat JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_compute_1flat
+  (JNIEnv *, jobject, jfloatArray, jint, jint, jint, jint, jfloatArray);
+
+/*
+ * Class:     com_mybraintech_android_jnibrainbox_RelaxIndex
+ * Method:    compute_buffer
+ * Signature: (Ljava/nio/FloatBuffer;IIIILjava/nio/FloatBuffer;I)F
+ */
+JNIEXPORT jfloat JNICALL Java_com_mybraintech_android_jnibrainbox_RelaxIndex_compute_1buffer
+  (JNIEnv *, jobject, jobject, jint, jint, jint, jint, jobject, jint);
+
 /*
  * Class:     com_mybraintech_android_jnibrainbox_RelaxIndex
  * Method:    end_session
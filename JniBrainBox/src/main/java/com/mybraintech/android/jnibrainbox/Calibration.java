@@ -3,6 +3,7 @@ package com.mybraintech.android.jnibrainbox;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 public class Calibration implements AutoCloseable  {
@@ -15,6 +16,17 @@ public class Calibration implements AutoCloseable  {
     @NonNull
     private native int compute_calibration(float[][] signals, float[][] qualities);
 
+    private native int compute_calibration_flat(float[] signals, int offset, int channel_stride, int nb_channels,
+                                                int nb_samples, float[] qualities, int nb_qualities);
+
+    private native int compute_calibration_buffer(FloatBuffer signals, int offset, int channel_stride,
+                                                  int nb_channels, int nb_samples,
+                                                  FloatBuffer qualities, int qualities_offset, int nb_qualities);
+
+    private native int copy_smoothed_rms(float[] output);
+
+    private native int copy_iaf(float[] output);
+
     @NonNull
     private native float[] get_rms();
 
@@ -65,6 +77,38 @@ public class Calibration implements AutoCloseable  {
         return error;
     }
 
+    /**
+     * Same as {@link #computeCalibration(float[][], float[][])} with channel-major arrays, without copying them
+     * into matrices. Channel c of the signal starts at <code>offset + c * channelStride</code>.
+     * @param qualities <code>nbQualities</code> qualities per channel, channel after channel
+     * @return error code, 0 means no error
+     * @exception IllegalArgumentException if the dimensions do not match the arrays
+     */
+    public int computeCalibration(@NonNull final float[] signals, int offset, int channelStride,
+                                  int nbChannels, int nbSamples,
+                                  @NonNull final float[] qualities, int nbQualities) throws Exception {
+        TypeConverter.checkFlatDimensions(signals.length, offset, channelStride, nbChannels, nbSamples);
+        TypeConverter.checkFlatDimensions(qualities.length, 0, nbQualities, nbChannels, nbQualities);
+        return compute_calibration_flat(signals, offset, channelStride, nbChannels, nbSamples, qualities, nbQualities);
+    }
+
+    /**
+     * Same as {@link #computeCalibration(float[], int, int, int, int, float[], int)} with direct buffers,
+     * read from their current position. The positions are not modified.
+     * The buffers must be in the native byte order, eg <code>ByteBuffer.allocateDirect(4 * size)
+     * .order(ByteOrder.nativeOrder()).asFloatBuffer()</code>.
+     * @exception IllegalArgumentException if a buffer is not direct or not in the native byte order, or if
+     * the dimensions do not match the buffers
+     */
+    public int computeCalibration(@NonNull final FloatBuffer signals, int channelStride, int nbChannels, int nbSamples,
+                                  @NonNull final FloatBuffer qualities, int nbQualities) throws Exception {
+        TypeConverter.checkDirectBuffers(signals, qualities);
+        TypeConverter.checkFlatDimensions(signals.limit(), signals.position(), channelStride, nbChannels, nbSamples);
+        TypeConverter.checkFlatDimensions(qualities.limit(), qualities.position(), nbQualities, nbChannels, nbQualities);
+        return compute_calibration_buffer(signals, signals.position(), channelStride, nbChannels, nbSamples,
+                qualities, qualities.position(), nbQualities);
+    }
+
     @Override
     public void close() throws Exception {
         destroy_calibration();
@@ -89,4 +133,20 @@ public class Calibration implements AutoCloseable  {
     public float[] GetIAF() {
         return get_iaf();
     }
+
+    /**
+     * Copies the smoothed RMS of the last calibration into <code>output</code>.
+     * @return the number of values
+     */
+    public int copySmoothRMS(@NonNull float[] output) {
+        return copy_smoothed_rms(output);
+    }
+
+    /**
+     * Copies the IAF of the last calibration into <code>output</code>.
+     * @return the number of values
+     */
+    public int copyIAF(@NonNull float[] output) {
+        return copy_iaf(output);
+    }
 }
@@ -3,6 +3,7 @@ package com.mybraintech.android.jnibrainbox;
 import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 public class QualityChecker implements AutoCloseable  {
@@ -14,6 +15,13 @@ public class QualityChecker implements AutoCloseable  {
 
     @NonNull
     private native float[] compute_quality_checker(float[][] matrix);
+
+    private native void compute_quality_checker_flat(float[] signals, int offset, int channel_stride,
+                                                     int nb_channels, int nb_samples, float[] qualities);
+
+    private native void compute_quality_checker_buffer(FloatBuffer signals, int offset, int channel_stride,
+                                                       int nb_channels, int nb_samples,
+                                                       FloatBuffer qualities, int qualities_offset);
     /**
      * @note DO NOT REMOVE OR MODIFY jniObjectPointer VARIABLE:
      * it is used for mapping java instance of this class and cpp related object.
@@ -44,6 +52,38 @@ public class QualityChecker implements AutoCloseable  {
         return res;
     }
 
+    /**
+     * Computes the quality of each channel of a channel-major array, without converting it to lists.
+     * Channel c starts at <code>offset + c * channelStride</code>.
+     * @param qualities receives one quality per channel
+     * @exception IllegalArgumentException if the dimensions do not match the arrays
+     */
+    public void computeQualityChecker(@NonNull final float[] signals, int offset, int channelStride,
+                                      int nbChannels, int nbSamples, @NonNull final float[] qualities) throws Exception {
+        TypeConverter.checkFlatDimensions(signals.length, offset, channelStride, nbChannels, nbSamples);
+        if (qualities.length < nbChannels)
+            throw new IllegalArgumentException("there MUST be one quality per channel !");
+        compute_quality_checker_flat(signals, offset, channelStride, nbChannels, nbSamples, qualities);
+    }
+
+    /**
+     * Same as {@link #computeQualityChecker(float[], int, int, int, int, float[])} with direct buffers,
+     * read from their current position. The positions are not modified.
+     * The buffers must be in the native byte order, eg <code>ByteBuffer.allocateDirect(4 * size)
+     * .order(ByteOrder.nativeOrder()).asFloatBuffer()</code>.
+     * @exception IllegalArgumentException if a buffer is not direct or not in the native byte order, or if
+     * the dimensions do not match the buffers
+     */
+    public void computeQualityChecker(@NonNull final FloatBuffer signals, int channelStride,
+                                      int nbChannels, int nbSamples, @NonNull final FloatBuffer qualities) throws Exception {
+        TypeConverter.checkDirectBuffers(signals, qualities);
+        TypeConverter.checkFlatDimensions(signals.limit(), signals.position(), channelStride, nbChannels, nbSamples);
+        if (qualities.remaining() < nbChannels)
+            throw new IllegalArgumentException("there MUST be one quality per channel !");
+        compute_quality_checker_buffer(signals, signals.position(), channelStride, nbChannels, nbSamples,
+                qualities, qualities.position());
+    }
+
     @Override
     public void close() throws Exception {
         destroy_quality_checker();
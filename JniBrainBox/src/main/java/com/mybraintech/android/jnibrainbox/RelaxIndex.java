@@ -3,12 +3,17 @@ package com.mybraintech.android.jnibrainbox;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 public class RelaxIndex implements AutoCloseable  {
     private native void new_relax_index(int sampling_rate, float[] smoothed_rms, float iaf_median_inf, float iaf_median_sup);
     private native void destroy_relax_index();
     private native float compute(float[][] signals, float[] qualities);
+    private native float compute_flat(float[] signals, int offset, int channel_stride, int nb_channels, int nb_samples,
+                                      float[] qualities);
+    private native float compute_buffer(FloatBuffer signals, int offset, int channel_stride, int nb_channels,
+                                        int nb_samples, FloatBuffer qualities, int qualities_offset);
     private native void end_session();
     private native float get_mean_alpha_power();
     private native float get_mean_relative_alpha_power();
@@ -39,6 +44,38 @@ public class RelaxIndex implements AutoCloseable  {
         return compute(signals, qualities);
     }
 
+    /**
+     * Same as {@link #computeVolume(float[][], float[])} with a channel-major array, without copying it
+     * into a matrix. Channel c starts at <code>offset + c * channelStride</code>.
+     * @param qualities one quality per channel
+     * @exception IllegalArgumentException if the dimensions do not match the arrays
+     */
+    public float computeVolume(@NonNull final float[] signals, int offset, int channelStride,
+                               int nbChannels, int nbSamples, @NonNull final float[] qualities) throws Exception {
+        TypeConverter.checkFlatDimensions(signals.length, offset, channelStride, nbChannels, nbSamples);
+        if (qualities.length < nbChannels)
+            throw new IllegalArgumentException("there MUST be one quality per channel !");
+        return compute_flat(signals, offset, channelStride, nbChannels, nbSamples, qualities);
+    }
+
+    /**
+     * Same as {@link #computeVolume(float[], int, int, int, int, float[])} with direct buffers,
+     * read from their current position. The positions are not modified.
+     * The buffers must be in the native byte order, eg <code>ByteBuffer.allocateDirect(4 * size)
+     * .order(ByteOrder.nativeOrder()).asFloatBuffer()</code>.
+     * @exception IllegalArgumentException if a buffer is not direct or not in the native byte order, or if
+     * the dimensions do not match the buffers
+     */
+    public float computeVolume(@NonNull final FloatBuffer signals, int channelStride, int nbChannels, int nbSamples,
+                               @NonNull final FloatBuffer qualities) throws Exception {
+        TypeConverter.checkDirectBuffers(signals, qualities);
+        TypeConverter.checkFlatDimensions(signals.limit(), signals.position(), channelStride, nbChannels, nbSamples);
+        if (qualities.remaining() < nbChannels)
+            throw new IllegalArgumentException("there MUST be one quality per channel !");
+        return compute_buffer(signals, signals.position(), channelStride, nbChannels, nbSamples,
+                qualities, qualities.position());
+    }
+
     @Override
     public void close() throws Exception {
         destroy_relax_index();
@@ -4,6 +4,8 @@ import androidx.annotation.Keep;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
 /**
@@ -98,5 +100,28 @@ public final class TypeConverter {
         return matrix;
     }
 
+    /**
+     * Checks that a channel-major array of <code>length</code> floats holds the signal : channel c starts at
+     * <code>offset + c * channelStride</code> and has <code>nbSamples</code> samples.
+     * @exception IllegalArgumentException if the dimensions do not match the array
+     */
+    static void checkFlatDimensions(int length, int offset, int channelStride, int nbChannels, int nbSamples) {
+        if (nbChannels <= 0 || nbSamples <= 0)
+            throw new IllegalArgumentException("there MUST be at least ONE or MORE channel(s) and sample(s) !");
+        if (offset < 0 || channelStride < nbSamples
+                || (long) offset + (long) (nbChannels - 1) * channelStride + nbSamples > length)
+            throw new IllegalArgumentException("ERRROR : signal dimensions do not match the array !");
+    }
 
+    /**
+     * The native code reads the buffers as floats of the device byte order : a buffer created with
+     * <code>ByteBuffer.allocateDirect(size).asFloatBuffer()</code> is big-endian and would be read as garbage.
+     * @exception IllegalArgumentException if a buffer is not direct or not in {@link ByteOrder#nativeOrder()}
+     */
+    static void checkDirectBuffers(@NonNull FloatBuffer signals, @NonNull FloatBuffer qualities) {
+        if (!signals.isDirect() || !qualities.isDirect())
+            throw new IllegalArgumentException("the buffers MUST be direct !");
+        if (signals.order() != ByteOrder.nativeOrder() || qualities.order() != ByteOrder.nativeOrder())
+            throw new IllegalArgumentException("the buffers MUST be in the native byte order : " + ByteOrder.nativeOrder());
+    }
 }
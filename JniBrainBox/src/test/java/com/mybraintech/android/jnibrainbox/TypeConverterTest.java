@@ -0,0 +1,30 @@
+package com.mybraintech.android.jnibrainbox;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+public class TypeConverterTest {
+
+    private static FloatBuffer direct(int size, ByteOrder order) {
+        return ByteBuffer.allocateDirect(4 * size).order(order).asFloatBuffer();
+    }
+
+    @Test
+    public void nativeOrderBuffers_areAccepted() {
+        TypeConverter.checkDirectBuffers(direct(10, ByteOrder.nativeOrder()), direct(2, ByteOrder.nativeOrder()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void defaultOrderBuffer_isRejected() {
+        ByteOrder other = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        TypeConverter.checkDirectBuffers(direct(10, other), direct(2, ByteOrder.nativeOrder()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void heapBuffer_isRejected() {
+        TypeConverter.checkDirectBuffers(FloatBuffer.allocate(10), direct(2, ByteOrder.nativeOrder()));
+    }
+}
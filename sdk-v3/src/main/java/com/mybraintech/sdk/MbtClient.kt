@@ -8,9 +8,13 @@ import com.mybraintech.sdk.core.ResearchStudy
 import com.mybraintech.sdk.core.TestBench
 import com.mybraintech.sdk.core.acquisition.EEGCalibrateResult
 import com.mybraintech.sdk.core.acquisition.EEGRecordedDatas
+import com.mybraintech.sdk.core.acquisition.RecordingSaveTask
 import com.mybraintech.sdk.core.bluetooth.devices.EnumBluetoothConnection
 import com.mybraintech.sdk.core.listener.*
 import com.mybraintech.sdk.core.model.*
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
 
 interface MbtClient {
     fun getDeviceType() : EnumMBTDevice
@@ -39,22 +43,78 @@ interface MbtClient {
     fun stopStreaming()
     fun isEEGEnabled(): Boolean
 
+    /**
+     * The packets are delivered on a dedicated thread. When more than 64 packets are waiting for the listener,
+     * the oldest ones are dropped with a warning : see [StreamingParams.Builder.setEEGPacketDelivery] to keep them.
+     */
     fun setEEGListener(eegListener: EEGListener)
     fun setAccelerometerListener(accelerometerListener: AccelerometerListener)
     fun startRecording(recordingOption: RecordingOption, recordingListener: RecordingListener)
-    fun stopRecording()
+    /**
+     * @return the saving of the recording, done in background, null if there is no recording
+     */
+    fun stopRecording(): RecordingSaveTask?
 
     /**
      * @param trim (in seconds) allow to trim the recording size
+     * @return the saving of the recording, done in background, null if there is no recording
      */
-    fun stopRecording(trim: Int)
+    fun stopRecording(trim: Int): RecordingSaveTask?
 
     fun isRecordingEnabled(): Boolean
     fun getRecordingBufferSize(): Int
     fun getDataLossPercent(): Float
 
-    fun eegCalibration(data: EEGRecordedDatas): EEGCalibrateResult
+    /**
+     * @return the state of the internal queues of the current streaming, null if the streaming has never been started
+     */
+    fun getStreamingStatistics(): StreamingStatistics?
+
+    /**
+     * @param locations channels of the calibration, all the channels of the device by default.
+     * The relax index computed with the result uses the same channels.
+     */
+    fun eegCalibration(data: EEGRecordedDatas, locations: List<EnumAcquisitionLocation>? = null): EEGCalibrateResult
+
+    /**
+     * Calibrates with the next [durationSeconds] seconds of the EEG streaming, without recording them.
+     * The result is given to [listener] as soon as the period is complete, like [eegCalibration] on a recording
+     * of the same seconds. A calibration in progress is cancelled.
+     *
+     * @param durationSeconds at least 8 seconds
+     * @param locations channels of the calibration, all the channels of the device by default
+     */
+    fun startEEGCalibration(
+        durationSeconds: Int,
+        listener: EEGCalibrationListener,
+        locations: List<EnumAcquisitionLocation>? = null
+    )
+
+    /**
+     * Cancels the calibration started with [startEEGCalibration], its listener is not called.
+     */
+    fun cancelEEGCalibration()
     fun eegRelaxingIndex(eegs:EEGRecordedDatas): Float
+
+    /**
+     * Computes the relax index on the EEG streaming with the result of a calibration : every [hopSize] samples,
+     * a volume is computed on the last [windowSize] samples and given to [listener].
+     * The channels are the ones of the calibration. A relax index in progress is stopped.
+     *
+     * @param windowSize number of samples per channel of each computed window, 1 second by default
+     * @param hopSize number of samples between two volumes, must not exceed windowSize
+     */
+    fun startEEGRelaxIndex(
+        calibration: EEGCalibrateResult,
+        listener: EEGRelaxIndexListener,
+        windowSize: Int = 250,
+        hopSize: Int = windowSize
+    )
+
+    /**
+     * @return the session of the relax index started with [startEEGRelaxIndex], null if no volume was computed
+     */
+    fun stopEEGRelaxIndex(): RelaxIndexSessionOutputData?
     fun eggStartRelaxingIndexSession(data: EEGCalibrateResult)
     fun eggEngRelaxingIndexSession():RelaxIndexSessionOutputData?
     fun computeStatistics(threshold:Float, snrValues:Array<Float>): HashMap<String, Float>?
@@ -72,4 +132,36 @@ interface MbtClient {
 
     @LabStreamingLayer
     fun setEEGRealtimeListener(eegRealtimeListener: EEGRealtimeListener)
+
+    /**
+     * Same data as [setEEGRealtimeListener], delivered by groups of frames, see [StreamingParams.Builder.setEEGRealtimeBatch]
+     */
+    @LabStreamingLayer
+    fun setEEGRealtimeBatchListener(eegRealtimeBatchListener: EEGRealtimeBatchListener?)
+
+    //----------------------------------------------------------------------------
+    // Flow API : the flows work alongside the listeners and emit the same objects.
+    // Each collector has its own buffer of [capacity] items, Channel.CONFLATED keeps only the latest one.
+    // The SDK never waits for a collector : BufferOverflow.SUSPEND drops the new items like DROP_LATEST.
+    //----------------------------------------------------------------------------
+    fun eegPacketFlow(
+        capacity: Int = Channel.BUFFERED,
+        onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST
+    ): Flow<MbtEEGPacket>
+
+    @LabStreamingLayer
+    fun eegRealtimeFlow(
+        capacity: Int = Channel.BUFFERED,
+        onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST
+    ): Flow<EEGSignalPack>
+
+    fun accelerometerPacketFlow(
+        capacity: Int = Channel.BUFFERED,
+        onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST
+    ): Flow<AccelerometerPacket>
+
+    fun sensorStatusFlow(
+        capacity: Int = Channel.BUFFERED,
+        onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST
+    ): Flow<SensorStatusEvent>
 }
\ No newline at end of file
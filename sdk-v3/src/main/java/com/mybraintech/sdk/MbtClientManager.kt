@@ -7,6 +7,11 @@ import com.mybraintech.sdk.core.model.EnumMBTDevice
 object MbtClientManager {
 
     private var clientMap = hashMapOf<EnumMBTDevice, MbtClient>()
+
+    /**
+     * clients of [getMbtClient] with address, key = device type + address
+     */
+    private var addressedClientMap = hashMapOf<Pair<EnumMBTDevice, String>, MbtClient>()
     private val lock = Unit
 
     fun getMbtClient(context: Context, deviceType: EnumMBTDevice): MbtClient {
@@ -18,4 +23,19 @@ object MbtClientManager {
             return clientMap[deviceType]!!
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Use this method to stream several headsets of the same type at the same time : there is one client per address.
+     * The frames of all the headsets are decoded by a shared pool of threads, one per CPU core, and the
+     * listeners are called from a shared pool too : a slow listener never delays the decoding.
+     *
+     * @param address identifier chosen by the caller for the headset, usually its bluetooth MAC address
+     */
+    fun getMbtClient(context: Context, deviceType: EnumMBTDevice, address: String): MbtClient {
+        synchronized(lock) {
+            return addressedClientMap.getOrPut(Pair(deviceType, address)) {
+                MbtClientImpl(context, deviceType)
+            }
+        }
+    }
+}
@@ -11,8 +11,10 @@ import com.mybraintech.android.jnibrainbox.RelaxIndexSessionOutputData
 import com.mybraintech.sdk.MbtClient
 import com.mybraintech.sdk.core.acquisition.EEGCalibrateResult
 import com.mybraintech.sdk.core.acquisition.EEGRecordedDatas
+import com.mybraintech.sdk.core.acquisition.EnumSignalType
 import com.mybraintech.sdk.core.acquisition.MbtDeviceStatusCallback
 import com.mybraintech.sdk.core.acquisition.RecordingInterface
+import com.mybraintech.sdk.core.acquisition.RecordingSaveTask
 import com.mybraintech.sdk.core.acquisition.SignalProcessingManager
 import com.mybraintech.sdk.core.bluetooth.MbtDeviceInterface
 import com.mybraintech.sdk.core.bluetooth.devices.BaseMbtDevice
@@ -27,20 +29,31 @@ import com.mybraintech.sdk.core.listener.BatteryLevelListener
 import com.mybraintech.sdk.core.listener.ConnectionListener
 import com.mybraintech.sdk.core.listener.DeviceInformationListener
 import com.mybraintech.sdk.core.listener.DeviceSystemStatusListener
+import com.mybraintech.sdk.core.listener.EEGCalibrationListener
 import com.mybraintech.sdk.core.listener.EEGFilterConfigListener
 import com.mybraintech.sdk.core.listener.EEGListener
+import com.mybraintech.sdk.core.listener.EEGRealtimeBatchListener
 import com.mybraintech.sdk.core.listener.EEGRealtimeListener
+import com.mybraintech.sdk.core.listener.EEGRelaxIndexListener
 import com.mybraintech.sdk.core.listener.MbtDataReceiver
 import com.mybraintech.sdk.core.listener.RecordingListener
 import com.mybraintech.sdk.core.listener.ScanResultListener
 import com.mybraintech.sdk.core.listener.SensorStatusListener
 import com.mybraintech.sdk.core.listener.SerialNumberChangedListener
+import com.mybraintech.sdk.core.model.AccelerometerPacket
 import com.mybraintech.sdk.core.model.BleConnectionStatus
+import com.mybraintech.sdk.core.model.EEGSignalPack
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
 import com.mybraintech.sdk.core.model.EnumMBTDevice
 import com.mybraintech.sdk.core.model.MbtDevice
+import com.mybraintech.sdk.core.model.MbtEEGPacket
 import com.mybraintech.sdk.core.model.RecordingOption
+import com.mybraintech.sdk.core.model.SensorStatusEvent
 import com.mybraintech.sdk.core.model.StreamingParams
+import com.mybraintech.sdk.core.model.StreamingStatistics
 import com.mybraintech.sdk.util.BLE_CONNECTED_STATUS
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.Flow
 import timber.log.Timber
 
 /**
@@ -64,8 +77,54 @@ internal class MbtClientImpl(
     private var eegListener: EEGListener? = null
     private var accelerometerListener: AccelerometerListener? = null
     private var eegRealtimeListener: EEGRealtimeListener? = null
+    private var eegRealtimeBatchListener: EEGRealtimeBatchListener? = null
     private var eegFilterConfigListener: EEGFilterConfigListener? = null
 
+    private val flowHub = MbtFlowHub(
+        onPacketSubscribersChanged = ::updatePacketReceivers,
+        onRealtimeSubscribersChanged = ::updateRealtimeReceiver
+    )
+
+    /**
+     * given to the [SignalProcessingManager] : forwards to the user listener and to the flows
+     */
+    private val eegReceiver = object : EEGListener {
+        override fun onEEGStatusChange(isEnabled: Boolean) {
+            eegListener?.onEEGStatusChange(isEnabled)
+        }
+
+        override fun onEegPacket(mbtEEGPacket: MbtEEGPacket) {
+            eegListener?.onEegPacket(mbtEEGPacket)
+            flowHub.eegPackets.emit(mbtEEGPacket)
+        }
+
+        override fun onEegError(error: Throwable) {
+            eegListener?.onEegError(error)
+        }
+    }
+
+    private val eegRealtimeReceiver = object : EEGRealtimeListener {
+        override fun onEEGFrame(pack: EEGSignalPack) {
+            eegRealtimeListener?.onEEGFrame(pack)
+            flowHub.eegRealtime.emit(pack)
+        }
+    }
+
+    private val accelerometerReceiver = object : AccelerometerListener {
+        override fun onAccelerometerStatusChange(isEnabled: Boolean) {
+            accelerometerListener?.onAccelerometerStatusChange(isEnabled)
+        }
+
+        override fun onAccelerometerPacket(accelerometerPacket: AccelerometerPacket) {
+            accelerometerListener?.onAccelerometerPacket(accelerometerPacket)
+            flowHub.accelerometerPackets.emit(accelerometerPacket)
+        }
+
+        override fun onAccelerometerError(error: Throwable) {
+            accelerometerListener?.onAccelerometerError(error)
+        }
+    }
+
     /**
      * [startStreaming] takes times, this value is to prevent recording function while the [startStreaming] procedure is not finished
      */
@@ -210,9 +269,10 @@ internal class MbtClientImpl(
 
         this.recordingInterface = manager
         this.dataReceiver = manager.apply {
-            setEEGListener(eegListener)
-            setAccelerometerListener(accelerometerListener)
-            setEEGRealtimeListener(eegRealtimeListener)
+            setEEGListener(getEEGReceiver())
+            setAccelerometerListener(getAccelerometerReceiver())
+            setEEGRealtimeListener(getRealtimeReceiver())
+            setEEGRealtimeBatchListener(eegRealtimeBatchListener)
         }
         mbtDeviceInterface.enableSensors(streamingParams, dataReceiver!!, this)
     }
@@ -231,13 +291,75 @@ internal class MbtClientImpl(
 
     override fun setEEGListener(eegListener: EEGListener) {
         this.eegListener = eegListener
-        this.dataReceiver?.setEEGListener(eegListener)
+        updatePacketReceivers()
+    }
+
+    /**
+     * the packets are only delivered when somebody listens to them
+     */
+    private fun getEEGReceiver(): EEGListener? {
+        return if (eegListener != null || flowHub.eegPackets.hasSubscribers()) {
+            eegReceiver
+        } else {
+            null
+        }
+    }
+
+    private fun getAccelerometerReceiver(): AccelerometerListener? {
+        return if (accelerometerListener != null || flowHub.accelerometerPackets.hasSubscribers()) {
+            accelerometerReceiver
+        } else {
+            null
+        }
+    }
+
+    private fun updatePacketReceivers() {
+        this.dataReceiver?.setEEGListener(getEEGReceiver())
+        this.dataReceiver?.setAccelerometerListener(getAccelerometerReceiver())
     }
 
     @LabStreamingLayer
     override fun setEEGRealtimeListener(eegRealtimeListener: EEGRealtimeListener) {
         this.eegRealtimeListener = eegRealtimeListener
-        this.dataReceiver?.setEEGRealtimeListener(eegRealtimeListener)
+        updateRealtimeReceiver()
+    }
+
+    /**
+     * the realtime packs are only built when somebody listens to them
+     */
+    private fun getRealtimeReceiver(): EEGRealtimeListener? {
+        return if (eegRealtimeListener != null || flowHub.eegRealtime.hasSubscribers()) {
+            eegRealtimeReceiver
+        } else {
+            null
+        }
+    }
+
+    private fun updateRealtimeReceiver() {
+        this.dataReceiver?.setEEGRealtimeListener(getRealtimeReceiver())
+    }
+
+    override fun eegPacketFlow(capacity: Int, onBufferOverflow: BufferOverflow): Flow<MbtEEGPacket> {
+        return flowHub.eegPackets.asFlow(capacity, onBufferOverflow)
+    }
+
+    @LabStreamingLayer
+    override fun eegRealtimeFlow(capacity: Int, onBufferOverflow: BufferOverflow): Flow<EEGSignalPack> {
+        return flowHub.eegRealtime.asFlow(capacity, onBufferOverflow)
+    }
+
+    override fun accelerometerPacketFlow(capacity: Int, onBufferOverflow: BufferOverflow): Flow<AccelerometerPacket> {
+        return flowHub.accelerometerPackets.asFlow(capacity, onBufferOverflow)
+    }
+
+    override fun sensorStatusFlow(capacity: Int, onBufferOverflow: BufferOverflow): Flow<SensorStatusEvent> {
+        return flowHub.sensorStatuses.asFlow(capacity, onBufferOverflow)
+    }
+
+    @LabStreamingLayer
+    override fun setEEGRealtimeBatchListener(eegRealtimeBatchListener: EEGRealtimeBatchListener?) {
+        this.eegRealtimeBatchListener = eegRealtimeBatchListener
+        this.dataReceiver?.setEEGRealtimeBatchListener(eegRealtimeBatchListener)
     }
 
     @ResearchStudy
@@ -253,7 +375,7 @@ internal class MbtClientImpl(
 
     override fun setAccelerometerListener(accelerometerListener: AccelerometerListener) {
         this.accelerometerListener = accelerometerListener
-        this.dataReceiver?.setAccelerometerListener(accelerometerListener)
+        updatePacketReceivers()
     }
 
     override fun startRecording(
@@ -270,20 +392,22 @@ internal class MbtClientImpl(
         }
     }
 
-    override fun stopRecording() {
+    override fun stopRecording(): RecordingSaveTask? {
         if (isRecordingEnabled()) {
             isRecordingAllowed = isStreamingFullyStarted()
-            recordingInterface?.stopRecording()
+            return recordingInterface?.stopRecording()
         } else {
             Timber.e("Recording is not enabled")
+            return null
         }
     }
 
-    override fun stopRecording(trim: Int) {
+    override fun stopRecording(trim: Int): RecordingSaveTask? {
         if (isRecordingEnabled()) {
-            recordingInterface?.stopRecording(trim)
+            return recordingInterface?.stopRecording(trim)
         } else {
             Timber.e("Recording is not enabled")
+            return null
         }
     }
 
@@ -307,6 +431,7 @@ internal class MbtClientImpl(
         isEEGEnabled = isEnabled
         isRecordingAllowed = isStreamingFullyStarted()
         eegListener?.onEEGStatusChange(isEnabled)
+        flowHub.sensorStatuses.emit(SensorStatusEvent(EnumSignalType.EEG, isEnabled))
     }
 
     override fun onIMSStatusChange(isEnabled: Boolean) {
@@ -314,6 +439,7 @@ internal class MbtClientImpl(
         isIMSEnabled = isEnabled
         isRecordingAllowed = isStreamingFullyStarted()
         accelerometerListener?.onAccelerometerStatusChange(isEnabled)
+        flowHub.sensorStatuses.emit(SensorStatusEvent(EnumSignalType.ACCELEROMETER, isEnabled))
     }
 
     override fun onEEGStatusError(error: Throwable) {
@@ -342,14 +468,51 @@ internal class MbtClientImpl(
         return recordingInterface?.getDataLossPercentage() ?: 0.0f
     }
 
-    override fun eegCalibration(data: EEGRecordedDatas): EEGCalibrateResult {
-     return manager.eegCalibrate(data)
+    override fun getStreamingStatistics(): StreamingStatistics? {
+        return if (::manager.isInitialized) manager.getStreamingStatistics() else null
+    }
+
+    override fun eegCalibration(data: EEGRecordedDatas, locations: List<EnumAcquisitionLocation>?): EEGCalibrateResult {
+     return manager.eegCalibrate(data, locations)
+    }
+
+    override fun startEEGCalibration(
+        durationSeconds: Int,
+        listener: EEGCalibrationListener,
+        locations: List<EnumAcquisitionLocation>?
+    ) {
+        if (!::manager.isInitialized) {
+            throw IllegalStateException("the streaming must be started before the calibration")
+        }
+        manager.startCalibration(durationSeconds, listener, locations)
+    }
+
+    override fun cancelEEGCalibration() {
+        if (::manager.isInitialized) {
+            manager.stopCalibration()
+        }
     }
 
     override fun eegRelaxingIndex(eegs:EEGRecordedDatas): Float {
         return manager.eegRelaxingIndex(eegs)
     }
 
+    override fun startEEGRelaxIndex(
+        calibration: EEGCalibrateResult,
+        listener: EEGRelaxIndexListener,
+        windowSize: Int,
+        hopSize: Int
+    ) {
+        if (!::manager.isInitialized) {
+            throw IllegalStateException("the streaming must be started before the relax index")
+        }
+        manager.startRelaxIndex(calibration, windowSize, hopSize, listener)
+    }
+
+    override fun stopEEGRelaxIndex(): RelaxIndexSessionOutputData? {
+        return if (::manager.isInitialized) manager.stopRelaxIndex() else null
+    }
+
     override fun eggStartRelaxingIndexSession(data: EEGCalibrateResult) {
          manager.innitRelaxingIndex(data)
     }
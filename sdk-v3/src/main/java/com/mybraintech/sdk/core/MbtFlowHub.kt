@@ -0,0 +1,65 @@
+package com.mybraintech.sdk.core
+
+import com.mybraintech.sdk.core.model.AccelerometerPacket
+import com.mybraintech.sdk.core.model.EEGSignalPack
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.SensorStatusEvent
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.buffer
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.conflate
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Sources of the Flow API of [MbtClientImpl]. The items are the same objects as the ones given to the listeners.
+ */
+internal class MbtFlowHub(
+    onPacketSubscribersChanged: () -> Unit,
+    onRealtimeSubscribersChanged: () -> Unit
+) {
+    val eegPackets = FlowSource<MbtEEGPacket>(onPacketSubscribersChanged)
+    val eegRealtime = FlowSource<EEGSignalPack>(onRealtimeSubscribersChanged)
+    val accelerometerPackets = FlowSource<AccelerometerPacket>(onPacketSubscribersChanged)
+    val sensorStatuses = FlowSource<SensorStatusEvent>()
+}
+
+/**
+ * Fans out the items to the collectors of [asFlow]. Each collector has its own bounded channel, a slow
+ * collector never blocks [emit] nor the other collectors.
+ */
+internal class FlowSource<T : Any>(private val onSubscribersChanged: () -> Unit = {}) {
+
+    private val sinks = CopyOnWriteArrayList<(T) -> Unit>()
+
+    fun hasSubscribers(): Boolean = sinks.isNotEmpty()
+
+    fun emit(item: T) {
+        for (sink in sinks) {
+            sink(item)
+        }
+    }
+
+    /**
+     * @param capacity buffer size of each collector, [Channel.CONFLATED] keeps only the latest item
+     * @param onBufferOverflow what to do when the buffer of a collector is full, ignored when conflated
+     */
+    fun asFlow(capacity: Int, onBufferOverflow: BufferOverflow): Flow<T> {
+        val flow = callbackFlow {
+            val sink: (T) -> Unit = { trySend(it) }
+            sinks.add(sink)
+            onSubscribersChanged()
+            awaitClose {
+                sinks.remove(sink)
+                onSubscribersChanged()
+            }
+        }
+        return if (capacity == Channel.CONFLATED) {
+            flow.conflate()
+        } else {
+            flow.buffer(capacity, onBufferOverflow)
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.AccelerometerConfig
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import timber.log.Timber
+import java.io.Closeable
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Appends the raw frames received from the headset to a journal file, see
+ * [com.mybraintech.sdk.core.model.StreamingParams.Builder.setFrameJournal],
+ * so a streaming session can be analysed or replayed offline with [BleFrameJournalReader].
+ *
+ * The records are copied into a preallocated ring buffer and written to the file by a background thread,
+ * the bluetooth thread never waits for the file. When the ring is full the record is dropped and counted.
+ *
+ * Layout, all the numbers are little-endian :
+ * - "MBTJ" magic, int16 [VERSION], int16 reserved, int64 start time (ms since epoch),
+ *   int16 number of bytes then the UTF-8 name of the [EnumMBTDevice]
+ * - records until the end of the file : int8 [EnumFrameJournalRecord] code, int64 arrival time (ms, elapsed
+ *   realtime clock), int32 number of bytes, then the bytes :
+ *     - [EnumFrameJournalRecord.EEG_FRAME], [EnumFrameJournalRecord.IMS_FRAME] : the frame as given to the SDK
+ *     - [EnumFrameJournalRecord.MAILBOX] : the raw mailbox response
+ *     - [EnumFrameJournalRecord.TRIGGER_STATUS_CONFIG] : int32 trigger status allocation size
+ *     - [EnumFrameJournalRecord.IMS_CONFIG] : the mailbox bytes read by [AccelerometerConfig.parse]
+ *
+ * A record cut by the end of the file, e.g. when the app is killed, is ignored by the reader.
+ *
+ * please call [close] to write the last records
+ */
+internal class BleFrameJournal(
+    file: File,
+    deviceType: EnumMBTDevice,
+    capacity: Int = DEFAULT_CAPACITY
+) : Closeable {
+
+    private val capacity: Int = Integer.highestOneBit(maxOf(MIN_CAPACITY, capacity) * 2 - 1)
+    private val mask = this.capacity - 1
+    private val ring = ByteArray(this.capacity)
+
+    /**
+     * number of bytes written to the file, only written by the writer thread
+     */
+    private val head = AtomicLong()
+
+    /**
+     * number of bytes published, only written under the lock
+     */
+    private val tail = AtomicLong()
+
+    private val output = FileOutputStream(file)
+
+    @Volatile
+    private var isRunning = true
+
+    @Volatile
+    var recordCount = 0L
+        private set
+
+    @Volatile
+    var droppedCount = 0L
+        private set
+
+    private val thread: Thread = AcquisierThreadFactory.newThread(::run).apply {
+        name = "mbt-frame-journal"
+        isDaemon = true
+    }
+
+    init {
+        try {
+            val name = deviceType.name.toByteArray(Charsets.UTF_8)
+            val header = ByteBuffer.allocate(HEADER_SIZE + name.size).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort(0)
+                .putLong(System.currentTimeMillis())
+                .putShort(name.size.toShort())
+                .put(name)
+            output.write(header.array())
+        } catch (e: IOException) {
+            output.close()
+            throw e
+        }
+        thread.start()
+    }
+
+    fun appendEEGFrame(timestamp: Long, frame: ByteArray) = append(EnumFrameJournalRecord.EEG_FRAME, timestamp, frame)
+
+    fun appendIMSFrame(timestamp: Long, frame: ByteArray) = append(EnumFrameJournalRecord.IMS_FRAME, timestamp, frame)
+
+    fun appendMailbox(timestamp: Long, response: ByteArray) = append(EnumFrameJournalRecord.MAILBOX, timestamp, response)
+
+    fun appendTriggerStatusConfiguration(timestamp: Long, allocationSize: Int) {
+        val bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(allocationSize).array()
+        append(EnumFrameJournalRecord.TRIGGER_STATUS_CONFIG, timestamp, bytes)
+    }
+
+    fun appendAccelerometerConfiguration(timestamp: Long, config: AccelerometerConfig) {
+        val bytes = byteArrayOf(0, config.sampleRate.mailboxValue, config.axisSettingCode, config.fullScaleCode)
+        append(EnumFrameJournalRecord.IMS_CONFIG, timestamp, bytes)
+    }
+
+    /**
+     * Copies the record into the ring, it is written later by the journal thread.
+     */
+    private fun append(type: EnumFrameJournalRecord, timestamp: Long, bytes: ByteArray) {
+        val size = RECORD_HEADER_SIZE + bytes.size
+        val used = synchronized(this) {
+            if (!isRunning) {
+                return
+            }
+            val currentTail = tail.get()
+            if (currentTail + size - head.get() > capacity) {
+                droppedCount++
+                return
+            }
+            var position = currentTail
+            ring[(position++).toInt() and mask] = type.code
+            for (shift in 0 until 64 step 8) {
+                ring[(position++).toInt() and mask] = (timestamp ushr shift).toByte()
+            }
+            for (shift in 0 until 32 step 8) {
+                ring[(position++).toInt() and mask] = (bytes.size ushr shift).toByte()
+            }
+            val start = position.toInt() and mask
+            val firstPart = minOf(bytes.size, capacity - start)
+            System.arraycopy(bytes, 0, ring, start, firstPart)
+            System.arraycopy(bytes, firstPart, ring, 0, bytes.size - firstPart)
+            // volatile write : the bytes are visible to the journal thread before the new tail
+            tail.set(currentTail + size)
+            recordCount++
+            currentTail + size - head.get()
+        }
+        if (used > capacity / 2) {
+            LockSupport.unpark(thread)
+        }
+    }
+
+    override fun close() {
+        synchronized(this) {
+            if (!isRunning) {
+                return
+            }
+            isRunning = false
+        }
+        LockSupport.unpark(thread)
+        try {
+            thread.join()
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        }
+        if (droppedCount > 0) {
+            Timber.w("frame journal : $droppedCount records dropped, the journal was full")
+        }
+    }
+
+    private fun run() {
+        try {
+            while (isRunning) {
+                drain()
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS))
+            }
+            drain()
+        } catch (e: IOException) {
+            Timber.e(e, "can not write frame journal, it is stopped")
+            isRunning = false
+        } finally {
+            try {
+                output.close()
+            } catch (e: IOException) {
+                Timber.e(e)
+            }
+        }
+    }
+
+    /**
+     * Writes the published records to the file.
+     */
+    private fun drain() {
+        val currentHead = head.get()
+        val currentTail = tail.get()
+        if (currentHead == currentTail) {
+            return
+        }
+        val start = currentHead.toInt() and mask
+        val length = (currentTail - currentHead).toInt()
+        val firstPart = minOf(length, capacity - start)
+        output.write(ring, start, firstPart)
+        if (firstPart < length) {
+            output.write(ring, 0, length - firstPart)
+        }
+        head.set(currentTail)
+    }
+
+    companion object {
+        internal const val MAGIC = 0x4A54424D // "MBTJ"
+        internal const val VERSION: Short = 1
+        internal const val HEADER_SIZE = 4 + 2 + 2 + 8 + 2
+        internal const val RECORD_HEADER_SIZE = 1 + 8 + 4
+
+        private const val MIN_CAPACITY = 64 * 1024
+        private const val FLUSH_INTERVAL_MS = 200L
+
+        /**
+         * several minutes of EEG and IMS frames
+         */
+        const val DEFAULT_CAPACITY = 1024 * 1024
+    }
+}
@@ -0,0 +1,121 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.AccelerometerConfig
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import java.io.BufferedInputStream
+import java.io.Closeable
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Reads the records of a frame journal in the order they were received, see
+ * [com.mybraintech.sdk.core.model.StreamingParams.Builder.setFrameJournal] for the capture and
+ * [BleFrameJournal] for the layout.
+ *
+ * @throws IOException if the file is not a frame journal
+ */
+class BleFrameJournalReader(file: File) : Closeable {
+
+    class Record(val type: EnumFrameJournalRecord, val timestamp: Long, val data: ByteArray) {
+
+        /**
+         * @return the allocation size of a [EnumFrameJournalRecord.TRIGGER_STATUS_CONFIG] record
+         */
+        fun getTriggerStatusAllocationSize(): Int = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN).int
+
+        /**
+         * @return the configuration of a [EnumFrameJournalRecord.IMS_CONFIG] record
+         */
+        fun getAccelerometerConfig(): AccelerometerConfig = AccelerometerConfig.parse(data)
+    }
+
+    private val input: InputStream = BufferedInputStream(FileInputStream(file), BUFFER_SIZE)
+    private val header = ByteArray(BleFrameJournal.RECORD_HEADER_SIZE)
+
+    val deviceType: EnumMBTDevice
+
+    /**
+     * start of the capture, in ms since epoch
+     */
+    val startTime: Long
+
+    init {
+        try {
+            val start = ByteArray(BleFrameJournal.HEADER_SIZE)
+            if (!readFully(start)) {
+                throw EOFException("${file.name} is too short")
+            }
+            val buffer = ByteBuffer.wrap(start).order(ByteOrder.LITTLE_ENDIAN)
+            if (buffer.int != BleFrameJournal.MAGIC) {
+                throw IOException("${file.name} is not a frame journal")
+            }
+            val version = buffer.short
+            if (version > BleFrameJournal.VERSION) {
+                throw IOException("frame journal version $version is not supported")
+            }
+            buffer.short
+            startTime = buffer.long
+            val name = ByteArray(buffer.short.toInt())
+            if (!readFully(name)) {
+                throw EOFException("${file.name} is too short")
+            }
+            deviceType = EnumMBTDevice.valueOf(String(name, Charsets.UTF_8))
+        } catch (e: Exception) {
+            input.close()
+            throw if (e is IOException) e else IOException(e)
+        }
+    }
+
+    /**
+     * @return the next record, null at the end of the journal. The records of unknown types are skipped.
+     */
+    fun next(): Record? {
+        while (true) {
+            if (!readFully(header)) {
+                return null
+            }
+            val buffer = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN)
+            val code = buffer.get()
+            val timestamp = buffer.long
+            val size = buffer.int
+            if (size < 0) {
+                throw IOException("invalid record size $size")
+            }
+            val data = ByteArray(size)
+            // a record cut by the end of the file was not completely written
+            if (!readFully(data)) {
+                return null
+            }
+            val type = EnumFrameJournalRecord.parse(code) ?: continue
+            return Record(type, timestamp, data)
+        }
+    }
+
+    override fun close() {
+        input.close()
+    }
+
+    /**
+     * @return false if the end of the file is reached first
+     */
+    private fun readFully(bytes: ByteArray): Boolean {
+        var offset = 0
+        while (offset < bytes.size) {
+            val read = input.read(bytes, offset, bytes.size - offset)
+            if (read < 0) {
+                return false
+            }
+            offset += read
+        }
+        return true
+    }
+
+    private companion object {
+        const val BUFFER_SIZE = 64 * 1024
+    }
+}
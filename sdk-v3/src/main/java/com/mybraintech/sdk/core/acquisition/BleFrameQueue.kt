@@ -0,0 +1,148 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.FrameQueueStatistics
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Single producer / single consumer queue of BLE frames, between the bluetooth callback thread
+ * and the [BleFrameWorker] thread.
+ *
+ * The frames are copied into byte slots which are reused : a slot is only (re)allocated when the
+ * size of the frame changes, so in steady state [offer] does not allocate and never blocks.
+ *
+ * Overflow policy : when the queue is full the new frame is dropped and counted. The EEG and IMS
+ * consumers see a gap in the frame indexes and fill it with NaN like any frame lost over the air.
+ */
+class BleFrameQueue(
+    capacity: Int,
+    private val workerName: String,
+    private val onPublished: () -> Unit
+) {
+
+    private val capacity: Int = Integer.highestOneBit(maxOf(2, capacity) * 2 - 1)
+    private val mask = (this.capacity - 1).toLong()
+    private val slots = arrayOfNulls<ByteArray>(this.capacity)
+    private val timestamps = LongArray(this.capacity)
+
+    /**
+     * number of frames consumed, only written by the consumer
+     */
+    private val head = AtomicLong()
+
+    /**
+     * number of frames published, only written by the producer
+     */
+    private val tail = AtomicLong()
+
+    @Volatile
+    private var droppedCount = 0L
+
+    @Volatile
+    private var maxDepth = 0
+
+    private val creationTime = System.currentTimeMillis()
+
+    /**
+     * time spent by the consumer in the handler, only written by the consumer
+     */
+    @Volatile
+    private var busyTimeNs = 0L
+
+    /**
+     * Copies the frame into the queue. Must be called by one thread at a time.
+     *
+     * @return false if the queue is full, the frame is dropped
+     */
+    fun offer(timestamp: Long, frame: ByteArray): Boolean {
+        val currentTail = tail.get()
+        val depth = (currentTail - head.get()).toInt()
+        if (depth >= capacity) {
+            droppedCount++
+            return false
+        }
+        val index = (currentTail and mask).toInt()
+        var slot = slots[index]
+        if (slot == null || slot.size != frame.size) {
+            slot = ByteArray(frame.size)
+            slots[index] = slot
+        }
+        System.arraycopy(frame, 0, slot, 0, frame.size)
+        timestamps[index] = timestamp
+        // volatile write : it must be visible before the worker checks whether it can park
+        tail.set(currentTail + 1)
+        if (depth + 1 > maxDepth) {
+            maxDepth = depth + 1
+        }
+        onPublished()
+        return true
+    }
+
+    /**
+     * Gives all the published frames to the handler, on the consumer thread.
+     * The frame array is a slot of the queue : it is only valid during the call.
+     *
+     * @return number of consumed frames
+     */
+    fun drain(handler: BleFrameHandler): Int {
+        val currentHead = head.get()
+        val currentTail = tail.get()
+        if (currentHead == currentTail) {
+            return 0
+        }
+        val start = System.nanoTime()
+        var position = currentHead
+        try {
+            while (position < currentTail) {
+                val index = (position and mask).toInt()
+                try {
+                    handler.onFrame(timestamps[index], slots[index]!!)
+                } finally {
+                    position++
+                    head.lazySet(position)
+                }
+            }
+        } finally {
+            busyTimeNs += System.nanoTime() - start
+        }
+        return (currentTail - currentHead).toInt()
+    }
+
+    fun isEmpty(): Boolean {
+        return head.get() == tail.get()
+    }
+
+    /**
+     * @return true if the next [offer] would drop the frame
+     */
+    fun isFull(): Boolean {
+        return tail.get() - head.get() >= capacity
+    }
+
+    fun getStatistics(): FrameQueueStatistics {
+        val published = tail.get()
+        val consumed = head.get()
+        val elapsedMs = maxOf(1L, System.currentTimeMillis() - creationTime)
+        return FrameQueueStatistics(
+            capacity = capacity,
+            depth = (published - consumed).toInt(),
+            maxDepth = maxDepth,
+            receivedCount = published + droppedCount,
+            droppedCount = droppedCount,
+            consumedCount = consumed,
+            framesPerSecond = consumed * 1000f / elapsedMs,
+            busyTimeMs = busyTimeNs / 1_000_000,
+            workerName = workerName
+        )
+    }
+
+    companion object {
+        /**
+         * about 5 seconds of EEG frames
+         */
+        const val DEFAULT_CAPACITY = 256
+    }
+}
+
+fun interface BleFrameHandler {
+    fun onFrame(timestamp: Long, frame: ByteArray)
+}
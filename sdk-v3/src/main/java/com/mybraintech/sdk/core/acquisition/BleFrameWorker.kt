@@ -0,0 +1,94 @@
+package com.mybraintech.sdk.core.acquisition
+
+import timber.log.Timber
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Thread which consumes [BleFrameQueue]s, usually the queues of several devices, see [BleFrameWorkerPool].
+ * The frames of a queue are processed in order, one at a time.
+ *
+ * The worker parks when all the queues are empty and the producers only unpark it when it is parked,
+ * so there is no scheduling work per frame.
+ *
+ * please call [dispose] to stop the thread
+ */
+class BleFrameWorker(name: String) {
+
+    private class Entry(val queue: BleFrameQueue, val handler: BleFrameHandler)
+
+    @Volatile
+    private var entries: Array<Entry> = emptyArray()
+
+    @Volatile
+    private var isParked = false
+
+    @Volatile
+    private var isRunning = true
+
+    private val thread: Thread = AcquisierThreadFactory.newThread(::run).apply {
+        this.name = name
+        isDaemon = true
+    }
+
+    /**
+     * Creates a queue consumed by this worker. Errors thrown by the handler are logged, the next frames
+     * are still processed.
+     */
+    fun createQueue(capacity: Int, handler: BleFrameHandler): BleFrameQueue {
+        val queue = BleFrameQueue(capacity, thread.name, ::wakeUp)
+        synchronized(this) {
+            entries = entries + Entry(queue, handler)
+            if (thread.state == Thread.State.NEW) {
+                thread.start()
+            }
+        }
+        return queue
+    }
+
+    /**
+     * The queue is not consumed anymore, the frames it still contains are discarded.
+     */
+    fun removeQueue(queue: BleFrameQueue) {
+        synchronized(this) {
+            entries = entries.filter { it.queue !== queue }.toTypedArray()
+        }
+    }
+
+    fun dispose() {
+        isRunning = false
+        LockSupport.unpark(thread)
+    }
+
+    private fun wakeUp() {
+        if (isParked) {
+            LockSupport.unpark(thread)
+        }
+    }
+
+    private fun run() {
+        while (isRunning) {
+            var count = 0
+            for (entry in entries) {
+                count += drain(entry)
+            }
+            if (count == 0) {
+                isParked = true
+                // a frame published before isParked was set is seen here, otherwise its producer unparks us
+                if (isRunning && entries.all { it.queue.isEmpty() }) {
+                    LockSupport.park(this)
+                }
+                isParked = false
+            }
+        }
+        Timber.d("${thread.name} stopped")
+    }
+
+    private fun drain(entry: Entry): Int {
+        return try {
+            entry.queue.drain(entry.handler)
+        } catch (e: Exception) {
+            Timber.e(e)
+            1
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.mybraintech.sdk.core.acquisition
+
+/**
+ * Shared [BleFrameWorker]s of all the connected devices, one per CPU core. The threads are started when
+ * they get their first device.
+ *
+ * A device is given to the least loaded worker and keeps it until it is released, all its frames
+ * are processed by the same thread so their order is preserved.
+ */
+object BleFrameWorkerPool {
+
+    private val workers: Array<BleFrameWorker> by lazy {
+        val size = maxOf(1, Runtime.getRuntime().availableProcessors())
+        Array(size) { BleFrameWorker("mbt-ble-frame-worker-$it") }
+    }
+
+    /**
+     * number of devices per worker
+     */
+    private val loads: IntArray by lazy { IntArray(workers.size) }
+
+    /**
+     * @return the worker of a new device, call [release] when the device stops streaming
+     */
+    @Synchronized
+    fun acquire(): BleFrameWorker {
+        var best = 0
+        for (i in loads.indices) {
+            if (loads[i] < loads[best]) {
+                best = i
+            }
+        }
+        loads[best]++
+        return workers[best]
+    }
+
+    @Synchronized
+    fun release(worker: BleFrameWorker) {
+        val index = workers.indexOf(worker)
+        if (index >= 0 && loads[index] > 0) {
+            loads[index]--
+        }
+    }
+}
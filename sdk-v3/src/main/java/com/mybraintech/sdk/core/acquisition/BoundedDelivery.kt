@@ -0,0 +1,173 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.DeliveryOption
+import com.mybraintech.sdk.core.model.DeliveryStatistics
+import com.mybraintech.sdk.core.model.EnumDeliveryPolicy
+import timber.log.Timber
+import java.util.ArrayDeque
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Delivers items to a listener on the shared delivery threads, through a bounded queue. When the listener is
+ * too slow, the [DeliveryOption.policy] decides what happens to the new items : the drop policies keep
+ * the backlog within [DeliveryOption.capacity], [EnumDeliveryPolicy.BLOCK] keeps every item.
+ * A warning is logged when the capacity is first exceeded.
+ *
+ * [offer] never waits : it is called by the frame workers, which must keep decoding and recording
+ * whatever the listener does.
+ *
+ * The items are delivered one at a time and in order, by a task of a pool shared by all the deliveries
+ * of all the devices, so the number of threads does not grow with the number of devices. The task gives
+ * its thread back after [MAX_BATCH] items : a slow listener only delays the other listeners when it
+ * keeps all the threads of the pool.
+ *
+ * please call [dispose] to stop the delivery
+ */
+class BoundedDelivery<T : Any>(
+    private val name: String,
+    private val option: DeliveryOption,
+    private val consumer: (T) -> Unit
+) {
+
+    private val capacity = if (option.policy == EnumDeliveryPolicy.COALESCE_LATEST) 1 else option.capacity
+    private val queue = ArrayDeque<T>(capacity)
+    private val lock = ReentrantLock()
+
+    private var isRunning = true
+    private var maxDepth = 0
+    private var deliveredCount = 0L
+    private var droppedCount = 0L
+    private var coalescedCount = 0L
+
+    /**
+     * true from the first item over the capacity until the queue is empty again
+     */
+    private var isOverflowing = false
+
+    /**
+     * true while a [drain] task is submitted or running
+     */
+    private var isDrainScheduled = false
+
+    /**
+     * Queues the item according to the policy, without waiting for the listener.
+     *
+     * @return false if the item has been dropped
+     */
+    fun offer(item: T): Boolean {
+        lock.withLock {
+            if (!isRunning) {
+                return false
+            }
+            if (queue.size >= capacity) {
+                when (option.policy) {
+                    EnumDeliveryPolicy.BLOCK -> {
+                        onOverflow("items are kept past the capacity")
+                    }
+                    EnumDeliveryPolicy.DROP_OLDEST -> {
+                        queue.pollFirst()
+                        droppedCount++
+                        onOverflow("items are dropped")
+                    }
+                    EnumDeliveryPolicy.DROP_NEWEST -> {
+                        droppedCount++
+                        onOverflow("items are dropped")
+                        return false
+                    }
+                    EnumDeliveryPolicy.COALESCE_LATEST -> {
+                        queue.pollFirst()
+                        coalescedCount++
+                    }
+                }
+            }
+            queue.addLast(item)
+            if (queue.size > maxDepth) {
+                maxDepth = queue.size
+            }
+            if (!isDrainScheduled) {
+                isDrainScheduled = true
+                executor.execute(::drain)
+            }
+            return true
+        }
+    }
+
+    private fun onOverflow(consequence: String) {
+        if (!isOverflowing) {
+            isOverflowing = true
+            Timber.w("$name : the listener is too slow, $consequence (${option.policy}, capacity $capacity)")
+        }
+    }
+
+    fun getStatistics(): DeliveryStatistics {
+        lock.withLock {
+            return DeliveryStatistics(
+                policy = option.policy,
+                capacity = capacity,
+                depth = queue.size,
+                maxDepth = maxDepth,
+                deliveredCount = deliveredCount,
+                droppedCount = droppedCount,
+                coalescedCount = coalescedCount
+            )
+        }
+    }
+
+    /**
+     * Stops the delivery, the items not delivered yet are discarded.
+     */
+    fun dispose() {
+        lock.withLock {
+            isRunning = false
+            queue.clear()
+        }
+    }
+
+    /**
+     * Delivers up to [MAX_BATCH] items, then submits itself again if items are left.
+     */
+    private fun drain() {
+        for (i in 0 until MAX_BATCH) {
+            val item = lock.withLock {
+                if (!isRunning || queue.isEmpty()) {
+                    isDrainScheduled = false
+                    return
+                }
+                val next = queue.pollFirst()
+                deliveredCount++
+                if (queue.isEmpty()) {
+                    isOverflowing = false
+                }
+                next
+            }
+            try {
+                consumer(item)
+            } catch (e: Exception) {
+                Timber.e(e)
+            }
+        }
+        lock.withLock {
+            if (isRunning && queue.isNotEmpty()) {
+                executor.execute(::drain)
+            } else {
+                isDrainScheduled = false
+            }
+        }
+    }
+
+    companion object {
+
+        private const val MAX_BATCH = 16
+
+        internal val poolSize: Int = maxOf(2, Runtime.getRuntime().availableProcessors())
+
+        private val executor: ExecutorService by lazy {
+            Executors.newFixedThreadPool(poolSize) { runnable ->
+                Thread(runnable, "mbt-delivery").apply { isDaemon = true }
+            }
+        }
+    }
+}
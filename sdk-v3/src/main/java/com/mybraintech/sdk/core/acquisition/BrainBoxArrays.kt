@@ -0,0 +1,78 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.android.jnibrainbox.Calibration
+import com.mybraintech.android.jnibrainbox.QualityChecker
+import com.mybraintech.android.jnibrainbox.RelaxIndex
+
+/*
+ * Channel-major array versions of the jnibrainbox 3.1.1 methods, with the signature of the flat array
+ * overloads of the JniBrainBox module. Those overloads read the arrays in place but are not published yet,
+ * so the rows are copied here : once the SDK depends on them, their members are called and this file can go.
+ *
+ * In all of them the channel c of signals starts at offset + c * channelStride.
+ */
+
+private fun toMatrix(
+    signals: FloatArray,
+    offset: Int,
+    channelStride: Int,
+    nbChannels: Int,
+    nbSamples: Int
+): Array<FloatArray> {
+    return Array(nbChannels) { channel ->
+        val start = offset + channel * channelStride
+        signals.copyOfRange(start, start + nbSamples)
+    }
+}
+
+/**
+ * @param qualities receives one quality per channel
+ */
+internal fun QualityChecker.computeQualityChecker(
+    signals: FloatArray,
+    offset: Int,
+    channelStride: Int,
+    nbChannels: Int,
+    nbSamples: Int,
+    qualities: FloatArray
+) {
+    val channels = ArrayList<ArrayList<Float>>(nbChannels)
+    for (channel in 0 until nbChannels) {
+        val start = offset + channel * channelStride
+        channels.add((start until start + nbSamples).mapTo(ArrayList(nbSamples)) { signals[it] })
+    }
+    computeQualityChecker(channels).copyInto(qualities, 0, 0, nbChannels)
+}
+
+/**
+ * @param qualities one quality per channel
+ */
+internal fun RelaxIndex.computeVolume(
+    signals: FloatArray,
+    offset: Int,
+    channelStride: Int,
+    nbChannels: Int,
+    nbSamples: Int,
+    qualities: FloatArray
+): Float {
+    return computeVolume(toMatrix(signals, offset, channelStride, nbChannels, nbSamples), qualities.copyOf(nbChannels))
+}
+
+/**
+ * @param qualities channel-major, [nbQualities] per channel
+ * @return error code, 0 means no error
+ */
+internal fun Calibration.computeCalibration(
+    signals: FloatArray,
+    offset: Int,
+    channelStride: Int,
+    nbChannels: Int,
+    nbSamples: Int,
+    qualities: FloatArray,
+    nbQualities: Int
+): Int {
+    return computeCalibration(
+        toMatrix(signals, offset, channelStride, nbChannels, nbSamples),
+        toMatrix(qualities, 0, nbQualities, nbChannels, nbQualities)
+    )
+}
@@ -1,8 +1,15 @@
 package com.mybraintech.sdk.core.acquisition
 
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
+
 data class EEGCalibrateResult(val success: Boolean, val errorMessage: String?) {
     internal var iaf: FloatArray = floatArrayOf()
     internal var rms: FloatArray = floatArrayOf()
     internal var smoothRms: FloatArray = floatArrayOf()
+
+    /**
+     * channels of the calibration, the relax index uses the same ones
+     */
+    internal var locations: List<EnumAcquisitionLocation> = emptyList()
 }
 
@@ -0,0 +1,114 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.android.jnibrainbox.QualityChecker
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import com.mybraintech.sdk.core.model.KwakHeader
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import timber.log.Timber
+
+/**
+ * Channels of the EEG packets given to the calibration and the relax index.
+ *
+ * The selected channels are copied in the order of [locations], one row per channel, so the native library
+ * always receives a compact channel-major matrix of [size] rows whatever the device.
+ *
+ * @param channels index in the EEG packets of each location
+ */
+internal class EEGChannelSelection(
+    val locations: List<EnumAcquisitionLocation>,
+    val channels: IntArray
+) {
+
+    init {
+        require(locations.size == channels.size) { "${locations.size} locations for ${channels.size} channels" }
+        require(channels.isNotEmpty()) { "no channel selected" }
+    }
+
+    val size: Int
+        get() = channels.size
+
+    /**
+     * number of channels a packet needs to contain all the selected ones
+     */
+    val packetChannels: Int = channels.maxOrNull()!! + 1
+
+    /**
+     * Copies the selected channels of consecutive packets, one channel per task of the [SignalComputePool].
+     * The qualities of the packets received without them are computed by the quality checker.
+     *
+     * @param signals channel-major, row i is the location i, [signalLength] samples per row
+     * @param qualities channel-major, row i is the location i, one quality per packet
+     */
+    fun copyPackets(
+        packets: List<MbtEEGPacket>,
+        signals: FloatArray,
+        signalLength: Int,
+        qualities: FloatArray,
+        sampleRate: Int
+    ) {
+        val isQualityMissing = packets.any { it.qualityValues == null }
+        SignalComputePool.forEachChannel(size) { row ->
+            val channel = channels[row]
+            val qualityRow = row * packets.size
+            var position = row * signalLength
+            for ((index, packet) in packets.withIndex()) {
+                packet.getChannel(channel, signals, position)
+                position += packet.nbSamples
+                qualities[qualityRow + index] = packet.getQuality(channel)
+            }
+            if (isQualityMissing) {
+                computeMissingQualities(packets, signals, row * signalLength, qualities, qualityRow, sampleRate)
+            }
+        }
+    }
+
+    /**
+     * The BrainBox quality checker computes the features of each channel separately, so each channel
+     * has its own checker and is computed on its own task.
+     */
+    private fun computeMissingQualities(
+        packets: List<MbtEEGPacket>,
+        signals: FloatArray,
+        signalOffset: Int,
+        qualities: FloatArray,
+        qualityOffset: Int,
+        sampleRate: Int
+    ) {
+        val output = FloatArray(1)
+        try {
+            QualityChecker(sampleRate).use { checker ->
+                var position = signalOffset
+                for ((index, packet) in packets.withIndex()) {
+                    if (packet.qualityValues == null) {
+                        checker.computeQualityChecker(signals, position, packet.nbSamples, 1, packet.nbSamples, output)
+                        qualities[qualityOffset + index] = output[0]
+                    }
+                    position += packet.nbSamples
+                }
+            }
+        } catch (e: Exception) {
+            Timber.e(e, "can not compute the missing qualities")
+        }
+    }
+
+    companion object {
+
+        /**
+         * @param locations the locations to select, in the order of the output rows ; all the acquisition
+         * locations of the device when it is null
+         * @throws IllegalArgumentException if a location is not recorded by the device
+         */
+        fun of(deviceType: EnumMBTDevice, locations: List<EnumAcquisitionLocation>? = null): EEGChannelSelection {
+            val deviceLocations = KwakHeader().getHeader(deviceType).acquisitionLocations
+            val selected = locations ?: deviceLocations
+            val channels = IntArray(selected.size) { i ->
+                val channel = deviceLocations.indexOf(selected[i])
+                require(channel >= 0) { "${selected[i]} is not recorded by $deviceType : $deviceLocations" }
+                channel
+            }
+            require(selected.toSet().size == selected.size) { "a location is selected twice : $selected" }
+            return EEGChannelSelection(selected.toList(), channels)
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.mybraintech.sdk.core.acquisition
+
+/**
+ * Types of the records of a frame journal, see [BleFrameJournalReader].
+ *
+ * @param code value written in the journal file
+ */
+enum class EnumFrameJournalRecord(val code: Byte) {
+    EEG_FRAME(1),
+    IMS_FRAME(2),
+    MAILBOX(3),
+    TRIGGER_STATUS_CONFIG(4),
+    IMS_CONFIG(5);
+
+    companion object {
+        /**
+         * @return null if the code is not known, e.g. a record of a newer journal version
+         */
+        fun parse(code: Byte): EnumFrameJournalRecord? {
+            return values().firstOrNull { it.code == code }
+        }
+    }
+}
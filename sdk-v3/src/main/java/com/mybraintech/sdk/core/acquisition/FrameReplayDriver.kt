@@ -0,0 +1,251 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.listener.MbtDataReceiver
+import timber.log.Timber
+import java.lang.reflect.Method
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Feeds recorded or generated frames to a [MbtDataReceiver], like the bluetooth callbacks of a device do,
+ * to profile the signal processing or to check a change against a recorded session. Nothing here needs
+ * bluetooth nor Android, it runs on a plain JVM.
+ *
+ * The records are sent on the calling thread at the pace of their timestamps divided by the speed,
+ * or as fast as the receiver takes them with [UNTHROTTLED].
+ *
+ * @param flowControl frame queues of the receiver : without it the frames are sent without waiting
+ * and the end of the processing is not awaited
+ */
+internal class FrameReplayDriver(
+    private val receiver: MbtDataReceiver,
+    private val flowControl: FlowControl? = null
+) {
+
+    interface FlowControl {
+        /**
+         * @return false if the receiver would drop a new frame
+         */
+        fun canOffer(): Boolean
+
+        /**
+         * @return true when all the offered frames are processed
+         */
+        fun isIdle(): Boolean
+    }
+
+    @Volatile
+    private var isCancelled = false
+
+    /**
+     * Stops [replay] after the current record, from any thread.
+     */
+    fun cancel() {
+        isCancelled = true
+    }
+
+    /**
+     * Sends all the records of [source] then waits for the receiver to process them.
+     *
+     * @param speed 1 for real time, 10 for 10 times faster... or [UNTHROTTLED]. When the receiver is
+     * slower than a paced replay, the frames are dropped like in a live session and counted in
+     * [FrameReplayReport.lateFrameCount]. An unthrottled replay waits for the receiver instead.
+     * @param timings stage timings of the receiver, they are copied into the report
+     */
+    fun replay(source: FrameReplaySource, speed: Float = REALTIME, timings: PipelineTimings? = null): FrameReplayReport {
+        require(speed > 0f) { "speed must be positive" }
+        isCancelled = false
+        var eegFrameCount = 0L
+        var imsFrameCount = 0L
+        var otherRecordCount = 0L
+        var lateFrameCount = 0L
+        var firstTimestamp = Long.MIN_VALUE
+        var lastTimestamp = 0L
+
+        val allocatedBefore = getOtherThreadsAllocatedBytes()
+        val startNs = System.nanoTime()
+        while (!isCancelled) {
+            val record = source.next() ?: break
+            val isFrame = (record.type == EnumFrameJournalRecord.EEG_FRAME || record.type == EnumFrameJournalRecord.IMS_FRAME)
+            if (isFrame) {
+                if (firstTimestamp == Long.MIN_VALUE) {
+                    firstTimestamp = record.timestamp
+                }
+                lastTimestamp = record.timestamp
+                if (speed == UNTHROTTLED) {
+                    awaitCapacity()
+                } else {
+                    awaitTime(startNs + ((record.timestamp - firstTimestamp) * NANOS_PER_MILLI / speed).toLong())
+                    if (flowControl?.canOffer() == false) {
+                        lateFrameCount++
+                    }
+                }
+            }
+            when (record.type) {
+                EnumFrameJournalRecord.EEG_FRAME -> {
+                    receiver.onEEGFrame(record.timestamp, record.data)
+                    eegFrameCount++
+                }
+                EnumFrameJournalRecord.IMS_FRAME -> {
+                    receiver.onAccelerometerFrame(record.data)
+                    imsFrameCount++
+                }
+                EnumFrameJournalRecord.MAILBOX -> {
+                    receiver.onRawMailboxFrame(record.timestamp, record.data)
+                    otherRecordCount++
+                }
+                EnumFrameJournalRecord.TRIGGER_STATUS_CONFIG -> {
+                    receiver.onTriggerStatusConfiguration(record.getTriggerStatusAllocationSize())
+                    otherRecordCount++
+                }
+                EnumFrameJournalRecord.IMS_CONFIG -> {
+                    receiver.onAccelerometerConfiguration(record.getAccelerometerConfig())
+                    otherRecordCount++
+                }
+            }
+        }
+        awaitIdle()
+        val elapsedNs = System.nanoTime() - startNs
+        val allocatedAfter = getOtherThreadsAllocatedBytes()
+
+        val frameCount = eegFrameCount + imsFrameCount
+        val elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNs)
+        val recordedDurationMs = if (firstTimestamp == Long.MIN_VALUE) 0L else lastTimestamp - firstTimestamp
+        return FrameReplayReport(
+            eegFrameCount = eegFrameCount,
+            imsFrameCount = imsFrameCount,
+            otherRecordCount = otherRecordCount,
+            lateFrameCount = lateFrameCount,
+            elapsedMs = elapsedMs,
+            recordedDurationMs = recordedDurationMs,
+            framesPerSecond = frameCount * 1e9f / maxOf(1L, elapsedNs),
+            achievedSpeed = (recordedDurationMs * NANOS_PER_MILLI / maxOf(1L, elapsedNs)).toFloat(),
+            allocatedBytes = if (allocatedBefore < 0 || allocatedAfter < 0) -1L else allocatedAfter - allocatedBefore,
+            timings = timings,
+            isCancelled = isCancelled
+        )
+    }
+
+    private fun awaitTime(deadlineNs: Long) {
+        while (!isCancelled) {
+            val remaining = deadlineNs - System.nanoTime()
+            if (remaining <= 0) {
+                return
+            }
+            LockSupport.parkNanos(this, remaining)
+        }
+    }
+
+    private fun awaitCapacity() {
+        val control = flowControl ?: return
+        while (!control.canOffer() && !isCancelled) {
+            LockSupport.parkNanos(this, BACKOFF_NS)
+        }
+    }
+
+    private fun awaitIdle() {
+        val control = flowControl ?: return
+        while (!control.isIdle() && !isCancelled) {
+            LockSupport.parkNanos(this, BACKOFF_NS)
+        }
+    }
+
+    /**
+     * @return the bytes allocated by all the threads but the replay thread, which allocates the records
+     * of the source, -1 if the virtual machine does not count them (e.g. Android)
+     */
+    private fun getOtherThreadsAllocatedBytes(): Long {
+        val bean = threadBean ?: return -1L
+        return try {
+            val ids = getAllThreadIds!!.invoke(bean) as LongArray
+            val bytes = getThreadAllocatedBytes!!.invoke(bean, ids) as LongArray
+            val current = Thread.currentThread().id
+            var total = 0L
+            for (i in ids.indices) {
+                if (ids[i] != current && bytes[i] > 0) {
+                    total += bytes[i]
+                }
+            }
+            total
+        } catch (e: Exception) {
+            -1L
+        }
+    }
+
+    companion object {
+        const val REALTIME = 1f
+        const val UNTHROTTLED = Float.POSITIVE_INFINITY
+
+        private const val NANOS_PER_MILLI = 1_000_000.0
+        private const val BACKOFF_NS = 50_000L
+
+        /**
+         * com.sun.management.ThreadMXBean of HotSpot, found by reflection because java.lang.management
+         * is not part of Android
+         */
+        private var threadBean: Any? = null
+        private var getAllThreadIds: Method? = null
+        private var getThreadAllocatedBytes: Method? = null
+
+        init {
+            try {
+                val bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean")
+                    .invoke(null)
+                val beanClass = Class.forName("com.sun.management.ThreadMXBean")
+                if (beanClass.isInstance(bean)) {
+                    getAllThreadIds = beanClass.getMethod("getAllThreadIds")
+                    getThreadAllocatedBytes = beanClass.getMethod("getThreadAllocatedBytes", LongArray::class.java)
+                    threadBean = bean
+                }
+            } catch (e: Exception) {
+                Timber.d("thread allocation counters are not available : $e")
+            }
+        }
+    }
+}
+
+/**
+ * Result of [FrameReplayDriver.replay].
+ */
+internal data class FrameReplayReport(
+    val eegFrameCount: Long,
+    val imsFrameCount: Long,
+    /**
+     * configuration and mailbox records
+     */
+    val otherRecordCount: Long,
+    /**
+     * frames sent while the frame queue was full, they were dropped by the receiver
+     */
+    val lateFrameCount: Long,
+    val elapsedMs: Long,
+    /**
+     * time between the first and the last frame of the source
+     */
+    val recordedDurationMs: Long,
+    val framesPerSecond: Float,
+    /**
+     * recorded duration / replay duration : 1 for real time
+     */
+    val achievedSpeed: Float,
+    /**
+     * bytes allocated by the receiver threads during the replay, -1 if unknown
+     */
+    val allocatedBytes: Long,
+    val timings: PipelineTimings?,
+    val isCancelled: Boolean
+) {
+
+    fun getAllocatedBytesPerFrame(): Float {
+        val frameCount = eegFrameCount + imsFrameCount
+        return if (allocatedBytes < 0 || frameCount == 0L) -1f else allocatedBytes.toFloat() / frameCount
+    }
+
+    override fun toString(): String {
+        return "replay : ${eegFrameCount + imsFrameCount} frames in $elapsedMs ms, " +
+                "${"%.0f".format(framesPerSecond)} frames/s, x${"%.1f".format(achievedSpeed)}, " +
+                "late frames = $lateFrameCount, allocated = ${"%.1f".format(getAllocatedBytesPerFrame())} bytes/frame" +
+                (timings?.let { ", $it" } ?: "")
+    }
+}
@@ -0,0 +1,125 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import java.io.Closeable
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.PI
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+/**
+ * Records given to a [FrameReplayDriver], in the order they were received from the headset.
+ */
+internal interface FrameReplaySource : Closeable {
+
+    val deviceType: EnumMBTDevice
+
+    /**
+     * @return the next record, null at the end of the source
+     */
+    fun next(): BleFrameJournalReader.Record?
+
+    override fun close() {}
+}
+
+/**
+ * Replays a frame journal written with [com.mybraintech.sdk.core.model.StreamingParams.Builder.setFrameJournal].
+ */
+internal class JournalReplaySource(file: File) : FrameReplaySource {
+
+    private val reader = BleFrameJournalReader(file)
+
+    override val deviceType: EnumMBTDevice = reader.deviceType
+
+    override fun next(): BleFrameJournalReader.Record? = reader.next()
+
+    override fun close() {
+        reader.close()
+    }
+}
+
+/**
+ * Generates the EEG frames of a headset without bluetooth : one sine per channel, 2 bytes index,
+ * [statusAllocationSize] bytes of trigger status then [timesPerFrame] times of all the channels.
+ *
+ * The frames are consecutive unless [lostFrameInterval] is set, the frame data array is reused from
+ * one record to the next one.
+ */
+internal class SyntheticFrameSource(
+    override val deviceType: EnumMBTDevice,
+    durationSeconds: Int,
+    private val statusAllocationSize: Int = 0,
+    private val timesPerFrame: Int = DEFAULT_TIMES_PER_FRAME,
+    /**
+     * one frame out of [lostFrameInterval] is skipped, 0 to send all the frames
+     */
+    private val lostFrameInterval: Int = 0
+) : FrameReplaySource {
+
+    private val nbChannels = when (deviceType) {
+        EnumMBTDevice.MELOMIND -> 2
+        EnumMBTDevice.Q_PLUS, EnumMBTDevice.HYPERION -> 4
+        else -> throw UnsupportedOperationException("device type not known")
+    }
+
+    private val frameCount = durationSeconds.toLong() * SAMPLE_RATE / timesPerFrame
+    private val frame = ByteArray(INDEX_SIZE + statusAllocationSize + timesPerFrame * nbChannels * 2)
+
+    /**
+     * one second of raw samples per channel, different frequencies so the channels can be told apart
+     */
+    private val samples = Array(nbChannels) { channel ->
+        ShortArray(SAMPLE_RATE) {
+            (AMPLITUDE * sin(2 * PI * (channel + 1) * 5 * it / SAMPLE_RATE)).roundToInt().toShort()
+        }
+    }
+
+    private var isConfigurationSent = (statusAllocationSize == 0)
+    private var frameIndex = 0L
+
+    override fun next(): BleFrameJournalReader.Record? {
+        if (!isConfigurationSent) {
+            isConfigurationSent = true
+            val bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(statusAllocationSize).array()
+            return BleFrameJournalReader.Record(EnumFrameJournalRecord.TRIGGER_STATUS_CONFIG, 0L, bytes)
+        }
+        if (lostFrameInterval > 0 && frameIndex % lostFrameInterval == lostFrameInterval - 1L) {
+            frameIndex++
+        }
+        if (frameIndex >= frameCount) {
+            return null
+        }
+        fillFrame(frameIndex)
+        val timestamp = frameIndex * timesPerFrame * 1000 / SAMPLE_RATE
+        frameIndex++
+        return BleFrameJournalReader.Record(EnumFrameJournalRecord.EEG_FRAME, timestamp, frame)
+    }
+
+    private fun fillFrame(index: Long) {
+        frame[0] = (index shr 8).toByte()
+        frame[1] = index.toByte()
+        var pos = INDEX_SIZE
+        for (i in 0 until statusAllocationSize) {
+            // the first time of every other frame is triggered
+            frame[pos++] = if (i == 0 && index % 2 == 0L) 1 else 0
+        }
+        val firstTime = index * timesPerFrame
+        for (time in 0 until timesPerFrame) {
+            val sampleIndex = ((firstTime + time) % SAMPLE_RATE).toInt()
+            for (channel in 0 until nbChannels) {
+                val sample = samples[channel][sampleIndex].toInt()
+                frame[pos++] = (sample shr 8).toByte()
+                frame[pos++] = sample.toByte()
+            }
+        }
+    }
+
+    companion object {
+        const val SAMPLE_RATE = 250
+        const val DEFAULT_TIMES_PER_FRAME = 5
+        private const val INDEX_SIZE = 2
+        private const val AMPLITUDE = 2000.0
+    }
+}
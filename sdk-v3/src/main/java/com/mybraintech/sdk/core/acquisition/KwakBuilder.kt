@@ -12,12 +12,7 @@ class KwakBuilder {
         recordingOption: RecordingOption,
         isQualityCheckerEnabled: Boolean
     ): Kwak {
-        val kwakHeader = when (deviceType) {
-            EnumMBTDevice.HYPERION -> KwakHeader().getHyperionHeader()
-            EnumMBTDevice.MELOMIND -> KwakHeader().getMelomindHeader()
-            EnumMBTDevice.Q_PLUS -> KwakHeader().getQPlusHeader()
-            EnumMBTDevice.UNDEFINED -> KwakHeader().getBaseHeader()
-        }.apply {
+        val kwakHeader = KwakHeader().getHeader(deviceType).apply {
             deviceInfo = recordingOption.deviceInformation
             setRecordingNb(recordingOption.recordingNb)
         }
@@ -0,0 +1,54 @@
+package com.mybraintech.sdk.core.acquisition
+
+/**
+ * Time spent by the frame worker in each stage of the EEG pipeline, see
+ * [com.mybraintech.sdk.core.acquisition.eeg.EEGSignalProcessing.pipelineTimings].
+ *
+ * - [decode] : validity check, index and conversion of one frame
+ * - [quality] : quality checker of one packet
+ * - [packet] : gap filling, buffering, windowing and hand-off of the packets of one frame
+ */
+internal class PipelineTimings {
+
+    val decode = StageTiming("decode")
+    val quality = StageTiming("quality")
+    val packet = StageTiming("packet")
+
+    override fun toString(): String {
+        return "$decode, $quality, $packet"
+    }
+}
+
+/**
+ * Only written by the frame worker thread.
+ */
+internal class StageTiming(val name: String) {
+
+    @Volatile
+    var count = 0L
+        private set
+
+    @Volatile
+    var totalNs = 0L
+        private set
+
+    @Volatile
+    var maxNs = 0L
+        private set
+
+    fun add(durationNs: Long) {
+        count++
+        totalNs += durationNs
+        if (durationNs > maxNs) {
+            maxNs = durationNs
+        }
+    }
+
+    fun getMeanMicros(): Float {
+        return if (count == 0L) 0f else totalNs / 1000f / count
+    }
+
+    override fun toString(): String {
+        return "$name : n = $count, mean = ${"%.1f".format(getMeanMicros())} us, max = ${maxNs / 1000} us"
+    }
+}
@@ -5,8 +5,8 @@ import com.mybraintech.sdk.core.model.RecordingOption
 
 interface RecordingInterface {
     fun startRecording(recordingListener: RecordingListener, recordingOption: RecordingOption)
-    fun stopRecording()
-    fun stopRecording(trim: Int)
+    fun stopRecording(): RecordingSaveTask
+    fun stopRecording(trim: Int): RecordingSaveTask
     fun isRecordingEnabled(): Boolean
     fun clearBuffer()
     fun getRecordingBufferSize(): Int
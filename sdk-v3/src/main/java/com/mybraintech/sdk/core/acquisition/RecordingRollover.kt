@@ -0,0 +1,213 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.EEGStreamingErrorCounter
+import com.mybraintech.sdk.core.model.Kwak
+import com.mybraintech.sdk.core.model.KwakSpool
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.RecordingOption
+import com.mybraintech.sdk.core.model.RecordingSpool
+import com.mybraintech.sdk.core.model.ThreeDimensionalPosition
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+import java.util.TreeMap
+
+/**
+ * Splits a recording in consecutive Kwak files of [segmentLength] packets, see [RecordingOption.rolloverMinutes].
+ *
+ * The EEG packet n is spooled in the segment `n / segmentLength` and the IMS sample s in the segment
+ * `s / (segmentLength * imsSampleRate)`, so the files have no gap and no duplicate at their boundaries even
+ * if the IMS samples arrive later than the EEG packets. A segment is completed, and handed to
+ * [onSegmentCompleted], once it has all its EEG packets and IMS samples, while the next ones are recorded.
+ *
+ * The EEG error counters of a segment are the difference of [getEEGErrorData] between the last EEG packet
+ * of the previous segment and its own last EEG packet, both taken on the thread which appends the EEG.
+ *
+ * @param imsSampleRate 0 if the IMS are not recorded
+ * @param createSegment creates the spool of a segment when its first signal arrives
+ * @param getEEGErrorData error counters of the recording since its start
+ */
+internal class RecordingRollover(
+    private val segmentLength: Int,
+    private val hasEEG: Boolean,
+    private val imsSampleRate: Int,
+    private val createSegment: (index: Int) -> Segment,
+    private val onSegmentCompleted: (Segment) -> Unit,
+    private val getEEGErrorData: () -> EEGStreamingErrorCounter = { EEGStreamingErrorCounter() }
+) : RecordingSpool {
+
+    class Segment(val index: Int, val recordingNb: Int, val kwak: Kwak, val spool: KwakSpool, val outputFile: File) {
+
+        /**
+         * EEG error counters of this segment, set when its last EEG packet is appended or when the recording is finished
+         */
+        var eegErrorData: EEGStreamingErrorCounter? = null
+            internal set
+    }
+
+    /**
+     * segments being recorded, the segments before [firstIncompleteSegment] are completed
+     */
+    private val segments = TreeMap<Int, Segment>()
+    private var firstIncompleteSegment = 0
+    private var failedSegment = -1
+    private var isClosed = false
+
+    /**
+     * [getEEGErrorData] when the last EEG packet of the previous segment was appended
+     */
+    private var previousEEGErrorData = EEGStreamingErrorCounter()
+
+    /**
+     * last segment given to [onSegmentCompleted]
+     */
+    var lastCompletedSegment: Segment? = null
+        private set
+
+    @Volatile
+    override var eegPacketCount = 0
+        private set
+
+    @Volatile
+    override var imsSampleCount = 0L
+        private set
+
+    init {
+        require(segmentLength > 0) { "segmentLength must be positive" }
+        require(hasEEG || imsSampleRate > 0) { "no recorded signal" }
+    }
+
+    @Synchronized
+    override fun appendEEG(packet: MbtEEGPacket) {
+        if (isClosed) {
+            return
+        }
+        val segment = getSegment(eegPacketCount / segmentLength)
+        segment?.spool?.appendEEG(packet)
+        eegPacketCount++
+        if (eegPacketCount % segmentLength == 0) {
+            val errorData = takeEEGErrorData()
+            segment?.eegErrorData = errorData
+        }
+        completeSegments()
+    }
+
+    @Synchronized
+    override fun appendIMS(positions: List<ThreeDimensionalPosition>) {
+        if (isClosed || imsSampleRate <= 0) {
+            return
+        }
+        val samplesPerSegment = segmentLength.toLong() * imsSampleRate
+        var start = 0
+        while (start < positions.size) {
+            val index = (imsSampleCount / samplesPerSegment).toInt()
+            val segmentEnd = (index + 1) * samplesPerSegment
+            val end = minOf(positions.size.toLong(), start + segmentEnd - imsSampleCount).toInt()
+            getSegment(index)?.spool?.appendIMS(positions.subList(start, end))
+            imsSampleCount += end - start
+            start = end
+        }
+        completeSegments()
+    }
+
+    /**
+     * Stops the recording : the segments that are not completed are closed and trimmed to [nbPackets] packets
+     * since the start of the recording, the empty ones are deleted.
+     *
+     * @return the segments to save, in recording order
+     */
+    @Synchronized
+    fun finish(nbPackets: Int): List<Segment> {
+        isClosed = true
+        val remaining = ArrayList<Segment>()
+        for (segment in segments.values) {
+            segment.spool.close()
+            if (segment.eegErrorData == null) {
+                // the first one gets the errors since the previous segment, the next ones have no EEG
+                segment.eegErrorData = takeEEGErrorData()
+            }
+            val length = (nbPackets - segment.index.toLong() * segmentLength).coerceIn(0, segmentLength.toLong()).toInt()
+            if (length == 0) {
+                segment.spool.delete()
+            } else {
+                segment.spool.trim(length, length.toLong() * imsSampleRate)
+                remaining.add(segment)
+            }
+        }
+        segments.clear()
+        return remaining
+    }
+
+    /**
+     * Stops the recording without saving it, the spools are kept for [com.mybraintech.sdk.core.model.KwakRecovery].
+     */
+    @Synchronized
+    fun close() {
+        isClosed = true
+        for (segment in segments.values) {
+            segment.spool.close()
+        }
+        segments.clear()
+    }
+
+    private fun getSegment(index: Int): Segment? {
+        segments[index]?.let { return it }
+        if (index < firstIncompleteSegment || index == failedSegment) {
+            return null
+        }
+        return try {
+            createSegment(index).also { segments[index] = it }
+        } catch (e: IOException) {
+            Timber.e(e, "can not create recording segment $index, its signals are lost")
+            failedSegment = index
+            null
+        }
+    }
+
+    private fun completeSegments() {
+        while (isComplete(firstIncompleteSegment)) {
+            val segment = segments.remove(firstIncompleteSegment)
+            firstIncompleteSegment++
+            if (segment != null) {
+                segment.spool.close()
+                lastCompletedSegment = segment
+                onSegmentCompleted(segment)
+            }
+        }
+    }
+
+    /**
+     * @return the error counters since the previous call
+     */
+    private fun takeEEGErrorData(): EEGStreamingErrorCounter {
+        val total = getEEGErrorData().clone()
+        val previous = previousEEGErrorData
+        previousEEGErrorData = total
+        return EEGStreamingErrorCounter().apply {
+            missingFrame = total.missingFrame - previous.missingFrame
+            zeroTimeNumber = total.zeroTimeNumber - previous.zeroTimeNumber
+            zeroSampleNumber = total.zeroSampleNumber - previous.zeroSampleNumber
+        }
+    }
+
+    private fun isComplete(index: Int): Boolean {
+        val end = (index + 1L) * segmentLength
+        return (!hasEEG || eegPacketCount >= end) && (imsSampleRate <= 0 || imsSampleCount >= end * imsSampleRate)
+    }
+
+    companion object {
+        /**
+         * @return the file of the segment [recordingNb] of a recording : `record.json` gives `record_3.json`
+         */
+        fun getSegmentFile(outputFile: File, recordingNb: Int): File {
+            val name = outputFile.name
+            val dot = name.lastIndexOf('.')
+            val segmentName = if (dot > 0) {
+                name.substring(0, dot) + "_" + recordingNb + name.substring(dot)
+            } else {
+                name + "_" + recordingNb
+            }
+            return File(outputFile.absoluteFile.parentFile, segmentName)
+        }
+    }
+}
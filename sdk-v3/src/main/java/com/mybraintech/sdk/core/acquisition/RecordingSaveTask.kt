@@ -0,0 +1,120 @@
+package com.mybraintech.sdk.core.acquisition
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.Deferred
+import java.io.File
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Saving of a stopped recording, returned by [com.mybraintech.sdk.MbtClient.stopRecording].
+ *
+ * The file is written on a background thread, never on the thread stopping the recording. The task completes
+ * with the saved file, after [com.mybraintech.sdk.core.listener.RecordingListener.onRecordingSaved] is called.
+ * Cancelling it stops the writing as soon as possible and deletes the partial file.
+ */
+class RecordingSaveTask internal constructor() : Future<File> {
+
+    private val state = AtomicInteger(STATE_PENDING)
+    private val completion = CountDownLatch(1)
+    private val deferred = CompletableDeferred<File>()
+
+    @Volatile
+    private var savedFile: File? = null
+
+    @Volatile
+    private var error: Throwable? = null
+
+    /**
+     * number of bytes of the file written so far
+     */
+    @Volatile
+    var bytesWritten = 0L
+        internal set
+
+    /**
+     * number of packets written so far, estimated from the number of values written
+     */
+    @Volatile
+    var packetsWritten = 0
+        internal set
+
+    init {
+        deferred.invokeOnCompletion {
+            if (it is CancellationException) {
+                cancel(false)
+            }
+        }
+    }
+
+    /**
+     * @return the task as a [Deferred], cancelling it cancels the task
+     */
+    fun asDeferred(): Deferred<File> = deferred
+
+    override fun cancel(mayInterruptIfRunning: Boolean): Boolean {
+        if (!complete(STATE_CANCELLED)) {
+            return false
+        }
+        deferred.cancel()
+        return true
+    }
+
+    override fun isCancelled(): Boolean = state.get() == STATE_CANCELLED
+
+    override fun isDone(): Boolean = state.get() != STATE_PENDING
+
+    override fun get(): File {
+        completion.await()
+        return getResult()
+    }
+
+    override fun get(timeout: Long, unit: TimeUnit): File {
+        if (!completion.await(timeout, unit)) {
+            throw TimeoutException("recording is not saved yet")
+        }
+        return getResult()
+    }
+
+    internal fun setSaved(file: File) {
+        savedFile = file
+        if (complete(STATE_SAVED)) {
+            deferred.complete(file)
+        }
+    }
+
+    internal fun setFailed(e: Throwable) {
+        error = e
+        if (complete(STATE_FAILED)) {
+            deferred.completeExceptionally(e)
+        }
+    }
+
+    private fun complete(newState: Int): Boolean {
+        if (!state.compareAndSet(STATE_PENDING, newState)) {
+            return false
+        }
+        completion.countDown()
+        return true
+    }
+
+    private fun getResult(): File {
+        return when (state.get()) {
+            STATE_SAVED -> savedFile!!
+            STATE_CANCELLED -> throw CancellationException("recording save cancelled")
+            else -> throw ExecutionException(error)
+        }
+    }
+
+    private companion object {
+        const val STATE_PENDING = 0
+        const val STATE_SAVED = 1
+        const val STATE_FAILED = 2
+        const val STATE_CANCELLED = 3
+    }
+}
@@ -0,0 +1,148 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.listener.RecordingListener
+import com.mybraintech.sdk.core.model.FloatColumn
+import com.mybraintech.sdk.core.model.KwakColumnSource
+import timber.log.Timber
+import java.io.File
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Writes the recordings on a dedicated background thread, shared by all the devices : the files are written
+ * one after the other, in the order they were submitted.
+ *
+ * The signals are read from a [KwakColumnSource] over the recorded packets or the spool, nothing is copied.
+ * While writing, the progress is given to [RecordingListener.onRecordingProgress] and the cancellation of the
+ * [RecordingSaveTask] is checked.
+ */
+internal object RecordingSaver {
+
+    private const val PROGRESS_INTERVAL_MS = 200L
+
+    /**
+     * number of values written between two checks of the progress and of the cancellation
+     */
+    private const val CHECK_INTERVAL = 4096
+
+    private val executor: ExecutorService by lazy {
+        Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "mbt-recording-save").apply { isDaemon = true }
+        }
+    }
+
+    /**
+     * @param task null when nobody waits for this file, e.g. a segment of a recording
+     * @param prepare returns the signals to write, called on the save thread
+     * @param write writes the signals to [outputFile], returns false if it fails
+     * @param onSaved called on the save thread once the file is written, before the task completes
+     * @param onFinished called on the save thread in any case, after [onSaved], to release the resources
+     */
+    fun submit(
+        task: RecordingSaveTask?,
+        outputFile: File,
+        listener: RecordingListener?,
+        prepare: () -> KwakColumnSource,
+        write: (KwakColumnSource) -> Boolean,
+        onSaved: () -> Unit,
+        onFinished: () -> Unit = {}
+    ) {
+        executor.execute {
+            try {
+                if (task?.isCancelled == true) {
+                    listener?.onRecordingError(CancellationException("recording save cancelled"))
+                    return@execute
+                }
+                val columns = ProgressColumns(prepare(), task, outputFile, listener)
+                val isSaved = try {
+                    write(columns)
+                } catch (e: Exception) {
+                    Timber.e(e, "can not write ${outputFile.path}")
+                    false
+                }
+                when {
+                    task?.isCancelled == true -> {
+                        outputFile.delete()
+                        listener?.onRecordingError(CancellationException("recording save cancelled"))
+                    }
+                    isSaved -> {
+                        columns.reportProgress(true)
+                        onSaved()
+                        task?.setSaved(outputFile)
+                    }
+                    else -> {
+                        val error = RuntimeException("Can not serialize file")
+                        listener?.onRecordingError(error)
+                        task?.setFailed(error)
+                    }
+                }
+            } finally {
+                onFinished()
+            }
+        }
+    }
+
+    /**
+     * Runs [action] on the save thread once the files submitted before are written.
+     */
+    fun submit(action: () -> Unit) {
+        executor.execute(action)
+    }
+
+    /**
+     * Counts the values read by the writer to report the progress, and stops it when the task is cancelled.
+     */
+    private class ProgressColumns(
+        private val source: KwakColumnSource,
+        private val task: RecordingSaveTask?,
+        private val outputFile: File,
+        private val listener: RecordingListener?
+    ) : KwakColumnSource by source {
+
+        private val nbValues = source.nbChannels * (source.getEEGSampleCount() + source.getQualityCount()) +
+                source.getStatusCount() + 3 * source.getImsSampleCount()
+        private var valuesRead = 0L
+        private var lastProgress = System.currentTimeMillis()
+
+        override fun openEEGColumn(channel: Int): FloatColumn = count(source.openEEGColumn(channel))
+
+        override fun openQualityColumn(channel: Int): FloatColumn = count(source.openQualityColumn(channel))
+
+        override fun openStatusColumn(): FloatColumn = count(source.openStatusColumn())
+
+        override fun openIMSColumn(axis: Int): FloatColumn = count(source.openIMSColumn(axis))
+
+        private fun count(column: FloatColumn): FloatColumn {
+            return object : FloatColumn {
+                override fun read(): Float {
+                    if (++valuesRead % CHECK_INTERVAL == 0L) {
+                        if (task?.isCancelled == true) {
+                            throw CancellationException("recording save cancelled")
+                        }
+                        reportProgress(false)
+                    }
+                    return column.read()
+                }
+
+                override fun close() {
+                    column.close()
+                }
+            }
+        }
+
+        fun reportProgress(isFinished: Boolean) {
+            val now = System.currentTimeMillis()
+            if (!isFinished && now - lastProgress < PROGRESS_INTERVAL_MS) {
+                return
+            }
+            lastProgress = now
+            val nbPackets = source.getNbPackets()
+            val packets = if (isFinished || nbValues == 0L) nbPackets else (valuesRead * nbPackets / nbValues).toInt()
+            val bytes = outputFile.length()
+            task?.bytesWritten = bytes
+            task?.packetsWritten = packets
+            listener?.onRecordingProgress(outputFile, bytes, packets, nbPackets)
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.mybraintech.sdk.core.acquisition
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+/**
+ * Small pool shared by the signal processing for the work that is independent between channels
+ * (copies, quality checker), so that 4 channels take about the time of 2.
+ *
+ * The caller runs one of the tasks itself and waits for the others : it must not be called from a task
+ * of the pool.
+ */
+internal object SignalComputePool {
+
+    private const val MAX_THREADS = 4
+
+    val parallelism: Int = Runtime.getRuntime().availableProcessors().coerceIn(1, MAX_THREADS)
+
+    private val executor: ExecutorService by lazy {
+        Executors.newFixedThreadPool(parallelism - 1) { runnable ->
+            Thread(runnable, "mbt-signal-compute").apply { isDaemon = true }
+        }
+    }
+
+    /**
+     * Runs [task] for every channel of [0, nbChannels) and returns when they are all done.
+     * The first exception thrown by a task is rethrown, once all the tasks are done.
+     */
+    fun forEachChannel(nbChannels: Int, task: (channel: Int) -> Unit) {
+        if (nbChannels <= 1 || parallelism <= 1) {
+            for (channel in 0 until nbChannels) {
+                task(channel)
+            }
+            return
+        }
+        val futures = ArrayList<Future<*>>(nbChannels - 1)
+        for (channel in 1 until nbChannels) {
+            futures.add(executor.submit { task(channel) })
+        }
+        var error: Throwable? = null
+        try {
+            task(0)
+        } catch (e: Throwable) {
+            error = e
+        }
+        for (future in futures) {
+            try {
+                future.get()
+            } catch (e: ExecutionException) {
+                error = error ?: e.cause ?: e
+            }
+        }
+        error?.let { throw it }
+    }
+}
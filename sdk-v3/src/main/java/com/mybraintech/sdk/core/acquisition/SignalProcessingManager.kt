@@ -2,11 +2,11 @@ package com.mybraintech.sdk.core.acquisition
 
 import android.os.Handler
 import android.os.Looper
+import android.os.SystemClock
 import android.util.Log
-import com.mybraintech.android.jnibrainbox.Calibration
 import com.mybraintech.android.jnibrainbox.RelaxIndex
 import com.mybraintech.android.jnibrainbox.RelaxIndexSessionOutputData
-import com.mybraintech.android.jnibrainbox.TypeConverter
+import com.mybraintech.sdk.core.acquisition.eeg.EEGSignalProcessing
 import com.mybraintech.sdk.core.acquisition.eeg.EEGSignalProcessingHyperion
 import com.mybraintech.sdk.core.acquisition.eeg.EEGSignalProcessingMelomind
 import com.mybraintech.sdk.core.acquisition.eeg.EEGSignalProcessingQPlus
@@ -14,31 +14,36 @@ import com.mybraintech.sdk.core.acquisition.ims.AccelerometerSignalProcessingDis
 import com.mybraintech.sdk.core.acquisition.ims.AccelerometerSignalProcessingIndus5
 import com.mybraintech.sdk.core.acquisition.ppg.PPGSignalProcessingDisabled
 import com.mybraintech.sdk.core.listener.AccelerometerListener
+import com.mybraintech.sdk.core.listener.EEGCalibrationListener
 import com.mybraintech.sdk.core.listener.EEGListener
+import com.mybraintech.sdk.core.listener.EEGRealtimeBatchListener
 import com.mybraintech.sdk.core.listener.EEGRealtimeListener
+import com.mybraintech.sdk.core.listener.EEGRelaxIndexListener
 import com.mybraintech.sdk.core.listener.MbtDataReceiver
 import com.mybraintech.sdk.core.listener.RecordingListener
 import com.mybraintech.sdk.core.model.AccelerometerConfig
 import com.mybraintech.sdk.core.model.AccelerometerPacket
 import com.mybraintech.sdk.core.model.EEGStreamingErrorCounter
 import com.mybraintech.sdk.core.model.EnumAccelerometerSampleRate
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
 import com.mybraintech.sdk.core.model.EnumEEGFilterConfig
+import com.mybraintech.sdk.core.model.EnumKwakFormat
 import com.mybraintech.sdk.core.model.EnumMBTDevice
 import com.mybraintech.sdk.core.model.Kwak
+import com.mybraintech.sdk.core.model.KwakSpool
+import com.mybraintech.sdk.core.model.MbtDataConversion2
 import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.PacketListColumns
 import com.mybraintech.sdk.core.model.RecordingOption
 import com.mybraintech.sdk.core.model.StreamingParams
+import com.mybraintech.sdk.core.model.StreamingStatistics
 import com.mybraintech.sdk.core.model.ThreeDimensionalPosition
 import com.mybraintech.sdk.core.model.TimedBLEFrame
 import com.mybraintech.sdk.core.recording.BaseAccelerometerRecorder
 import com.mybraintech.sdk.core.recording.BaseEEGRecorder
-import io.reactivex.Maybe
-import io.reactivex.disposables.CompositeDisposable
-import io.reactivex.plugins.RxJavaPlugins
-import io.reactivex.rxkotlin.addTo
-import io.reactivex.schedulers.Schedulers
 import timber.log.Timber
-import java.io.FileWriter
+import java.io.File
+import java.io.IOException
 import kotlin.math.max
 import kotlin.math.min
 
@@ -50,21 +55,31 @@ internal class SignalProcessingManager(
     val deviceType: EnumMBTDevice, val streamingParams: StreamingParams
 ) : RecordingInterface, MbtDataReceiver {
     private val TAG = "SignalProcessingManager"
-    private val bleFrameScheduler = RxJavaPlugins.createSingleScheduler(AcquisierThreadFactory)
+    private val bleFrameWorker = BleFrameWorkerPool.acquire()
 
+    @Volatile
     private var eegListener: EEGListener? = null
     private val eegCallback = object : BaseEEGRecorder.EEGCallback {
         override fun onNewEEG(eegPacket: MbtEEGPacket) {
             eegListener?.onEegPacket(eegPacket)
         }
+
+        override fun hasListener(): Boolean {
+            return eegListener != null
+        }
     }
 
+    @Volatile
     private var accelerometerListener: AccelerometerListener? = null
     private val accelerometerCallback by lazy {
         object : AccelerometerSignalProcessingIndus5.AccelerometerCallback {
             override fun onAccelerometerPacket(packet: AccelerometerPacket) {
                 accelerometerListener?.onAccelerometerPacket(packet)
             }
+
+            override fun hasListener(): Boolean {
+                return accelerometerListener != null
+            }
         }
     }
 
@@ -84,22 +99,51 @@ internal class SignalProcessingManager(
      */
     private var isWaitingLateSignals = false
     private var relaxingIndex:RelaxIndex? = null
+    private var relaxingIndexSelection: EEGChannelSelection? = null
+
+    /**
+     * calibration fed with the streaming, see [startCalibration]
+     */
+    @Volatile
+    private var streamingCalibration: StreamingCalibration? = null
+
+    /**
+     * relax index fed with the streaming, see [startRelaxIndex]
+     */
+    @Volatile
+    private var streamingRelaxIndex: StreamingRelaxIndex? = null
+
+    /**
+     * gives the 1 second packets to the streaming calibration and relax index, on the frame worker thread
+     */
+    private val secondPacketDispatcher: (MbtEEGPacket) -> Unit = { packet ->
+        streamingCalibration?.append(packet)
+        streamingRelaxIndex?.append(packet)
+    }
 
     private var recordingOption: RecordingOption? = null
     private var kwak: Kwak = Kwak()
     private var recordingListener: RecordingListener? = null
 
-    private var recordingDisposable = CompositeDisposable()
+    /**
+     * spool of the current recording when [RecordingOption.isStreamingEnabled] is set
+     */
+    private var recordingSpool: KwakSpool? = null
 
-    private var eegSignalProcessing: BaseEEGRecorder = when (deviceType) {
+    /**
+     * segments of the current recording when [RecordingOption.rolloverMinutes] or [RecordingOption.rolloverMegabytes] is set
+     */
+    private var recordingRollover: RecordingRollover? = null
+
+    private var eegSignalProcessing: EEGSignalProcessing = when (deviceType) {
         EnumMBTDevice.Q_PLUS -> {
-            EEGSignalProcessingQPlus(streamingParams, eegCallback, bleFrameScheduler)
+            EEGSignalProcessingQPlus(streamingParams, eegCallback, bleFrameWorker)
         }
         EnumMBTDevice.MELOMIND -> {
-            EEGSignalProcessingMelomind(streamingParams, eegCallback, bleFrameScheduler)
+            EEGSignalProcessingMelomind(streamingParams, eegCallback, bleFrameWorker)
         }
         EnumMBTDevice.HYPERION -> {
-            EEGSignalProcessingHyperion(streamingParams, eegCallback, bleFrameScheduler)
+            EEGSignalProcessingHyperion(streamingParams, eegCallback, bleFrameWorker)
         }
         else -> {
             throw UnsupportedOperationException("device type not known")
@@ -108,7 +152,11 @@ internal class SignalProcessingManager(
 
     private var accelerometerSignalProcessing: BaseAccelerometerRecorder = when (deviceType) {
         EnumMBTDevice.Q_PLUS -> {
-            AccelerometerSignalProcessingIndus5(accelerometerCallback, bleFrameScheduler)
+            AccelerometerSignalProcessingIndus5(
+                accelerometerCallback,
+                bleFrameWorker,
+                streamingParams.accelerometerPacketDelivery
+            )
         }
         else -> {
             AccelerometerSignalProcessingDisabled()
@@ -117,9 +165,65 @@ internal class SignalProcessingManager(
 
     private val ppgSignalProcessing by lazy { PPGSignalProcessingDisabled() }
 
+    /**
+     * journal of the raw frames when [StreamingParams.frameJournalFile] is set
+     */
+    private val frameJournal: BleFrameJournal? = streamingParams.frameJournalFile?.let { file ->
+        try {
+            BleFrameJournal(file, deviceType)
+        } catch (e: IOException) {
+            Timber.e(e, "can not create frame journal ${file.path}")
+            null
+        }
+    }
+
     fun dispose() {
+        stopCalibration()
+        stopRelaxIndex()
         eegSignalProcessing.dispose()
-        recordingDisposable.dispose()
+        accelerometerSignalProcessing.dispose()
+        frameJournal?.close()
+        // the recording was not saved : its spool is kept for KwakRecovery
+        recordingSpool?.close()
+        recordingSpool = null
+        recordingRollover?.close()
+        recordingRollover = null
+        BleFrameWorkerPool.release(bleFrameWorker)
+    }
+
+    fun getStreamingStatistics(): StreamingStatistics {
+        val accelerometer = accelerometerSignalProcessing as? AccelerometerSignalProcessingIndus5
+        return StreamingStatistics(
+            eegFrameQueue = eegSignalProcessing.getFrameQueueStatistics(),
+            accelerometerFrameQueue = accelerometer?.getFrameQueueStatistics(),
+            eegPacketDelivery = eegSignalProcessing.getPacketDeliveryStatistics(),
+            eegRealtimeDelivery = eegSignalProcessing.getRealtimeDeliveryStatistics(),
+            eegRealtimeBatchDelivery = eegSignalProcessing.getRealtimeBatchDeliveryStatistics(),
+            accelerometerPacketDelivery = accelerometer?.getPacketDeliveryStatistics()
+        )
+    }
+
+    /**
+     * @return the frame queues state, so a [FrameReplayDriver] does not overflow them
+     */
+    fun getReplayFlowControl(): FrameReplayDriver.FlowControl {
+        val accelerometer = accelerometerSignalProcessing as? AccelerometerSignalProcessingIndus5
+        return object : FrameReplayDriver.FlowControl {
+            override fun canOffer(): Boolean {
+                return !eegSignalProcessing.isFrameQueueFull() && accelerometer?.isFrameQueueFull() != true
+            }
+
+            override fun isIdle(): Boolean {
+                return eegSignalProcessing.isFrameQueueEmpty() && accelerometer?.isFrameQueueEmpty() != false
+            }
+        }
+    }
+
+    /**
+     * @param timings measures the EEG pipeline stages when it is not null
+     */
+    fun setPipelineTimings(timings: PipelineTimings?) {
+        eegSignalProcessing.pipelineTimings = timings
     }
 
     //----------------------------------------------------------------------------
@@ -139,6 +243,13 @@ internal class SignalProcessingManager(
         isRecording = true
         isWaitingLateSignals = false
 
+        recordingSpool?.delete()
+        recordingRollover?.finish(0)
+        recordingRollover = createRecordingRollover(recordingOption)
+        recordingSpool = if (recordingRollover == null) createRecordingSpool(recordingOption) else null
+        eegSignalProcessing.recordingSpool = recordingRollover ?: recordingSpool
+        accelerometerSignalProcessing.recordingSpool = recordingRollover ?: recordingSpool
+
         recordingSignals.clear()
         if (streamingParams.isEEGEnabled) {
             recordingSignals.add(EnumSignalType.EEG)
@@ -150,6 +261,107 @@ internal class SignalProcessingManager(
         }
     }
 
+    /**
+     * @return null if the recording is kept in memory, or if the spool can not be created
+     */
+    private fun createRecordingSpool(recordingOption: RecordingOption): KwakSpool? {
+        val outputFile = recordingOption.outputFile
+        if (!recordingOption.isStreamingEnabled || outputFile == null) {
+            return null
+        }
+        return try {
+            openSpool(outputFile, kwak, recordingOption)
+        } catch (e: IOException) {
+            Timber.e(e, "can not create recording spool, the recording is kept in memory")
+            null
+        }
+    }
+
+    /**
+     * Creates the spool of [outputFile] with the metadata needed to recover it.
+     */
+    private fun openSpool(outputFile: File, kwak: Kwak, recordingOption: RecordingOption): KwakSpool {
+        val spool = KwakSpool(
+            KwakSpool.getDirectory(outputFile),
+            kwak.header.nbChannels,
+            streamingParams.isTriggerStatusEnabled,
+            recordingOption.spoolCheckpointIntervalMs
+        )
+        try {
+            spool.writeMetadata(
+                kwak,
+                streamingParams.accelerometerSampleRate.sampleRate,
+                MbtDataConversion2.getBleSampleScale(streamingParams.eegAmpGain)
+            )
+        } catch (e: IOException) {
+            spool.delete()
+            throw e
+        }
+        return spool
+    }
+
+    /**
+     * @return null if the recording is saved in a single file
+     */
+    private fun createRecordingRollover(recordingOption: RecordingOption): RecordingRollover? {
+        val outputFile = recordingOption.outputFile
+        val segmentLength = getRolloverLength(recordingOption)
+        val imsSampleRate = if (streamingParams.isAccelerometerEnabled) {
+            streamingParams.accelerometerSampleRate.sampleRate
+        } else {
+            0
+        }
+        if (outputFile == null || segmentLength <= 0 || (!streamingParams.isEEGEnabled && imsSampleRate == 0)) {
+            return null
+        }
+        return RecordingRollover(
+            segmentLength,
+            streamingParams.isEEGEnabled,
+            imsSampleRate,
+            { index ->
+                val recordingNb = recordingOption.recordingNb + index
+                val segmentKwak = KwakBuilder().createKwak(
+                    deviceType, recordingOption, streamingParams.isQualityCheckerEnabled
+                ).apply {
+                    header.setRecordingNb(recordingNb)
+                }
+                val segmentFile = RecordingRollover.getSegmentFile(outputFile, recordingNb)
+                RecordingRollover.Segment(
+                    index, recordingNb, segmentKwak, openSpool(segmentFile, segmentKwak, recordingOption), segmentFile
+                )
+            },
+            { segment -> saveRecordingSegment(segment, null) },
+            {
+                if (streamingParams.isEEGEnabled) {
+                    eegSignalProcessing.getRecordingErrorData()
+                } else {
+                    EEGStreamingErrorCounter()
+                }
+            }
+        )
+    }
+
+    /**
+     * @return the number of packets (one per second) of a segment, 0 if the recording is not split
+     */
+    private fun getRolloverLength(recordingOption: RecordingOption): Int {
+        var length = max(recordingOption.rolloverMinutes, 0) * 60
+        if (recordingOption.rolloverMegabytes > 0) {
+            val header = kwak.header
+            val statusLength = if (streamingParams.isTriggerStatusEnabled) header.eegPacketLength else 0
+            val imsLength = if (streamingParams.isAccelerometerEnabled) {
+                3 * streamingParams.accelerometerSampleRate.sampleRate
+            } else {
+                0
+            }
+            val bytesPerPacket = 4L * (header.nbChannels * (header.eegPacketLength + 1) + statusLength + imsLength)
+            val sizeLength = (recordingOption.rolloverMegabytes * 1024L * 1024L / bytesPerPacket)
+                .coerceIn(1, Int.MAX_VALUE.toLong()).toInt()
+            length = if (length > 0) min(length, sizeLength) else sizeLength
+        }
+        return length
+    }
+
     /**
      * stop the recording process and handle recording lengths.
      *
@@ -160,8 +372,9 @@ internal class SignalProcessingManager(
      * But if user want to trim it to 25 seconds, we can stop the recording on both EEG and
      * Accelerometer immediately and export the data.
      */
-    override fun stopRecording() {
+    override fun stopRecording(): RecordingSaveTask {
         Timber.d("stopRecording")
+        val task = RecordingSaveTask()
 
         var minLen = Int.MAX_VALUE
         for (signalType in recordingSignals) {
@@ -181,7 +394,7 @@ internal class SignalProcessingManager(
         if (recordingSignals.size < 2) {
             isWaitingLateSignals = false
             stopAllRecording()
-            saveRecording(minLen)
+            saveRecording(minLen, task)
         } else {
             var maxLen = 0
             for (signalType in recordingSignals) {
@@ -200,7 +413,7 @@ internal class SignalProcessingManager(
             if (minLen == maxLen) {
                 isWaitingLateSignals = false
                 stopAllRecording()
-                saveRecording(minLen)
+                saveRecording(minLen, task)
             } else {
                 isWaitingLateSignals = true
                 lateSignalHandler.postDelayed(
@@ -208,16 +421,18 @@ internal class SignalProcessingManager(
                         if (isWaitingLateSignals) {
                             isWaitingLateSignals = false
                             stopAllRecording()
-                            saveRecording(minLen + 1)
+                            saveRecording(minLen + 1, task)
                         }
                     }, 1000
                 )
             }
         }
+        return task
     }
     fun innitRelaxingIndex(calibratedData: EEGCalibrateResult) {
         Log.d(TAG, "Dev_debug innitRelaxingIndex  calibratedData:${calibratedData}")
-        val sampling_rate = 250
+        val sampling_rate = eegSignalProcessing.getSampleRate()
+        relaxingIndexSelection = getCalibrationSelection(calibratedData)
         val iaf: FloatArray = calibratedData.iaf
         val smoothRms: FloatArray = calibratedData.smoothRms
         val iaf_median_inf = iaf[0]
@@ -236,55 +451,34 @@ internal class SignalProcessingManager(
 
     fun eegRelaxingIndex(tobeIndexEEGDatas:EEGRecordedDatas):Float {
         Log.d(TAG,"Dev_debug eegRelaxingIndex error eegRelaxingIndex:${tobeIndexEEGDatas.eegPackets.size} relaxingIndex:$relaxingIndex")
-        val sampling_rate = 250
+        val sampling_rate = eegSignalProcessing.getSampleRate()
 
 
         val ri = relaxingIndex
+        val selection = relaxingIndexSelection
         val packets = tobeIndexEEGDatas.eegPackets
-        val qualities = Array(2) {
-            FloatArray(
-                packets.size
-            )
+        if (ri == null || selection == null || packets.isEmpty()) {
+            return -1f
         }
-        val mainMatrixSize: Int = packets.size * sampling_rate
-        val signals = Array(2) {
-            FloatArray(
-                packets.size * mainMatrixSize
-            )
+        if (packets.any { it.nbChannels < selection.packetChannels }) {
+            Log.e(TAG, "relax index expects ${selection.locations}")
+            return -1f
         }
-
-        var qtCnt = 0
-        var chanCnt = 0
-        for (current in packets) {
-            // Merging qualities
-            if (current.qualities == null) {
-                Log.e(
-                    TAG,
-                    "NULL QUALITIES"
-                )
-            } else {
-                qualities[0][qtCnt] = current.qualities[0]
-                qualities[1][qtCnt++] = current.qualities[1]
-            }
-            val matrix: Array<FloatArray> =
-                TypeConverter.channelsToMatrixFloat(current.channelsData)
-            for (it in 0 until sampling_rate) {
-                signals[0][chanCnt] = matrix[0][it]
-                signals[1][chanCnt++] = matrix[1][it]
-            }
+        // channel-major arrays : one row per selected channel
+        val signalLength: Int = packets.sumOf { it.nbSamples }
+        val signals = FloatArray(selection.size * signalLength)
+        val qualities = FloatArray(selection.size * packets.size)
+        selection.copyPackets(packets, signals, signalLength, qualities, sampling_rate)
+
+        val lastPacketQualities = FloatArray(selection.size) { row ->
+            qualities[row * packets.size + packets.size - 1]
         }
 
-
-        val lastPacketQualities = floatArrayOf(
-            qualities[0][packets.size - 1],
-            qualities[1][packets.size - 1]
-        )
-
-        Log.d(TAG,"Dev_debug SDKV3 computeRelaxIndex    lastPacketQualities :${ lastPacketQualities[0]} ${ lastPacketQualities[1]}")
+        Log.d(TAG,"Dev_debug SDKV3 computeRelaxIndex    lastPacketQualities :${lastPacketQualities.contentToString()}")
 
 
         // Simulate a session live of 3 seconds
-        val volume = ri?.computeVolume(signals, lastPacketQualities)?:-1f
+        val volume = ri.computeVolume(signals, 0, signalLength, selection.size, signalLength, lastPacketQualities)
 
         // Simulate the end of session
 //        val session = ri.endSession()
@@ -299,52 +493,127 @@ internal class SignalProcessingManager(
 
         return volume
     }
-    fun eegCalibrate(recordedData:EEGRecordedDatas):EEGCalibrateResult {
-        val packets = recordedData.eegPackets
-        val sampling_rate = 250
-        val packetLength = sampling_rate
-        val sliding_windows_sec = 8
-        val calibrator = Calibration(sampling_rate, sliding_windows_sec)
-
-        val qualities = Array(2) {
-            FloatArray(
-                packets.size
-            )
-        }
-        val mainMatrix = Array(2) {
-            FloatArray(
-                packets.size * packetLength
-            )
+    /**
+     * Calibrates with the next [durationSeconds] seconds of EEG, see [StreamingCalibration].
+     * A calibration in progress is cancelled.
+     *
+     * @param locations channels of the calibration, all the channels of the device when it is null
+     */
+    @Synchronized
+    fun startCalibration(
+        durationSeconds: Int,
+        listener: EEGCalibrationListener,
+        locations: List<EnumAcquisitionLocation>? = null
+    ) {
+        val selection = EEGChannelSelection.of(deviceType, locations)
+        stopCalibration()
+        val calibration = StreamingCalibration(
+            selection,
+            eegSignalProcessing.getSampleRate(),
+            durationSeconds,
+            object : EEGCalibrationListener {
+                override fun onCalibrationResult(result: EEGCalibrateResult) {
+                    onCalibrationComplete(result)
+                    listener.onCalibrationResult(result)
+                }
+            }
+        )
+        streamingCalibration = calibration
+        updateSecondPacketConsumer()
+    }
+
+    @Synchronized
+    private fun onCalibrationComplete(result: EEGCalibrateResult) {
+        val calibration = streamingCalibration
+        if (calibration != null && calibration.getResult() === result) {
+            // the next seconds do not need to be computed anymore
+            streamingCalibration = null
+            updateSecondPacketConsumer()
         }
+    }
 
-        var qtCnt = 0
-        var chanCnt = 0
-        for (current in packets) {
-            // Merging qualities
-            if (current.qualities == null) {
-                Log.e(
-                    TAG,
-                    "NULL QUALITIES"
-                )
-            } else {
-                qualities[0][qtCnt] = current.qualities[0]
-                qualities[1][qtCnt++] = current.qualities[1]
-            }
-            val matrix: Array<FloatArray> = TypeConverter.channelsToMatrixFloat(current.channelsData)
-            for (it in 0 until sampling_rate) {
-                mainMatrix[0][chanCnt] = matrix[0][it]
-                mainMatrix[1][chanCnt++] = matrix[1][it]
-            }
+    /**
+     * Cancels the calibration in progress, its listener is not called.
+     */
+    @Synchronized
+    fun stopCalibration() {
+        streamingCalibration?.close()
+        streamingCalibration = null
+        updateSecondPacketConsumer()
+    }
+
+    /**
+     * Computes the relax index on the streaming, see [StreamingRelaxIndex].
+     * A relax index in progress is stopped.
+     */
+    @Synchronized
+    fun startRelaxIndex(
+        calibration: EEGCalibrateResult,
+        windowSize: Int,
+        hopSize: Int,
+        listener: EEGRelaxIndexListener
+    ) {
+        val selection = getCalibrationSelection(calibration)
+        stopRelaxIndex()
+        streamingRelaxIndex = StreamingRelaxIndex(
+            selection = selection,
+            sampleRate = eegSignalProcessing.getSampleRate(),
+            calibration = calibration,
+            windowSize = windowSize,
+            hopSize = hopSize,
+            delivery = streamingParams.eegPacketDelivery,
+            listener = listener
+        )
+        updateSecondPacketConsumer()
+    }
+
+    /**
+     * @return the session of the relax index started with [startRelaxIndex], null if no volume was computed
+     */
+    @Synchronized
+    fun stopRelaxIndex(): RelaxIndexSessionOutputData? {
+        val relaxIndex = streamingRelaxIndex ?: return null
+        streamingRelaxIndex = null
+        updateSecondPacketConsumer()
+        return relaxIndex.endSession()
+    }
+
+    private fun updateSecondPacketConsumer() {
+        val isNeeded = (streamingCalibration != null || streamingRelaxIndex != null)
+        eegSignalProcessing.secondPacketConsumer = if (isNeeded) secondPacketDispatcher else null
+    }
+
+    /**
+     * @param locations channels of the calibration, all the channels of the device when it is null
+     */
+    fun eegCalibrate(
+        recordedData: EEGRecordedDatas,
+        locations: List<EnumAcquisitionLocation>? = null
+    ): EEGCalibrateResult {
+        val packets = recordedData.eegPackets
+        val selection = EEGChannelSelection.of(deviceType, locations)
+        val sampling_rate = eegSignalProcessing.getSampleRate()
+        // the native calibration expects one quality per second
+        if (packets.any { it.nbSamples != sampling_rate || it.nbChannels < selection.packetChannels }) {
+            Log.e(TAG, "calibration expects ${selection.locations} in $sampling_rate samples per packet")
+            return EEGCalibrateResult(false, "invalid packets")
         }
 
+        // channel-major arrays : one row per selected channel
+        val signalLength = packets.size * sampling_rate
+        val qualities = FloatArray(selection.size * packets.size)
+        val mainMatrix = FloatArray(selection.size * signalLength)
+        selection.copyPackets(packets, mainMatrix, signalLength, qualities, sampling_rate)
+
+        return StreamingCalibration.computeCalibration(mainMatrix, qualities, selection.size, sampling_rate, packets.size)
+            .also { it.locations = selection.locations }
+    }
 
-        val error = calibrator.computeCalibration(mainMatrix,qualities)
-        Log.d(TAG," calibrate error code:$error")
-        val result = EEGCalibrateResult(error == 0,error.toString())
-        result.iaf = calibrator.GetIAF()
-        result.rms = calibrator.GetRelativeRMS()
-        result.smoothRms = calibrator.GetSmoothRMS()
-        return result
+    /**
+     * @return the channels of [calibration], all the channels of the device for a calibration without them
+     */
+    private fun getCalibrationSelection(calibration: EEGCalibrateResult): EEGChannelSelection {
+        return EEGChannelSelection.of(deviceType, calibration.locations.ifEmpty { null })
     }
 
     /**
@@ -366,11 +635,12 @@ internal class SignalProcessingManager(
      *     - if min >= trim value : stop all recording and trim.
      *     - if min < trim value : try to get the signals of second (min + 1) for all signals.
      */
-    override fun stopRecording(trim: Int) {
+    override fun stopRecording(trim: Int): RecordingSaveTask {
         Timber.d("stopRecording : length = $trim")
+        val task = RecordingSaveTask()
         if (recordingSignals.size < 2) {
             stopAllRecording()
-            saveRecording(trim)
+            saveRecording(trim, task)
         } else {
             var min = 0
             for (signalType in recordingSignals) {
@@ -389,7 +659,7 @@ internal class SignalProcessingManager(
             if (min >= trim) {
                 isWaitingLateSignals = false
                 stopAllRecording()
-                saveRecording(trim)
+                saveRecording(trim, task)
             } else {
                 isWaitingLateSignals = true
                 lateSignalHandler.postDelayed(
@@ -397,12 +667,13 @@ internal class SignalProcessingManager(
                         if (isWaitingLateSignals) {
                             isWaitingLateSignals = false
                             stopAllRecording()
-                            saveRecording(trim)
+                            saveRecording(trim, task)
                         }
                     }, 1000
                 )
             }
         }
+        return task
     }
 
     private fun stopAllRecording() {
@@ -424,11 +695,34 @@ internal class SignalProcessingManager(
         isRecording = false
     }
 
-    private fun saveRecording(trim: Int) {
+    private fun saveRecording(trim: Int, task: RecordingSaveTask) {
         Timber.d("trim = $trim")
         Timber.d("eegBuffer.size = ${eegSignalProcessing.getBufferSize()}")
         Timber.d("imsBuffer.size = ${accelerometerSignalProcessing.getBufferSize()}")
 
+        val rollover = recordingRollover
+        if (rollover != null) {
+            recordingRollover = null
+            eegSignalProcessing.recordingSpool = null
+            accelerometerSignalProcessing.recordingSpool = null
+            saveRecordingSegments(rollover, trim, task)
+            return
+        }
+
+        val spool = recordingSpool
+        if (spool != null) {
+            recordingSpool = null
+            eegSignalProcessing.recordingSpool = null
+            accelerometerSignalProcessing.recordingSpool = null
+            val eegErrorCounter = if (recordingSignals.contains(EnumSignalType.EEG)) {
+                eegSignalProcessing.getRecordingErrorData()
+            } else {
+                EEGStreamingErrorCounter()
+            }
+            saveSpooledRecording(streamingParams, spool, trim, eegErrorCounter, task)
+            return
+        }
+
         var eegBuffer: List<MbtEEGPacket>
         val eegErrorCounter: EEGStreamingErrorCounter
 
@@ -454,7 +748,108 @@ internal class SignalProcessingManager(
             imsBuffer = emptyList()
         }
 
-        saveRecording(streamingParams, eegBuffer, eegErrorCounter, imsBuffer)
+        saveRecording(streamingParams, eegBuffer, eegErrorCounter, imsBuffer, task)
+    }
+
+    /**
+     * Assembles the Kwak file from the columns spooled during the recording, then deletes the spool.
+     */
+    private fun saveSpooledRecording(
+        streamingParams: StreamingParams,
+        spool: KwakSpool,
+        trim: Int,
+        eegErrorData: EEGStreamingErrorCounter,
+        task: RecordingSaveTask
+    ) {
+        val outputFile = recordingOption?.outputFile
+        if (outputFile == null) {
+            spool.delete()
+            onOutputFileMissing(task)
+            return
+        }
+        val format = recordingOption?.format ?: EnumKwakFormat.JSON
+        val listener = recordingListener
+        val kwak = kwak
+        RecordingSaver.submit(
+            task,
+            outputFile,
+            listener,
+            prepare = {
+                spool.close()
+                spool.trim(trim, trim.toLong() * streamingParams.accelerometerSampleRate.sampleRate)
+                spool
+            },
+            write = { columns ->
+                spool.error == null && kwak.serialize(streamingParams, columns, eegErrorData, format, outputFile)
+            },
+            onSaved = { listener?.onRecordingSaved(outputFile, EEGRecordedDatas()) },
+            onFinished = { spool.delete() }
+        )
+    }
+
+    /**
+     * Saves the segments of a split recording that were not completed, the last one is also given to
+     * [RecordingListener.onRecordingSaved]. The segments are saved one after the other, in recording order.
+     */
+    private fun saveRecordingSegments(rollover: RecordingRollover, trim: Int, task: RecordingSaveTask) {
+        val segments = rollover.finish(trim)
+        for ((i, segment) in segments.withIndex()) {
+            saveRecordingSegment(segment, if (i == segments.lastIndex) task else null)
+        }
+        if (segments.isEmpty()) {
+            // the last segment was completed before the recording was stopped
+            val listener = recordingListener
+            val lastSegment = rollover.lastCompletedSegment
+            RecordingSaver.submit {
+                if (lastSegment != null && lastSegment.outputFile.exists()) {
+                    listener?.onRecordingSaved(lastSegment.outputFile, EEGRecordedDatas())
+                    task.setSaved(lastSegment.outputFile)
+                } else {
+                    val error = RuntimeException("no recorded signal")
+                    listener?.onRecordingError(error)
+                    task.setFailed(error)
+                }
+            }
+        }
+    }
+
+    /**
+     * @param task not null for the last segment of the recording
+     */
+    private fun saveRecordingSegment(
+        segment: RecordingRollover.Segment,
+        task: RecordingSaveTask?
+    ) {
+        val eegErrorData = segment.eegErrorData ?: EEGStreamingErrorCounter()
+        val format = recordingOption?.format ?: EnumKwakFormat.JSON
+        val listener = recordingListener
+        val spool = segment.spool
+        RecordingSaver.submit(
+            task,
+            segment.outputFile,
+            listener,
+            prepare = {
+                spool.close()
+                spool
+            },
+            write = { columns ->
+                spool.error == null
+                        && segment.kwak.serialize(streamingParams, columns, eegErrorData, format, segment.outputFile)
+            },
+            onSaved = {
+                listener?.onRecordingSegmentSaved(segment.outputFile, segment.recordingNb)
+                if (task != null) {
+                    listener?.onRecordingSaved(segment.outputFile, EEGRecordedDatas())
+                }
+            },
+            onFinished = { spool.delete() }
+        )
+    }
+
+    private fun onOutputFileMissing(task: RecordingSaveTask) {
+        val error = RuntimeException("outputFile is null")
+        recordingListener?.onRecordingError(error)
+        task.setFailed(error)
     }
 
     override fun clearBuffer() {
@@ -484,10 +879,12 @@ internal class SignalProcessingManager(
     override fun onTriggerStatusConfiguration(triggerStatusAllocationSize: Int) {
 
         Timber.d("%s%d", "Dev_debug onTriggerStatusConfiguration triggerStatusAllocationSize:", triggerStatusAllocationSize)
+        frameJournal?.appendTriggerStatusConfiguration(SystemClock.elapsedRealtime(), triggerStatusAllocationSize)
         eegSignalProcessing.onTriggerStatusConfiguration(triggerStatusAllocationSize)
     }
 
     override fun onAccelerometerConfiguration(accelerometerConfig: AccelerometerConfig) {
+        frameJournal?.appendAccelerometerConfiguration(SystemClock.elapsedRealtime(), accelerometerConfig)
         accelerometerSignalProcessing.onAccelerometerConfiguration(accelerometerConfig)
         if (streamingParams.isAccelerometerEnabled) {
             /**
@@ -505,13 +902,24 @@ internal class SignalProcessingManager(
     }
 
     override fun onEEGFrame(data: TimedBLEFrame) {
+        frameJournal?.appendEEGFrame(data.timestamp, data.data)
         eegSignalProcessing.addSignalData(data)
     }
 
+    override fun onEEGFrame(timestamp: Long, data: ByteArray) {
+        frameJournal?.appendEEGFrame(timestamp, data)
+        eegSignalProcessing.addSignalData(timestamp, data)
+    }
+
     override fun onAccelerometerFrame(data: ByteArray) {
+        frameJournal?.appendIMSFrame(SystemClock.elapsedRealtime(), data)
         accelerometerSignalProcessing.addSignalData(data)
     }
 
+    override fun onRawMailboxFrame(timestamp: Long, data: ByteArray) {
+        frameJournal?.appendMailbox(timestamp, data)
+    }
+
     override fun setEEGListener(eegListener: EEGListener?) {
         this.eegListener = eegListener
     }
@@ -520,6 +928,10 @@ internal class SignalProcessingManager(
         this.eegSignalProcessing.setRealtimeListener(eegRealtimeListener)
     }
 
+    override fun setEEGRealtimeBatchListener(eegRealtimeBatchListener: EEGRealtimeBatchListener?) {
+        this.eegSignalProcessing.setRealtimeBatchListener(eegRealtimeBatchListener)
+    }
+
     override fun setAccelerometerListener(accelerometerListener: AccelerometerListener?) {
         this.accelerometerListener = accelerometerListener
     }
@@ -535,35 +947,40 @@ internal class SignalProcessingManager(
     //----------------------------------------------------------------------------
     // MARK:
     //----------------------------------------------------------------------------
+    /**
+     * Writes the recorded packets, the buffers are handed to the save thread as they are : the recorder
+     * starts new buffers for the next recording. The packets are views of the EEG sample blocks, which are
+     * replaced, never rewound, when the next recording starts
+     * (see [com.mybraintech.sdk.core.acquisition.eeg.EEGSampleBuffer.clear]), so a recording
+     * started during the save does not change the saved file.
+     */
     private fun saveRecording(
         streamingParams: StreamingParams,
         eegBuffer: List<MbtEEGPacket>,
         eegErrorData: EEGStreamingErrorCounter,
-        imsBuffer: List<ThreeDimensionalPosition>
+        imsBuffer: List<ThreeDimensionalPosition>,
+        task: RecordingSaveTask
     ) {
-        Maybe.fromCallable {
-            if (recordingOption?.outputFile != null) {
-                val isOk = kwak.serializeJson(
-                    streamingParams,
-                    eegBuffer,
-                    eegErrorData,
-                    imsBuffer,
-                    FileWriter(recordingOption?.outputFile!!)
-                )
-                if (!isOk) {
-                    recordingListener?.onRecordingError(RuntimeException("Can not serialize file"))
-                } else {
-                    val recordedData = EEGRecordedDatas()
-                    recordedData.eegPackets = eegBuffer
-                    recordingListener?.onRecordingSaved(recordingOption?.outputFile!!,recordedData)
-                }
-            } else {
-                recordingListener?.onRecordingError(RuntimeException("outputFile is null"))
-            }
+        val outputFile = recordingOption?.outputFile
+        if (outputFile == null) {
+            onOutputFileMissing(task)
+            return
         }
-            .observeOn(Schedulers.computation())
-            .subscribe()
-            .addTo(recordingDisposable)
+        val format = recordingOption?.format ?: EnumKwakFormat.JSON
+        val listener = recordingListener
+        val kwak = kwak
+        val nbChannels = kwak.header.nbChannels
+        RecordingSaver.submit(
+            task,
+            outputFile,
+            listener,
+            prepare = { PacketListColumns(nbChannels, streamingParams.isTriggerStatusEnabled, eegBuffer, imsBuffer) },
+            write = { columns -> kwak.serialize(streamingParams, columns, eegErrorData, format, outputFile) },
+            onSaved = {
+                val recordedData = EEGRecordedDatas()
+                recordedData.eegPackets = eegBuffer
+                listener?.onRecordingSaved(outputFile, recordedData)
+            }
+        )
     }
-
 }
\ No newline at end of file
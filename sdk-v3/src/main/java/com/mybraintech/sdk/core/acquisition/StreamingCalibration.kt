@@ -0,0 +1,225 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.android.jnibrainbox.Calibration
+import com.mybraintech.android.jnibrainbox.QualityChecker
+import com.mybraintech.sdk.core.listener.EEGCalibrationListener
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import timber.log.Timber
+import java.io.Closeable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+/**
+ * Calibration fed with the 1 second packets of the stream, as they are produced.
+ *
+ * Each packet is copied on arrival into the channel-major arrays read by the native calibration, so nothing
+ * is reassembled at the end and the memory is the calibration period, whatever the length of the streaming.
+ * The BrainBox calibration (IAF and RMS over sliding windows) is computed by the native library over the whole
+ * period : it starts on a background thread as soon as the last second is received, and the result is given
+ * to the listener right after.
+ *
+ * Only the channels of [selection] are kept, in its order. When the packets have no qualities, the quality
+ * checker of each channel runs on the [SignalComputePool].
+ *
+ * [append] is called on the frame worker thread, the other methods from any thread.
+ * The native objects are released when the period is complete or when it is closed.
+ */
+internal open class StreamingCalibration(
+    val selection: EEGChannelSelection,
+    val sampleRate: Int,
+    val durationSeconds: Int,
+    private val listener: EEGCalibrationListener? = null
+) : Closeable {
+
+    val nbChannels: Int = selection.size
+
+    init {
+        require(sampleRate > 0) { "invalid signal : $nbChannels channels at $sampleRate Hz" }
+        require(durationSeconds >= SLIDING_WINDOW_SEC) {
+            "the calibration must last at least $SLIDING_WINDOW_SEC seconds : $durationSeconds"
+        }
+    }
+
+    private val signalLength = durationSeconds * sampleRate
+    private val signals = FloatArray(nbChannels * signalLength)
+    private val qualities = FloatArray(nbChannels * durationSeconds)
+
+    /**
+     * one checker per channel, for the packets received without qualities, when the quality checker
+     * of the streaming is disabled
+     */
+    private val qualityCheckers = arrayOfNulls<QualityChecker>(nbChannels)
+    private val channelQualities = Array(nbChannels) { FloatArray(1) }
+
+    @Volatile
+    var secondCount = 0
+        private set
+
+    @Volatile
+    private var isClosed = false
+
+    @Volatile
+    private var result: EEGCalibrateResult? = null
+    private val resultLatch = CountDownLatch(1)
+
+    fun isComplete(): Boolean {
+        return secondCount == durationSeconds
+    }
+
+    /**
+     * Copies a packet of 1 second, its qualities are computed if it has none.
+     * The packet is not kept after this call.
+     *
+     * @return false if the calibration period is already complete, or if the calibration is closed
+     */
+    @Synchronized
+    fun append(packet: MbtEEGPacket): Boolean {
+        if (isClosed || isComplete()) {
+            return false
+        }
+        if (packet.nbChannels < selection.packetChannels || packet.nbSamples != sampleRate) {
+            Timber.e("calibration expects ${selection.locations} in $sampleRate samples : ${packet.nbChannels}x${packet.nbSamples}")
+            return false
+        }
+        val second = secondCount
+        for (row in 0 until nbChannels) {
+            packet.getChannel(selection.channels[row], signals, row * signalLength + second * sampleRate)
+        }
+        if (packet.qualityValues == null) {
+            computeQualities(packet)
+            for (row in 0 until nbChannels) {
+                qualities[row * durationSeconds + second] = channelQualities[row][0]
+            }
+        } else {
+            for (row in 0 until nbChannels) {
+                qualities[row * durationSeconds + second] = packet.getQuality(selection.channels[row])
+            }
+        }
+        secondCount = second + 1
+        if (isComplete()) {
+            releaseQualityCheckers()
+            executor.execute(::complete)
+        }
+        return true
+    }
+
+    private fun computeQualities(packet: MbtEEGPacket) {
+        SignalComputePool.forEachChannel(nbChannels) { row ->
+            val output = channelQualities[row]
+            try {
+                val checker = qualityCheckers[row]
+                    ?: QualityChecker(sampleRate).also { qualityCheckers[row] = it }
+                checker.computeQualityChecker(
+                    packet.data, packet.dataOffset + selection.channels[row] * packet.channelStride,
+                    packet.channelStride, 1, packet.nbSamples, output
+                )
+            } catch (e: Exception) {
+                Timber.e(e)
+                output[0] = Float.NaN
+            }
+        }
+    }
+
+    private fun complete() {
+        if (isClosed) {
+            return
+        }
+        val calibrateResult = try {
+            calibrate(signals, qualities, nbChannels, sampleRate, durationSeconds)
+        } catch (e: Exception) {
+            Timber.e(e)
+            EEGCalibrateResult(false, e.message)
+        }
+        calibrateResult.locations = selection.locations
+        result = calibrateResult
+        resultLatch.countDown()
+        listener?.onCalibrationResult(calibrateResult)
+    }
+
+    /**
+     * Runs the native calibration, on the calibration thread.
+     *
+     * @param signals channel-major, [durationSeconds] * [sampleRate] samples per channel
+     * @param qualities channel-major, one quality per second
+     */
+    protected open fun calibrate(
+        signals: FloatArray,
+        qualities: FloatArray,
+        nbChannels: Int,
+        sampleRate: Int,
+        durationSeconds: Int
+    ): EEGCalibrateResult {
+        return computeCalibration(signals, qualities, nbChannels, sampleRate, durationSeconds)
+    }
+
+    /**
+     * @return the result of the calibration, null if it is not computed within the timeout or if it is closed
+     */
+    fun awaitResult(timeout: Long, unit: TimeUnit): EEGCalibrateResult? {
+        resultLatch.await(timeout, unit)
+        return result
+    }
+
+    fun getResult(): EEGCalibrateResult? {
+        return result
+    }
+
+    /**
+     * Stops the calibration : the next packets are ignored and the listener is not called if the calibration
+     * is not computed yet.
+     */
+    @Synchronized
+    override fun close() {
+        isClosed = true
+        resultLatch.countDown()
+        releaseQualityCheckers()
+    }
+
+    private fun releaseQualityCheckers() {
+        for (row in qualityCheckers.indices) {
+            try {
+                qualityCheckers[row]?.close()
+            } catch (e: Exception) {
+                Timber.e(e)
+            }
+            qualityCheckers[row] = null
+        }
+    }
+
+    companion object {
+        const val SLIDING_WINDOW_SEC = 8
+
+        private val executor: ExecutorService by lazy {
+            Executors.newSingleThreadExecutor { runnable ->
+                Thread(runnable, "mbt-calibration").apply { isDaemon = true }
+            }
+        }
+
+        /**
+         * @param signals channel-major, [durationSeconds] * [sampleRate] samples per channel
+         * @param qualities channel-major, one quality per second
+         */
+        fun computeCalibration(
+            signals: FloatArray,
+            qualities: FloatArray,
+            nbChannels: Int,
+            sampleRate: Int,
+            durationSeconds: Int
+        ): EEGCalibrateResult {
+            val signalLength = durationSeconds * sampleRate
+            Calibration(sampleRate, SLIDING_WINDOW_SEC).use { calibrator ->
+                val error = calibrator.computeCalibration(
+                    signals, 0, signalLength, nbChannels, signalLength, qualities, durationSeconds
+                )
+                Timber.d("calibrate error code:$error")
+                val result = EEGCalibrateResult(error == 0, error.toString())
+                result.iaf = calibrator.GetIAF()
+                result.rms = calibrator.GetRelativeRMS()
+                result.smoothRms = calibrator.GetSmoothRMS()
+                return result
+            }
+        }
+    }
+}
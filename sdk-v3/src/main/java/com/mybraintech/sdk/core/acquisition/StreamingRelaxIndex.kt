@@ -0,0 +1,189 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.android.jnibrainbox.RelaxIndex
+import com.mybraintech.android.jnibrainbox.RelaxIndexSessionOutputData
+import com.mybraintech.sdk.core.listener.EEGRelaxIndexListener
+import com.mybraintech.sdk.core.model.DeliveryOption
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import timber.log.Timber
+import java.io.Closeable
+
+/**
+ * Relax index computed on the EEG stream : every [hopSize] samples, a volume is computed on the last
+ * [windowSize] samples and published to the listener.
+ *
+ * The samples are kept in a mirrored ring of [windowSize] samples per channel : each sample is written twice,
+ * [windowSize] apart, so the last window is always contiguous and is given to the native relax index
+ * as one array. An update costs one window, whatever the length of the session.
+ *
+ * Only the channels of [selection] are kept, in its order.
+ *
+ * [append] is called on the frame worker thread, the volumes are delivered on a dedicated thread.
+ */
+internal open class StreamingRelaxIndex(
+    val selection: EEGChannelSelection,
+    val sampleRate: Int,
+    private val calibration: EEGCalibrateResult,
+    val windowSize: Int = sampleRate,
+    val hopSize: Int = windowSize,
+    delivery: DeliveryOption,
+    private val listener: EEGRelaxIndexListener
+) : Closeable {
+
+    val nbChannels: Int = selection.size
+
+    init {
+        require(sampleRate > 0) { "invalid signal : $nbChannels channels at $sampleRate Hz" }
+        require(windowSize > 0) { "windowSize must be positive : $windowSize" }
+        require(hopSize in 1..windowSize) { "hopSize must be in [1, windowSize] : $hopSize" }
+        require(calibration.iaf.size >= 2) { "the calibration has no IAF" }
+    }
+
+    /**
+     * channel c is at [c * 2 * windowSize, (c + 1) * 2 * windowSize)
+     */
+    private val ring = FloatArray(nbChannels * 2 * windowSize)
+    private val channelStride = 2 * windowSize
+    private val qualities = FloatArray(nbChannels)
+
+    /**
+     * number of samples per channel received since the start
+     */
+    private var writtenCount = 0L
+    private var nextWindowEnd = windowSize.toLong()
+    private var isClosed = false
+
+    private val volumeDelivery = BoundedDelivery("mbt-relax-index", delivery, ::notifyVolume)
+
+    /**
+     * created with the first window, so the native library is only loaded when a volume is computed
+     */
+    private var relaxIndex: RelaxIndex? = null
+
+    @Volatile
+    var volumeCount = 0L
+        private set
+
+    /**
+     * Copies the samples of the packet, and computes a volume each time a hop is complete.
+     * The qualities of a window are the ones of the last packet received.
+     *
+     * @return false if the relax index is closed or the packet has not the selected channels
+     */
+    @Synchronized
+    fun append(packet: MbtEEGPacket): Boolean {
+        if (isClosed) {
+            return false
+        }
+        if (packet.nbChannels < selection.packetChannels) {
+            Timber.e("relax index expects ${selection.locations} : ${packet.nbChannels} channels")
+            return false
+        }
+        for (channel in 0 until nbChannels) {
+            qualities[channel] = packet.getQuality(selection.channels[channel])
+        }
+        val data = packet.data
+        val nbSamples = packet.nbSamples
+        var sample = 0
+        while (sample < nbSamples) {
+            // write up to the end of the next window, so no window is overwritten before it is computed
+            val chunk = minOf(nbSamples - sample, (nextWindowEnd - writtenCount).toInt())
+            val position = (writtenCount % windowSize).toInt()
+            for (channel in 0 until nbChannels) {
+                val input = packet.dataOffset + selection.channels[channel] * packet.channelStride + sample
+                val output = channel * channelStride
+                for (i in 0 until chunk) {
+                    val value = data[input + i]
+                    var index = position + i
+                    if (index >= windowSize) {
+                        index -= windowSize
+                    }
+                    ring[output + index] = value
+                    ring[output + index + windowSize] = value
+                }
+            }
+            sample += chunk
+            writtenCount += chunk
+            if (writtenCount == nextWindowEnd) {
+                nextWindowEnd += hopSize
+                computeWindow()
+            }
+        }
+        return true
+    }
+
+    private fun computeWindow() {
+        // the window starts at the oldest sample of the ring
+        val start = (writtenCount % windowSize).toInt()
+        val volume = try {
+            computeVolume(ring, start, channelStride, nbChannels, windowSize, qualities)
+        } catch (e: Exception) {
+            Timber.e(e)
+            return
+        }
+        volumeCount++
+        volumeDelivery.offer(volume)
+    }
+
+    /**
+     * @param signals channel-major, channel c starts at offset + c * channelStride
+     */
+    protected open fun computeVolume(
+        signals: FloatArray,
+        offset: Int,
+        channelStride: Int,
+        nbChannels: Int,
+        nbSamples: Int,
+        qualities: FloatArray
+    ): Float {
+        val index = relaxIndex
+            ?: RelaxIndex(sampleRate, calibration.smoothRms, calibration.iaf[0], calibration.iaf[1])
+                .also { relaxIndex = it }
+        return index.computeVolume(signals, offset, channelStride, nbChannels, nbSamples, qualities)
+    }
+
+    protected open fun endRelaxIndexSession(): RelaxIndexSessionOutputData? {
+        return relaxIndex?.endSession()
+    }
+
+    private fun notifyVolume(volume: Float) {
+        listener.onRelaxIndexVolume(volume)
+    }
+
+    /**
+     * Stops the relax index, the volumes not delivered yet are discarded.
+     *
+     * @return the session of all the computed volumes, null if no volume was computed
+     */
+    @Synchronized
+    fun endSession(): RelaxIndexSessionOutputData? {
+        if (isClosed) {
+            return null
+        }
+        isClosed = true
+        return try {
+            if (volumeCount > 0) endRelaxIndexSession() else null
+        } catch (e: Exception) {
+            Timber.e(e)
+            null
+        } finally {
+            release()
+        }
+    }
+
+    @Synchronized
+    override fun close() {
+        isClosed = true
+        release()
+    }
+
+    private fun release() {
+        volumeDelivery.dispose()
+        try {
+            relaxIndex?.close()
+        } catch (e: Exception) {
+            Timber.e(e)
+        }
+        relaxIndex = null
+    }
+}
@@ -0,0 +1,122 @@
+package com.mybraintech.sdk.core.acquisition.eeg
+
+import com.mybraintech.sdk.core.model.EEGSignalBatch
+
+/**
+ * Groups the decoded BLE frames into [EEGSignalBatch]es.
+ *
+ * A batch is emitted when it contains [maxFrames] frames or when it spans [maxDurationMs], the check
+ * is done on frame arrival. One set of arrays is allocated per batch, they are given to the listener.
+ *
+ * Not thread safe, it must only be used by the EEG frame consumer.
+ *
+ * @param maxFrames maximum number of frames per batch, 0 for no limit
+ * @param maxDurationMs maximum time between the first and the last frame of a batch, 0 for no limit
+ */
+internal class EEGRealtimeBatcher(
+    private val nbChannels: Int,
+    private val maxFrames: Int,
+    private val maxDurationMs: Long
+) {
+
+    private var nbFrames = 0
+    private var nbSamples = 0
+    private var sampleCapacity = 0
+    private var signals = FloatArray(0)
+    private var triggers = FloatArray(0)
+    private var frameIndexes = LongArray(0)
+    private var frameTimestamps = LongArray(0)
+    private var frameOffsets = IntArray(0)
+
+    fun clear() {
+        nbFrames = 0
+        nbSamples = 0
+    }
+
+    /**
+     * @param eegBuffer decoded frame [ nbChannels ][ >= nbTimes ]
+     * @return the completed batch, null if the batch is not complete yet
+     */
+    fun add(index: Long, timestamp: Long, eegBuffer: Array<FloatArray>, statusBuffer: FloatArray, nbTimes: Int): EEGSignalBatch? {
+        if (nbFrames == 0) {
+            allocate(nbTimes)
+        }
+        ensureCapacity(nbTimes)
+        for (channel in 0 until nbChannels) {
+            System.arraycopy(eegBuffer[channel], 0, signals, channel * sampleCapacity + nbSamples, nbTimes)
+        }
+        System.arraycopy(statusBuffer, 0, triggers, nbSamples, nbTimes)
+        frameIndexes[nbFrames] = index
+        frameTimestamps[nbFrames] = timestamp
+        frameOffsets[nbFrames] = nbSamples
+        nbFrames++
+        nbSamples += nbTimes
+
+        val isFull = (maxFrames > 0 && nbFrames >= maxFrames)
+        val isLong = (maxDurationMs > 0 && timestamp - frameTimestamps[0] >= maxDurationMs)
+        return if (isFull || isLong) flush() else null
+    }
+
+    private fun flush(): EEGSignalBatch {
+        val packedSignals = if (nbSamples == sampleCapacity) {
+            signals
+        } else {
+            FloatArray(nbChannels * nbSamples).also {
+                for (channel in 0 until nbChannels) {
+                    System.arraycopy(signals, channel * sampleCapacity, it, channel * nbSamples, nbSamples)
+                }
+            }
+        }
+        val batch = EEGSignalBatch(
+            nbChannels = nbChannels,
+            nbSamples = nbSamples,
+            signals = packedSignals,
+            triggers = if (nbSamples == triggers.size) triggers else triggers.copyOf(nbSamples),
+            nbFrames = nbFrames,
+            frameIndexes = if (nbFrames == frameIndexes.size) frameIndexes else frameIndexes.copyOf(nbFrames),
+            frameTimestamps = if (nbFrames == frameTimestamps.size) frameTimestamps else frameTimestamps.copyOf(nbFrames),
+            frameOffsets = if (nbFrames == frameOffsets.size) frameOffsets else frameOffsets.copyOf(nbFrames)
+        )
+        clear()
+        return batch
+    }
+
+    /**
+     * allocates the arrays of a new batch, sized for [maxFrames] frames of [nbTimes] samples when it is known
+     */
+    private fun allocate(nbTimes: Int) {
+        val expectedFrames = if (maxFrames > 0) maxFrames else DEFAULT_FRAME_CAPACITY
+        sampleCapacity = expectedFrames * nbTimes
+        signals = FloatArray(nbChannels * sampleCapacity)
+        triggers = FloatArray(sampleCapacity)
+        frameIndexes = LongArray(expectedFrames)
+        frameTimestamps = LongArray(expectedFrames)
+        frameOffsets = IntArray(expectedFrames)
+    }
+
+    private fun ensureCapacity(nbTimes: Int) {
+        if (nbSamples + nbTimes > sampleCapacity) {
+            val newCapacity = maxOf(sampleCapacity * 2, nbSamples + nbTimes)
+            val newSignals = FloatArray(nbChannels * newCapacity)
+            for (channel in 0 until nbChannels) {
+                System.arraycopy(signals, channel * sampleCapacity, newSignals, channel * newCapacity, nbSamples)
+            }
+            signals = newSignals
+            triggers = triggers.copyOf(newCapacity)
+            sampleCapacity = newCapacity
+        }
+        if (nbFrames == frameIndexes.size) {
+            val newSize = frameIndexes.size * 2
+            frameIndexes = frameIndexes.copyOf(newSize)
+            frameTimestamps = frameTimestamps.copyOf(newSize)
+            frameOffsets = frameOffsets.copyOf(newSize)
+        }
+    }
+
+    companion object {
+        /**
+         * initial number of frames of a batch limited by duration only
+         */
+        private const val DEFAULT_FRAME_CAPACITY = 16
+    }
+}
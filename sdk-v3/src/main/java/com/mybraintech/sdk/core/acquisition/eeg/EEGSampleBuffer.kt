@@ -0,0 +1,139 @@
+package com.mybraintech.sdk.core.acquisition.eeg
+
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+
+/**
+ * Accumulates the decoded EEG samples between the BLE frames and the [MbtEEGPacket]s.
+ *
+ * The samples are stored channel-major in one fixed size block : channel `c` occupies
+ * `[c * capacity, (c + 1) * capacity)`. Appending a frame is a copy of its samples, whatever the
+ * number of samples already buffered, and a packet is a window over the block so emitting it does
+ * not copy anything. Several windows can overlap, they share the same storage.
+ *
+ * Samples are addressed by their absolute position : the number of samples appended before them
+ * since the last [clear]. The caller tells which samples are not needed anymore with [release].
+ *
+ * Emitted packets keep a reference to the block, so it is never overwritten : when the block is
+ * full, a new one is allocated and only the samples not released yet are moved into it. With the
+ * default capacity this happens once every [DEFAULT_CAPACITY_IN_PACKETS] packets.
+ *
+ * Not thread safe, it must only be used by the EEG frame consumer.
+ */
+internal class EEGSampleBuffer(
+    private val nbChannels: Int,
+    private val minCapacity: Int
+) {
+
+    private var capacity = minCapacity
+    private var block = FloatArray(nbChannels * capacity)
+    private var statusBlock = FloatArray(capacity)
+
+    /**
+     * absolute position of the first sample of the block
+     */
+    private var blockStart = 0L
+
+    /**
+     * absolute position of the first sample which must be kept
+     */
+    private var releasedUntil = 0L
+
+    /**
+     * number of samples appended since the last [clear], it is also the absolute position of the next sample
+     */
+    var writtenCount = 0L
+        private set
+
+    /**
+     * Forgets all the samples. The block is replaced, not reset, so the packets already emitted keep their values.
+     */
+    fun clear() {
+        capacity = minCapacity
+        block = FloatArray(nbChannels * capacity)
+        statusBlock = FloatArray(capacity)
+        blockStart = 0L
+        releasedUntil = 0L
+        writtenCount = 0L
+    }
+
+    /**
+     * Copies the first [count] times of the decoded frame.
+     *
+     * @param signals [ nbChannels ][ >= count ]
+     * @param statuses [ >= count ]
+     */
+    fun append(signals: Array<FloatArray>, statuses: FloatArray, count: Int) {
+        val position = ensureWritable(count)
+        for (channel in 0 until nbChannels) {
+            System.arraycopy(signals[channel], 0, block, channel * capacity + position, count)
+        }
+        System.arraycopy(statuses, 0, statusBlock, position, count)
+        writtenCount += count
+    }
+
+    /**
+     * Appends [count] NaN samples (and NaN statuses) to fill the gap of missing frames.
+     */
+    fun appendNaN(count: Int) {
+        val position = ensureWritable(count)
+        for (channel in 0 until nbChannels) {
+            val start = channel * capacity + position
+            block.fill(Float.NaN, start, start + count)
+        }
+        statusBlock.fill(Float.NaN, position, position + count)
+        writtenCount += count
+    }
+
+    /**
+     * @return a packet viewing the samples `[from, from + length)`, they must have been written and not released
+     */
+    fun window(from: Long, length: Int): MbtEEGPacket {
+        require(from >= releasedUntil && from + length <= writtenCount) {
+            "window [$from, ${from + length}) is out of [$releasedUntil, $writtenCount)"
+        }
+        val position = (from - blockStart).toInt()
+        return MbtEEGPacket(block, position, capacity, nbChannels, length, statusBlock, position)
+    }
+
+    /**
+     * Marks the samples before the absolute position [until] as not needed anymore.
+     */
+    fun release(until: Long) {
+        releasedUntil = maxOf(releasedUntil, minOf(until, writtenCount))
+    }
+
+    /**
+     * Moves the samples not released into a new block if there is not enough space left for [count] samples.
+     * The block is only grown when the kept samples plus [count] do not fit in [minCapacity],
+     * e.g. after a long disconnection filled with NaN.
+     *
+     * @return the position in the block where the next sample is written
+     */
+    private fun ensureWritable(count: Int): Int {
+        val writePosition = (writtenCount - blockStart).toInt()
+        if (writePosition + count <= capacity) {
+            return writePosition
+        }
+        val readPosition = (releasedUntil - blockStart).toInt()
+        val pending = writePosition - readPosition
+        val newCapacity = maxOf(minCapacity, pending + count)
+        val newBlock = FloatArray(nbChannels * newCapacity)
+        val newStatusBlock = FloatArray(newCapacity)
+        for (channel in 0 until nbChannels) {
+            System.arraycopy(block, channel * capacity + readPosition, newBlock, channel * newCapacity, pending)
+        }
+        System.arraycopy(statusBlock, readPosition, newStatusBlock, 0, pending)
+        block = newBlock
+        statusBlock = newStatusBlock
+        capacity = newCapacity
+        blockStart = releasedUntil
+        return pending
+    }
+
+    companion object {
+        /**
+         * number of 1 second packets stored in one block
+         */
+        const val DEFAULT_CAPACITY_IN_PACKETS = 16
+    }
+}
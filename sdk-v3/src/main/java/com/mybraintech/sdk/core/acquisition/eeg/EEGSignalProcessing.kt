@@ -1,20 +1,14 @@
 package com.mybraintech.sdk.core.acquisition.eeg
 
 import com.mybraintech.android.jnibrainbox.QualityChecker
-import com.mybraintech.sdk.BuildConfig
 import com.mybraintech.sdk.core.acquisition.*
 import com.mybraintech.sdk.core.listener.EEGFrameDecodeInterface
 import com.mybraintech.sdk.core.model.*
 import com.mybraintech.sdk.core.recording.BaseEEGRecorder
-import com.mybraintech.sdk.util.ErrorDataHelper2
-import com.mybraintech.sdk.util.MatrixUtils2
 import com.mybraintech.sdk.util.NumericalUtils
-import io.reactivex.Scheduler
-import io.reactivex.rxkotlin.addTo
-import io.reactivex.schedulers.Schedulers
-import io.reactivex.subjects.PublishSubject
 import timber.log.Timber
 import java.util.*
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.pow
 
 /**
@@ -24,13 +18,42 @@ abstract class EEGSignalProcessing(
     protocol: EnumBluetoothProtocol,
     val isTriggerStatusEnabled: Boolean,
     protected val isQualityCheckerEnabled: Boolean,
+    /**
+     * number of samples per channel of each emitted packet
+     */
+    private val packetWindowSize: Int,
+    /**
+     * number of samples between the starts of two consecutive emitted packets
+     */
+    private val packetHopSize: Int,
+    /**
+     * amplifier gain of the headset, it selects the conversion table of the raw EEG
+     */
+    private val ampGain: AmpGainConfig2,
+    packetDelivery: DeliveryOption,
+    realtimeDelivery: DeliveryOption,
+    /**
+     * maximum number of frames per realtime batch, 0 for no limit
+     */
+    private val realtimeBatchMaxFrames: Int,
+    /**
+     * maximum duration of a realtime batch in ms, 0 for no limit
+     */
+    private val realtimeBatchMaxDurationMs: Long,
     callback: EEGCallback?,
-    val eegFrameScheduler: Scheduler
+    private val frameWorker: BleFrameWorker
 ) : BaseEEGRecorder(callback), EEGFrameDecodeInterface {
 
-    private val eegFrameSubject = PublishSubject.create<TimedBLEFrame>()
-    private val eegRealtimeSubject = PublishSubject.create<EEGSignalPack>()
-    private val eegPacketSubject = PublishSubject.create<MbtEEGPacket>()
+    private val eegFrameQueue = frameWorker.createQueue(BleFrameQueue.DEFAULT_CAPACITY, ::consumeEEGFrame)
+    private val eegRealtimeDelivery = BoundedDelivery("mbt-eeg-realtime", realtimeDelivery, ::notifyRealtime)
+    private val eegPacketDelivery = BoundedDelivery("mbt-eeg-packet", packetDelivery, ::notifyPacket)
+    private val eegRealtimeBatchDelivery =
+        BoundedDelivery("mbt-eeg-realtime-batch", realtimeDelivery, ::notifyRealtimeBatch)
+
+    /**
+     * created when the first frame is received with a batch listener
+     */
+    private var realtimeBatcher: EEGRealtimeBatcher? = null
 
     private var recordingBuffer = mutableListOf<MbtEEGPacket>()
     private var eegStreamingErrorCounter = EEGStreamingErrorCounter()
@@ -64,44 +87,62 @@ abstract class EEGSignalProcessing(
     private var previousIndex = -1L
 
     /**
-     * table : size = [ number of samples * number of channels ]
+     * decoded samples waiting to be emitted as [MbtEEGPacket], created on the first frame
+     */
+    private var sampleBuffer: EEGSampleBuffer? = null
+
+    /**
+     * absolute position in [sampleBuffer] of the next emitted packet
      */
-    private var consolidatedEEGBuffer = ArrayList<ArrayList<Float>>()
+    private var nextPacketStart = 0L
 
-    private var consolidatedStatusBuffer = ArrayList<Float>()
+    /**
+     * absolute position in [sampleBuffer] of the next recorded packet.
+     * Only used when the emitted packets are not the 1 second consecutive packets expected by the recording.
+     */
+    private var nextRecordStart = 0L
+
+    /**
+     * set by [clearBuffer] : the sample buffer belongs to the frame worker, it is cleared before the next frame
+     */
+    private val isClearRequested = AtomicBoolean(false)
 
-    private val dataConversion: MbtDataConversion2 by lazy {
-        MbtDataConversion2.generateInstance(getDeviceType())
+    protected val dataConversion: MbtDataConversion2 by lazy {
+        MbtDataConversion2.generateInstance(getDeviceType(), ampGain)
     }
 
+    /**
+     * decoded signals of the current frame : [ nbChannels ][ times per frame ].
+     * They are reused from one frame to another, so decoding a frame does not allocate anything.
+     */
+    private var frameEEGBuffer: Array<FloatArray> = emptyArray()
+    private var frameStatusBuffer: FloatArray = FloatArray(0)
 
-    private var qualityChecker: QualityChecker = QualityChecker(250)
+    /**
+     * created with the first emitted packet, so the native library is only loaded when the quality checker is enabled
+     */
+    private var qualityChecker: QualityChecker? = null
 
-    init {
-        eegFrameSubject
-            .observeOn(eegFrameScheduler)
-            .subscribe(
-                ::consumeEEGFrame,
-                Timber::e
-            )
-            .addTo(disposable)
+    /**
+     * quality checker of the recorded packets when they are not the emitted packets.
+     * The recorded packets are a different signal, they must not share the state of [qualityChecker].
+     */
+    private var recordingQualityChecker: QualityChecker? = null
 
-        eegRealtimeSubject
-            .observeOn(Schedulers.io())
-            .subscribe(
-                ::notifyRealtime,
-                Timber::e
-            )
-            .addTo(disposable)
+    /**
+     * time spent in each stage of [consumeEEGFrame], only measured when it is set
+     */
+    @Volatile
+    internal var pipelineTimings: PipelineTimings? = null
 
-        eegPacketSubject
-            .observeOn(Schedulers.io())
-            .subscribe(
-                ::notifyPacket,
-                Timber::e
-            )
-            .addTo(disposable)
+    /**
+     * receives the consecutive 1 second packets, like the recording, on the frame worker thread.
+     * The packets are views of the sample buffer : they must be copied during the call.
+     */
+    @Volatile
+    internal var secondPacketConsumer: ((MbtEEGPacket) -> Unit)? = null
 
+    init {
         Timber.i("BLE frame indexCycle = $indexCycle")
     }
 
@@ -127,27 +168,122 @@ abstract class EEGSignalProcessing(
     override fun clearBuffer() {
         eegStreamingErrorCounter = EEGStreamingErrorCounter()
         recordingBuffer = mutableListOf()
-        consolidatedEEGBuffer.clear()
-        consolidatedStatusBuffer.clear()
-        if (isQualityCheckerEnabled) {
-            qualityChecker = QualityChecker(getSampleRate())
+        isClearRequested.set(true)
+    }
+
+    /**
+     * Called on the frame worker thread, before the frame following [clearBuffer].
+     */
+    private fun clearSamples() {
+        sampleBuffer?.clear()
+        nextPacketStart = 0L
+        nextRecordStart = 0L
+        closeQualityChecker(qualityChecker)
+        qualityChecker = null
+        closeQualityChecker(recordingQualityChecker)
+        recordingQualityChecker = null
+    }
+
+    private fun closeQualityChecker(checker: QualityChecker?) {
+        try {
+            checker?.close()
+        } catch (e: Exception) {
+            Timber.e(e)
         }
     }
 
     override fun addSignalData(data: TimedBLEFrame) {
+        addSignalData(data.timestamp, data.data)
+    }
+
+    /**
+     * Copies the frame into the frame queue, it is decoded later on the frame worker thread.
+     * This method does not allocate and does not block : the frame is dropped if the queue is full.
+     */
+    fun addSignalData(timestamp: Long, eegFrame: ByteArray) {
 //        Timber.v("onEEGFrame : ${NumericalUtils.bytesToShortString(eegFrame)}")
-        eegFrameSubject.onNext(data)
+        eegFrameQueue.offer(timestamp, eegFrame)
+    }
+
+    fun getFrameQueueStatistics(): FrameQueueStatistics {
+        return eegFrameQueue.getStatistics()
+    }
+
+    fun isFrameQueueFull(): Boolean {
+        return eegFrameQueue.isFull()
+    }
+
+    fun isFrameQueueEmpty(): Boolean {
+        return eegFrameQueue.isEmpty()
+    }
+
+    fun getPacketDeliveryStatistics(): DeliveryStatistics {
+        return eegPacketDelivery.getStatistics()
+    }
+
+    fun getRealtimeDeliveryStatistics(): DeliveryStatistics {
+        return eegRealtimeDelivery.getStatistics()
+    }
+
+    fun getRealtimeBatchDeliveryStatistics(): DeliveryStatistics {
+        return eegRealtimeBatchDelivery.getStatistics()
+    }
+
+    override fun dispose() {
+        super.dispose()
+        frameWorker.removeQueue(eegFrameQueue)
+        eegRealtimeDelivery.dispose()
+        eegPacketDelivery.dispose()
+        eegRealtimeBatchDelivery.dispose()
+    }
+
+    /**
+     * The frames of all the BLE devices share the same layout : index, trigger statuses, then the samples
+     * time by time, so only the number of channels differs between devices.
+     */
+    override fun decodeEEGData(
+        eegFrame: ByteArray,
+        eegBuffer: Array<FloatArray>,
+        statusBuffer: FloatArray,
+        offset: Int
+    ): Int {
+        val numberOfTimes = getNumberOfTimes(eegFrame)
+        dataConversion.convertRawFrameToEEG(eegFrame, headerAlloc, numberOfTimes, eegBuffer, offset)
+        val hasStatus = (statusAlloc != 0)
+        for (i in 0 until numberOfTimes) {
+            statusBuffer[offset + i] = if (hasStatus) {
+                readTriggerStatus(i, eegFrame)
+            } else {
+                Float.NaN
+            }
+        }
+        return numberOfTimes
+    }
+
+    /**
+     * read the trigger status bit directly in the frame header, without copying the trigger bytes
+     */
+    private fun readTriggerStatus(pos: Int, eegFrame: ByteArray): Float {
+        val bytePos = indexAlloc + pos / 8 //one byte has 8 bits
+        if (bytePos >= headerAlloc) {
+            Timber.e("pos = $pos is out of trigger status allocation [$indexAlloc, $headerAlloc)")
+            return Float.NaN
+        }
+        return if ((eegFrame[bytePos].toInt() and (1 shl (pos % 8))) != 0) 1f else 0f
     }
 
     /**
      * please wrap this method in try catch to avoid crashing
+     *
+     * @param eegFrame slot of the frame queue, it must not be kept after this call
      */
     @Throws(Exception::class)
-    private fun consumeEEGFrame(timedBLEFrame: TimedBLEFrame) {
+    private fun consumeEEGFrame(timestamp: Long, eegFrame: ByteArray) {
 //        Timber.v("consumeEEGFrame")
-        val eegFrame = timedBLEFrame.data
 //        Timber.v("consumeEEGFrame eegFrame data size:${eegFrame.size}")
 //        Timber.v("consumeEEGFrame eegFrame data:${eegFrame.encodeToHex()}")
+        val timings = pipelineTimings
+        val startNs = if (timings != null) System.nanoTime() else 0L
         if (!isValidFrame(eegFrame)) {
             Timber.e("bad format eeg frame : ${NumericalUtils.bytesToShortString(eegFrame)}")
             return
@@ -169,24 +305,35 @@ abstract class EEGSignalProcessing(
 //        Timber.v("newFrameIndex = $newFrameIndex")
 
         // 2st step : parse raw data to standard table and notify realtime if needed
-        val eegSignals = decodeEEGData(timedBLEFrame.data)
-//        Timber.v("[eeg_frame_debug] consumeEEGFrame eegSignals:$eegSignals")
-        val statuses: List<Float> = eegSignals.map { it.statusData }
-        val standardEEGs = dataConversion.convertRawDataToEEG(eegSignals)
-//        Timber.v("[eeg_frame_debug] consumeEEGFrame standardEEGs:$standardEEGs")
+        ensureFrameBufferCapacity(getNumberOfTimes(eegFrame))
+        val nbTimes = decodeEEGData(eegFrame, frameEEGBuffer, frameStatusBuffer, 0)
+        val decodedNs = if (timings != null) System.nanoTime() else 0L
+        val qualityNs = timings?.quality?.totalNs ?: 0L
+        timings?.decode?.add(decodedNs - startNs)
         val hasRealtimeListener = hasRealtimeListener()
 //        Timber.i("[eeg_frame_debug] consumeEEGFrame hasRealtimeListener:$hasRealtimeListener")
         if (hasRealtimeListener) {
-            eegRealtimeSubject.onNext(
+            eegRealtimeDelivery.offer(
                 EEGSignalPack(
-                    timestamp = timedBLEFrame.timestamp,
+                    timestamp = timestamp,
                     index = newFrameIndex,
-                    eegSignals = MatrixUtils2.invertFloatMatrix(standardEEGs), // invert table : from [nbSample * nbChannel]  to [nbChannel * nbSample]
-                    triggers = statuses
+                    eegSignals = frameEEGBuffer.map { it.copyOf(nbTimes).asList() }, // [nbChannel * nbSample]
+                    triggers = frameStatusBuffer.copyOf(nbTimes).asList()
                 )
             )
         }
 
+        if (hasRealtimeBatchListener()) {
+            val batcher = realtimeBatcher
+                ?: EEGRealtimeBatcher(getNumberOfChannels(), realtimeBatchMaxFrames, realtimeBatchMaxDurationMs)
+                    .also { realtimeBatcher = it }
+            batcher.add(newFrameIndex, timestamp, frameEEGBuffer, frameStatusBuffer, nbTimes)?.let {
+                eegRealtimeBatchDelivery.offer(it)
+            }
+        } else {
+            realtimeBatcher?.clear()
+        }
+
         if (previousIndex == -1L) {
             //init first frame index
             previousIndex = newFrameIndex - 1
@@ -204,101 +351,147 @@ abstract class EEGSignalProcessing(
             eegStreamingErrorCounter.increaseMissingEegFrame(missingFrame)
         }
 
-        //this block is to count zero signals
-        val eegData = eegFrame.copyOfRange(headerAlloc, eegFrame.size)
-        with(ErrorDataHelper2.countZeroSample(eegData, getNumberOfChannels())) {
-            if (this.first != 1) {
-                eegStreamingErrorCounter.increaseZeroSampleCounter(this.first.toLong())
+        //this block is to count zero signals : a raw zero sample is decoded as 0 uV
+        var zeroTime = 0
+        var zeroSample = 0
+        for (time in 0 until nbTimes) {
+            var newZero = 0
+            for (channel in frameEEGBuffer.indices) {
+                if (frameEEGBuffer[channel][time] == 0f) {
+                    newZero++
+                }
             }
-            if (this.second != 1) {
-                eegStreamingErrorCounter.increaseZeroTimeCounter(this.second.toLong())
+            zeroSample += newZero
+            if (newZero == frameEEGBuffer.size) { //all the channels are 0
+                zeroTime++
             }
         }
+        // same counting rule as ErrorDataHelper2.countZeroSample
+        if (zeroTime != 1) {
+            eegStreamingErrorCounter.increaseZeroSampleCounter(zeroTime.toLong())
+        }
+        if (zeroSample != 1) {
+            eegStreamingErrorCounter.increaseZeroTimeCounter(zeroSample.toLong())
+        }
 
-        val missingEEGSamples = mutableListOf<RawEEGSample2>()
+        if (isClearRequested.getAndSet(false)) {
+            clearSamples()
+        }
+        val sampleRate = getSampleRate()
+        val buffer = getSampleBuffer(sampleRate)
 
         // 3rd step : Fill gap by NaN samples if there is missing frames
         if (missingFrame > 0) {
-            var missingCount = 0L
-            val sampleNb = getNumberOfTimes(eegFrame)
 //            Timber.w("[eeg_frame_debug] diff is $indexDifference. Current index : $newFrameIndex | previousIndex : $previousIndex")
-            for (i in 1..missingFrame) {
-                //one frame contains n times of sample
-                for (j in 1..sampleNb) {
-                    missingEEGSamples.add(RawEEGSample2.NAN_PACKET)
-                    missingCount++
-                }
-            }
-            if (BuildConfig.DEBUG) {
-                assert(missingCount == missingFrame * sampleNb)
-            }
-//            Timber.i("missing size = n channels * sample per frame = ${rawEEGList.size}")
+            //one frame contains n times of sample
+            buffer.appendNaN((missingFrame * nbTimes).toInt())
         }
-        val missingStatuses: List<Float> = missingEEGSamples.map { it.statusData }
-//        Timber.v("[eeg_frame_debug] consumeEEGFrame missingStatuses:$missingStatuses")
-        val standardMissingEEGs =  dataConversion.convertRawDataToEEG(missingEEGSamples)
-//        Timber.v("[eeg_frame_debug] consumeEEGFrame standardMissingEEGs:$standardMissingEEGs")
-        consolidatedEEGBuffer.addAll(standardMissingEEGs)
-        consolidatedStatusBuffer.addAll(missingStatuses)
-//        Timber.v("consumeEEGFrame consolidatedEEGBuffer size after add missing:${consolidatedEEGBuffer.size}")
         // 4th step: save raw eeg data to buffer
-        consolidatedEEGBuffer.addAll(standardEEGs)
-        consolidatedStatusBuffer.addAll(statuses)
-//        Timber.v("[eeg_frame_debug] consumeEEGFrame consolidatedEEGBuffer size after add standardEEGs:${consolidatedEEGBuffer.size}")
+        buffer.append(frameEEGBuffer, frameStatusBuffer, nbTimes)
 
         previousIndex = newFrameIndex
 
         //5th step: if raw buffer is reach threshold, generate consolidated eeg
-        val count = consolidatedEEGBuffer.size
-        val sampleRate = getSampleRate()
-//        Timber.w("[eeg_frame_debug] count $count. sampleRate : $sampleRate")
-        if (count >= sampleRate) {
-            //consolidated buffer can emit a MBTPacket
-//            Timber.v("consolidatedEEGBuffer = [${consolidatedEEGBuffer.size}x${consolidatedEEGBuffer[0].size}]")
-//            Timber.v("consolidatedStatusBuffer = [${consolidatedStatusBuffer.size}]")
-            val invertedEegData = ArrayList(consolidatedEEGBuffer.subList(0, sampleRate))
-//            Timber.w("[eeg_frame_debug] invertedEegData $invertedEegData")
-            val newStatusData = ArrayList(consolidatedStatusBuffer.subList(0, sampleRate))
-//            Timber.w("[eeg_frame_debug] newStatusData $newStatusData")
-            consolidatedEEGBuffer = ArrayList(consolidatedEEGBuffer.subList(sampleRate, count))
-
-//            Timber.w("[eeg_frame_debug] consolidatedEEGBuffer after sub $consolidatedEEGBuffer")
-            consolidatedStatusBuffer =
-                ArrayList(consolidatedStatusBuffer.subList(sampleRate, count))
-
-            // invert table : from [nbSample * nbChannel]  to [nbChannel * nbSample]
-            @Suppress("NAME_SHADOWING")
-            val eegData = MatrixUtils2.invertFloatMatrix(invertedEegData)
-
-            val newPacket = MbtEEGPacket(eegData, newStatusData)
+        // the packets are views of the buffer, nothing is copied
+        val isRecordedAsEmitted = (packetWindowSize == sampleRate && packetHopSize == sampleRate)
+        val secondConsumer = secondPacketConsumer
+        while (buffer.writtenCount - nextPacketStart >= packetWindowSize) {
+            val newPacket = buffer.window(nextPacketStart, packetWindowSize)
+            nextPacketStart += packetHopSize
             if (isQualityCheckerEnabled) {
-                try {
-//                    Timber.d("new packet : ${Arrays.toString(eegData.toArray())}")
-                    val qualities = qualityChecker.computeQualityChecker(eegData)
-                    if (qualities != null) {
-                        newPacket.qualities = ArrayList(qualities.toList())
-                    } else {
-                        newPacket.qualities = ArrayList<Float>(sampleRate)
-                        newPacket.qualities.fill(Float.NaN)
-                    }
-                } catch (e: Exception) {
-                    Timber.e(e)
-                    newPacket.qualities = ArrayList<Float>(sampleRate)
-                    newPacket.qualities.fill(Float.NaN)
-                }
+                val checker = qualityChecker ?: createQualityChecker().also { qualityChecker = it }
+                computeQualities(checker, newPacket)
             }
 //            Timber.d("new qualities : ${newPacket.qualities.toJson()}")
 
-            if (isRecording) {
-                recordingBuffer.add(newPacket)
-//                Timber.v("eeg recordingBuffer size = ${recordingBuffer.size}")
+            if (isRecordedAsEmitted) {
+                nextRecordStart = nextPacketStart
+                if (isRecording) {
+                    record(newPacket)
+//                    Timber.v("eeg recordingBuffer size = ${recordingBuffer.size}")
+                }
+                secondConsumer?.invoke(newPacket)
             }
 
 //            Timber.w("[eeg_frame_debug] newPacket $newPacket")
-            eegPacketSubject.onNext(newPacket)
+            if (hasPacketListener()) {
+                eegPacketDelivery.offer(newPacket)
+            }
+        }
+
+        // the recording always stores consecutive 1 second packets, whatever the emitted window
+        while (buffer.writtenCount - nextRecordStart >= sampleRate) {
+            val recordedPacket = buffer.window(nextRecordStart, sampleRate)
+            nextRecordStart += sampleRate
+            if (isRecording || secondConsumer != null) {
+                if (isQualityCheckerEnabled) {
+                    val checker = recordingQualityChecker
+                        ?: createQualityChecker().also { recordingQualityChecker = it }
+                    computeQualities(checker, recordedPacket)
+                }
+                if (isRecording) {
+                    record(recordedPacket)
+                }
+                secondConsumer?.invoke(recordedPacket)
+            }
+        }
+
+        buffer.release(minOf(nextPacketStart, nextRecordStart))
+        // everything after the decoding except the quality checker
+        if (timings != null) {
+            timings.packet.add(System.nanoTime() - decodedNs - (timings.quality.totalNs - qualityNs))
+        }
+    }
+
+    private fun record(packet: MbtEEGPacket) {
+        val spool = recordingSpool
+        if (spool != null) {
+            spool.appendEEG(packet)
+        } else {
+            recordingBuffer.add(packet)
         }
     }
 
+    private fun createQualityChecker(): QualityChecker {
+        return QualityChecker(sampleRate)
+    }
+
+    private fun computeQualities(checker: QualityChecker, packet: MbtEEGPacket) {
+        val timings = pipelineTimings
+        val startNs = if (timings != null) System.nanoTime() else 0L
+        try {
+            // the packet is a window of the sample buffer, see BrainBoxArrays.kt
+            val qualities = FloatArray(packet.nbChannels)
+            checker.computeQualityChecker(
+                packet.data, packet.dataOffset, packet.channelStride, packet.nbChannels, packet.nbSamples, qualities
+            )
+            packet.qualityValues = qualities
+        } catch (e: Exception) {
+            Timber.e(e)
+            packet.qualityValues = FloatArray(packet.nbChannels) { Float.NaN }
+        }
+        timings?.quality?.add(System.nanoTime() - startNs)
+    }
+
+    /**
+     * (re)allocate the frame buffers only when a frame is bigger than all the previous ones,
+     * in steady state the same buffers are used for every frame.
+     */
+    private fun ensureFrameBufferCapacity(nbTimes: Int) {
+        val nbChannels = getNumberOfChannels()
+        if (frameEEGBuffer.size != nbChannels || frameStatusBuffer.size < nbTimes) {
+            frameEEGBuffer = Array(nbChannels) { FloatArray(nbTimes) }
+            frameStatusBuffer = FloatArray(nbTimes)
+        }
+    }
+
+    private fun getSampleBuffer(sampleRate: Int): EEGSampleBuffer {
+        return sampleBuffer ?: EEGSampleBuffer(
+            getNumberOfChannels(),
+            maxOf(sampleRate, packetWindowSize) * EEGSampleBuffer.DEFAULT_CAPACITY_IN_PACKETS
+        ).also { sampleBuffer = it }
+    }
+
     /**
      * We count the number of times eeg signal was captured in one eeg frame.
      *
@@ -317,7 +510,7 @@ abstract class EEGSignalProcessing(
     abstract fun getNumberOfChannels(): Int
 
     override fun getBufferSize(): Int {
-        return recordingBuffer.size
+        return recordingSpool?.eegPacketCount ?: recordingBuffer.size
     }
 
     override fun onTriggerStatusConfiguration(statusAllocationSize: Int) {
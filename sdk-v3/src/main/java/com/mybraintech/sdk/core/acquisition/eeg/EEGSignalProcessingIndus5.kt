@@ -1,24 +1,31 @@
 package com.mybraintech.sdk.core.acquisition.eeg
 
+import com.mybraintech.sdk.core.acquisition.BleFrameWorker
 import com.mybraintech.sdk.core.acquisition.EnumBluetoothProtocol
 import com.mybraintech.sdk.core.acquisition.IndexReader
 import com.mybraintech.sdk.core.model.RawEEGSample2
 import com.mybraintech.sdk.core.model.StreamingParams
 import com.mybraintech.sdk.util.NumericalUtils
-import io.reactivex.Scheduler
 import timber.log.Timber
 
 abstract class EEGSignalProcessingIndus5(
     streamingParams: StreamingParams,
     callback: EEGCallback,
-    bleFrameScheduler: Scheduler
+    frameWorker: BleFrameWorker
 ) :
     EEGSignalProcessing(
         protocol = EnumBluetoothProtocol.BLE,
         isTriggerStatusEnabled = streamingParams.isTriggerStatusEnabled,
         isQualityCheckerEnabled = streamingParams.isQualityCheckerEnabled,
+        packetWindowSize = streamingParams.eegPacketWindowSize,
+        packetHopSize = streamingParams.eegPacketHopSize,
+        ampGain = streamingParams.eegAmpGain,
+        packetDelivery = streamingParams.eegPacketDelivery,
+        realtimeDelivery = streamingParams.eegRealtimeDelivery,
+        realtimeBatchMaxFrames = streamingParams.eegRealtimeBatchMaxFrames,
+        realtimeBatchMaxDurationMs = streamingParams.eegRealtimeBatchMaxDurationMs,
         callback = callback,
-        eegFrameScheduler = bleFrameScheduler
+        frameWorker = frameWorker
     ) {
 
     override fun getFrameIndex(eegFrame: ByteArray): Long {
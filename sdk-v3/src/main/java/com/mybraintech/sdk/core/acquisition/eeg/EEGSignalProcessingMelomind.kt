@@ -1,23 +1,30 @@
 package com.mybraintech.sdk.core.acquisition.eeg
 
+import com.mybraintech.sdk.core.acquisition.BleFrameWorker
 import com.mybraintech.sdk.core.acquisition.EnumBluetoothProtocol
 import com.mybraintech.sdk.core.acquisition.IndexReader
 import com.mybraintech.sdk.core.model.*
 import com.mybraintech.sdk.util.NumericalUtils
-import io.reactivex.Scheduler
 import timber.log.Timber
 
 class EEGSignalProcessingMelomind(
     streamingParams: StreamingParams,
     eegCallback: EEGCallback,
-    bleFrameScheduler: Scheduler
+    frameWorker: BleFrameWorker
 ) :
     EEGSignalProcessing(
         protocol = EnumBluetoothProtocol.BLE,
         isTriggerStatusEnabled = streamingParams.isTriggerStatusEnabled,
         isQualityCheckerEnabled = streamingParams.isQualityCheckerEnabled,
+        packetWindowSize = streamingParams.eegPacketWindowSize,
+        packetHopSize = streamingParams.eegPacketHopSize,
+        ampGain = streamingParams.eegAmpGain,
+        packetDelivery = streamingParams.eegPacketDelivery,
+        realtimeDelivery = streamingParams.eegRealtimeDelivery,
+        realtimeBatchMaxFrames = streamingParams.eegRealtimeBatchMaxFrames,
+        realtimeBatchMaxDurationMs = streamingParams.eegRealtimeBatchMaxDurationMs,
         callback = eegCallback,
-        eegFrameScheduler = bleFrameScheduler
+        frameWorker = frameWorker
     ) {
 
     override fun getDeviceType(): EnumMBTDevice {
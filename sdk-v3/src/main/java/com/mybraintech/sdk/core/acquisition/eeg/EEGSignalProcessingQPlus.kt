@@ -1,14 +1,14 @@
 package com.mybraintech.sdk.core.acquisition.eeg
 
+import com.mybraintech.sdk.core.acquisition.BleFrameWorker
 import com.mybraintech.sdk.core.model.*
-import io.reactivex.Scheduler
 
 class EEGSignalProcessingQPlus(
     streamingParams: StreamingParams,
     eegCallback: EEGCallback,
-    bleFrameScheduler: Scheduler
+    frameWorker: BleFrameWorker
 ) :
-    EEGSignalProcessingIndus5(streamingParams, eegCallback, bleFrameScheduler) {
+    EEGSignalProcessingIndus5(streamingParams, eegCallback, frameWorker) {
 
     override fun getDeviceType(): EnumMBTDevice {
         return EnumMBTDevice.Q_PLUS
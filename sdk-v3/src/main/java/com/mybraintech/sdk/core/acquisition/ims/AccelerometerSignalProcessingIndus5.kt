@@ -1,26 +1,30 @@
 package com.mybraintech.sdk.core.acquisition.ims
 
 import com.mybraintech.sdk.BuildConfig
+import com.mybraintech.sdk.core.acquisition.BleFrameQueue
+import com.mybraintech.sdk.core.acquisition.BleFrameWorker
+import com.mybraintech.sdk.core.acquisition.BoundedDelivery
 import com.mybraintech.sdk.core.acquisition.IndexReader
 import com.mybraintech.sdk.core.model.*
 import com.mybraintech.sdk.core.recording.BaseAccelerometerRecorder
 import com.mybraintech.sdk.util.NumericalUtils
-import io.reactivex.Scheduler
-import io.reactivex.rxkotlin.addTo
-import io.reactivex.schedulers.Schedulers
-import io.reactivex.subjects.PublishSubject
 import timber.log.Timber
 import kotlin.math.pow
 
 class AccelerometerSignalProcessingIndus5(
     var accelerometerCallback: AccelerometerCallback? = null,
-    @Suppress("CanBeParameter") private val imsFrameScheduler: Scheduler
+    private val frameWorker: BleFrameWorker,
+    packetDelivery: DeliveryOption
 ) : BaseAccelerometerRecorder() {
 
     private var isRecording: Boolean = false
 
-    private val accelerometerPacketSubject = PublishSubject.create<AccelerometerPacket>()
-    private val imsFrameSubject = PublishSubject.create<ByteArray>()
+    private val accelerometerPacketDelivery = BoundedDelivery<AccelerometerPacket>("mbt-ims-packet", packetDelivery) {
+        accelerometerCallback?.onAccelerometerPacket(it)
+    }
+    private val imsFrameQueue = frameWorker.createQueue(BleFrameQueue.DEFAULT_CAPACITY) { _, frame ->
+        consumeIMSFrame(frame)
+    }
 
     /**
      * index allocation size in the ims frame
@@ -37,26 +41,6 @@ class AccelerometerSignalProcessingIndus5(
     private var rawBuffer: MutableList<ThreeDimensionalPosition> = mutableListOf()
     private var recordingBuffer = mutableListOf<ThreeDimensionalPosition>()
 
-    init {
-        accelerometerPacketSubject
-            .observeOn(Schedulers.io())
-            .subscribe(
-                {
-                    accelerometerCallback?.onAccelerometerPacket(it)
-                },
-                Timber::e
-            )
-            .addTo(disposable)
-
-        imsFrameSubject
-            .observeOn(imsFrameScheduler)
-            .subscribe(
-                ::consumeIMSFrame,
-                Timber::e
-            )
-            .addTo(disposable)
-    }
-
     //----------------------------------------------------------------------------
     // MARK: interface IMSSignalProcessing implementation
     //----------------------------------------------------------------------------
@@ -72,7 +56,29 @@ class AccelerometerSignalProcessingIndus5(
 
     override fun addSignalData(data: ByteArray) {
 //        Timber.v("onIMSFrame : ${NumericalUtils.bytesToShortString(data)}")
-        imsFrameSubject.onNext(data)
+        imsFrameQueue.offer(0L, data)
+    }
+
+    fun getFrameQueueStatistics(): FrameQueueStatistics {
+        return imsFrameQueue.getStatistics()
+    }
+
+    fun isFrameQueueFull(): Boolean {
+        return imsFrameQueue.isFull()
+    }
+
+    fun isFrameQueueEmpty(): Boolean {
+        return imsFrameQueue.isEmpty()
+    }
+
+    fun getPacketDeliveryStatistics(): DeliveryStatistics {
+        return accelerometerPacketDelivery.getStatistics()
+    }
+
+    override fun dispose() {
+        super.dispose()
+        frameWorker.removeQueue(imsFrameQueue)
+        accelerometerPacketDelivery.dispose()
     }
 
     override fun getBuffer(): List<ThreeDimensionalPosition> {
@@ -85,6 +91,10 @@ class AccelerometerSignalProcessingIndus5(
     }
 
     override fun getBufferSize(): Int {
+        val spool = recordingSpool
+        if (spool != null) {
+            return (spool.imsSampleCount / getSampleRate()).toInt()
+        }
         return (recordingBuffer.size / getSampleRate())
     }
 
@@ -99,6 +109,8 @@ class AccelerometerSignalProcessingIndus5(
 
     /**
      * please wrap this method in try catch to avoid crashing
+     *
+     * @param data slot of the frame queue, it must not be kept after this call
      */
     @Throws(Exception::class)
     private fun consumeIMSFrame(data: ByteArray) {
@@ -169,11 +181,18 @@ class AccelerometerSignalProcessingIndus5(
             rawBuffer = ArrayList(rawBuffer.subList(sampleRate, count))
 
             if (isRecording) {
-                recordingBuffer.addAll(oneSecond)
+                val spool = recordingSpool
+                if (spool != null) {
+                    spool.appendIMS(oneSecond)
+                } else {
+                    recordingBuffer.addAll(oneSecond)
+                }
 //                Timber.d("ims recordingBuffer size = ${recordingBuffer.size}")
             }
 
-            accelerometerCallback?.onAccelerometerPacket(accelerometerPacket)
+            if (accelerometerCallback?.hasListener() == true) {
+                accelerometerPacketDelivery.offer(accelerometerPacket)
+            }
         }
     }
 
@@ -193,5 +212,10 @@ class AccelerometerSignalProcessingIndus5(
 
     interface AccelerometerCallback {
         fun onAccelerometerPacket(packet: AccelerometerPacket)
+
+        /**
+         * @return false when nobody receives the packets : they are not delivered
+         */
+        fun hasListener(): Boolean = true
     }
 }
\ No newline at end of file
@@ -35,7 +35,6 @@ import com.mybraintech.sdk.core.model.EnumMBTDevice
 import com.mybraintech.sdk.core.model.MBTErrorCode
 import com.mybraintech.sdk.core.model.MbtDevice
 import com.mybraintech.sdk.core.model.StreamingParams
-import com.mybraintech.sdk.core.model.TimedBLEFrame
 import com.mybraintech.sdk.util.AUDIO_CONNECTED_STATUS
 import com.mybraintech.sdk.util.BLE_CONNECTED_STATUS
 import no.nordicsemi.android.ble.callback.DataReceivedCallback
@@ -321,6 +320,7 @@ class MelomindDeviceImpl(val ctx: Context) : BaseMbtDevice(ctx) {
                     Timber.i("Dev_debug connectAudioViaBle onDataReceived data p1  = ${p1.value?.encodeToHex()}")
                     //remove the firstbyte since it's the identifer byte
                     val rawData = p1.value
+                    rawData?.let { dataReceiver?.onRawMailboxFrame(SystemClock.elapsedRealtime(), it) }
                     rawData?.let { it ->
                         val identifier = it.first().toUInt()
                         val a2dpIdentifier =
@@ -535,6 +535,7 @@ class MelomindDeviceImpl(val ctx: Context) : BaseMbtDevice(ctx) {
                 .done {
                     Timber.d("Dev_debug Trigger status command sent successfully")
                     val response = mailbox.value
+                    response?.let { this.dataReceiver?.onRawMailboxFrame(SystemClock.elapsedRealtime(), it) }
                     try {
                         if (response[0] == EnumMelomindMailBoxCommand.TRIGGER_STATUS.bytes[0]) {
                             val size = response[1].toInt()
@@ -581,12 +582,7 @@ class MelomindDeviceImpl(val ctx: Context) : BaseMbtDevice(ctx) {
         Timber.d("Dev_debug eeg characteristic eegChar result:$eegChar")
         setNotificationCallback(eegChar).with { _, eegFrame ->
             if (eegFrame.value != null) {
-                this.dataReceiver?.onEEGFrame(
-                    TimedBLEFrame(
-                        SystemClock.elapsedRealtime(),
-                        eegFrame.value!!
-                    )
-                )
+                this.dataReceiver?.onEEGFrame(SystemClock.elapsedRealtime(), eegFrame.value!!)
             } else {
                 Timber.w("Dev_debug eeg onEEGDataError  received empty eeg frame!")
                 this.dataReceiver?.onEEGDataError(Throwable("received empty eeg frame!"))
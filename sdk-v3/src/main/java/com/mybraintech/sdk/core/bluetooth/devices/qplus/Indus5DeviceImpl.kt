@@ -200,7 +200,11 @@ abstract class Indus5DeviceImpl(ctx: Context) :
     override fun onDataReceived(device: BluetoothDevice, data: Data) {
         if (data.value != null) {
             Timber.v("onDataReceived size:${data.value?.size} hex:${data.value?.encodeToHex()}")
-            when (val response = Indus5MailboxDecoder.decodeRawIndus5Response(data.value!!)) {
+            val response = Indus5MailboxDecoder.decodeRawIndus5Response(data.value!!)
+            if (response !is Indus5Response.EEGFrame && response !is Indus5Response.ImsFrame) {
+                dataReceiver?.onRawMailboxFrame(SystemClock.elapsedRealtime(), data.value!!)
+            }
+            when (response) {
                 is Indus5Response.MtuChange -> {
                     Timber.i("Mailbox MTU changed successfully")
                 }
@@ -231,12 +235,7 @@ abstract class Indus5DeviceImpl(ctx: Context) :
                     deviceStatusCallback?.onEEGStatusChange(response.isEnabled)
                 }
                 is Indus5Response.EEGFrame -> {
-                    dataReceiver?.onEEGFrame(
-                        TimedBLEFrame(
-                            SystemClock.elapsedRealtime(),
-                            response.data
-                        )
-                    )
+                    dataReceiver?.onEEGFrame(SystemClock.elapsedRealtime(), response.data)
                 }
                 is Indus5Response.TriggerStatusConfiguration -> {
                     dataReceiver?.onTriggerStatusConfiguration(response.triggerStatusAllocationSize)
@@ -0,0 +1,11 @@
+package com.mybraintech.sdk.core.listener
+
+import com.mybraintech.sdk.core.acquisition.EEGCalibrateResult
+
+interface EEGCalibrationListener {
+    /**
+     * Called once the calibration period is complete, on the calibration thread.
+     * The result can be given to [com.mybraintech.sdk.MbtClient.eggStartRelaxingIndexSession].
+     */
+    fun onCalibrationResult(result: EEGCalibrateResult)
+}
@@ -7,4 +7,21 @@ interface EEGFrameDecodeInterface {
      * @param eegFrame eeg frame starting with index frame number
      */
     fun decodeEEGData(eegFrame: ByteArray): List<RawEEGSample2>
-}
\ No newline at end of file
+
+    /**
+     * Allocation free version of [decodeEEGData] : the frame is decoded and converted to microvolts
+     * directly into the provided buffers.
+     *
+     * @param eegFrame eeg frame starting with index frame number
+     * @param eegBuffer channel-major output : [ nbChannels ][ >= offset + number of times ]
+     * @param statusBuffer trigger statuses output, NaN is written when trigger status is disabled
+     * @param offset position in the output buffers where the first time of the frame is written
+     * @return number of times (samples per channel) written
+     */
+    fun decodeEEGData(
+        eegFrame: ByteArray,
+        eegBuffer: Array<FloatArray>,
+        statusBuffer: FloatArray,
+        offset: Int
+    ): Int
+}
@@ -0,0 +1,11 @@
+package com.mybraintech.sdk.core.listener
+
+import com.mybraintech.sdk.core.model.EEGSignalBatch
+
+/**
+ * Batched version of [EEGRealtimeListener] : it is triggered once per group of BLE frames,
+ * the size of the groups is set by [com.mybraintech.sdk.core.model.StreamingParams.Builder.setEEGRealtimeBatch].
+ */
+interface EEGRealtimeBatchListener {
+    fun onEEGBatch(batch: EEGSignalBatch)
+}
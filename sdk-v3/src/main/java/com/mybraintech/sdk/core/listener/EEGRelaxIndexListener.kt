@@ -0,0 +1,8 @@
+package com.mybraintech.sdk.core.listener
+
+interface EEGRelaxIndexListener {
+    /**
+     * Called for every hop of the relax index, on the relax index thread.
+     */
+    fun onRelaxIndexVolume(volume: Float)
+}
@@ -11,9 +11,24 @@ interface MbtDataReceiver {
     fun onTriggerStatusConfiguration(triggerStatusAllocationSize: Int)
     fun onAccelerometerConfiguration(accelerometerConfig: AccelerometerConfig)
     fun onEEGFrame(data: TimedBLEFrame)
+
+    /**
+     * Same as [onEEGFrame] without wrapping the frame, called on the bluetooth callback thread.
+     * The receiver must copy the frame if it keeps it.
+     */
+    fun onEEGFrame(timestamp: Long, data: ByteArray) {
+        onEEGFrame(TimedBLEFrame(timestamp, data))
+    }
     fun setEEGListener(eegListener: EEGListener?)
     fun setEEGRealtimeListener(eegRealtimeListener: EEGRealtimeListener?)
+    fun setEEGRealtimeBatchListener(eegRealtimeBatchListener: EEGRealtimeBatchListener?)
     fun onAccelerometerFrame(data: ByteArray)
+
+    /**
+     * Raw mailbox response of the headset, other than the EEG and IMS frames, called on the bluetooth
+     * callback thread. The receiver must copy the response if it keeps it.
+     */
+    fun onRawMailboxFrame(timestamp: Long, data: ByteArray) {}
     fun setAccelerometerListener(accelerometerListener: AccelerometerListener?)
     fun onEEGFilterConfig(config: EnumEEGFilterConfig)
     fun onEEGDataError(error: Throwable)
@@ -6,4 +6,19 @@ import java.io.File
 interface RecordingListener {
     fun onRecordingSaved(outputFile: File, eegRecordedData:EEGRecordedDatas)
     fun onRecordingError(error: Throwable)
+
+    /**
+     * Called for every file of a recording split with [com.mybraintech.sdk.core.model.RecordingOption.rolloverMinutes],
+     * as soon as it is saved, while the next files are recorded.
+     */
+    fun onRecordingSegmentSaved(segmentFile: File, recordingNb: Int) {
+    }
+
+    /**
+     * Called regularly while [outputFile] is written, on the thread saving the recordings.
+     *
+     * @param packetsWritten number of packets written, estimated from the number of values written
+     */
+    fun onRecordingProgress(outputFile: File, bytesWritten: Long, packetsWritten: Int, nbPackets: Int) {
+    }
 }
\ No newline at end of file
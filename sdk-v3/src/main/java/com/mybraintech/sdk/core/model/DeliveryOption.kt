@@ -0,0 +1,18 @@
+package com.mybraintech.sdk.core.model
+
+import androidx.annotation.Keep
+
+/**
+ * How the items are delivered to a listener, see [StreamingParams.Builder]
+ *
+ * @param capacity maximum number of items waiting for the listener
+ */
+@Keep
+data class DeliveryOption(
+    val policy: EnumDeliveryPolicy,
+    val capacity: Int,
+) {
+    init {
+        require(capacity > 0) { "capacity must be positive : $capacity" }
+    }
+}
@@ -0,0 +1,184 @@
+package com.mybraintech.sdk.core.model
+
+/**
+ * Lossless codec of the 16 bits raw EEG counts of one channel, used by the binary Kwak blocks
+ * ([KwakBinaryFormat.ENCODING_INT16_RICE]).
+ *
+ * Every block is encoded independently, so a reader can start from any block :
+ * - the samples are predicted from the previous ones with the fixed polynomial predictor of order 0, 1 or 2
+ *   that gives the smallest residuals on the block,
+ * - the residuals are zigzag mapped to unsigned values, then Rice coded with the parameter `k` which
+ *   minimizes the size of the block. A quotient of [ESCAPE_QUOTIENT] or more is escaped : the value is
+ *   written on [ESCAPE_BITS] bits instead, so a spike or a gap of missing samples costs a few bytes at most.
+ *
+ * Encoded block : int8 predictor order, int8 k, then the bit stream, most significant bit first, padded to a byte.
+ *
+ * The encoder and the decoder work on the caller's arrays, nothing is allocated per sample.
+ */
+internal object EEGCountCodec {
+
+    private const val MAX_ORDER = 2
+    private const val MAX_K = 18
+    const val ESCAPE_QUOTIENT = 24
+    const val ESCAPE_BITS = 20
+
+    /**
+     * @return the maximum number of bytes of an encoded block of [size] counts
+     */
+    fun getMaxEncodedSize(size: Int): Int {
+        return 2 + (size.toLong() * (ESCAPE_QUOTIENT + ESCAPE_BITS) + 7).div(8).toInt()
+    }
+
+    /**
+     * @param counts values between -32768 and 32767
+     * @param out its size must be at least [getMaxEncodedSize]
+     * @return the number of bytes written in [out]
+     */
+    fun encode(counts: IntArray, size: Int, out: ByteArray): Int {
+        val order = chooseOrder(counts, size)
+        val k = chooseK(counts, size, order)
+        out[0] = order.toByte()
+        out[1] = k.toByte()
+
+        val writer = BitWriter(out, 2)
+        for (i in 0 until size) {
+            val residual = counts[i] - predict(counts, i, order)
+            val value = (residual shl 1) xor (residual shr 31)
+            val quotient = value ushr k
+            if (quotient < ESCAPE_QUOTIENT) {
+                writer.write((1 shl (quotient + 1)) - 2, quotient + 1) // quotient ones then a zero
+                writer.write(value and ((1 shl k) - 1), k)
+            } else {
+                writer.write((1 shl ESCAPE_QUOTIENT) - 1, ESCAPE_QUOTIENT)
+                writer.write(value, ESCAPE_BITS)
+            }
+        }
+        return writer.finish()
+    }
+
+    /**
+     * @param input encoded block, starting at [offset]
+     * @param size number of counts of the block
+     * @param counts output, its size must be at least [size]
+     */
+    fun decode(input: ByteArray, offset: Int, size: Int, counts: IntArray) {
+        val order = input[offset].toInt()
+        val k = input[offset + 1].toInt()
+        val reader = BitReader(input, offset + 2)
+        for (i in 0 until size) {
+            var quotient = 0
+            while (quotient < ESCAPE_QUOTIENT && reader.readBit() == 1) {
+                quotient++
+            }
+            val value = if (quotient < ESCAPE_QUOTIENT) {
+                (quotient shl k) or reader.read(k)
+            } else {
+                reader.read(ESCAPE_BITS)
+            }
+            val residual = (value ushr 1) xor -(value and 1)
+            counts[i] = residual + predict(counts, i, order)
+        }
+    }
+
+    private fun predict(counts: IntArray, i: Int, order: Int): Int {
+        return when {
+            order == 0 || i == 0 -> 0
+            order == 1 || i == 1 -> counts[i - 1]
+            else -> 2 * counts[i - 1] - counts[i - 2]
+        }
+    }
+
+    private fun chooseOrder(counts: IntArray, size: Int): Int {
+        var bestOrder = 0
+        var bestSum = Long.MAX_VALUE
+        for (order in 0..MAX_ORDER) {
+            var sum = 0L
+            for (i in 0 until size) {
+                sum += Math.abs(counts[i] - predict(counts, i, order))
+            }
+            if (sum < bestSum) {
+                bestSum = sum
+                bestOrder = order
+            }
+        }
+        return bestOrder
+    }
+
+    /**
+     * Exact size of the block for every k, the residuals are computed once per k : the blocks are small.
+     */
+    private fun chooseK(counts: IntArray, size: Int, order: Int): Int {
+        var bestK = 0
+        var bestBits = Long.MAX_VALUE
+        for (k in 0..MAX_K) {
+            var bits = 0L
+            for (i in 0 until size) {
+                val residual = counts[i] - predict(counts, i, order)
+                val quotient = ((residual shl 1) xor (residual shr 31)) ushr k
+                bits += if (quotient < ESCAPE_QUOTIENT) quotient + 1L + k else ESCAPE_QUOTIENT.toLong() + ESCAPE_BITS
+                if (bits >= bestBits) {
+                    break
+                }
+            }
+            if (bits < bestBits) {
+                bestBits = bits
+                bestK = k
+            }
+        }
+        return bestK
+    }
+
+    private class BitWriter(private val out: ByteArray, private var position: Int) {
+        private val start = position - 2
+        private var accumulator = 0L
+        private var nbBits = 0
+
+        /**
+         * writes the [count] lowest bits of [value], count <= 32
+         */
+        fun write(value: Int, count: Int) {
+            if (count == 0) {
+                return
+            }
+            accumulator = (accumulator shl count) or (value.toLong() and ((1L shl count) - 1))
+            nbBits += count
+            while (nbBits >= 8) {
+                nbBits -= 8
+                out[position++] = (accumulator ushr nbBits).toByte()
+            }
+        }
+
+        /**
+         * @return the size of the block in bytes
+         */
+        fun finish(): Int {
+            if (nbBits > 0) {
+                out[position++] = (accumulator shl (8 - nbBits)).toByte()
+                nbBits = 0
+            }
+            return position - start
+        }
+    }
+
+    private class BitReader(private val input: ByteArray, private var position: Int) {
+        private var buffer = 0L
+        private var nbBits = 0
+
+        fun readBit(): Int = read(1)
+
+        /**
+         * reads [count] bits, count <= 32
+         */
+        fun read(count: Int): Int {
+            if (count == 0) {
+                return 0
+            }
+            while (nbBits < count) {
+                buffer = (buffer shl 8) or (input[position++].toLong() and 0xFF)
+                nbBits += 8
+            }
+            nbBits -= count
+            return ((buffer ushr nbBits) and ((1L shl count) - 1)).toInt()
+        }
+    }
+}
@@ -22,20 +22,25 @@ class EEGRecordingData(
 
             //RAW EEG
             for (ch in 0 until nbChannels) {
-                eegData[ch].addAll(eegPacket.channelsData[ch])
+                val channel = eegData[ch]
+                for (sample in 0 until eegPacket.nbSamples) {
+                    channel.add(eegPacket.getSample(ch, sample))
+                }
             }
 //            Timber.d("recordingData.eegData size = ${eegData.size} * ${eegData[0].size}")
 
             //QUALITIES
-            if (eegPacket.qualities != null) {
+            if (eegPacket.qualityValues != null) {
                 for (ch in 0 until nbChannels) {
-                    qualities[ch].add(eegPacket.qualities[ch])
+                    qualities[ch].add(eegPacket.getQuality(ch))
                 }
             }
 
             //STATUS
-            if (eegPacket.statusData != null && hasStatus) {
-                statusData.addAll(eegPacket.statusData)
+            if (eegPacket.hasStatus() && hasStatus) {
+                for (sample in 0 until eegPacket.nbSamples) {
+                    statusData.add(eegPacket.getStatus(sample))
+                }
             }
         }
     }
@@ -0,0 +1,54 @@
+package com.mybraintech.sdk.core.model
+
+import androidx.annotation.Keep
+
+/**
+ * Decoded EEG of several consecutive BLE frames, see [com.mybraintech.sdk.core.listener.EEGRealtimeBatchListener].
+ *
+ * The signals are stored channel-major : the sample `s` of the channel `c` is `signals[c * nbSamples + s]`.
+ * The frame `f` starts at the sample `frameOffsets[f]`. Missing frames are not filled, compare the
+ * consecutive [frameIndexes] to detect them.
+ */
+@Keep
+class EEGSignalBatch(
+    val nbChannels: Int,
+
+    /**
+     * number of samples per channel
+     */
+    val nbSamples: Int,
+
+    /**
+     * [ nbChannels * nbSamples ], in volts
+     */
+    val signals: FloatArray,
+
+    /**
+     * [ nbSamples ], NaN when trigger status is disabled
+     */
+    val triggers: FloatArray,
+
+    /**
+     * number of frames in the batch
+     */
+    val nbFrames: Int,
+
+    /**
+     * [ nbFrames ] : index of each frame, they increase continuously (overflows are resolved)
+     */
+    val frameIndexes: LongArray,
+
+    /**
+     * [ nbFrames ] : reception time of each frame, in ms (elapsed realtime)
+     */
+    val frameTimestamps: LongArray,
+
+    /**
+     * [ nbFrames ] : position of the first sample of each frame
+     */
+    val frameOffsets: IntArray,
+) {
+    fun getSample(channel: Int, sample: Int): Float {
+        return signals[channel * nbSamples + sample]
+    }
+}
@@ -0,0 +1,31 @@
+package com.mybraintech.sdk.core.model
+
+import androidx.annotation.Keep
+
+/**
+ * What to do when a listener is slower than the headset and its delivery queue is full.
+ */
+@Keep
+enum class EnumDeliveryPolicy {
+    /**
+     * no item is lost : the items are kept past the capacity, with a warning, until the listener catches up.
+     * The SDK never waits for the listener, the decoding and the recording are not affected, but the memory
+     * grows with the backlog.
+     */
+    BLOCK,
+
+    /**
+     * the oldest waiting item is dropped to make room for the new one
+     */
+    DROP_OLDEST,
+
+    /**
+     * the new item is dropped
+     */
+    DROP_NEWEST,
+
+    /**
+     * only the latest item is kept : the listener always receives the most recent one, the capacity is ignored
+     */
+    COALESCE_LATEST,
+}
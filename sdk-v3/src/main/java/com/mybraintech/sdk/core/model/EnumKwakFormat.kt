@@ -0,0 +1,19 @@
+package com.mybraintech.sdk.core.model
+
+import androidx.annotation.Keep
+
+/**
+ * Format of the recording files
+ */
+@Keep
+enum class EnumKwakFormat {
+    /**
+     * historical Kwak format, readable by all the back ends
+     */
+    JSON,
+
+    /**
+     * compact columnar format, see [KwakBinaryReader] to read it and [KwakConverter] to convert it to [JSON]
+     */
+    BINARY
+}
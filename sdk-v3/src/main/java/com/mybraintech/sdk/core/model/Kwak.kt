@@ -1,5 +1,8 @@
 package com.mybraintech.sdk.core.model
 
+import timber.log.Timber
+import java.io.File
+import java.io.FileOutputStream
 import java.io.FileWriter
 import java.util.*
 
@@ -7,8 +10,8 @@ class Kwak {
     /**
      * unique id
      */
-    @Suppress("unused")
-    val uuidJsonFile: String = UUID.randomUUID().toString()
+    var uuidJsonFile: String = UUID.randomUUID().toString()
+        internal set
     var context: KwakContext = KwakContext()
     var header: KwakHeader = KwakHeader()
     var recording: KwakRecording = KwakRecording()
@@ -29,4 +32,58 @@ class Kwak {
             fileWriter
         )
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes the recording column by column, in any [EnumKwakFormat].
+     */
+    internal fun serialize(
+        streamingParams: StreamingParams,
+        columns: KwakColumnSource,
+        eegStreamingErrorCounter: EEGStreamingErrorCounter,
+        format: EnumKwakFormat,
+        outputFile: File
+    ): Boolean {
+        return serialize(
+            columns,
+            eegStreamingErrorCounter,
+            format,
+            outputFile,
+            streamingParams.accelerometerSampleRate.sampleRate,
+            MbtDataConversion2.getBleSampleScale(streamingParams.eegAmpGain)
+        )
+    }
+
+    /**
+     * @param eegStreamingErrorCounter null if the error counters are not known, e.g. for a recovered recording
+     * @param sampleScale value of one raw count of the EEG samples, 0 if unknown
+     */
+    internal fun serialize(
+        columns: KwakColumnSource,
+        eegStreamingErrorCounter: EEGStreamingErrorCounter?,
+        format: EnumKwakFormat,
+        outputFile: File,
+        imsSampleRate: Int,
+        sampleScale: Float
+    ): Boolean {
+        return when (format) {
+            EnumKwakFormat.JSON -> try {
+                FileOutputStream(outputFile).use {
+                    KwakJsonWriter(it, sampleScale).write(this, columns, eegStreamingErrorCounter, imsSampleRate)
+                }
+                true
+            } catch (e: Exception) {
+                Timber.e(e, "Error while writing json kwak file")
+                false
+            }
+            EnumKwakFormat.BINARY -> try {
+                FileOutputStream(outputFile).use {
+                    KwakBinaryWriter(it).write(this, columns, eegStreamingErrorCounter, imsSampleRate, sampleScale)
+                }
+                true
+            } catch (e: Exception) {
+                Timber.e(e, "Error while writing binary kwak file")
+                false
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.mybraintech.sdk.core.model
+
+import java.io.EOFException
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+
+/**
+ * Reads a recording file written in the binary Kwak format ([EnumKwakFormat.BINARY]).
+ *
+ * The metadata are read when the reader is created, the signals are only read when they are requested.
+ *
+ * @throws IOException if the file is not a binary Kwak file
+ */
+class KwakBinaryReader(private val file: File) {
+
+    val kwak: Kwak = Kwak()
+
+    var nbPackets: Int = 0
+        private set
+
+    var recordingErrorData: EEGStreamingErrorCounter? = null
+        private set
+
+    var imsSampleRate: Int = 0
+        private set
+
+    /**
+     * value of one raw count of the EEG samples, 0 if unknown
+     */
+    var sampleScale: Float = 0f
+        private set
+
+    /**
+     * position of the first block of every column, key = (column type, index)
+     */
+    private val columnPositions = hashMapOf<Pair<Byte, Int>, Long>()
+    private val columnCounts = hashMapOf<Pair<Byte, Int>, Long>()
+
+    init {
+        FileInputStream(file).channel.use { channel ->
+            val input = LittleEndianInput(channel)
+            if (input.getInt() != KwakBinaryFormat.MAGIC) {
+                throw IOException("${file.name} is not a binary kwak file")
+            }
+            val version = input.getShort()
+            if (version > KwakBinaryFormat.VERSION) {
+                throw IOException("binary kwak version $version is not supported")
+            }
+            input.getShort()
+            readMetadata(input)
+            indexColumns(input)
+        }
+    }
+
+    fun getEEGSampleCount(): Long = getCount(KwakBinaryFormat.COLUMN_EEG)
+
+    fun getImsSampleCount(): Long = getCount(KwakBinaryFormat.COLUMN_IMS)
+
+    fun readEEGChannel(channel: Int): FloatArray = readColumn(KwakBinaryFormat.COLUMN_EEG, channel)
+
+    fun readQualities(channel: Int): FloatArray = readColumn(KwakBinaryFormat.COLUMN_QUALITY, channel)
+
+    fun readStatuses(): FloatArray = readColumn(KwakBinaryFormat.COLUMN_STATUS, 0)
+
+    /**
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     */
+    fun readIMS(axis: Int): FloatArray = readColumn(KwakBinaryFormat.COLUMN_IMS, axis)
+
+    /**
+     * Writes the recording in the JSON Kwak layout, without loading the signals in memory.
+     *
+     * @return false if the file can not be written
+     */
+    fun writeJson(jsonFile: File): Boolean {
+        return kwak.serialize(asColumnSource(), recordingErrorData, EnumKwakFormat.JSON, jsonFile, imsSampleRate, sampleScale)
+    }
+
+    internal fun asColumnSource(): KwakColumnSource {
+        return object : KwakColumnSource {
+            override val nbChannels: Int = kwak.header.nbChannels
+            override fun getNbPackets(): Int = nbPackets
+            override fun getEEGSampleCount(): Long = getCount(KwakBinaryFormat.COLUMN_EEG)
+            override fun getQualityCount(): Long = getCount(KwakBinaryFormat.COLUMN_QUALITY)
+            override fun getStatusCount(): Long = getCount(KwakBinaryFormat.COLUMN_STATUS)
+            override fun getImsSampleCount(): Long = getCount(KwakBinaryFormat.COLUMN_IMS)
+            override fun openEEGColumn(channel: Int) = openColumn(KwakBinaryFormat.COLUMN_EEG, channel)
+            override fun openQualityColumn(channel: Int) = openColumn(KwakBinaryFormat.COLUMN_QUALITY, channel)
+            override fun openStatusColumn() = openColumn(KwakBinaryFormat.COLUMN_STATUS, 0)
+            override fun openIMSColumn(axis: Int) = openColumn(KwakBinaryFormat.COLUMN_IMS, axis)
+        }
+    }
+
+    private fun getCount(type: Byte): Long = columnCounts[type to 0] ?: 0L
+
+    private fun readColumn(type: Byte, index: Int): FloatArray {
+        val count = columnCounts[type to index] ?: return FloatArray(0)
+        val values = FloatArray(count.toInt())
+        openColumn(type, index).use { column ->
+            for (i in values.indices) {
+                values[i] = column.read()
+            }
+        }
+        return values
+    }
+
+    private fun openColumn(type: Byte, index: Int): FloatColumn {
+        val position = columnPositions[type to index]
+            ?: return object : FloatColumn {
+                override fun read(): Float = throw EOFException("no column $type-$index")
+                override fun close() {}
+            }
+        val channel = FileInputStream(file).channel
+        channel.position(position)
+        return BlockColumnReader(LittleEndianInput(channel), channel, sampleScale)
+    }
+
+    private fun readMetadata(input: LittleEndianInput) {
+        kwak.uuidJsonFile = input.getString()
+        kwak.context.ownerId = input.getString()
+
+        val header = kwak.header
+        if (input.getByte().toInt() != 0) {
+            header.deviceInfo = DeviceInformation().apply {
+                bleName = input.getString()
+                hardwareVersion = input.getString()
+                firmwareVersion = input.getString()
+                serialNumber = input.getString()
+            }
+        }
+        val recordingNb = input.getString()
+        header.setRecordingNb(recordingNb.removePrefix("0x").toIntOrNull(16) ?: 0)
+        val nbComments = input.getInt()
+        if (nbComments > 0) {
+            header.comments = List(nbComments) { Comment(input.getLong(), input.getString()) }
+        }
+        header.eegPacketLength = input.getInt()
+        header.sampleRate = input.getInt()
+        header.nbChannels = input.getInt()
+        header.acquisitionLocations = readLocations(input)
+        header.referenceLocations = readLocations(input)
+        header.groundLocations = readLocations(input)
+
+        val recording = kwak.recording
+        recording.recordID = input.getString()
+        recording.recordingType.recordType = EnumRecordingType2.valueOf(input.getString())
+        recording.recordingType.spVersion = input.getString()
+        recording.recordingType.source = input.getString()
+        recording.recordingType.dataType = input.getString()
+        recording.recordingTime = input.getLong()
+        nbPackets = input.getInt()
+        if (input.getByte().toInt() != 0) {
+            recordingErrorData = EEGStreamingErrorCounter().apply {
+                missingFrame = input.getLong()
+                zeroTimeNumber = input.getLong()
+                zeroSampleNumber = input.getLong()
+            }
+        }
+        imsSampleRate = input.getInt()
+        sampleScale = input.getFloat()
+    }
+
+    private fun readLocations(input: LittleEndianInput): List<EnumAcquisitionLocation> {
+        return List(input.getInt()) { EnumAcquisitionLocation.valueOf(input.getString()) }
+    }
+
+    /**
+     * Records where every column starts, the blocks are skipped without being read.
+     */
+    private fun indexColumns(input: LittleEndianInput) {
+        while (true) {
+            val type = input.getByte()
+            if (type == KwakBinaryFormat.COLUMN_END) {
+                return
+            }
+            val index = input.getByte().toInt()
+            val count = input.getLong()
+            columnCounts[type to index] = count
+            columnPositions[type to index] = input.position()
+            var remaining = count
+            while (remaining > 0) {
+                val encoding = input.getByte()
+                val size = input.getInt()
+                if (encoding == KwakBinaryFormat.ENCODING_INT16_RICE) {
+                    input.skip(input.getInt().toLong())
+                } else {
+                    input.skip(size.toLong() * getValueSize(encoding))
+                }
+                remaining -= size
+            }
+        }
+    }
+
+    private class BlockColumnReader(
+        private val input: LittleEndianInput,
+        private val channel: FileChannel,
+        private val sampleScale: Float
+    ) : FloatColumn {
+        private var encoding = KwakBinaryFormat.ENCODING_FLOAT32
+        private var remainingInBlock = 0
+
+        /**
+         * decoded counts of the current [KwakBinaryFormat.ENCODING_INT16_RICE] block
+         */
+        private var counts = IntArray(0)
+        private var encoded = ByteArray(0)
+        private var countIndex = 0
+
+        override fun read(): Float {
+            if (remainingInBlock == 0) {
+                encoding = input.getByte()
+                remainingInBlock = input.getInt()
+                if (encoding == KwakBinaryFormat.ENCODING_INT16_RICE) {
+                    decodeBlock(remainingInBlock, input.getInt())
+                }
+            }
+            remainingInBlock--
+            return when (encoding) {
+                KwakBinaryFormat.ENCODING_INT16 -> toFloat(input.getShort().toInt())
+                KwakBinaryFormat.ENCODING_INT16_RICE -> toFloat(counts[countIndex++])
+                KwakBinaryFormat.ENCODING_FLOAT32 -> input.getFloat()
+                else -> throw IOException("unknown block encoding $encoding")
+            }
+        }
+
+        private fun decodeBlock(size: Int, nbBytes: Int) {
+            if (counts.size < size) {
+                counts = IntArray(size)
+            }
+            if (encoded.size < nbBytes) {
+                encoded = ByteArray(nbBytes)
+            }
+            input.getBytes(encoded, nbBytes)
+            EEGCountCodec.decode(encoded, 0, size, counts)
+            countIndex = 0
+        }
+
+        private fun toFloat(count: Int): Float {
+            return if (count == KwakBinaryFormat.INT16_NAN) Float.NaN else count * sampleScale
+        }
+
+        override fun close() {
+            channel.close()
+        }
+    }
+
+    /**
+     * Buffered little-endian reads over a file channel.
+     */
+    private class LittleEndianInput(private val channel: FileChannel) {
+        private val buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN).apply { flip() }
+
+        fun position(): Long = channel.position() - buffer.remaining()
+
+        fun skip(length: Long) {
+            if (length <= buffer.remaining()) {
+                buffer.position(buffer.position() + length.toInt())
+            } else {
+                channel.position(position() + length)
+                buffer.clear().flip()
+            }
+        }
+
+        fun getByte(): Byte = ensure(1).get()
+
+        fun getShort(): Short = ensure(2).short
+
+        fun getInt(): Int = ensure(4).int
+
+        fun getLong(): Long = ensure(8).long
+
+        fun getFloat(): Float = ensure(4).float
+
+        fun getString(): String {
+            val length = getInt()
+            val bytes = ByteArray(length)
+            getBytes(bytes, length)
+            return String(bytes, Charsets.UTF_8)
+        }
+
+        fun getBytes(bytes: ByteArray, length: Int) {
+            var offset = 0
+            while (offset < length) {
+                val chunk = minOf(ensure(1).remaining(), length - offset)
+                buffer.get(bytes, offset, chunk)
+                offset += chunk
+            }
+        }
+
+        private fun ensure(size: Int): ByteBuffer {
+            if (buffer.remaining() < size) {
+                buffer.compact()
+                while (buffer.position() < size) {
+                    if (channel.read(buffer) < 0) {
+                        throw EOFException("unexpected end of binary kwak file")
+                    }
+                }
+                buffer.flip()
+            }
+            return buffer
+        }
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 64 * 1024
+
+        private fun getValueSize(encoding: Byte): Int {
+            return when (encoding) {
+                KwakBinaryFormat.ENCODING_FLOAT32 -> 4
+                KwakBinaryFormat.ENCODING_INT16 -> 2
+                else -> throw IOException("unknown block encoding $encoding")
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.mybraintech.sdk.core.model
+
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Layout of the binary Kwak files ([EnumKwakFormat.BINARY]). It carries the same data as the JSON layout.
+ *
+ * All the numbers are little-endian, a string is an int32 number of bytes followed by its UTF-8 bytes.
+ *
+ * - "KWAK" magic, int16 [VERSION], int16 reserved
+ * - metadata :
+ *     - string uuidJsonFile, string ownerId
+ *     - int8 1 if there is a device info, then strings productName, hardwareVersion, firmwareVersion, uniqueDeviceIdentifier
+ *     - string recordingNb, int32 number of comments then int64 date and string comment for each of them
+ *     - int32 eegPacketLength, int32 sampRate, int32 nbChannels
+ *     - acquisitionLocation, referencesLocation, groundsLocation : int32 number of locations then one string per location
+ *     - strings recordID, recordType, spVersion, source, dataType
+ *     - int64 recordingTime, int32 nbPackets
+ *     - int8 1 if there are recording error data, then int64 missingEegFrame, zeroTime, zeroSample
+ *     - int32 IMS sampRate, float32 sample scale (value of one raw count, 0 if unknown)
+ * - columns, until a column type [COLUMN_END] :
+ *     - int8 column type, int8 index (channel or axis), int64 number of values
+ *     - the values in blocks of at most [BLOCK_SIZE] : int8 encoding, int32 number of values, then the values.
+ *       A [ENCODING_INT16_RICE] block has an int32 number of bytes before its values.
+ *
+ * With [ENCODING_INT16], the values are the 16 bits raw counts of the headset : value = count * sample scale,
+ * computed in float, and [INT16_NAN] is a missing sample. A block is only written this way when every value
+ * is restored exactly, otherwise it is written with [ENCODING_FLOAT32].
+ * [ENCODING_INT16_RICE] is the same counts compressed by [EEGCountCodec], it is used when it is smaller.
+ */
+internal object KwakBinaryFormat {
+    const val MAGIC = 0x4B41574B // "KWAK"
+    const val VERSION: Short = 2
+
+    const val COLUMN_END: Byte = 0
+    const val COLUMN_EEG: Byte = 1
+    const val COLUMN_QUALITY: Byte = 2
+    const val COLUMN_STATUS: Byte = 3
+    const val COLUMN_IMS: Byte = 4
+
+    const val ENCODING_FLOAT32: Byte = 0
+    const val ENCODING_INT16: Byte = 1
+    const val ENCODING_INT16_RICE: Byte = 2
+
+    const val INT16_NAN = Short.MIN_VALUE.toInt()
+    const val BLOCK_SIZE = 4096
+}
+
+/**
+ * Writes a recording in the binary Kwak format, see [KwakBinaryFormat]. The memory used does not depend
+ * on the recording duration : the columns are read and written block by block.
+ */
+internal class KwakBinaryWriter(private val output: OutputStream) {
+
+    private val buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+    private val block = FloatArray(KwakBinaryFormat.BLOCK_SIZE)
+    private val counts = IntArray(KwakBinaryFormat.BLOCK_SIZE)
+    private val encoded = ByteArray(EEGCountCodec.getMaxEncodedSize(KwakBinaryFormat.BLOCK_SIZE))
+
+    /**
+     * @param sampleScale value of one raw count of the EEG samples, 0 to write them as floats
+     */
+    fun write(
+        kwak: Kwak,
+        columns: KwakColumnSource,
+        recordingErrorData: EEGStreamingErrorCounter?,
+        imsSampleRate: Int,
+        sampleScale: Float
+    ) {
+        writeStart(kwak, columns.getNbPackets(), recordingErrorData, imsSampleRate, sampleScale)
+
+        for (channel in 0 until columns.nbChannels) {
+            columns.openQualityColumn(channel).use {
+                writeColumn(KwakBinaryFormat.COLUMN_QUALITY, channel, columns.getQualityCount(), it, 0f)
+            }
+        }
+        for (channel in 0 until columns.nbChannels) {
+            columns.openEEGColumn(channel).use {
+                writeColumn(KwakBinaryFormat.COLUMN_EEG, channel, columns.getEEGSampleCount(), it, sampleScale)
+            }
+        }
+        if (columns.getImsSampleCount() > 0) {
+            for (axis in 0 until 3) {
+                columns.openIMSColumn(axis).use {
+                    writeColumn(KwakBinaryFormat.COLUMN_IMS, axis, columns.getImsSampleCount(), it, 0f)
+                }
+            }
+        }
+        columns.openStatusColumn().use {
+            writeColumn(KwakBinaryFormat.COLUMN_STATUS, 0, columns.getStatusCount(), it, 0f)
+        }
+        putByte(KwakBinaryFormat.COLUMN_END)
+        flush()
+        output.flush()
+    }
+
+    /**
+     * Writes a file with the metadata of [kwak] and no column, e.g. to keep them next to a recording spool.
+     */
+    fun writeMetadata(kwak: Kwak, imsSampleRate: Int, sampleScale: Float) {
+        writeStart(kwak, 0, null, imsSampleRate, sampleScale)
+        putByte(KwakBinaryFormat.COLUMN_END)
+        flush()
+        output.flush()
+    }
+
+    private fun writeStart(
+        kwak: Kwak,
+        nbPackets: Int,
+        recordingErrorData: EEGStreamingErrorCounter?,
+        imsSampleRate: Int,
+        sampleScale: Float
+    ) {
+        putInt(KwakBinaryFormat.MAGIC)
+        putShort(KwakBinaryFormat.VERSION)
+        putShort(0)
+        writeMetadata(kwak, nbPackets, recordingErrorData, imsSampleRate, sampleScale)
+    }
+
+    private fun writeMetadata(
+        kwak: Kwak,
+        nbPackets: Int,
+        recordingErrorData: EEGStreamingErrorCounter?,
+        imsSampleRate: Int,
+        sampleScale: Float
+    ) {
+        val header = kwak.header
+        putString(kwak.uuidJsonFile)
+        putString(kwak.context.ownerId)
+
+        val device = header.deviceInfo
+        putByte(if (device != null) 1 else 0)
+        if (device != null) {
+            putString(device.bleName)
+            putString(device.hardwareVersion)
+            putString(device.firmwareVersion)
+            putString(device.serialNumber)
+        }
+        putString(header.recordingNb)
+        val comments = header.comments.orEmpty()
+        putInt(comments.size)
+        for (comment in comments) {
+            putLong(comment.timestamp)
+            putString(comment.text)
+        }
+        putInt(header.eegPacketLength)
+        putInt(header.sampleRate)
+        putInt(header.nbChannels)
+        for (locations in listOf(header.acquisitionLocations, header.referenceLocations, header.groundLocations)) {
+            putInt(locations.size)
+            for (location in locations) {
+                putString(location.toString())
+            }
+        }
+
+        val recording = kwak.recording
+        putString(recording.recordID)
+        putString(recording.recordingType.recordType.toString())
+        putString(recording.recordingType.spVersion)
+        putString(recording.recordingType.source)
+        putString(recording.recordingType.dataType)
+        putLong(recording.recordingTime)
+        putInt(nbPackets)
+        putByte(if (recordingErrorData != null) 1 else 0)
+        if (recordingErrorData != null) {
+            putLong(recordingErrorData.missingFrame)
+            putLong(recordingErrorData.zeroTimeNumber)
+            putLong(recordingErrorData.zeroSampleNumber)
+        }
+        putInt(imsSampleRate)
+        putFloat(sampleScale)
+    }
+
+    private fun writeColumn(type: Byte, index: Int, count: Long, column: FloatColumn, sampleScale: Float) {
+        putByte(type)
+        putByte(index.toByte())
+        putLong(count)
+        var remaining = count
+        while (remaining > 0) {
+            val size = minOf(remaining, block.size.toLong()).toInt()
+            for (i in 0 until size) {
+                block[i] = column.read()
+            }
+            writeBlock(size, sampleScale)
+            remaining -= size
+        }
+    }
+
+    private fun writeBlock(size: Int, sampleScale: Float) {
+        if (isInt16Block(size, sampleScale)) {
+            for (i in 0 until size) {
+                val value = block[i]
+                counts[i] = if (value.isNaN()) KwakBinaryFormat.INT16_NAN else Math.round(value / sampleScale)
+            }
+            val encodedSize = EEGCountCodec.encode(counts, size, encoded)
+            if (encodedSize < size * 2) {
+                putByte(KwakBinaryFormat.ENCODING_INT16_RICE)
+                putInt(size)
+                putInt(encodedSize)
+                putBytes(encoded, encodedSize)
+            } else {
+                putByte(KwakBinaryFormat.ENCODING_INT16)
+                putInt(size)
+                for (i in 0 until size) {
+                    putShort(counts[i].toShort())
+                }
+            }
+        } else {
+            putByte(KwakBinaryFormat.ENCODING_FLOAT32)
+            putInt(size)
+            for (i in 0 until size) {
+                putFloat(block[i])
+            }
+        }
+    }
+
+    /**
+     * @return true if every value of the block is a raw count restored exactly by `count * sampleScale`
+     */
+    private fun isInt16Block(size: Int, sampleScale: Float): Boolean {
+        if (sampleScale == 0f) {
+            return false
+        }
+        for (i in 0 until size) {
+            val value = block[i]
+            if (value.isNaN()) {
+                continue
+            }
+            val count = Math.round(value / sampleScale)
+            if (count <= KwakBinaryFormat.INT16_NAN || count > Short.MAX_VALUE
+                || (count * sampleScale).toRawBits() != value.toRawBits()
+            ) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private fun ensure(size: Int) {
+        if (buffer.remaining() < size) {
+            flush()
+        }
+    }
+
+    private fun flush() {
+        output.write(buffer.array(), 0, buffer.position())
+        buffer.clear()
+    }
+
+    private fun putByte(value: Byte) {
+        ensure(1)
+        buffer.put(value)
+    }
+
+    private fun putShort(value: Short) {
+        ensure(2)
+        buffer.putShort(value)
+    }
+
+    private fun putInt(value: Int) {
+        ensure(4)
+        buffer.putInt(value)
+    }
+
+    private fun putLong(value: Long) {
+        ensure(8)
+        buffer.putLong(value)
+    }
+
+    private fun putFloat(value: Float) {
+        ensure(4)
+        buffer.putFloat(value)
+    }
+
+    private fun putString(value: String) {
+        val bytes = value.toByteArray(Charsets.UTF_8)
+        putInt(bytes.size)
+        putBytes(bytes, bytes.size)
+    }
+
+    private fun putBytes(bytes: ByteArray, size: Int) {
+        var offset = 0
+        while (offset < size) {
+            ensure(1)
+            val length = minOf(buffer.remaining(), size - offset)
+            buffer.put(bytes, offset, length)
+            offset += length
+        }
+    }
+
+    companion object {
+        private const val BUFFER_SIZE = 64 * 1024
+    }
+}
@@ -0,0 +1,117 @@
+package com.mybraintech.sdk.core.model
+
+import java.io.Closeable
+
+/**
+ * Sequential reader of one column of a recording.
+ */
+internal interface FloatColumn : Closeable {
+    fun read(): Float
+}
+
+/**
+ * Signals of a recording, column by column, as they are written in a Kwak file whatever its format.
+ * The counts are the number of values to write, each column can be opened several times.
+ */
+internal interface KwakColumnSource {
+
+    val nbChannels: Int
+
+    fun getNbPackets(): Int
+
+    fun getEEGSampleCount(): Long
+
+    /**
+     * number of quality values per channel
+     */
+    fun getQualityCount(): Long
+
+    fun getStatusCount(): Long
+
+    fun getImsSampleCount(): Long
+
+    fun openEEGColumn(channel: Int): FloatColumn
+
+    fun openQualityColumn(channel: Int): FloatColumn
+
+    fun openStatusColumn(): FloatColumn
+
+    /**
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     */
+    fun openIMSColumn(axis: Int): FloatColumn
+}
+
+/**
+ * Columns of a recording kept in memory, the values are read from the packets without copy.
+ */
+internal class PacketListColumns(
+    override val nbChannels: Int,
+    private val hasStatus: Boolean,
+    private val eegPackets: List<MbtEEGPacket>,
+    private val imsBuffer: List<ThreeDimensionalPosition>
+) : KwakColumnSource {
+
+    override fun getNbPackets(): Int = eegPackets.size
+
+    override fun getEEGSampleCount(): Long = eegPackets.sumOf { it.nbSamples.toLong() }
+
+    override fun getQualityCount(): Long = eegPackets.count { it.qualityValues != null }.toLong()
+
+    override fun getStatusCount(): Long {
+        return if (hasStatus) eegPackets.filter { it.hasStatus() }.sumOf { it.nbSamples.toLong() } else 0L
+    }
+
+    override fun getImsSampleCount(): Long = imsBuffer.size.toLong()
+
+    override fun openEEGColumn(channel: Int): FloatColumn {
+        return PacketColumn(eegPackets) { packet, sample -> packet.getSample(channel, sample) }
+    }
+
+    override fun openQualityColumn(channel: Int): FloatColumn {
+        val iterator = eegPackets.asSequence().filter { it.qualityValues != null }.iterator()
+        return object : FloatColumn {
+            override fun read(): Float = iterator.next().getQuality(channel)
+            override fun close() {}
+        }
+    }
+
+    override fun openStatusColumn(): FloatColumn {
+        val packets = if (hasStatus) eegPackets.filter { it.hasStatus() } else emptyList()
+        return PacketColumn(packets) { packet, sample -> packet.getStatus(sample) }
+    }
+
+    override fun openIMSColumn(axis: Int): FloatColumn {
+        val iterator = imsBuffer.iterator()
+        return object : FloatColumn {
+            override fun read(): Float {
+                val position = iterator.next()
+                return when (axis) {
+                    0 -> position.x
+                    1 -> position.y
+                    else -> position.z
+                }
+            }
+
+            override fun close() {}
+        }
+    }
+
+    private class PacketColumn(
+        private val packets: List<MbtEEGPacket>,
+        private val getter: (MbtEEGPacket, Int) -> Float
+    ) : FloatColumn {
+        private var packetIndex = 0
+        private var sample = 0
+
+        override fun read(): Float {
+            while (sample >= packets[packetIndex].nbSamples) {
+                packetIndex++
+                sample = 0
+            }
+            return getter(packets[packetIndex], sample++)
+        }
+
+        override fun close() {}
+    }
+}
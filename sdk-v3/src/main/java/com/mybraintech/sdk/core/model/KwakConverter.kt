@@ -0,0 +1,26 @@
+package com.mybraintech.sdk.core.model
+
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+
+/**
+ * Conversions between the [EnumKwakFormat] of the recording files.
+ */
+object KwakConverter {
+
+    /**
+     * Converts a binary Kwak file to the JSON Kwak layout, no data is lost.
+     *
+     * @return false if the binary file can not be read or the JSON file can not be written
+     */
+    @JvmStatic
+    fun binaryToJson(binaryFile: File, jsonFile: File): Boolean {
+        return try {
+            KwakBinaryReader(binaryFile).writeJson(jsonFile)
+        } catch (e: IOException) {
+            Timber.e(e, "can not read binary kwak file ${binaryFile.name}")
+            false
+        }
+    }
+}
@@ -88,4 +88,13 @@ class KwakHeader {
     fun getBaseHeader() : KwakHeader {
         return KwakHeader()
     }
+
+    fun getHeader(deviceType: EnumMBTDevice): KwakHeader {
+        return when (deviceType) {
+            EnumMBTDevice.HYPERION -> getHyperionHeader()
+            EnumMBTDevice.MELOMIND -> getMelomindHeader()
+            EnumMBTDevice.Q_PLUS -> getQPlusHeader()
+            EnumMBTDevice.UNDEFINED -> getBaseHeader()
+        }
+    }
 }
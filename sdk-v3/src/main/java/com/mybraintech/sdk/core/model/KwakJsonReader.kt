@@ -0,0 +1,409 @@
+package com.mybraintech.sdk.core.model
+
+import com.mybraintech.sdk.core.acquisition.EEGRecordedDatas
+import timber.log.Timber
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * Reads a recording file written in the JSON Kwak layout ([EnumKwakFormat.JSON]), without loading the JSON tree.
+ *
+ * The metadata are read when the reader is created. The signals are indexed at the same time : the position
+ * of the values of every second is kept, so any time range is read without parsing the seconds before it.
+ * The index is saved next to the recording ([getIndexFile]), the next readers of the file only read its
+ * metadata. A second is one EEG packet of [KwakHeader.eegPacketLength] samples.
+ *
+ * @param useIndexFile false to neither read nor write the index file
+ * @throws IOException if the file is not a JSON Kwak file
+ */
+class KwakJsonReader @JvmOverloads constructor(private val file: File, useIndexFile: Boolean = true) {
+
+    val kwak: Kwak = Kwak()
+
+    var nbPackets: Int = 0
+        private set
+
+    var recordingErrorData: EEGStreamingErrorCounter? = null
+        private set
+
+    var imsSampleRate: Int = 0
+        private set
+
+    private class ColumnIndex(val count: Long, val offsets: LongArray)
+
+    /**
+     * key = (column type, index), see [KwakBinaryFormat]
+     */
+    private val columns = hashMapOf<Pair<Byte, Int>, ColumnIndex>()
+    private var isIndexed = false
+
+    init {
+        val indexFile = getIndexFile(file)
+        if (useIndexFile && indexFile.exists()) {
+            isIndexed = readIndex(indexFile)
+        }
+        FileInputStream(file).channel.use {
+            readFile(KwakJsonScanner(it))
+        }
+        if (useIndexFile && !indexFile.exists()) {
+            writeIndex(indexFile)
+        }
+    }
+
+    fun getEEGSampleCount(): Long = getCount(KwakBinaryFormat.COLUMN_EEG)
+
+    fun getImsSampleCount(): Long = getCount(KwakBinaryFormat.COLUMN_IMS)
+
+    /**
+     * @return the number of seconds of EEG, the last one may be shorter
+     */
+    fun getNbSeconds(): Int {
+        val packetLength = kwak.header.eegPacketLength
+        return ((getEEGSampleCount() + packetLength - 1) / packetLength).toInt()
+    }
+
+    fun readEEGChannel(channel: Int): FloatArray = readColumn(KwakBinaryFormat.COLUMN_EEG, channel, 0, getNbSeconds())
+
+    fun readQualities(channel: Int): FloatArray = readColumn(KwakBinaryFormat.COLUMN_QUALITY, channel, 0, getNbSeconds())
+
+    fun readStatuses(): FloatArray = readColumn(KwakBinaryFormat.COLUMN_STATUS, 0, 0, getNbSeconds())
+
+    /**
+     * @param axis 0 for X, 1 for Y, 2 for Z
+     * @return the IMS samples from [fromSecond], for at most [nbSeconds] seconds
+     */
+    @JvmOverloads
+    fun readIMS(axis: Int, fromSecond: Int = 0, nbSeconds: Int = Int.MAX_VALUE): FloatArray {
+        return readColumn(KwakBinaryFormat.COLUMN_IMS, axis, fromSecond, nbSeconds)
+    }
+
+    /**
+     * Reads the EEG packets from [fromSecond], for at most [nbSeconds] seconds.
+     *
+     * The packets share one channel-major array, with their statuses and qualities if the file has them.
+     */
+    @JvmOverloads
+    fun readEEGPackets(fromSecond: Int = 0, nbSeconds: Int = Int.MAX_VALUE): List<MbtEEGPacket> {
+        val totalSeconds = getNbSeconds()
+        require(fromSecond in 0..totalSeconds) { "second $fromSecond is out of the recording of $totalSeconds s" }
+        val lastSecond = (fromSecond + nbSeconds.toLong()).coerceAtMost(totalSeconds.toLong()).toInt()
+        val packetLength = kwak.header.eegPacketLength
+        val nbChannels = kwak.header.nbChannels
+
+        val nbSamples = getRangeSize(KwakBinaryFormat.COLUMN_EEG, 0, fromSecond, nbSeconds)
+        val data = FloatArray(nbChannels * nbSamples)
+        for (channel in 0 until nbChannels) {
+            readValues(KwakBinaryFormat.COLUMN_EEG, channel, fromSecond, data, channel * nbSamples, nbSamples)
+        }
+        val statuses = readColumn(KwakBinaryFormat.COLUMN_STATUS, 0, fromSecond, nbSeconds).takeIf { it.size == nbSamples }
+        val qualities = Array(nbChannels) { readColumn(KwakBinaryFormat.COLUMN_QUALITY, it, fromSecond, nbSeconds) }
+
+        return List(lastSecond - fromSecond) { packet ->
+            val offset = packet * packetLength
+            MbtEEGPacket(
+                data, offset, nbSamples, nbChannels, minOf(packetLength, nbSamples - offset), statuses, offset
+            ).apply {
+                if (qualities.all { packet < it.size }) {
+                    qualityValues = FloatArray(nbChannels) { qualities[it][packet] }
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as [readEEGPackets], e.g. for [com.mybraintech.sdk.MbtClient.eegCalibration].
+     */
+    @JvmOverloads
+    fun readEEG(fromSecond: Int = 0, nbSeconds: Int = Int.MAX_VALUE): EEGRecordedDatas {
+        return EEGRecordedDatas().apply { eegPackets = readEEGPackets(fromSecond, nbSeconds) }
+    }
+
+    private fun getCount(type: Byte): Long = columns[type to 0]?.count ?: 0L
+
+    /**
+     * @return the values of the column from [fromSecond], for at most [nbSeconds] seconds
+     */
+    private fun readColumn(type: Byte, index: Int, fromSecond: Int, nbSeconds: Int): FloatArray {
+        val values = FloatArray(getRangeSize(type, index, fromSecond, nbSeconds))
+        readValues(type, index, fromSecond, values, 0, values.size)
+        return values
+    }
+
+    /**
+     * @return the number of values of the column from [fromSecond], for at most [nbSeconds] seconds
+     */
+    private fun getRangeSize(type: Byte, index: Int, fromSecond: Int, nbSeconds: Int): Int {
+        val column = columns[type to index] ?: return 0
+        val stride = getStride(type)
+        val first = fromSecond.toLong() * stride
+        val last = minOf(column.count, (fromSecond.toLong() + nbSeconds) * stride)
+        return (last - first).coerceAtLeast(0).toInt()
+    }
+
+    private fun readValues(type: Byte, index: Int, fromSecond: Int, dst: FloatArray, dstOffset: Int, count: Int) {
+        val column = columns[type to index]
+        if (column == null || count == 0) {
+            return
+        }
+        FileInputStream(file).channel.use {
+            val scanner = KwakJsonScanner(it)
+            scanner.seek(column.offsets[fromSecond])
+            for (i in 0 until count) {
+                if (i > 0) {
+                    scanner.expect(',')
+                }
+                dst[dstOffset + i] = scanner.nextFloat()
+            }
+        }
+    }
+
+    /**
+     * @return the number of values of one second of the column
+     */
+    private fun getStride(type: Byte): Int {
+        return when (type) {
+            KwakBinaryFormat.COLUMN_QUALITY -> 1
+            KwakBinaryFormat.COLUMN_IMS -> maxOf(1, imsSampleRate)
+            else -> maxOf(1, kwak.header.eegPacketLength)
+        }
+    }
+
+    private fun readFile(scanner: KwakJsonScanner) {
+        scanner.beginObject()
+        while (scanner.hasNext()) {
+            when (scanner.nextName()) {
+                "uuidJsonFile" -> kwak.uuidJsonFile = scanner.nextString()
+                "context" -> readObject(scanner) { name ->
+                    if (name == "ownerId") kwak.context.ownerId = scanner.nextString() else scanner.skipValue()
+                }
+                "header" -> readHeader(scanner)
+                "recording" -> if (!readRecording(scanner)) return
+                else -> scanner.skipValue()
+            }
+        }
+        scanner.endObject()
+    }
+
+    private fun readHeader(scanner: KwakJsonScanner) {
+        val header = kwak.header
+        readObject(scanner) { name ->
+            when (name) {
+                "deviceInfo" -> {
+                    val device = DeviceInformation()
+                    readObject(scanner) {
+                        when (it) {
+                            "productName" -> device.bleName = scanner.nextStringOrNull().orEmpty()
+                            "hardwareVersion" -> device.hardwareVersion = scanner.nextStringOrNull().orEmpty()
+                            "firmwareVersion" -> device.firmwareVersion = scanner.nextStringOrNull().orEmpty()
+                            "uniqueDeviceIdentifier" -> device.serialNumber = scanner.nextStringOrNull().orEmpty()
+                            else -> scanner.skipValue()
+                        }
+                    }
+                    header.deviceInfo = device
+                }
+                "recordingNb" -> header.setRecordingNb(scanner.nextString().removePrefix("0x").toIntOrNull(16) ?: 0)
+                "comments" -> {
+                    val comments = ArrayList<Comment>()
+                    scanner.beginArray()
+                    while (scanner.hasNext()) {
+                        var date = 0L
+                        var text = ""
+                        readObject(scanner) {
+                            when (it) {
+                                "date" -> date = scanner.nextLong()
+                                "comment" -> text = scanner.nextStringOrNull().orEmpty()
+                                else -> scanner.skipValue()
+                            }
+                        }
+                        comments.add(Comment(date, text))
+                    }
+                    scanner.endArray()
+                    header.comments = comments
+                }
+                "eegPacketLength" -> header.eegPacketLength = scanner.nextInt()
+                "sampRate" -> header.sampleRate = scanner.nextInt()
+                "nbChannels" -> header.nbChannels = scanner.nextInt()
+                "acquisitionLocation" -> header.acquisitionLocations = readLocations(scanner)
+                "referencesLocation" -> header.referenceLocations = readLocations(scanner)
+                "groundsLocation" -> header.groundLocations = readLocations(scanner)
+                else -> scanner.skipValue()
+            }
+        }
+    }
+
+    /**
+     * Reads the recording metadata, and indexes the signals if the index was not read from the index file.
+     *
+     * @return false if the reading stopped at the signals, as they are already indexed
+     */
+    private fun readRecording(scanner: KwakJsonScanner): Boolean {
+        val recording = kwak.recording
+        scanner.beginObject()
+        while (scanner.hasNext()) {
+            val name = scanner.nextName()
+            if (isIndexed && (name == "qualities" || name == "channelData" || name == "ims" || name == "statusData")) {
+                return false
+            }
+            when (name) {
+                "recordID" -> recording.recordID = scanner.nextString()
+                "recordingType" -> readObject(scanner) {
+                    val type = recording.recordingType
+                    when (it) {
+                        "recordType" -> type.recordType = EnumRecordingType2.valueOf(scanner.nextString())
+                        "spVersion" -> type.spVersion = scanner.nextString()
+                        "source" -> type.source = scanner.nextString()
+                        "dataType" -> type.dataType = scanner.nextString()
+                        else -> scanner.skipValue()
+                    }
+                }
+                "recordingTime" -> recording.recordingTime = scanner.nextLong()
+                "nbPackets" -> nbPackets = scanner.nextInt()
+                "recordingErrorData" -> {
+                    val errors = EEGStreamingErrorCounter()
+                    readObject(scanner) {
+                        when (it) {
+                            "missingEegFrame" -> errors.missingFrame = scanner.nextLong()
+                            "zeroTime" -> errors.zeroTimeNumber = scanner.nextLong()
+                            "zeroSample" -> errors.zeroSampleNumber = scanner.nextLong()
+                            else -> scanner.skipValue()
+                        }
+                    }
+                    recordingErrorData = errors
+                }
+                "qualities" -> indexColumns(scanner, KwakBinaryFormat.COLUMN_QUALITY)
+                "channelData" -> indexColumns(scanner, KwakBinaryFormat.COLUMN_EEG)
+                "ims" -> readObject(scanner) {
+                    when (it) {
+                        "sampRate" -> imsSampleRate = scanner.nextInt()
+                        "imsData" -> indexColumns(scanner, KwakBinaryFormat.COLUMN_IMS)
+                        else -> scanner.skipValue()
+                    }
+                }
+                "statusData" -> indexColumn(scanner, KwakBinaryFormat.COLUMN_STATUS, 0)
+                else -> scanner.skipValue()
+            }
+        }
+        scanner.endObject()
+        return true
+    }
+
+    private fun readLocations(scanner: KwakJsonScanner): List<EnumAcquisitionLocation> {
+        val locations = ArrayList<EnumAcquisitionLocation>()
+        scanner.beginArray()
+        while (scanner.hasNext()) {
+            locations.add(EnumAcquisitionLocation.valueOf(scanner.nextString()))
+        }
+        scanner.endArray()
+        return locations
+    }
+
+    private inline fun readObject(scanner: KwakJsonScanner, readValue: (name: String) -> Unit) {
+        scanner.beginObject()
+        while (scanner.hasNext()) {
+            readValue(scanner.nextName())
+        }
+        scanner.endObject()
+    }
+
+    /**
+     * Indexes an array of columns, one per channel or axis.
+     */
+    private fun indexColumns(scanner: KwakJsonScanner, type: Byte) {
+        scanner.beginArray()
+        var index = 0
+        while (scanner.hasNext()) {
+            indexColumn(scanner, type, index++)
+        }
+        scanner.endArray()
+    }
+
+    /**
+     * Keeps the position of the first value of every second, the values are skipped without being parsed.
+     */
+    private fun indexColumn(scanner: KwakJsonScanner, type: Byte, index: Int) {
+        val stride = getStride(type)
+        val offsets = ArrayList<Long>()
+        var count = 0L
+        scanner.beginArray()
+        while (scanner.hasNext()) {
+            scanner.peek()
+            if (count % stride == 0L) {
+                offsets.add(scanner.position())
+            }
+            scanner.skipScalar()
+            count++
+        }
+        scanner.endArray()
+        columns[type to index] = ColumnIndex(count, offsets.toLongArray())
+    }
+
+    /**
+     * @return false if the index file is not the one of this version of the recording file
+     */
+    private fun readIndex(indexFile: File): Boolean {
+        return try {
+            DataInputStream(BufferedInputStream(FileInputStream(indexFile))).use { input ->
+                if (input.readInt() != INDEX_MAGIC || input.readInt() != INDEX_VERSION ||
+                    input.readLong() != file.length() || input.readLong() != file.lastModified()
+                ) {
+                    indexFile.delete()
+                    return false
+                }
+                imsSampleRate = input.readInt()
+                repeat(input.readInt()) {
+                    val type = input.readByte()
+                    val index = input.readInt()
+                    val count = input.readLong()
+                    val offsets = LongArray(input.readInt()) { input.readLong() }
+                    columns[type to index] = ColumnIndex(count, offsets)
+                }
+            }
+            true
+        } catch (e: IOException) {
+            Timber.w(e, "invalid kwak index file ${indexFile.name}")
+            columns.clear()
+            indexFile.delete()
+            false
+        }
+    }
+
+    private fun writeIndex(indexFile: File) {
+        try {
+            DataOutputStream(BufferedOutputStream(FileOutputStream(indexFile))).use { output ->
+                output.writeInt(INDEX_MAGIC)
+                output.writeInt(INDEX_VERSION)
+                output.writeLong(file.length())
+                output.writeLong(file.lastModified())
+                output.writeInt(imsSampleRate)
+                output.writeInt(columns.size)
+                for ((key, column) in columns) {
+                    output.writeByte(key.first.toInt())
+                    output.writeInt(key.second)
+                    output.writeLong(column.count)
+                    output.writeInt(column.offsets.size)
+                    column.offsets.forEach { output.writeLong(it) }
+                }
+            }
+        } catch (e: IOException) {
+            Timber.w(e, "can not write kwak index file ${indexFile.name}")
+            indexFile.delete()
+        }
+    }
+
+    companion object {
+        private const val INDEX_MAGIC = 0x4B574958 // "KWIX"
+        private const val INDEX_VERSION = 1
+
+        /**
+         * @return the index file of a JSON Kwak file : `record.json` gives `record.json.idx`
+         */
+        @JvmStatic
+        fun getIndexFile(jsonFile: File): File = File(jsonFile.path + ".idx")
+    }
+}
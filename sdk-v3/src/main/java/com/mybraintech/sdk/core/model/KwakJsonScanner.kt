@@ -0,0 +1,346 @@
+package com.mybraintech.sdk.core.model
+
+import java.io.EOFException
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Reads the JSON tokens of a file straight from its bytes, with the position of every token, so the
+ * signals of a JSON Kwak file can be indexed and read from any value without parsing the whole file.
+ *
+ * The numbers are parsed into primitive floats : the value of a number text is cached, the texts of a
+ * recording are mostly the same few thousand raw counts.
+ */
+internal class KwakJsonScanner(private val channel: FileChannel) {
+
+    private val bytes = ByteArray(BUFFER_SIZE)
+    private val wrapped = ByteBuffer.wrap(bytes)
+    private var start = 0
+    private var end = 0
+
+    /**
+     * position in the file of bytes[0]
+     */
+    private var bufferPosition = channel.position()
+
+    private val floatCache = FloatTextCache()
+    private var text = ByteArray(64)
+
+    /**
+     * position in the file of the next byte to read
+     */
+    fun position(): Long = bufferPosition + start
+
+    fun seek(position: Long) {
+        channel.position(position)
+        bufferPosition = position
+        start = 0
+        end = 0
+    }
+
+    /**
+     * @return the next byte that is not a whitespace, without reading it, -1 at the end of the file
+     */
+    fun peek(): Int {
+        while (true) {
+            if (start == end && !fill(1)) {
+                return -1
+            }
+            val byte = bytes[start].toInt()
+            if (byte == ' '.code || byte == '\n'.code || byte == '\r'.code || byte == '\t'.code) {
+                start++
+            } else {
+                return byte
+            }
+        }
+    }
+
+    fun expect(c: Char) {
+        val byte = peek()
+        if (byte != c.code) {
+            throw IOException("expected '$c' at ${position()} but was ${describe(byte)}")
+        }
+        start++
+    }
+
+    fun beginObject() = expect('{')
+
+    fun endObject() = expect('}')
+
+    fun beginArray() = expect('[')
+
+    fun endArray() = expect(']')
+
+    /**
+     * @return true if the current object or array has another element, its comma is read
+     */
+    fun hasNext(): Boolean {
+        val byte = peek()
+        if (byte == ','.code) {
+            start++
+            return true
+        }
+        return byte != '}'.code && byte != ']'.code && byte != -1
+    }
+
+    fun nextName(): String {
+        val name = nextString()
+        expect(':')
+        return name
+    }
+
+    fun nextString(): String {
+        expect('"')
+        var length = 0
+        val builder = StringBuilder()
+        while (true) {
+            if (start == end && !fill(1)) {
+                throw EOFException("unterminated string")
+            }
+            val byte = bytes[start++]
+            if (byte == '"'.code.toByte()) {
+                builder.append(String(text, 0, length, Charsets.UTF_8))
+                return builder.toString()
+            }
+            if (byte == '\\'.code.toByte()) {
+                builder.append(String(text, 0, length, Charsets.UTF_8))
+                length = 0
+                builder.append(readEscape())
+                continue
+            }
+            if (length == text.size) {
+                text = text.copyOf(length * 2)
+            }
+            text[length++] = byte
+        }
+    }
+
+    /**
+     * @return the string, or null for a JSON null
+     */
+    fun nextStringOrNull(): String? {
+        if (peek() == 'n'.code) {
+            expectLiteral(NULL)
+            return null
+        }
+        return nextString()
+    }
+
+    fun nextLong(): Long {
+        val length = readNumber()
+        return String(text, 0, length, Charsets.US_ASCII).toLong()
+    }
+
+    fun nextInt(): Int = nextLong().toInt()
+
+    /**
+     * @return the number, NaN for a JSON null
+     */
+    fun nextFloat(): Float {
+        if (peek() == 'n'.code) {
+            expectLiteral(NULL)
+            return Float.NaN
+        }
+        if (!fill(MAX_NUMBER_LENGTH) && start == end) {
+            throw EOFException("expected a number")
+        }
+        var length = 0
+        while (start + length < end && isNumberByte(bytes[start + length])) {
+            length++
+        }
+        if (length == 0 || length > MAX_NUMBER_LENGTH) {
+            throw IOException("invalid number at ${position()}")
+        }
+        val value = floatCache.parse(bytes, start, length)
+        start += length
+        return value
+    }
+
+    /**
+     * Skips a number or a literal, without parsing it.
+     */
+    fun skipScalar() {
+        while (true) {
+            if (start == end && !fill(1)) {
+                return
+            }
+            val byte = bytes[start]
+            if (byte == ','.code.toByte() || byte == ']'.code.toByte() || byte == '}'.code.toByte() ||
+                byte <= ' '.code.toByte()
+            ) {
+                return
+            }
+            start++
+        }
+    }
+
+    fun skipValue() {
+        when (peek()) {
+            '{'.code -> {
+                beginObject()
+                while (hasNext()) {
+                    nextName()
+                    skipValue()
+                }
+                endObject()
+            }
+            '['.code -> {
+                beginArray()
+                while (hasNext()) {
+                    skipValue()
+                }
+                endArray()
+            }
+            '"'.code -> nextString()
+            -1 -> throw EOFException("unexpected end of json")
+            else -> skipScalar()
+        }
+    }
+
+    private fun readNumber(): Int {
+        peek()
+        var length = 0
+        while (true) {
+            if (start == end && !fill(1)) {
+                break
+            }
+            val byte = bytes[start]
+            if (!isNumberByte(byte)) {
+                break
+            }
+            if (length == text.size) {
+                text = text.copyOf(length * 2)
+            }
+            text[length++] = byte
+            start++
+        }
+        if (length == 0) {
+            throw IOException("expected a number at ${position()}")
+        }
+        return length
+    }
+
+    private fun readEscape(): Char {
+        if (!fill(1)) {
+            throw EOFException("unterminated escape")
+        }
+        return when (val c = bytes[start++].toInt().toChar()) {
+            'b' -> '\b'
+            't' -> '\t'
+            'n' -> '\n'
+            'r' -> '\r'
+            'f' -> '\u000C'
+            'u' -> {
+                if (!fill(4)) {
+                    throw EOFException("unterminated escape")
+                }
+                val code = String(bytes, start, 4, Charsets.US_ASCII).toInt(16)
+                start += 4
+                code.toChar()
+            }
+            else -> c
+        }
+    }
+
+    private fun expectLiteral(literal: ByteArray) {
+        peek()
+        if (!fill(literal.size)) {
+            throw EOFException("unexpected end of json")
+        }
+        for (i in literal.indices) {
+            if (bytes[start + i] != literal[i]) {
+                throw IOException("invalid literal at ${position()}")
+            }
+        }
+        start += literal.size
+    }
+
+    /**
+     * Reads the file until at least [min] bytes are buffered.
+     *
+     * @return false if the end of the file is reached before
+     */
+    private fun fill(min: Int): Boolean {
+        if (end - start >= min) {
+            return true
+        }
+        if (start > 0) {
+            System.arraycopy(bytes, start, bytes, 0, end - start)
+            bufferPosition += start
+            end -= start
+            start = 0
+        }
+        while (end < min) {
+            wrapped.limit(bytes.size).position(end)
+            val read = channel.read(wrapped)
+            if (read < 0) {
+                return false
+            }
+            end += read
+        }
+        return true
+    }
+
+    private fun describe(byte: Int): String = if (byte < 0) "end of file" else "'${byte.toChar()}'"
+
+    private fun isNumberByte(byte: Byte): Boolean {
+        val c = byte.toInt()
+        return (c >= '0'.code && c <= '9'.code) || c == '-'.code || c == '.'.code || c == 'E'.code ||
+                c == 'e'.code || c == '+'.code
+    }
+
+    /**
+     * Open addressing table from the text of a number, at most 16 bytes, to its value.
+     */
+    private class FloatTextCache {
+        private val keys = LongArray(2 * CACHE_SIZE)
+        private val values = FloatArray(CACHE_SIZE)
+        private var size = 0
+
+        fun parse(bytes: ByteArray, offset: Int, length: Int): Float {
+            if (length > 16) {
+                return String(bytes, offset, length, Charsets.US_ASCII).toFloat()
+            }
+            var low = 0L
+            var high = 0L
+            for (i in 0 until length) {
+                val byte = bytes[offset + i].toLong() and 0xFF
+                if (i < 8) {
+                    low = low or (byte shl (8 * i))
+                } else {
+                    high = high or (byte shl (8 * (i - 8)))
+                }
+            }
+            var slot = (((low * HASH) xor high) ushr (64 - CACHE_BITS)).toInt()
+            while (true) {
+                val key = keys[2 * slot]
+                if (key == 0L) {
+                    break
+                }
+                if (key == low && keys[2 * slot + 1] == high) {
+                    return values[slot]
+                }
+                slot = (slot + 1) and (CACHE_SIZE - 1)
+            }
+            val value = String(bytes, offset, length, Charsets.US_ASCII).toFloat()
+            if (size < MAX_CACHED) {
+                keys[2 * slot] = low
+                keys[2 * slot + 1] = high
+                values[slot] = value
+                size++
+            }
+            return value
+        }
+    }
+
+    private companion object {
+        const val BUFFER_SIZE = 64 * 1024
+        const val MAX_NUMBER_LENGTH = 32
+        const val CACHE_BITS = 16
+        const val CACHE_SIZE = 1 shl CACHE_BITS
+        const val MAX_CACHED = CACHE_SIZE * 3 / 4
+        const val HASH = -0x61c8864680b583ebL
+        val NULL = "null".toByteArray(Charsets.US_ASCII)
+    }
+}
@@ -0,0 +1,356 @@
+package com.mybraintech.sdk.core.model
+
+import java.io.OutputStream
+
+/**
+ * Writes the JSON Kwak layout ([EnumKwakFormat.JSON]) column by column, byte for byte as
+ * [android.util.JsonWriter] wrote it : compact, NaN values as null, numbers as [Float.toString].
+ *
+ * The values are written as UTF-8 bytes in a large buffer, without boxing them. The text of a value is
+ * computed once and cached when the value is a raw count of the headset (value = count * [sampleScale]) or a
+ * small integer (statuses), which covers nearly all the samples.
+ *
+ * @param sampleScale value of one raw count of the EEG samples, 0 if unknown
+ */
+internal class KwakJsonWriter(private val output: OutputStream, private val sampleScale: Float) {
+
+    private val buffer = ByteArray(BUFFER_SIZE)
+    private var position = 0
+
+    /**
+     * for each open object or array, true until its first element is written
+     */
+    private val isEmpty = BooleanArray(MAX_DEPTH)
+    private var depth = 0
+    private var hasName = false
+
+    private val countTexts = if (sampleScale > 0f) arrayOfNulls<ByteArray>(COUNT_RANGE) else null
+    private val integerTexts = arrayOfNulls<ByteArray>(2 * MAX_CACHED_INTEGER + 1)
+
+    /**
+     * @param recordingErrorData null if the error counters are not known, they are not written
+     * @param imsSampleRate written with the IMS signals, if there are any
+     */
+    fun write(
+        kwak: Kwak,
+        columns: KwakColumnSource,
+        recordingErrorData: EEGStreamingErrorCounter?,
+        imsSampleRate: Int
+    ) {
+        writeHeader(kwak, columns.getNbPackets(), recordingErrorData)
+
+        name("qualities")
+        beginArray()
+        for (channel in 0 until columns.nbChannels) {
+            columns.openQualityColumn(channel).use { writeColumn(it, columns.getQualityCount()) }
+        }
+        endArray()
+
+        name("channelData")
+        beginArray()
+        for (channel in 0 until columns.nbChannels) {
+            columns.openEEGColumn(channel).use { writeColumn(it, columns.getEEGSampleCount()) }
+        }
+        endArray()
+
+        val nbIms = columns.getImsSampleCount()
+        if (nbIms > 0) {
+            name("ims")
+            beginObject()
+            name("sampRate")
+            value(imsSampleRate.toLong())
+            name("imsData")
+            beginArray()
+            for (axis in 0 until 3) {
+                columns.openIMSColumn(axis).use { writeColumn(it, nbIms) }
+            }
+            endArray()
+            endObject()
+        }
+
+        name("statusData")
+        columns.openStatusColumn().use { writeColumn(it, columns.getStatusCount()) }
+
+        endObject() // recording
+        endObject() // main object
+        flush()
+    }
+
+    /**
+     * Writes everything before the signals : the main object is opened, then the context, the header
+     * and the "recording" object, which is left open.
+     */
+    private fun writeHeader(kwak: Kwak, nbPackets: Int, recordingErrorData: EEGStreamingErrorCounter?) {
+        val header = kwak.header
+        beginObject()
+        name("uuidJsonFile")
+        value(kwak.uuidJsonFile)
+
+        name("context")
+        beginObject()
+        name("ownerId")
+        value(kwak.context.ownerId)
+        endObject()
+
+        name("header")
+        beginObject()
+        name("deviceInfo")
+        beginObject()
+        val device = header.deviceInfo ?: throw IllegalStateException("device info not found")
+        name("productName")
+        value(device.bleName)
+        name("hardwareVersion")
+        value(device.hardwareVersion)
+        name("firmwareVersion")
+        value(device.firmwareVersion)
+        name("uniqueDeviceIdentifier")
+        value(device.serialNumber)
+        endObject()
+
+        name("recordingNb")
+        value(header.recordingNb)
+        val comments = header.comments
+        if (!comments.isNullOrEmpty()) {
+            name("comments")
+            beginArray()
+            for (comment in comments) {
+                beginObject()
+                name("date")
+                value(comment.timestamp)
+                name("comment")
+                value(comment.text)
+                endObject()
+            }
+            endArray()
+        }
+        name("eegPacketLength")
+        value(header.eegPacketLength.toLong())
+        name("sampRate")
+        value(header.sampleRate.toLong())
+        name("nbChannels")
+        value(header.nbChannels.toLong())
+        writeLocations("acquisitionLocation", header.acquisitionLocations)
+        writeLocations("referencesLocation", header.referenceLocations)
+        writeLocations("groundsLocation", header.groundLocations)
+        endObject()
+
+        val recording = kwak.recording
+        name("recording")
+        beginObject()
+        name("recordID")
+        value(recording.recordID)
+        name("recordingType")
+        beginObject()
+        name("recordType")
+        value(recording.recordingType.recordType.toString())
+        name("spVersion")
+        value(recording.recordingType.spVersion)
+        name("source")
+        value(recording.recordingType.source)
+        name("dataType")
+        value(recording.recordingType.dataType)
+        endObject()
+        name("recordingTime")
+        value(recording.recordingTime)
+        name("nbPackets")
+        value(nbPackets.toLong())
+
+        if (recordingErrorData != null) {
+            name("recordingErrorData")
+            beginObject()
+            name("missingEegFrame")
+            value(recordingErrorData.missingFrame)
+            name("zeroTime")
+            value(recordingErrorData.zeroTimeNumber)
+            name("zeroSample")
+            value(recordingErrorData.zeroSampleNumber)
+            endObject()
+        }
+    }
+
+    private fun writeLocations(key: String, locations: List<EnumAcquisitionLocation>) {
+        name(key)
+        beginArray()
+        for (location in locations) {
+            value(location.toString())
+        }
+        endArray()
+    }
+
+    /**
+     * Writes the first [count] values of the column as an array.
+     */
+    private fun writeColumn(column: FloatColumn, count: Long) {
+        beginArray()
+        for (i in 0 until count) {
+            if (i > 0) {
+                writeByte(COMMA)
+            }
+            writeFloat(column.read())
+        }
+        endArray()
+    }
+
+    private fun writeFloat(value: Float) {
+        if (value.isNaN()) {
+            writeBytes(NULL)
+            return
+        }
+        require(!value.isInfinite()) { "Numeric values must be finite, but was $value" }
+        val text = getCachedText(value)
+        if (text != null) {
+            writeBytes(text)
+        } else {
+            writeAscii(value.toString())
+        }
+    }
+
+    /**
+     * @return the text of [value] if it is a small integer or a raw count, null otherwise
+     */
+    private fun getCachedText(value: Float): ByteArray? {
+        val bits = value.toRawBits()
+        val integer = value.toInt()
+        if (integer >= -MAX_CACHED_INTEGER && integer <= MAX_CACHED_INTEGER && integer.toFloat().toRawBits() == bits) {
+            val index = integer + MAX_CACHED_INTEGER
+            return integerTexts[index] ?: value.toString().toByteArray(Charsets.US_ASCII).also { integerTexts[index] = it }
+        }
+        val texts = countTexts ?: return null
+        val count = Math.round(value / sampleScale)
+        if (count < Short.MIN_VALUE || count > Short.MAX_VALUE || (count * sampleScale).toRawBits() != bits) {
+            return null
+        }
+        val index = count - Short.MIN_VALUE
+        return texts[index] ?: value.toString().toByteArray(Charsets.US_ASCII).also { texts[index] = it }
+    }
+
+    private fun beginObject() = open(OPEN_OBJECT)
+
+    private fun endObject() = close(CLOSE_OBJECT)
+
+    private fun beginArray() = open(OPEN_ARRAY)
+
+    private fun endArray() = close(CLOSE_ARRAY)
+
+    private fun open(bracket: Byte) {
+        beforeValue()
+        writeByte(bracket)
+        isEmpty[depth++] = true
+    }
+
+    private fun close(bracket: Byte) {
+        depth--
+        writeByte(bracket)
+    }
+
+    private fun name(name: String) {
+        beforeElement()
+        writeString(name)
+        writeByte(COLON)
+        hasName = true
+    }
+
+    private fun value(value: String?) {
+        beforeValue()
+        if (value == null) {
+            writeBytes(NULL)
+        } else {
+            writeString(value)
+        }
+    }
+
+    private fun value(value: Long) {
+        beforeValue()
+        writeAscii(value.toString())
+    }
+
+    private fun beforeValue() {
+        if (hasName) {
+            hasName = false
+        } else if (depth > 0) {
+            beforeElement()
+        }
+    }
+
+    private fun beforeElement() {
+        if (!isEmpty[depth - 1]) {
+            writeByte(COMMA)
+        }
+        isEmpty[depth - 1] = false
+    }
+
+    /**
+     * Same escaping as [android.util.JsonWriter].
+     */
+    private fun writeString(value: String) {
+        val escaped = StringBuilder(value.length + 2)
+        escaped.append('"')
+        for (c in value) {
+            when {
+                c == '"' || c == '\\' -> escaped.append('\\').append(c)
+                c == '\t' -> escaped.append("\\t")
+                c == '\b' -> escaped.append("\\b")
+                c == '\n' -> escaped.append("\\n")
+                c == '\r' -> escaped.append("\\r")
+                c == '\u000C' -> escaped.append("\\f")
+                c <= '\u001F' || c == '\u2028' || c == '\u2029' -> escaped.append(String.format("\\u%04x", c.code))
+                else -> escaped.append(c)
+            }
+        }
+        escaped.append('"')
+        writeBytes(escaped.toString().toByteArray(Charsets.UTF_8))
+    }
+
+    private fun writeAscii(text: String) {
+        if (position + text.length > buffer.size) {
+            flushBuffer()
+        }
+        for (c in text) {
+            buffer[position++] = c.code.toByte()
+        }
+    }
+
+    private fun writeBytes(bytes: ByteArray) {
+        if (position + bytes.size > buffer.size) {
+            flushBuffer()
+            if (bytes.size > buffer.size) {
+                output.write(bytes)
+                return
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.size)
+        position += bytes.size
+    }
+
+    private fun writeByte(byte: Byte) {
+        if (position == buffer.size) {
+            flushBuffer()
+        }
+        buffer[position++] = byte
+    }
+
+    private fun flushBuffer() {
+        output.write(buffer, 0, position)
+        position = 0
+    }
+
+    private fun flush() {
+        flushBuffer()
+        output.flush()
+    }
+
+    private companion object {
+        const val BUFFER_SIZE = 256 * 1024
+        const val MAX_DEPTH = 8
+        const val MAX_CACHED_INTEGER = 1024
+        const val COUNT_RANGE = 1 shl 16
+
+        val COMMA = ','.code.toByte()
+        val COLON = ':'.code.toByte()
+        val OPEN_OBJECT = '{'.code.toByte()
+        val CLOSE_OBJECT = '}'.code.toByte()
+        val OPEN_ARRAY = '['.code.toByte()
+        val CLOSE_ARRAY = ']'.code.toByte()
+        val NULL = "null".toByteArray(Charsets.US_ASCII)
+    }
+}
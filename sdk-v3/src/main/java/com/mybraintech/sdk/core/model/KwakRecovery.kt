@@ -0,0 +1,60 @@
+package com.mybraintech.sdk.core.model
+
+import timber.log.Timber
+import java.io.File
+import java.io.IOException
+
+/**
+ * Rebuilds the Kwak files of the recordings that were not saved, e.g. because the app was killed while
+ * recording with [RecordingOption.isStreamingEnabled]. It should be called on the next start, before recording
+ * again in the same directory.
+ */
+object KwakRecovery {
+
+    /**
+     * @return the spool directories left in [directory] by the recordings that were not saved
+     */
+    @JvmStatic
+    fun findInterruptedRecordings(directory: File): List<File> {
+        return directory.listFiles()?.filter { KwakSpool.isSpoolDirectory(it) }.orEmpty()
+    }
+
+    /**
+     * Writes the Kwak file of an interrupted recording where it would have been saved, with the packets
+     * written before the interruption, then deletes the spool. The recording error counters are not known,
+     * they are not written.
+     *
+     * @param spoolDirectory one of [findInterruptedRecordings]
+     * @return the Kwak file, or null if the recording can not be recovered : the spool is kept
+     */
+    @JvmStatic
+    @JvmOverloads
+    fun recover(spoolDirectory: File, format: EnumKwakFormat = EnumKwakFormat.JSON): File? {
+        val metadata: KwakBinaryReader
+        val spool: KwakSpool
+        try {
+            metadata = KwakBinaryReader(KwakSpool.getMetadataFile(spoolDirectory))
+            spool = KwakSpool.reopen(spoolDirectory, metadata.kwak.header.nbChannels)
+        } catch (e: IOException) {
+            Timber.e(e, "can not open recording spool ${spoolDirectory.path}")
+            return null
+        }
+
+        // same length for the EEG and the IMS, as when a recording is stopped
+        val imsSampleRate = metadata.imsSampleRate
+        if (spool.eegPacketCount > 0 && spool.imsSampleCount > 0 && imsSampleRate > 0) {
+            val nbSeconds = minOf(spool.eegPacketCount.toLong(), spool.imsSampleCount / imsSampleRate)
+            spool.trim(nbSeconds.toInt(), nbSeconds * imsSampleRate)
+        }
+
+        val outputFile = KwakSpool.getOutputFile(spoolDirectory)
+        val isOk = metadata.kwak.serialize(spool, null, format, outputFile, imsSampleRate, metadata.sampleScale)
+        if (!isOk) {
+            Timber.e("can not write recovered recording ${outputFile.path}")
+            return null
+        }
+        Timber.i("recovered ${spool.getNbPackets()} packets in ${outputFile.path}")
+        spool.delete()
+        return outputFile
+    }
+}
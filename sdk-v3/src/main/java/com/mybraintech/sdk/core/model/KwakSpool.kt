@@ -0,0 +1,552 @@
+package com.mybraintech.sdk.core.model
+
+import timber.log.Timber
+import java.io.Closeable
+import java.io.EOFException
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.zip.CRC32
+
+/**
+ * Recording written to disk while recording, see [RecordingOption.isStreamingEnabled].
+ *
+ * Every packet is appended as one block to the memory mapped segments of a single spool file, so recording a
+ * packet is a copy in memory and the memory used does not depend on the recording duration. The Kwak file is
+ * assembled from the blocks when the recording is saved, once the number of packets and the error counters are
+ * known.
+ *
+ * The spool survives a crash of the app : a block is only valid once its marker is written, after its content,
+ * and its content is checked with a CRC. The segments are forced to the storage every [checkpointIntervalMs]
+ * and when the spool is closed, not on every packet. [KwakRecovery] rebuilds the Kwak file of a spool that
+ * was not saved, with the metadata written by [writeMetadata].
+ *
+ * Spool file : int32 [SPOOL_MAGIC], int32 segment size, then the blocks. A block does not cross a segment : the
+ * end of a segment is marked by [SKIP_MAGIC] when the next block does not fit. Block, little-endian :
+ * - int32 [BLOCK_MAGIC], int8 block type, int32 payload size, int32 CRC32 of the payload
+ * - EEG payload : int32 number of samples, int8 flags ([FLAG_QUALITIES], [FLAG_STATUSES]), the samples
+ *   channel by channel, the quality of every channel, the statuses
+ * - IMS payload : int32 number of samples, then x, y, z of every sample
+ *
+ * The append methods are called by the frame decoding thread, [close], [trim] and the reads by the thread
+ * saving the recording : after [close], the packets still arriving are ignored.
+ */
+internal class KwakSpool private constructor(
+    val directory: File,
+    override val nbChannels: Int,
+    private val hasStatus: Boolean,
+    private val checkpointIntervalMs: Long,
+    isReopened: Boolean
+) : KwakColumnSource, RecordingSpool {
+
+    /**
+     * @param checkpointIntervalMs minimum time between two writes of the spool to the storage, 0 to write every block
+     */
+    constructor(
+        directory: File,
+        nbChannels: Int,
+        hasStatus: Boolean,
+        checkpointIntervalMs: Long = DEFAULT_CHECKPOINT_INTERVAL_MS
+    ) : this(directory, nbChannels, hasStatus, checkpointIntervalMs, false)
+
+    private val file = File(directory, DATA_FILE)
+    private var segmentSize = SEGMENT_SIZE
+
+    private var channel: FileChannel? = null
+    private var segment: MappedByteBuffer? = null
+    private var segmentStart = 0L
+    private var lastCheckpoint = System.nanoTime()
+
+    private var payload = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN)
+    private val crc = CRC32()
+
+    private var isClosed = false
+
+    /**
+     * first write error, the spooled recording is not complete when it is not null
+     */
+    @Volatile
+    var error: IOException? = null
+        private set
+
+    @Volatile
+    override var eegPacketCount = 0
+        private set
+
+    /**
+     * number of samples per recorded EEG packet, known when the first packet is recorded
+     */
+    var eegPacketLength = 0
+        private set
+
+    @Volatile
+    override var imsSampleCount = 0L
+        private set
+
+    private var eegSampleCount = 0L
+    private var qualityCount = 0L
+    private var statusCount = 0L
+
+    /**
+     * limits set by [trim]
+     */
+    private var maxPackets = Int.MAX_VALUE
+    private var maxImsSamples = Long.MAX_VALUE
+
+    init {
+        if (isReopened) {
+            isClosed = true
+            countBlocks()
+        } else {
+            if (!directory.isDirectory && !directory.mkdirs()) {
+                throw IOException("can not create spool directory ${directory.path}")
+            }
+            val output = RandomAccessFile(file, "rw").channel
+            channel = output
+            output.truncate(0)
+            val current = output.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize.toLong())
+            current.order(ByteOrder.LITTLE_ENDIAN)
+            current.putInt(SPOOL_MAGIC)
+            current.putInt(segmentSize)
+            segment = current
+        }
+    }
+
+    /**
+     * Writes the metadata of the recording next to the spool, so it can be recovered if it is not saved.
+     */
+    fun writeMetadata(kwak: Kwak, imsSampleRate: Int, sampleScale: Float) {
+        FileOutputStream(getMetadataFile(directory)).use {
+            KwakBinaryWriter(it).writeMetadata(kwak, imsSampleRate, sampleScale)
+        }
+    }
+
+    @Synchronized
+    override fun appendEEG(packet: MbtEEGPacket) {
+        if (isClosed || error != null) {
+            return
+        }
+        try {
+            val nbSamples = packet.nbSamples
+            val hasQualities = packet.qualityValues != null
+            val hasStatuses = hasStatus && packet.hasStatus()
+            val nbValues = nbChannels * nbSamples +
+                    (if (hasQualities) nbChannels else 0) +
+                    (if (hasStatuses) nbSamples else 0)
+            val buffer = startPayload(EEG_PAYLOAD_HEADER_SIZE + 4 * nbValues)
+            buffer.putInt(nbSamples)
+            buffer.put(((if (hasQualities) FLAG_QUALITIES else 0) or (if (hasStatuses) FLAG_STATUSES else 0)).toByte())
+            for (ch in 0 until nbChannels) {
+                for (sample in 0 until nbSamples) {
+                    buffer.putFloat(packet.getSample(ch, sample))
+                }
+            }
+            if (hasQualities) {
+                for (ch in 0 until nbChannels) {
+                    buffer.putFloat(packet.getQuality(ch))
+                }
+            }
+            if (hasStatuses) {
+                for (sample in 0 until nbSamples) {
+                    buffer.putFloat(packet.getStatus(sample))
+                }
+            }
+            writeBlock(BLOCK_EEG)
+            countEEG(nbSamples, hasQualities, hasStatuses)
+        } catch (e: IOException) {
+            onError(e)
+        }
+    }
+
+    @Synchronized
+    override fun appendIMS(positions: List<ThreeDimensionalPosition>) {
+        if (isClosed || error != null) {
+            return
+        }
+        try {
+            val buffer = startPayload(IMS_PAYLOAD_HEADER_SIZE + 12 * positions.size)
+            buffer.putInt(positions.size)
+            for (position in positions) {
+                buffer.putFloat(position.x)
+                buffer.putFloat(position.y)
+                buffer.putFloat(position.z)
+            }
+            writeBlock(BLOCK_IMS)
+            imsSampleCount += positions.size
+        } catch (e: IOException) {
+            onError(e)
+        }
+    }
+
+    private fun startPayload(size: Int): ByteBuffer {
+        if (payload.capacity() < size) {
+            payload = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+        }
+        payload.clear()
+        return payload
+    }
+
+    /**
+     * Copies [payload] in the current segment, the marker of the block is written last.
+     */
+    private fun writeBlock(type: Byte) {
+        val length = payload.position()
+        crc.reset()
+        crc.update(payload.array(), 0, length)
+
+        val current = reserve(BLOCK_HEADER_SIZE + length)
+        val start = current.position()
+        current.position(start + 4)
+        current.put(type)
+        current.putInt(length)
+        current.putInt(crc.value.toInt())
+        current.put(payload.array(), 0, length)
+        current.putInt(start, BLOCK_MAGIC)
+
+        val now = System.nanoTime()
+        if (now - lastCheckpoint >= checkpointIntervalMs * 1_000_000) {
+            current.force()
+            lastCheckpoint = now
+        }
+    }
+
+    /**
+     * @return the segment where a block of [size] bytes is written, mapped if needed
+     */
+    private fun reserve(size: Int): MappedByteBuffer {
+        val current = segment ?: throw IOException("spool is closed")
+        if (current.remaining() >= size) {
+            return current
+        }
+        if (size > segmentSize - SPOOL_HEADER_SIZE) {
+            throw IOException("block of $size bytes is larger than a spool segment")
+        }
+        if (current.remaining() >= 4) {
+            current.putInt(current.position(), SKIP_MAGIC)
+        }
+        current.force()
+        segmentStart += segmentSize
+        val next = channel!!.map(FileChannel.MapMode.READ_WRITE, segmentStart, segmentSize.toLong())
+        next.order(ByteOrder.LITTLE_ENDIAN)
+        segment = next
+        return next
+    }
+
+    private fun countEEG(nbSamples: Int, hasQualities: Boolean, hasStatuses: Boolean) {
+        if (eegPacketCount == 0) {
+            eegPacketLength = nbSamples
+        }
+        eegSampleCount += nbSamples
+        if (hasQualities) {
+            qualityCount++
+        }
+        if (hasStatuses) {
+            statusCount += nbSamples
+        }
+        eegPacketCount++
+    }
+
+    /**
+     * Writes the spool to the storage and closes it, it can be read once this method returns.
+     */
+    @Synchronized
+    fun close() {
+        if (isClosed) {
+            return
+        }
+        isClosed = true
+        try {
+            segment?.force()
+            channel?.close()
+        } catch (e: IOException) {
+            onError(e)
+        }
+        segment = null
+        channel = null
+    }
+
+    /**
+     * Keeps only the beginning of the spooled data when the columns are read, the file is not modified.
+     *
+     * @param nbPackets number of EEG packets to keep
+     * @param nbImsSamples number of IMS samples to keep
+     */
+    fun trim(nbPackets: Int, nbImsSamples: Long) {
+        maxPackets = nbPackets
+        maxImsSamples = nbImsSamples
+    }
+
+    override fun getNbPackets(): Int = minOf(eegPacketCount, maxPackets)
+
+    override fun getEEGSampleCount(): Long = minOf(eegSampleCount, getNbPackets().toLong() * eegPacketLength)
+
+    override fun getQualityCount(): Long = minOf(qualityCount, getNbPackets().toLong())
+
+    override fun getStatusCount(): Long = minOf(statusCount, getEEGSampleCount())
+
+    override fun getImsSampleCount(): Long = minOf(imsSampleCount, maxImsSamples)
+
+    override fun openEEGColumn(channel: Int): FloatColumn = openColumn(KwakBinaryFormat.COLUMN_EEG, channel)
+
+    override fun openQualityColumn(channel: Int): FloatColumn = openColumn(KwakBinaryFormat.COLUMN_QUALITY, channel)
+
+    override fun openStatusColumn(): FloatColumn = openColumn(KwakBinaryFormat.COLUMN_STATUS, 0)
+
+    override fun openIMSColumn(axis: Int): FloatColumn = openColumn(KwakBinaryFormat.COLUMN_IMS, axis)
+
+    private fun openColumn(type: Byte, index: Int): FloatColumn {
+        check(isClosed) { "the spool must be closed before being read" }
+        return SpoolColumn(type, index)
+    }
+
+    /**
+     * Counts the valid blocks of a reopened spool, the spool ends at the first block that is not complete.
+     */
+    private fun countBlocks() {
+        BlockScanner(true).use { scanner ->
+            while (scanner.next()) {
+                val segment = scanner.segment!!
+                val start = scanner.payloadStart
+                when (scanner.type) {
+                    BLOCK_EEG -> {
+                        val flags = segment.get(start + 4).toInt()
+                        countEEG(
+                            segment.getInt(start),
+                            flags and FLAG_QUALITIES != 0,
+                            flags and FLAG_STATUSES != 0
+                        )
+                    }
+                    BLOCK_IMS -> imsSampleCount += segment.getInt(start)
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the spool if needed and deletes its files.
+     */
+    fun delete() {
+        close()
+        if (!directory.deleteRecursively()) {
+            Timber.w("can not delete spool directory ${directory.path}")
+        }
+    }
+
+    private fun onError(e: IOException) {
+        Timber.e(e, "recording spool write error")
+        if (error == null) {
+            error = e
+        }
+    }
+
+    /**
+     * Iterates the valid blocks of the spool file, segment by segment.
+     *
+     * @param isChecked true to check the CRC of every block
+     */
+    private inner class BlockScanner(private val isChecked: Boolean) : Closeable {
+        private val input = RandomAccessFile(file, "r").channel
+        private val fileSize = input.size()
+        private var nextSegmentStart = 0L
+        private var checkedBytes = ByteArray(0)
+
+        var segment: ByteBuffer? = null
+            private set
+        var type: Byte = 0
+            private set
+        var payloadStart = 0
+            private set
+
+        init {
+            val header = ByteBuffer.allocate(SPOOL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            while (header.hasRemaining() && input.read(header) >= 0) {
+                // reads the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != SPOOL_MAGIC) {
+                input.close()
+                throw IOException("${file.path} is not a recording spool")
+            }
+            segmentSize = header.getInt(4)
+            nextSegmentStart = 0
+            if (nextSegment()) {
+                segment!!.position(SPOOL_HEADER_SIZE)
+            }
+        }
+
+        /**
+         * @return false at the end of the spool
+         */
+        fun next(): Boolean {
+            while (true) {
+                val current = segment ?: return false
+                if (current.remaining() < 4 || current.getInt(current.position()) == SKIP_MAGIC) {
+                    if (!nextSegment()) {
+                        return false
+                    }
+                    continue
+                }
+                val start = current.position()
+                if (current.getInt(start) != BLOCK_MAGIC || current.remaining() < BLOCK_HEADER_SIZE) {
+                    return false
+                }
+                val length = current.getInt(start + 5)
+                if (length < 0 || length > current.remaining() - BLOCK_HEADER_SIZE) {
+                    return false
+                }
+                type = current.get(start + 4)
+                payloadStart = start + BLOCK_HEADER_SIZE
+                if (isChecked && current.getInt(start + 9) != computeCrc(current, payloadStart, length)) {
+                    return false
+                }
+                current.position(payloadStart + length)
+                return true
+            }
+        }
+
+        private fun computeCrc(current: ByteBuffer, start: Int, length: Int): Int {
+            if (checkedBytes.size < length) {
+                checkedBytes = ByteArray(length)
+            }
+            val view = current.duplicate()
+            view.position(start)
+            view.get(checkedBytes, 0, length)
+            crc.reset()
+            crc.update(checkedBytes, 0, length)
+            return crc.value.toInt()
+        }
+
+        private fun nextSegment(): Boolean {
+            if (nextSegmentStart >= fileSize) {
+                segment = null
+                return false
+            }
+            val size = minOf(segmentSize.toLong(), fileSize - nextSegmentStart)
+            segment = input.map(FileChannel.MapMode.READ_ONLY, nextSegmentStart, size).order(ByteOrder.LITTLE_ENDIAN)
+            nextSegmentStart += segmentSize
+            return true
+        }
+
+        override fun close() {
+            input.close()
+        }
+    }
+
+    /**
+     * One column of the Kwak file read from the blocks, e.g. the samples of one EEG channel.
+     */
+    private inner class SpoolColumn(private val type: Byte, private val index: Int) : FloatColumn {
+        private val scanner = BlockScanner(false)
+        private var position = 0
+        private var remaining = 0
+        private var stride = 4
+
+        override fun read(): Float {
+            while (remaining == 0) {
+                if (!scanner.next()) {
+                    throw EOFException("end of spooled column $type-$index")
+                }
+                locate(scanner.segment!!, scanner.payloadStart)
+            }
+            val value = scanner.segment!!.getFloat(position)
+            position += stride
+            remaining--
+            return value
+        }
+
+        /**
+         * Finds the values of the column in the current block.
+         */
+        private fun locate(segment: ByteBuffer, start: Int) {
+            if (type == KwakBinaryFormat.COLUMN_IMS) {
+                if (scanner.type == BLOCK_IMS) {
+                    remaining = segment.getInt(start)
+                    position = start + IMS_PAYLOAD_HEADER_SIZE + 4 * index
+                    stride = 12
+                }
+                return
+            }
+            if (scanner.type != BLOCK_EEG) {
+                return
+            }
+            val nbSamples = segment.getInt(start)
+            val flags = segment.get(start + 4).toInt()
+            val samplesStart = start + EEG_PAYLOAD_HEADER_SIZE
+            val qualitiesStart = samplesStart + 4 * nbChannels * nbSamples
+            val statusesStart = qualitiesStart + if (flags and FLAG_QUALITIES != 0) 4 * nbChannels else 0
+            when (type) {
+                KwakBinaryFormat.COLUMN_EEG -> {
+                    position = samplesStart + 4 * index * nbSamples
+                    remaining = nbSamples
+                }
+                KwakBinaryFormat.COLUMN_QUALITY -> if (flags and FLAG_QUALITIES != 0) {
+                    position = qualitiesStart + 4 * index
+                    remaining = 1
+                }
+                KwakBinaryFormat.COLUMN_STATUS -> if (flags and FLAG_STATUSES != 0) {
+                    position = statusesStart
+                    remaining = nbSamples
+                }
+            }
+        }
+
+        override fun close() {
+            scanner.close()
+        }
+    }
+
+    companion object {
+        const val DEFAULT_CHECKPOINT_INTERVAL_MS = 5000L
+
+        private const val SPOOL_SUFFIX = ".spool"
+        private const val DATA_FILE = "spool.dat"
+        private const val METADATA_FILE = "meta.kwak"
+
+        private const val SPOOL_MAGIC = 0x4C4F5053 // "SPOL"
+        private const val BLOCK_MAGIC = 0x4B434C42 // "BLCK"
+        private const val SKIP_MAGIC = 0x50494B53 // "SKIP"
+        private const val SEGMENT_SIZE = 4 * 1024 * 1024
+        private const val SPOOL_HEADER_SIZE = 8
+        private const val BLOCK_HEADER_SIZE = 13
+
+        private const val BLOCK_EEG: Byte = 1
+        private const val BLOCK_IMS: Byte = 2
+        private const val EEG_PAYLOAD_HEADER_SIZE = 5
+        private const val IMS_PAYLOAD_HEADER_SIZE = 4
+        private const val FLAG_QUALITIES = 1
+        private const val FLAG_STATUSES = 2
+
+        /**
+         * @return the spool directory of a recording, next to its output file
+         */
+        fun getDirectory(outputFile: File): File {
+            return File(outputFile.absoluteFile.parentFile, outputFile.name + SPOOL_SUFFIX)
+        }
+
+        /**
+         * @return the output file of the recording spooled in [directory]
+         */
+        fun getOutputFile(directory: File): File {
+            return File(directory.absoluteFile.parentFile, directory.name.removeSuffix(SPOOL_SUFFIX))
+        }
+
+        fun isSpoolDirectory(directory: File): Boolean {
+            return directory.isDirectory && directory.name.endsWith(SPOOL_SUFFIX)
+        }
+
+        fun getMetadataFile(directory: File): File = File(directory, METADATA_FILE)
+
+        /**
+         * Opens the spool of a recording that was not saved, its valid blocks can be read.
+         *
+         * @throws IOException if [directory] does not contain a spool
+         */
+        fun reopen(directory: File, nbChannels: Int): KwakSpool {
+            return KwakSpool(directory, nbChannels, true, DEFAULT_CHECKPOINT_INTERVAL_MS, true)
+        }
+    }
+}
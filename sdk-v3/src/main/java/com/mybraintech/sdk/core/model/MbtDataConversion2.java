@@ -5,7 +5,9 @@ import androidx.annotation.NonNull;
 import com.mybraintech.sdk.core.acquisition.EnumBluetoothProtocol;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import timber.log.Timber;
 
@@ -28,6 +30,12 @@ public class MbtDataConversion2 {
     private static final int POSITIVE_MASK_SPP = (int) (~NEGATIVE_MASK_SPP);
     private static final float INCORRECT_VALUE_BLE = 0x0000FFFF;
     private static final float INCORRECT_VALUE_SPP = 0x00FFFFFF;
+    private static final int BLE_LUT_SIZE = 1 << 16;
+
+    /**
+     * BLE conversion tables shared by all the instances, key = amplifier gain
+     */
+    private static final Map<Integer, float[]> BLE_LUTS = new HashMap<>();
 
     /**
      * the bluetooth protocol used to acquire data from the headset : Low Energy or Serial Port Profile.
@@ -35,9 +43,14 @@ public class MbtDataConversion2 {
     private EnumBluetoothProtocol protocol;
     private int eegAmpGain = 8;
     private int nbChannels;
-    private float bleVoltage = (float) ((0.286d * Math.pow(10, -6)) / eegAmpGain);
+    private float bleVoltage = getBleVoltage(eegAmpGain);
     private float sppVoltage = (float) ((0.536d * Math.pow(10, -6)) / 24); //todo VPRO VOLTAGE
 
+    /**
+     * BLE only : converted value of every possible 16 bits sample, index = (first byte << 8) | second byte
+     */
+    private float[] bleLut;
+
     private MbtDataConversion2(EnumBluetoothProtocol protocol, int nbChannels, byte gain) {
 
         Timber.d("Dev_debug MbtDataConversion2 constructor protocol:%s nbChannels:%s gain:%s", protocol,nbChannels,gain);
@@ -46,13 +59,49 @@ public class MbtDataConversion2 {
         if (gain != 0) {
             eegAmpGain = AmpGainConfig2.getGainFromByteValue(gain);
             Timber.d("Dev_debug MbtDataConversion2  eegAmpGain:%s",eegAmpGain);
-            bleVoltage = (float) ((0.286d * Math.pow(10, -6)) / eegAmpGain);
+            bleVoltage = getBleVoltage(eegAmpGain);
 
             Timber.d("Dev_debug MbtDataConversion2  bleVoltage:%s",bleVoltage);
             sppVoltage = (float) ((0.536d * Math.pow(10, -6)) / 24); //todo VPRO VOLTAGE
             Timber.d("Dev_debug MbtDataConversion2  sppVoltage:%s",sppVoltage);
         }
+        if (isBle()) {
+            bleLut = getBleLut(eegAmpGain, bleVoltage);
+        }
+    }
 
+    private static float getBleVoltage(int gain) {
+        return (float) ((0.286d * Math.pow(10, -6)) / gain);
+    }
+
+    /**
+     * Value of one unit of a 16 bits BLE sample : every value of the conversion table is exactly
+     * {@code (short) ((firstByte << 8) | secondByte) * scale}, computed in float.
+     */
+    public static float getBleSampleScale(@NonNull AmpGainConfig2 gain) {
+        int gainValue = AmpGainConfig2.getGainFromByteValue((byte) gain.getNumVal());
+        return (1 << (SHIFT_BLE - 8)) * getBleVoltage(gainValue);
+    }
+
+    /**
+     * The table is computed once per gain with the same operations as {@link #convertRawDataToEEG(List)},
+     * so both methods return exactly the same values.
+     */
+    @NonNull
+    private static float[] getBleLut(int gain, float voltage) {
+        synchronized (BLE_LUTS) {
+            float[] lut = BLE_LUTS.get(gain);
+            if (lut == null) {
+                lut = new float[BLE_LUT_SIZE];
+                for (int raw = 0; raw < BLE_LUT_SIZE; raw++) {
+                    int temp = ((raw >> 8) << SHIFT_BLE) | ((raw & 0xFF) << (SHIFT_BLE - 8));
+                    temp = ((temp & CHECK_SIGN_BLE) > 0) ? (temp | NEGATIVE_MASK_BLE) : (temp & POSITIVE_MASK_BLE);
+                    lut[raw] = temp * voltage;
+                }
+                BLE_LUTS.put(gain, lut);
+            }
+            return lut;
+        }
     }
 
     /**
@@ -78,6 +127,10 @@ public class MbtDataConversion2 {
                 }
             } else {
                 for (byte[] bytes : singleRawEEGdata.getEegData()) {
+                    if (bleLut != null && bytes.length == 2) {
+                        consolidatedEEGSample.add(bleLut[((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF)]);
+                        continue;
+                    }
                     int temp = 0x0000000;
                     for (int i = 0; i < bytes.length; i++) {
                         temp |= (bytes[i] & 0xFF) << ((isBle()) ? (SHIFT_BLE - i * 8) : (16 - i * 8));
@@ -98,6 +151,89 @@ public class MbtDataConversion2 {
         return eegData;
     }
 
+    /**
+     * Converts the EEG samples of a raw BLE frame straight into channel-major primitive buffers.
+     * <p>
+     * No intermediate object is created : the bytes are read from the frame and the converted values
+     * are written into the provided buffers, so this method does not allocate anything.
+     *
+     * @param frame      the raw frame received from the headset
+     * @param dataOffset position of the first EEG byte in the frame (i.e. header size)
+     * @param nbTimes    number of times (samples per channel) to convert
+     * @param channels   output buffers, one row per channel, each row must have room for {@code outOffset + nbTimes} values
+     * @param outOffset  position in each output row where the first converted value is written
+     */
+    public void convertRawFrameToEEG(@NonNull byte[] frame, int dataOffset, int nbTimes, @NonNull float[][] channels, int outOffset) {
+        final float[] lut = bleLut;
+        if (lut != null) {
+            int pos = dataOffset;
+            for (int time = 0; time < nbTimes; time++) {
+                for (int channel = 0; channel < nbChannels; channel++) {
+                    channels[channel][outOffset + time] = lut[((frame[pos] & 0xFF) << 8) | (frame[pos + 1] & 0xFF)];
+                    pos += 2;
+                }
+            }
+            return;
+        }
+
+        final boolean isBle = isBle();
+        final int nbBytes = isBle ? 2 : 3;
+        final int shift = isBle ? SHIFT_BLE : 16;
+        final int checkSign = isBle ? CHECK_SIGN_BLE : CHECK_SIGN_SPP;
+        final int negativeMask = isBle ? NEGATIVE_MASK_BLE : NEGATIVE_MASK_SPP;
+        final int positiveMask = isBle ? POSITIVE_MASK_BLE : POSITIVE_MASK_SPP;
+        final float voltage = isBle ? bleVoltage : sppVoltage;
+
+        int pos = dataOffset;
+        for (int time = 0; time < nbTimes; time++) {
+            for (int channel = 0; channel < nbChannels; channel++) {
+                int temp = 0x0000000;
+                for (int i = 0; i < nbBytes; i++) {
+                    temp |= (frame[pos++] & 0xFF) << (shift - i * 8);
+                }
+                temp = ((temp & checkSign) > 0) ? (temp | negativeMask) : (temp & positiveMask);
+                channels[channel][outOffset + time] = temp * voltage;
+            }
+        }
+    }
+
+    /**
+     * Converts consecutive raw samples, whatever the channel they belong to : the values are written
+     * in the same order as in the frame. This method does not allocate anything.
+     *
+     * @param frame     the raw frame received from the headset
+     * @param offset    position of the first byte to convert in the frame
+     * @param samples   number of samples to convert (2 bytes per sample in BLE, 3 bytes in SPP)
+     * @param out       output buffer, it must have room for {@code outOffset + samples} values
+     * @param outOffset position in the output buffer where the first converted value is written
+     */
+    public void convert(@NonNull byte[] frame, int offset, int samples, @NonNull float[] out, int outOffset) {
+        final float[] lut = bleLut;
+        if (lut != null) {
+            int pos = offset;
+            for (int i = 0; i < samples; i++) {
+                out[outOffset + i] = lut[((frame[pos] & 0xFF) << 8) | (frame[pos + 1] & 0xFF)];
+                pos += 2;
+            }
+        } else {
+            int pos = offset;
+            for (int i = 0; i < samples; i++) {
+                int temp = ((frame[pos] & 0xFF) << 16) | ((frame[pos + 1] & 0xFF) << 8) | (frame[pos + 2] & 0xFF);
+                temp = ((temp & CHECK_SIGN_SPP) > 0) ? (temp | NEGATIVE_MASK_SPP) : (temp & POSITIVE_MASK_SPP);
+                out[outOffset + i] = temp * sppVoltage;
+                pos += 3;
+            }
+        }
+    }
+
+    public int getEEGAmpGain() {
+        return eegAmpGain;
+    }
+
+    public int getNbChannels() {
+        return nbChannels;
+    }
+
     public float convertRawDataToDcOffset(byte[] offset) {
         if (offset == null || offset.length < 2)
             return -1;
@@ -133,14 +269,20 @@ public class MbtDataConversion2 {
             return this;
         }
 
+        /**
+         * @param gain the byte value of the amplifier gain configuration, see {@link AmpGainConfig2#getNumVal()}
+         * @throws IllegalArgumentException if the value does not match any {@link AmpGainConfig2}
+         */
         public Builder setGain(byte gain) {
-            boolean isVerifiedWithTeam = false;
-            if (isVerifiedWithTeam) {
-                this.gain = gain;
-                return this;
-            } else {
-                throw new UnsupportedOperationException("https://mybrain.atlassian.net/browse/MA-1480");
+            if (AmpGainConfig2.getGainFromByteValue(gain) == 0) {
+                throw new IllegalArgumentException("unknown amplifier gain configuration : " + gain);
             }
+            this.gain = gain;
+            return this;
+        }
+
+        public Builder setGain(@NonNull AmpGainConfig2 gain) {
+            return setGain((byte) gain.getNumVal());
         }
 
         @NonNull
@@ -151,13 +293,26 @@ public class MbtDataConversion2 {
 
     @NonNull
     static public MbtDataConversion2 generateInstance(EnumMBTDevice deviceType) {
+        return generateInstance(deviceType, (byte) 0);
+    }
+
+    /**
+     * @param gain the amplifier gain configured on the headset, the conversion table is chosen from it
+     */
+    @NonNull
+    static public MbtDataConversion2 generateInstance(EnumMBTDevice deviceType, @NonNull AmpGainConfig2 gain) {
+        return generateInstance(deviceType, (byte) gain.getNumVal());
+    }
+
+    @NonNull
+    static private MbtDataConversion2 generateInstance(EnumMBTDevice deviceType, byte gain) {
         switch (deviceType) {
             case Q_PLUS:
             case HYPERION: {
-                return new MbtDataConversion2(EnumBluetoothProtocol.BLE, 4, (byte) 0);
+                return new MbtDataConversion2(EnumBluetoothProtocol.BLE, 4, gain);
             }
             case MELOMIND: {
-                return new MbtDataConversion2(EnumBluetoothProtocol.BLE, 2, (byte) 0);
+                return new MbtDataConversion2(EnumBluetoothProtocol.BLE, 2, gain);
             }
             default: {
                 throw new RuntimeException("Illegal device type : deviceType = " + deviceType.toString());
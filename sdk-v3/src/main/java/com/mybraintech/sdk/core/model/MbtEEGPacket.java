@@ -5,38 +5,121 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * EEG data of all channels acquired during a specific duration (1 second by default).
+ * <p>
+ * The signals are stored in one channel-major float array : all the samples of the first channel,
+ * then all the samples of the second channel... A packet can be a window over a bigger buffer shared
+ * with other packets, see {@link #getDataOffset()} and {@link #getChannelStride()}. The statuses and the qualities are
+ * stored in primitive arrays too. Use {@link #getChannel(int, float[])}, {@link #getStatus(float[])}
+ * and {@link #getQuality(int)} to read them without boxing.
+ * <p>
+ * {@link #getChannelsData()}, {@link #getStatusData()} and {@link #getQualities()} are kept for
+ * compatibility : the boxed lists are built the first time they are requested, then cached.
+ * They are a snapshot of the packet, modifying them does not modify the packet.
+ */
 @Keep
 public class MbtEEGPacket {
 
     /**
-     * eg: 4x250
+     * channel-major signals : eg: 4x250 values
      */
     @NonNull
-    private ArrayList<ArrayList<Float>> channelsData;
+    private float[] data;
+
+    /**
+     * position of the first sample of the first channel in {@link #data}
+     */
+    private int dataOffset;
+
+    /**
+     * distance between the first samples of two consecutive channels in {@link #data}
+     */
+    private int channelStride;
+
+    /**
+     * eg: 4
+     */
+    private int nbChannels;
+
+    /**
+     * eg: 250
+     */
+    private int nbSamples;
 
     @Nullable
-    private ArrayList<Float> statusData;
+    private float[] statuses;
+
+    private int statusOffset;
 
     private final long timestamp;
 
     /**
      * eg: 4
      */
-    private ArrayList<Float> qualities;
+    @Nullable
+    private float[] qualityValues;
 
     private float[][] features = null;
 
+    @Nullable
+    private ArrayList<ArrayList<Float>> channelsDataView = null;
+
+    @Nullable
+    private ArrayList<Float> statusDataView = null;
+
+    @Nullable
+    private ArrayList<Float> qualitiesView = null;
 
     public MbtEEGPacket(MbtEEGPacket packetToClone) {
         this.timestamp = packetToClone.getTimeStamp();
-        this.channelsData = packetToClone.getChannelsData();
-        this.statusData = packetToClone.getStatusData();
-        this.qualities = packetToClone.getQualities();
+        this.data = packetToClone.data;
+        this.dataOffset = packetToClone.dataOffset;
+        this.channelStride = packetToClone.channelStride;
+        this.statusOffset = packetToClone.statusOffset;
+        this.nbChannels = packetToClone.nbChannels;
+        this.nbSamples = packetToClone.nbSamples;
+        this.statuses = packetToClone.statuses;
+        this.qualityValues = packetToClone.qualityValues;
         this.features = packetToClone.getFeatures();
     }
 
+    /**
+     * Initializes a new instance of the MbtEEGPacket class from primitive arrays, no copy is done.
+     *
+     * @param data       channel-major signals, its size must be at least nbChannels * nbSamples
+     * @param nbChannels number of channels
+     * @param nbSamples  number of samples per channel
+     * @param statuses   the statuses associated, one per sample
+     */
+    public MbtEEGPacket(@NonNull final float[] data, int nbChannels, int nbSamples, @Nullable final float[] statuses) {
+        this(data, 0, nbSamples, nbChannels, nbSamples, statuses, 0);
+    }
 
+    /**
+     * Initializes a new instance of the MbtEEGPacket class as a window over a bigger channel-major
+     * buffer, no copy is done. The sample {@code s} of the channel {@code c} is read at
+     * {@code data[dataOffset + c * channelStride + s]} and its status at {@code statuses[statusOffset + s]}.
+     * <p>
+     * The caller must not modify the window once the packet is created.
+     */
+    public MbtEEGPacket(@NonNull final float[] data, int dataOffset, int channelStride, int nbChannels, int nbSamples,
+                        @Nullable final float[] statuses, int statusOffset) {
+        if (nbChannels > 0 && dataOffset + (nbChannels - 1) * channelStride + nbSamples > data.length) {
+            throw new IllegalArgumentException("data size " + data.length + " is too small for " + nbChannels + "x" + nbSamples);
+        }
+        this.data = data;
+        this.dataOffset = dataOffset;
+        this.channelStride = channelStride;
+        this.nbChannels = nbChannels;
+        this.nbSamples = nbSamples;
+        this.statuses = statuses;
+        this.statusOffset = statusOffset;
+        this.timestamp = System.currentTimeMillis();
+    }
 
     /**
      * Initializes a new instance of the MbtEEGPacket class.
@@ -45,15 +128,16 @@ public class MbtEEGPacket {
      * @param statusData   The statuses associated
      */
     public MbtEEGPacket(@NonNull final ArrayList<ArrayList<Float>> channelsData, @Nullable final ArrayList<Float> statusData) {
-        this.channelsData = channelsData;
-        this.statusData = statusData;
-        this.timestamp = System.currentTimeMillis();
+        this(channelsData);
+        setStatusData(statusData);
     }
-    public MbtEEGPacket(@NonNull final ArrayList<ArrayList<Float>> channelsData) {
 
-        this.channelsData = channelsData;
+    public MbtEEGPacket(@NonNull final ArrayList<ArrayList<Float>> channelsData) {
+        this.data = new float[0];
+        setChannelsData(channelsData);
         this.timestamp = System.currentTimeMillis();
     }
+
     /**
      * Gets the TimeStamp
      *
@@ -63,6 +147,104 @@ public class MbtEEGPacket {
         return this.timestamp;
     }
 
+    public int getNbChannels() {
+        return nbChannels;
+    }
+
+    /**
+     * @return number of samples per channel
+     */
+    public int getNbSamples() {
+        return nbSamples;
+    }
+
+    /**
+     * Direct access to the channel-major signals, the sample {@code s} of the channel {@code c} is
+     * at {@code getDataOffset() + c * getChannelStride() + s}. Do not modify the returned array.
+     */
+    @NonNull
+    public float[] getData() {
+        return data;
+    }
+
+    public int getDataOffset() {
+        return dataOffset;
+    }
+
+    public int getChannelStride() {
+        return channelStride;
+    }
+
+    public float getSample(int channel, int sample) {
+        return data[dataOffset + channel * channelStride + sample];
+    }
+
+    /**
+     * Copies the samples of one channel into the destination array.
+     *
+     * @param channel channel index
+     * @param dst     destination, its size must be at least {@link #getNbSamples()}
+     */
+    public void getChannel(int channel, @NonNull float[] dst) {
+        getChannel(channel, dst, 0);
+    }
+
+    /**
+     * Copies the samples of one channel into the destination array, starting at {@code dstOffset}.
+     */
+    public void getChannel(int channel, @NonNull float[] dst, int dstOffset) {
+        if (channel < 0 || channel >= nbChannels) {
+            throw new IndexOutOfBoundsException("channel = " + channel + ", nbChannels = " + nbChannels);
+        }
+        System.arraycopy(data, dataOffset + channel * channelStride, dst, dstOffset, nbSamples);
+    }
+
+    public boolean hasStatus() {
+        return statuses != null;
+    }
+
+    /**
+     * @return the status of the sample, NaN if there is no status
+     */
+    public float getStatus(int sample) {
+        if (statuses == null || statusOffset + sample >= statuses.length) {
+            return Float.NaN;
+        }
+        return statuses[statusOffset + sample];
+    }
+
+    /**
+     * Copies the statuses into the destination array, does nothing if there is no status.
+     */
+    public void getStatus(@NonNull float[] dst) {
+        if (statuses != null) {
+            System.arraycopy(statuses, statusOffset, dst, 0, Math.min(nbSamples, statuses.length - statusOffset));
+        }
+    }
+
+    /**
+     * @return the quality of the channel, NaN if the qualities have not been computed
+     */
+    public float getQuality(int channel) {
+        if (qualityValues == null || channel >= qualityValues.length) {
+            return Float.NaN;
+        }
+        return qualityValues[channel];
+    }
+
+    /**
+     * @return the qualities of all channels, null if they have not been computed. Do not modify the returned array.
+     */
+    @Nullable
+    public float[] getQualityValues() {
+        return qualityValues;
+    }
+
+    public synchronized void setQualityValues(@Nullable float[] qualityValues) {
+        this.qualityValues = qualityValues;
+        this.qualitiesView = null;
+    }
+
     /**
      * Gets all the EEG data acquired from all channels in a matrix format during a specific duration.
      * <p> Each column of the matrix contains the number of EEG data acquired by one channel.</p>
@@ -70,12 +252,20 @@ public class MbtEEGPacket {
      * <p> Each line of the matrix contains the acquired EEG data by all the channels at a specifc moment:
      * <p> 2 EEG data acquired for a Melomind headset and 9 EEG data for a Vpro headset (each channels acquire the same number of EEG data).
      * <p> Call {@link #getChannelsData}.get(0).size() to get the number of channels/electrodes.
+     * <p> The boxed matrix is built on first call, prefer {@link #getChannel(int, float[])} in new code.
      *
      * @return the EEG data from all channels
      */
     @NonNull
-    public ArrayList<ArrayList<Float>> getChannelsData() {
-        return channelsData;
+    public synchronized ArrayList<ArrayList<Float>> getChannelsData() {
+        if (channelsDataView == null) {
+            ArrayList<ArrayList<Float>> view = new ArrayList<>(nbChannels);
+            for (int channel = 0; channel < nbChannels; channel++) {
+                view.add(toList(data, dataOffset + channel * channelStride, nbSamples));
+            }
+            channelsDataView = view;
+        }
+        return channelsDataView;
     }
 
     /**
@@ -83,16 +273,19 @@ public class MbtEEGPacket {
      *
      * @return the status data
      */
-    public ArrayList<Float> getStatusData() {
-        return statusData;
+    public synchronized ArrayList<Float> getStatusData() {
+        if (statusDataView == null && statuses != null) {
+            statusDataView = toList(statuses, statusOffset, Math.min(nbSamples, statuses.length - statusOffset));
+        }
+        return statusDataView;
     }
 
     @Override
     public String toString() {
         return "MbtEEGPacket{" +
-                "EEG=" + (channelsData != null && !channelsData.isEmpty() ? (channelsData.size() + "x" + channelsData.get(0).size()) : channelsData) +
-                ",\n quality= [" + (qualities != null ? (qualities.get(0) + "," + qualities.get(1))+ "]" : null + "]") +
-                "\\n, statusData=" + (statusData != null ? "size: " + statusData.size() : null) +
+                "EEG=" + nbChannels + "x" + nbSamples +
+                ",\n quality= " + Arrays.toString(qualityValues) +
+                "\\n, statusData=" + (statuses != null ? "size: " + nbSamples : null) +
                 ",\n timestamp=" + timestamp +
                 '}';
     }
@@ -104,23 +297,44 @@ public class MbtEEGPacket {
      * @return Returns true if the EEG data list contains no elements.
      */
     public boolean isEmpty() {
-        return this.channelsData.isEmpty() && this.statusData.isEmpty();
+        return nbChannels == 0 || nbSamples == 0;
     }
 
-    public ArrayList<Float> getQualities() {
-        return qualities;
+    public synchronized ArrayList<Float> getQualities() {
+        if (qualitiesView == null && qualityValues != null) {
+            qualitiesView = toList(qualityValues, 0, qualityValues.length);
+        }
+        return qualitiesView;
     }
 
-    public void setQualities(ArrayList<Float> qualities) {
-        this.qualities = qualities;
+    public synchronized void setQualities(ArrayList<Float> qualities) {
+        this.qualityValues = (qualities != null) ? toArray(qualities) : null;
+        this.qualitiesView = qualities;
     }
 
     public float[][] getFeatures() {
         return features;
     }
 
-    public void setChannelsData(ArrayList<ArrayList<Float>> list) {
-        this.channelsData = list;
+    public synchronized void setChannelsData(ArrayList<ArrayList<Float>> list) {
+        int height = list.size();
+        int width = (height == 0) ? 0 : list.get(0).size();
+        float[] newData = new float[height * width];
+        for (int channel = 0; channel < height; channel++) {
+            List<Float> current = list.get(channel);
+            if (current.size() != width) {
+                throw new IllegalArgumentException("sample number is not consistent in all provided channels!");
+            }
+            for (int sample = 0; sample < width; sample++) {
+                newData[channel * width + sample] = current.get(sample);
+            }
+        }
+        this.data = newData;
+        this.dataOffset = 0;
+        this.channelStride = width;
+        this.nbChannels = height;
+        this.nbSamples = width;
+        this.channelsDataView = list;
     }
 
     public ArrayList<Float> getFeature(int frequency) {
@@ -135,7 +349,28 @@ public class MbtEEGPacket {
         this.features = features;
     }
 
-    public void setStatusData(@Nullable ArrayList<Float> statusData) {
-        this.statusData = statusData;
+    public synchronized void setStatusData(@Nullable ArrayList<Float> statusData) {
+        this.statuses = (statusData != null) ? toArray(statusData) : null;
+        this.statusOffset = 0;
+        this.statusDataView = statusData;
+    }
+
+    @NonNull
+    private static ArrayList<Float> toList(@NonNull float[] source, int offset, int length) {
+        ArrayList<Float> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(source[offset + i]);
+        }
+        return list;
+    }
+
+    @NonNull
+    private static float[] toArray(@NonNull List<Float> source) {
+        float[] array = new float[source.size()];
+        for (int i = 0; i < array.length; i++) {
+            Float value = source.get(i);
+            array[i] = (value != null) ? value : Float.NaN;
+        }
+        return array;
     }
 }
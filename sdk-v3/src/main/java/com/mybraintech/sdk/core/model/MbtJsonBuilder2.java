@@ -3,8 +3,10 @@ package com.mybraintech.sdk.core.model;
 import android.util.JsonWriter;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -74,146 +76,8 @@ final class MbtJsonBuilder2 {
         try {
             final JsonWriter jsonWriter = new JsonWriter(fileWriter);
 
-            jsonWriter.beginObject();
-            // BEGINNING OF MAIN JSON OBJECT
-            jsonWriter.name(UUID_KEY)
-                    .value(UUID.randomUUID().toString());
-
-            jsonWriter.name(CONTEXT_KEY);
-            jsonWriter.beginObject();
-
-            jsonWriter.name(OWNER_ID_KEY)
-                    .value(ownerId);
-
-//            if(recordingParams != null && recordingParams.getRiAlgo() != null){
-//                jsonWriter.name(RI_ALGO_KEY)
-//                        .value(recordingParams.getRiAlgo());
-//            }
-
-            jsonWriter.endObject();
-
-            jsonWriter.name(HEADER_KEY);
-            jsonWriter.beginObject();   // beginning of "header"   object
-
-            jsonWriter.name(DEVICE_INFO_KEY);
-            jsonWriter.beginObject();   // beginning of "deviceInfo"        object
-
-            DeviceInformation device = kwakHeader.getDeviceInfo();
-            if (device == null) {
-                throw new RuntimeException("device info not found");
-            }
-
-            jsonWriter.name(PRODUCT_NAME_KEY)
-                    .value(device.getBleName());
-
-            jsonWriter.name(HW_VERSION_KEY)
-                    .value(device.getHardwareVersion());
-
-            jsonWriter.name(FW_VERSION_KEY)
-                    .value(device.getFirmwareVersion());
-
-            jsonWriter.name(SERIAL_NUMBER_KEY)
-                    .value(device.getSerialNumber());
-
-            jsonWriter.endObject();     // end of       "deviceInfo"        object
-
-            jsonWriter.name(RECORDING_NUMBER_KEY)
-                    .value(kwakHeader.getRecordingNb());
-
-            List<Comment> comments = kwakHeader.getComments();
-            if (comments != null && !comments.isEmpty()) {
-                jsonWriter.name(COMMENTS_KEY);
-                jsonWriter.beginArray();
-                for (Comment comment : comments) {
-                    jsonWriter.beginObject();
-
-                    jsonWriter.name(COMMENT_DATE_KEY)
-                            .value(comment.getTimestamp());
-
-                    jsonWriter.name(COMMENT_VALUE_KEY)
-                            .value(comment.getText());
-                    jsonWriter.endObject();
-                }
-                jsonWriter.endArray();
-            }
-
-            jsonWriter.name(EEG_PACKET_LENGTH_KEY)
-                    .value(kwakHeader.getEegPacketLength());
-
-            jsonWriter.name(SAMP_RATE_KEY)
-                    .value(kwakHeader.getSampleRate());
-
-            jsonWriter.name(NB_CHANNELS_KEY)
-                    .value(kwakHeader.getNbChannels());
-
-            jsonWriter.name(ACQUISITION_LOCATION_KEY);
-            jsonWriter.beginArray();
-
-            for (final EnumAcquisitionLocation local : kwakHeader.getAcquisitionLocations()) {
-                jsonWriter.value(local.toString());
-            }
-            jsonWriter.endArray();
-
-            jsonWriter.name(REFERENCES_LOCATION_KEY);
-            jsonWriter.beginArray();
-
-            for (final EnumAcquisitionLocation local : kwakHeader.getReferenceLocations()) {
-                jsonWriter.value(local.toString());
-            }
-            jsonWriter.endArray();
-
-            jsonWriter.name(GROUND_LOCATION_KEY);
-            jsonWriter.beginArray();
-
-            for (final EnumAcquisitionLocation local : kwakHeader.getGroundLocations()) {
-                jsonWriter.value(local.toString());
-            }
-            jsonWriter.endArray();
-
-            jsonWriter.endObject();     // end of       "header"   object
-
-            jsonWriter.name(RECORDING_KEY);
-            jsonWriter.beginObject();   // beginning of "recording"    object
-
-            jsonWriter.name(RECORD_ID_KEY)
-                    .value(kwakRecording.getRecordID());
-
-            jsonWriter.name(RECORDING_TYPE_KEY);
-            jsonWriter.beginObject();
-
-            KwakRecordingType kwakRecordingType = kwakRecording.getRecordingType();
-            jsonWriter.name(RECORD_TYPE_KEY)
-                    .value(kwakRecordingType.getRecordType().toString());
-
-            jsonWriter.name(SP_ALGO_VERSION_KEY)
-                    .value(kwakRecordingType.getSpVersion());
-
-            jsonWriter.name(SOURCE_KEY)
-                    .value(kwakRecordingType.getSource());
-
-            jsonWriter.name(DATA_TYPE_KEY)
-                    .value(kwakRecordingType.getDataType());
-
-            jsonWriter.endObject();
-
-            jsonWriter.name(RECORDING_TIME_KEY)
-                    .value(kwakRecording.getRecordingTime());
-
-            jsonWriter.name(NB_PACKETS_KEY)
-                    .value(recordingData.getNbPackets());
-
-            //----------------------------------------------------------------------------
-            // recording error data
-            //----------------------------------------------------------------------------
-            if (recordingData.getRecordingErrorData() != null) {
-                Timber.d("serialize recording error data");
-                jsonWriter.name("recordingErrorData");
-                jsonWriter.beginObject();
-                jsonWriter.name("missingEegFrame").value(recordingData.getRecordingErrorData().getMissingFrame());
-                jsonWriter.name("zeroTime").value(recordingData.getRecordingErrorData().getZeroTimeNumber());
-                jsonWriter.name("zeroSample").value(recordingData.getRecordingErrorData().getZeroSampleNumber());
-                jsonWriter.endObject();
-            }
+            writeHeader(jsonWriter, UUID.randomUUID().toString(), ownerId, kwakHeader, kwakRecording,
+                    recordingData.getNbPackets(), recordingData.getRecordingErrorData());
 
             jsonWriter.name(QUALITIES_KEY);
             jsonWriter.beginArray();    // beginning of "qualities"         array
@@ -224,7 +88,7 @@ final class MbtJsonBuilder2 {
 
                 jsonWriter.beginArray(); // we generate an array for each row of the qualities matrix
                 for (Float quality : channelsQualities) {
-                    jsonWriter.value((quality != null && quality != Float.NaN) ? quality : null);
+                    jsonWriter.value((quality != null && !Float.isNaN(quality)) ? quality : null);
                 }
                 jsonWriter.endArray();  // and we close it here
             }
@@ -354,4 +218,159 @@ final class MbtJsonBuilder2 {
             return false;
         }
     }
+
+    /**
+     * Writes everything before the signals : the main object is opened, then the context, the header
+     * and the "recording" object, which is left open.
+     */
+    private static void writeHeader(
+            @NonNull final JsonWriter jsonWriter,
+            @NonNull final String uuid,
+            @NonNull final String ownerId,
+            @NonNull final KwakHeader kwakHeader,
+            @NonNull final KwakRecording kwakRecording,
+            final int nbPackets,
+            @Nullable final EEGStreamingErrorCounter recordingErrorData) throws IOException {
+
+        jsonWriter.beginObject();
+        // BEGINNING OF MAIN JSON OBJECT
+        jsonWriter.name(UUID_KEY)
+                .value(uuid);
+
+        jsonWriter.name(CONTEXT_KEY);
+        jsonWriter.beginObject();
+
+        jsonWriter.name(OWNER_ID_KEY)
+                .value(ownerId);
+
+//        if(recordingParams != null && recordingParams.getRiAlgo() != null){
+//            jsonWriter.name(RI_ALGO_KEY)
+//                    .value(recordingParams.getRiAlgo());
+//        }
+
+        jsonWriter.endObject();
+
+        jsonWriter.name(HEADER_KEY);
+        jsonWriter.beginObject();   // beginning of "header"   object
+
+        jsonWriter.name(DEVICE_INFO_KEY);
+        jsonWriter.beginObject();   // beginning of "deviceInfo"        object
+
+        DeviceInformation device = kwakHeader.getDeviceInfo();
+        if (device == null) {
+            throw new RuntimeException("device info not found");
+        }
+
+        jsonWriter.name(PRODUCT_NAME_KEY)
+                .value(device.getBleName());
+
+        jsonWriter.name(HW_VERSION_KEY)
+                .value(device.getHardwareVersion());
+
+        jsonWriter.name(FW_VERSION_KEY)
+                .value(device.getFirmwareVersion());
+
+        jsonWriter.name(SERIAL_NUMBER_KEY)
+                .value(device.getSerialNumber());
+
+        jsonWriter.endObject();     // end of       "deviceInfo"        object
+
+        jsonWriter.name(RECORDING_NUMBER_KEY)
+                .value(kwakHeader.getRecordingNb());
+
+        List<Comment> comments = kwakHeader.getComments();
+        if (comments != null && !comments.isEmpty()) {
+            jsonWriter.name(COMMENTS_KEY);
+            jsonWriter.beginArray();
+            for (Comment comment : comments) {
+                jsonWriter.beginObject();
+
+                jsonWriter.name(COMMENT_DATE_KEY)
+                        .value(comment.getTimestamp());
+
+                jsonWriter.name(COMMENT_VALUE_KEY)
+                        .value(comment.getText());
+                jsonWriter.endObject();
+            }
+            jsonWriter.endArray();
+        }
+
+        jsonWriter.name(EEG_PACKET_LENGTH_KEY)
+                .value(kwakHeader.getEegPacketLength());
+
+        jsonWriter.name(SAMP_RATE_KEY)
+                .value(kwakHeader.getSampleRate());
+
+        jsonWriter.name(NB_CHANNELS_KEY)
+                .value(kwakHeader.getNbChannels());
+
+        jsonWriter.name(ACQUISITION_LOCATION_KEY);
+        jsonWriter.beginArray();
+
+        for (final EnumAcquisitionLocation local : kwakHeader.getAcquisitionLocations()) {
+            jsonWriter.value(local.toString());
+        }
+        jsonWriter.endArray();
+
+        jsonWriter.name(REFERENCES_LOCATION_KEY);
+        jsonWriter.beginArray();
+
+        for (final EnumAcquisitionLocation local : kwakHeader.getReferenceLocations()) {
+            jsonWriter.value(local.toString());
+        }
+        jsonWriter.endArray();
+
+        jsonWriter.name(GROUND_LOCATION_KEY);
+        jsonWriter.beginArray();
+
+        for (final EnumAcquisitionLocation local : kwakHeader.getGroundLocations()) {
+            jsonWriter.value(local.toString());
+        }
+        jsonWriter.endArray();
+
+        jsonWriter.endObject();     // end of       "header"   object
+
+        jsonWriter.name(RECORDING_KEY);
+        jsonWriter.beginObject();   // beginning of "recording"    object
+
+        jsonWriter.name(RECORD_ID_KEY)
+                .value(kwakRecording.getRecordID());
+
+        jsonWriter.name(RECORDING_TYPE_KEY);
+        jsonWriter.beginObject();
+
+        KwakRecordingType kwakRecordingType = kwakRecording.getRecordingType();
+        jsonWriter.name(RECORD_TYPE_KEY)
+                .value(kwakRecordingType.getRecordType().toString());
+
+        jsonWriter.name(SP_ALGO_VERSION_KEY)
+                .value(kwakRecordingType.getSpVersion());
+
+        jsonWriter.name(SOURCE_KEY)
+                .value(kwakRecordingType.getSource());
+
+        jsonWriter.name(DATA_TYPE_KEY)
+                .value(kwakRecordingType.getDataType());
+
+        jsonWriter.endObject();
+
+        jsonWriter.name(RECORDING_TIME_KEY)
+                .value(kwakRecording.getRecordingTime());
+
+        jsonWriter.name(NB_PACKETS_KEY)
+                .value(nbPackets);
+
+        //----------------------------------------------------------------------------
+        // recording error data
+        //----------------------------------------------------------------------------
+        if (recordingErrorData != null) {
+            Timber.d("serialize recording error data");
+            jsonWriter.name("recordingErrorData");
+            jsonWriter.beginObject();
+            jsonWriter.name("missingEegFrame").value(recordingErrorData.getMissingFrame());
+            jsonWriter.name("zeroTime").value(recordingErrorData.getZeroTimeNumber());
+            jsonWriter.name("zeroSample").value(recordingErrorData.getZeroSampleNumber());
+            jsonWriter.endObject();
+        }
+    }
 }
@@ -10,4 +10,38 @@ data class RecordingOption(
 ) {
     var recordingNb: Int = 0
     var recordingType : EnumRecordingType2 = EnumRecordingType2.ACQUISITION
+
+    /**
+     * When true, the signals are written next to [outputFile] while recording instead of being kept
+     * in memory until the recording is stopped : the memory used does not depend on the recording
+     * duration and the file is written faster at the end.
+     * In this mode, [com.mybraintech.sdk.core.acquisition.EEGRecordedDatas.eegPackets] is empty when the recording is saved.
+     */
+    var isStreamingEnabled: Boolean = false
+
+    /**
+     * When [isStreamingEnabled], minimum time between two writes of the recorded signals to the storage :
+     * at most this duration is lost if the app is killed, see [KwakRecovery]. 0 writes every packet.
+     */
+    var spoolCheckpointIntervalMs: Long = KwakSpool.DEFAULT_CHECKPOINT_INTERVAL_MS
+
+    /**
+     * format of [outputFile]
+     */
+    var format: EnumKwakFormat = EnumKwakFormat.JSON
+
+    /**
+     * When positive, the recording is split in consecutive files of this duration, saved while the next
+     * ones are recorded : [outputFile] `record.json` gives `record_<recordingNb>.json` with [recordingNb],
+     * [recordingNb] + 1, ... and the same [recordId]. Every file is given to
+     * [com.mybraintech.sdk.core.listener.RecordingListener.onRecordingSegmentSaved], the last one also to
+     * `onRecordingSaved`. The segments are spooled to disk as with [isStreamingEnabled].
+     */
+    var rolloverMinutes: Int = 0
+
+    /**
+     * When positive, same as [rolloverMinutes] with files of about this size, estimated from the number of
+     * recorded values. The files are split at the first limit reached.
+     */
+    var rolloverMegabytes: Int = 0
 }
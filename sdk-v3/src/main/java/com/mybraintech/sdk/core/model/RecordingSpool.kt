@@ -0,0 +1,15 @@
+package com.mybraintech.sdk.core.model
+
+/**
+ * Destination of the recorded signals when they are written to disk while recording, see [KwakSpool].
+ *
+ * The counts are the numbers of EEG packets and IMS samples appended since the recording started.
+ */
+internal interface RecordingSpool {
+    val eegPacketCount: Int
+    val imsSampleCount: Long
+
+    fun appendEEG(packet: MbtEEGPacket)
+
+    fun appendIMS(positions: List<ThreeDimensionalPosition>)
+}
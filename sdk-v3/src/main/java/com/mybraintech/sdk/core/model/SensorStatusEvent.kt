@@ -0,0 +1,13 @@
+package com.mybraintech.sdk.core.model
+
+import androidx.annotation.Keep
+import com.mybraintech.sdk.core.acquisition.EnumSignalType
+
+/**
+ * A sensor of the headset has been enabled or disabled
+ */
+@Keep
+data class SensorStatusEvent(
+    val signalType: EnumSignalType,
+    val isEnabled: Boolean,
+)
@@ -1,6 +1,7 @@
 package com.mybraintech.sdk.core.model
 
 import com.mybraintech.sdk.core.ResearchStudy
+import java.io.File
 
 class StreamingParams private constructor(
     val isEEGEnabled: Boolean,
@@ -23,6 +24,52 @@ class StreamingParams private constructor(
     var accelerometerSampleRate: EnumAccelerometerSampleRate,
 
     val filterConfig: EnumEEGFilterConfig,
+
+    /**
+     * number of samples per channel of each emitted [MbtEEGPacket]
+     */
+    val eegPacketWindowSize: Int,
+
+    /**
+     * number of samples between the starts of two consecutive [MbtEEGPacket]s.
+     * Packets overlap when it is smaller than [eegPacketWindowSize].
+     */
+    val eegPacketHopSize: Int,
+
+    /**
+     * amplifier gain of the headset, used to convert the raw EEG to volts
+     */
+    val eegAmpGain: AmpGainConfig2,
+
+    /**
+     * delivery of the [MbtEEGPacket]s to the EEGListener
+     */
+    val eegPacketDelivery: DeliveryOption,
+
+    /**
+     * delivery of the decoded frames to the EEGRealtimeListener
+     */
+    val eegRealtimeDelivery: DeliveryOption,
+
+    /**
+     * delivery of the [AccelerometerPacket]s to the AccelerometerListener
+     */
+    val accelerometerPacketDelivery: DeliveryOption,
+
+    /**
+     * maximum number of BLE frames per [EEGSignalBatch], 0 for no limit
+     */
+    val eegRealtimeBatchMaxFrames: Int,
+
+    /**
+     * maximum duration of an [EEGSignalBatch] in ms, 0 for no limit
+     */
+    val eegRealtimeBatchMaxDurationMs: Long,
+
+    /**
+     * journal of the raw frames received from the headset, null if they are not journaled
+     */
+    val frameJournalFile: File?,
 ) {
     val eegSampleRate: Int = 250
 
@@ -40,6 +87,24 @@ class StreamingParams private constructor(
 
         private var filterConfig: EnumEEGFilterConfig = EnumEEGFilterConfig.DEFAULT
 
+        private var eegPacketWindowSize: Int = DEFAULT_EEG_PACKET_SIZE
+
+        private var eegPacketHopSize: Int = DEFAULT_EEG_PACKET_SIZE
+
+        private var eegAmpGain: AmpGainConfig2 = AmpGainConfig2.AMP_GAIN_X8_MEDIUM
+
+        private var eegPacketDelivery = DeliveryOption(EnumDeliveryPolicy.DROP_OLDEST, DEFAULT_PACKET_DELIVERY_CAPACITY)
+
+        private var eegRealtimeDelivery = DeliveryOption(EnumDeliveryPolicy.DROP_OLDEST, DEFAULT_REALTIME_DELIVERY_CAPACITY)
+
+        private var accelerometerPacketDelivery = DeliveryOption(EnumDeliveryPolicy.DROP_OLDEST, DEFAULT_PACKET_DELIVERY_CAPACITY)
+
+        private var eegRealtimeBatchMaxFrames: Int = DEFAULT_REALTIME_BATCH_FRAMES
+
+        private var eegRealtimeBatchMaxDurationMs: Long = 0L
+
+        private var frameJournalFile: File? = null
+
         fun setEEG(isEnabled: Boolean): Builder {
             this.isEEGEnabled = isEnabled
             return this
@@ -71,6 +136,90 @@ class StreamingParams private constructor(
             return this
         }
 
+        /**
+         * By default one packet of 1 second (250 samples) is emitted every second.
+         * Eg: windowSize = 250 and hopSize = 50 emits a 1 second packet every 200 ms.
+         *
+         * The packets are views over the same samples, overlapping does not duplicate them.
+         * The recording is not affected : it always stores consecutive 1 second packets.
+         *
+         * @param windowSize number of samples per channel of each packet
+         * @param hopSize number of samples between the starts of two consecutive packets, must not exceed windowSize
+         */
+        fun setEEGPacketWindow(windowSize: Int, hopSize: Int): Builder {
+            require(windowSize > 0) { "windowSize must be positive : $windowSize" }
+            require(hopSize in 1..windowSize) { "hopSize must be in [1, windowSize] : $hopSize" }
+            this.eegPacketWindowSize = windowSize
+            this.eegPacketHopSize = hopSize
+            return this
+        }
+
+        /**
+         * The SDK does not change the amplifier gain of the headset : this value must match the gain
+         * configured on the headset, otherwise the EEG amplitude is wrong. Default is x8.
+         */
+        @ResearchStudy
+        fun setEEGAmpGain(gain: AmpGainConfig2): Builder {
+            this.eegAmpGain = gain
+            return this
+        }
+
+        /**
+         * By default the oldest packets are dropped when more than 64 packets (about 1 minute) are waiting
+         * for the listener, see [StreamingStatistics.eegPacketDelivery] for the number of dropped packets.
+         * The recording is not affected by the delivery policy.
+         */
+        fun setEEGPacketDelivery(policy: EnumDeliveryPolicy, capacity: Int): Builder {
+            this.eegPacketDelivery = DeliveryOption(policy, capacity)
+            return this
+        }
+
+        /**
+         * By default the oldest frames are dropped when more than 256 frames (about 5 seconds) are waiting for the listener.
+         */
+        fun setEEGRealtimeDelivery(policy: EnumDeliveryPolicy, capacity: Int): Builder {
+            this.eegRealtimeDelivery = DeliveryOption(policy, capacity)
+            return this
+        }
+
+        /**
+         * By default the oldest packets are dropped when more than 64 packets are waiting for the listener,
+         * see [StreamingStatistics.accelerometerPacketDelivery] for the number of dropped packets.
+         */
+        fun setAccelerometerPacketDelivery(policy: EnumDeliveryPolicy, capacity: Int): Builder {
+            this.accelerometerPacketDelivery = DeliveryOption(policy, capacity)
+            return this
+        }
+
+        /**
+         * Size of the batches given to the EEGRealtimeBatchListener : a batch is delivered as soon as
+         * one of the limits is reached. By default a batch contains 10 frames (about 200 ms).
+         * The batches are delivered with the same policy as [setEEGRealtimeDelivery].
+         *
+         * @param maxFrames maximum number of BLE frames per batch, 0 for no limit
+         * @param maxDurationMs maximum time between the first and the last frame of a batch, 0 for no limit
+         */
+        fun setEEGRealtimeBatch(maxFrames: Int, maxDurationMs: Long = 0L): Builder {
+            require(maxFrames >= 0 && maxDurationMs >= 0) { "limits must not be negative" }
+            require(maxFrames > 0 || maxDurationMs > 0) { "at least one limit must be set" }
+            this.eegRealtimeBatchMaxFrames = maxFrames
+            this.eegRealtimeBatchMaxDurationMs = maxDurationMs
+            return this
+        }
+
+        /**
+         * Appends every raw EEG frame, IMS frame, mailbox response and configuration received from the headset
+         * to [file], with its arrival time, until the device is disconnected. The journal can be read with
+         * [com.mybraintech.sdk.core.acquisition.BleFrameJournalReader] to analyse a data loss or to replay the
+         * session offline. It is disabled by default.
+         *
+         * @param file the journal file, it is overwritten. null to disable the journal.
+         */
+        fun setFrameJournal(file: File?): Builder {
+            this.frameJournalFile = file
+            return this
+        }
+
         fun build(): StreamingParams {
             return if (isEEGEnabled) {
                 StreamingParams(
@@ -80,6 +229,15 @@ class StreamingParams private constructor(
                     isAccelerometerEnabled = isAccelerometerEnabled,
                     accelerometerSampleRate = accelerometerSampleRate,
                     filterConfig = filterConfig,
+                    eegPacketWindowSize = eegPacketWindowSize,
+                    eegPacketHopSize = eegPacketHopSize,
+                    eegAmpGain = eegAmpGain,
+                    eegPacketDelivery = eegPacketDelivery,
+                    eegRealtimeDelivery = eegRealtimeDelivery,
+                    accelerometerPacketDelivery = accelerometerPacketDelivery,
+                    eegRealtimeBatchMaxFrames = eegRealtimeBatchMaxFrames,
+                    eegRealtimeBatchMaxDurationMs = eegRealtimeBatchMaxDurationMs,
+                    frameJournalFile = frameJournalFile,
                 )
             } else {
                 StreamingParams(
@@ -89,8 +247,24 @@ class StreamingParams private constructor(
                     isAccelerometerEnabled = true,
                     accelerometerSampleRate = accelerometerSampleRate,
                     filterConfig = filterConfig,
+                    eegPacketWindowSize = eegPacketWindowSize,
+                    eegPacketHopSize = eegPacketHopSize,
+                    eegAmpGain = eegAmpGain,
+                    eegPacketDelivery = eegPacketDelivery,
+                    eegRealtimeDelivery = eegRealtimeDelivery,
+                    accelerometerPacketDelivery = accelerometerPacketDelivery,
+                    eegRealtimeBatchMaxFrames = eegRealtimeBatchMaxFrames,
+                    eegRealtimeBatchMaxDurationMs = eegRealtimeBatchMaxDurationMs,
+                    frameJournalFile = frameJournalFile,
                 )
             }
         }
     }
+
+    companion object {
+        const val DEFAULT_EEG_PACKET_SIZE = 250
+        const val DEFAULT_PACKET_DELIVERY_CAPACITY = 64
+        const val DEFAULT_REALTIME_DELIVERY_CAPACITY = 256
+        const val DEFAULT_REALTIME_BATCH_FRAMES = 10
+    }
 }
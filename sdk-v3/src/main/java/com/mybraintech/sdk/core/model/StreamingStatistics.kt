@@ -0,0 +1,102 @@
+package com.mybraintech.sdk.core.model
+
+import androidx.annotation.Keep
+
+/**
+ * Snapshot of the internal queues of a streaming session, to monitor the load of the SDK.
+ */
+@Keep
+data class StreamingStatistics(
+    val eegFrameQueue: FrameQueueStatistics,
+    val accelerometerFrameQueue: FrameQueueStatistics?,
+    val eegPacketDelivery: DeliveryStatistics,
+    val eegRealtimeDelivery: DeliveryStatistics,
+    val eegRealtimeBatchDelivery: DeliveryStatistics,
+    val accelerometerPacketDelivery: DeliveryStatistics?,
+)
+
+/**
+ * State of the queue between the bluetooth callback thread and the frame decoding thread.
+ */
+@Keep
+data class FrameQueueStatistics(
+    /**
+     * maximum number of frames waiting to be decoded
+     */
+    val capacity: Int,
+
+    /**
+     * number of frames waiting to be decoded
+     */
+    val depth: Int,
+
+    /**
+     * highest depth reached since the beginning of the streaming
+     */
+    val maxDepth: Int,
+
+    /**
+     * number of frames received from the headset, including the dropped ones
+     */
+    val receivedCount: Long,
+
+    /**
+     * number of frames dropped because the queue was full
+     */
+    val droppedCount: Long,
+
+    /**
+     * number of frames decoded
+     */
+    val consumedCount: Long,
+
+    /**
+     * average number of frames decoded per second since the beginning of the streaming
+     */
+    val framesPerSecond: Float,
+
+    /**
+     * time spent decoding the frames since the beginning of the streaming
+     */
+    val busyTimeMs: Long,
+
+    /**
+     * name of the thread decoding the frames, the devices sharing a thread share its CPU time
+     */
+    val workerName: String,
+)
+
+/**
+ * State of the queue between the SDK and a listener.
+ */
+@Keep
+data class DeliveryStatistics(
+    val policy: EnumDeliveryPolicy,
+
+    val capacity: Int,
+
+    /**
+     * number of items waiting for the listener
+     */
+    val depth: Int,
+
+    /**
+     * highest depth reached since the beginning of the streaming
+     */
+    val maxDepth: Int,
+
+    /**
+     * number of items given to the listener
+     */
+    val deliveredCount: Long,
+
+    /**
+     * number of items dropped by [EnumDeliveryPolicy.DROP_OLDEST] or [EnumDeliveryPolicy.DROP_NEWEST]
+     */
+    val droppedCount: Long,
+
+    /**
+     * number of items replaced by a more recent one with [EnumDeliveryPolicy.COALESCE_LATEST]
+     */
+    val coalescedCount: Long,
+)
@@ -3,6 +3,7 @@ package com.mybraintech.sdk.core.recording
 import com.mybraintech.sdk.core.acquisition.EnumSignalType
 import com.mybraintech.sdk.core.model.AccelerometerConfig
 import com.mybraintech.sdk.core.model.EnumAccelerometerSampleRate
+import com.mybraintech.sdk.core.model.RecordingSpool
 import com.mybraintech.sdk.core.model.ThreeDimensionalPosition
 import io.reactivex.disposables.CompositeDisposable
 
@@ -11,6 +12,12 @@ abstract class BaseAccelerometerRecorder : SignalRecordingInterface<ByteArray, T
     private var _sampleRate = EnumAccelerometerSampleRate.F_100_HZ
     protected var disposable = CompositeDisposable()
 
+    /**
+     * when not null, the recorded positions are written to this spool instead of being kept in memory
+     */
+    @Volatile
+    internal var recordingSpool: RecordingSpool? = null
+
     override fun getSignalType(): EnumSignalType {
         return EnumSignalType.ACCELEROMETER
     }
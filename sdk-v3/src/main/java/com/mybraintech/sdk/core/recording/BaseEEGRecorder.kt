@@ -1,10 +1,13 @@
 package com.mybraintech.sdk.core.recording
 
 import com.mybraintech.sdk.core.acquisition.EnumSignalType
+import com.mybraintech.sdk.core.listener.EEGRealtimeBatchListener
 import com.mybraintech.sdk.core.listener.EEGRealtimeListener
+import com.mybraintech.sdk.core.model.EEGSignalBatch
 import com.mybraintech.sdk.core.model.EEGSignalPack
 import com.mybraintech.sdk.core.model.EEGStreamingErrorCounter
 import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.RecordingSpool
 import com.mybraintech.sdk.core.model.TimedBLEFrame
 import io.reactivex.disposables.CompositeDisposable
 
@@ -17,6 +20,13 @@ abstract class BaseEEGRecorder(private var eegCallback: EEGCallback?) :
     protected val _sampleRate = 250
     protected val disposable = CompositeDisposable()
     private var realtimeListener: EEGRealtimeListener? = null
+    private var realtimeBatchListener: EEGRealtimeBatchListener? = null
+
+    /**
+     * when not null, the recorded packets are written to this spool instead of being kept in memory
+     */
+    @Volatile
+    internal var recordingSpool: RecordingSpool? = null
 
     override fun getSignalType(): EnumSignalType {
         return EnumSignalType.EEG
@@ -38,10 +48,26 @@ abstract class BaseEEGRecorder(private var eegCallback: EEGCallback?) :
         realtimeListener?.onEEGFrame(pack)
     }
 
+    fun setRealtimeBatchListener(eegRealtimeBatchListener: EEGRealtimeBatchListener?) {
+        this.realtimeBatchListener = eegRealtimeBatchListener
+    }
+
+    fun hasRealtimeBatchListener(): Boolean {
+        return this.realtimeBatchListener != null
+    }
+
+    protected fun notifyRealtimeBatch(batch: EEGSignalBatch) {
+        realtimeBatchListener?.onEEGBatch(batch)
+    }
+
     abstract fun onTriggerStatusConfiguration(statusAllocationSize: Int)
 
     abstract fun getRecordingErrorData(): EEGStreamingErrorCounter
 
+    fun hasPacketListener(): Boolean {
+        return eegCallback?.hasListener() == true
+    }
+
     protected fun notifyPacket(mbtEEGPacket: MbtEEGPacket) {
         eegCallback?.onNewEEG(mbtEEGPacket)
     }
@@ -55,5 +81,10 @@ abstract class BaseEEGRecorder(private var eegCallback: EEGCallback?) :
      */
     interface EEGCallback {
         fun onNewEEG(eegPacket: MbtEEGPacket)
+
+        /**
+         * @return false when nobody receives the packets : they are not delivered
+         */
+        fun hasListener(): Boolean = true
     }
 }
\ No newline at end of file
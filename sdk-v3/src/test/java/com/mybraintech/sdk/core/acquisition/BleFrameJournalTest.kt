@@ -0,0 +1,80 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.AccelerometerConfig
+import com.mybraintech.sdk.core.model.EnumAccelerometerSampleRate
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.RandomAccessFile
+
+class BleFrameJournalTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    @Test
+    fun test_journal_isReadBackInOrder() {
+        val file = folder.newFile("session.mbtj")
+        val journal = BleFrameJournal(file, EnumMBTDevice.Q_PLUS, 64 * 1024)
+        journal.appendTriggerStatusConfiguration(1, 3)
+        journal.appendAccelerometerConfiguration(2, AccelerometerConfig.parse(byteArrayOf(0x39, 0x04, 0x07, 0x00)))
+        journal.appendMailbox(3, byteArrayOf(0x20, 0x55))
+        // more bytes than the ring : the writer thread must keep up or the records are dropped
+        val nbFrames = 5000
+        for (i in 0 until nbFrames) {
+            journal.appendEEGFrame(100L + i, ByteArray(90) { (i + it).toByte() })
+            if (i % 8 == 0) {
+                journal.appendIMSFrame(100L + i, ByteArray(20) { i.toByte() })
+            }
+        }
+        journal.close()
+
+        BleFrameJournalReader(file).use { reader ->
+            Assert.assertEquals(EnumMBTDevice.Q_PLUS, reader.deviceType)
+
+            val trigger = reader.next()!!
+            Assert.assertEquals(EnumFrameJournalRecord.TRIGGER_STATUS_CONFIG, trigger.type)
+            Assert.assertEquals(3, trigger.getTriggerStatusAllocationSize())
+            val config = reader.next()!!
+            Assert.assertEquals(EnumAccelerometerSampleRate.F_50_HZ, config.getAccelerometerConfig().sampleRate)
+            val mailbox = reader.next()!!
+            Assert.assertEquals(EnumFrameJournalRecord.MAILBOX, mailbox.type)
+            Assert.assertArrayEquals(byteArrayOf(0x20, 0x55), mailbox.data)
+
+            var count = 3L
+            var lastFrame = -1L
+            while (true) {
+                val record = reader.next() ?: break
+                count++
+                val index = record.timestamp - 100
+                if (record.type == EnumFrameJournalRecord.EEG_FRAME) {
+                    Assert.assertTrue(index > lastFrame)
+                    Assert.assertArrayEquals(ByteArray(90) { (index + it).toByte() }, record.data)
+                    lastFrame = index
+                } else {
+                    Assert.assertEquals(EnumFrameJournalRecord.IMS_FRAME, record.type)
+                }
+            }
+            Assert.assertEquals(journal.recordCount, count)
+            Assert.assertEquals(3L + nbFrames + nbFrames / 8, journal.recordCount + journal.droppedCount)
+        }
+    }
+
+    @Test
+    fun test_cutRecord_isIgnored() {
+        val file = folder.newFile("session.mbtj")
+        BleFrameJournal(file, EnumMBTDevice.MELOMIND).use {
+            it.appendEEGFrame(1, ByteArray(40) { 1 })
+            it.appendEEGFrame(2, ByteArray(40) { 2 })
+        }
+        RandomAccessFile(file, "rw").use { it.setLength(it.length() - 5) }
+
+        BleFrameJournalReader(file).use { reader ->
+            Assert.assertEquals(EnumMBTDevice.MELOMIND, reader.deviceType)
+            Assert.assertEquals(1L, reader.next()?.timestamp)
+            Assert.assertNull(reader.next())
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.mybraintech.sdk.core.acquisition
+
+import org.junit.Assert
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class BleFrameQueueTest {
+
+    @Test
+    fun test_offer_dropsNewestWhenFull() {
+        val queue = BleFrameQueue(4, "test") {}
+        for (i in 0 until 6) {
+            Assert.assertEquals(i < 4, queue.offer(i.toLong(), byteArrayOf(i.toByte())))
+        }
+        val consumed = mutableListOf<Byte>()
+        Assert.assertEquals(4, queue.drain { _, frame -> consumed.add(frame[0]) })
+        Assert.assertEquals(listOf<Byte>(0, 1, 2, 3), consumed)
+
+        val statistics = queue.getStatistics()
+        Assert.assertEquals(0, statistics.depth)
+        Assert.assertEquals(4, statistics.maxDepth)
+        Assert.assertEquals(6L, statistics.receivedCount)
+        Assert.assertEquals(2L, statistics.droppedCount)
+    }
+
+    @Test
+    fun test_worker_consumesFramesInOrder() {
+        val worker = BleFrameWorker("test-worker")
+        val nbFrames = 10_000
+        val latch = CountDownLatch(1)
+        var expected = 0L
+        var isOrdered = true
+        val queue = worker.createQueue(64) { timestamp, frame ->
+            isOrdered = isOrdered && timestamp == expected && frame[0] == expected.toByte()
+            expected++
+            if (expected == nbFrames.toLong()) {
+                latch.countDown()
+            }
+        }
+        val frame = ByteArray(43)
+        var sent = 0L
+        while (sent < nbFrames) {
+            frame[0] = sent.toByte()
+            if (queue.offer(sent, frame)) {
+                sent++
+            } else {
+                Thread.yield()
+            }
+        }
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS))
+        Assert.assertTrue(isOrdered)
+        worker.dispose()
+    }
+}
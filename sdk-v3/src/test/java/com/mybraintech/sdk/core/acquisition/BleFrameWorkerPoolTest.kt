@@ -0,0 +1,26 @@
+package com.mybraintech.sdk.core.acquisition
+
+import org.junit.Assert
+import org.junit.Test
+
+class BleFrameWorkerPoolTest {
+
+    @Test
+    fun test_devices_areShardedOverOneWorkerPerCore() {
+        val nbWorkers = maxOf(1, Runtime.getRuntime().availableProcessors())
+        val workers = List(2 * nbWorkers) { BleFrameWorkerPool.acquire() }
+        val distinct = workers.distinct()
+        Assert.assertEquals(nbWorkers, distinct.size)
+        for (worker in distinct) {
+            Assert.assertEquals(2, workers.count { it === worker })
+        }
+
+        // the released worker is the least loaded one
+        BleFrameWorkerPool.release(workers[0])
+        val next = BleFrameWorkerPool.acquire()
+        Assert.assertSame(workers[0], next)
+
+        BleFrameWorkerPool.release(next)
+        workers.drop(1).forEach { BleFrameWorkerPool.release(it) }
+    }
+}
@@ -0,0 +1,109 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.DeliveryOption
+import com.mybraintech.sdk.core.model.EnumDeliveryPolicy
+import org.junit.Assert
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class BoundedDeliveryTest {
+
+    /**
+     * the consumer is blocked on the first item, then [nbItems] - 1 items are offered
+     */
+    private fun deliver(policy: EnumDeliveryPolicy, nbItems: Int): Pair<List<Int>, BoundedDelivery<Int>> {
+        val isFirstReceived = CountDownLatch(1)
+        val release = CountDownLatch(1)
+        val received = mutableListOf<Int>()
+        val delivery = BoundedDelivery<Int>("test-delivery", DeliveryOption(policy, 3)) {
+            isFirstReceived.countDown()
+            release.await()
+            synchronized(received) { received.add(it) }
+        }
+        delivery.offer(0)
+        Assert.assertTrue(isFirstReceived.await(5, TimeUnit.SECONDS))
+        for (i in 1 until nbItems) {
+            delivery.offer(i)
+        }
+        release.countDown()
+        val deadline = System.currentTimeMillis() + 5000
+        while (delivery.getStatistics().depth > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10)
+        }
+        Thread.sleep(50)
+        return synchronized(received) { received.toList() } to delivery
+    }
+
+    @Test
+    fun test_dropOldest_keepsLatestItems() {
+        val (received, delivery) = deliver(EnumDeliveryPolicy.DROP_OLDEST, 10)
+        Assert.assertEquals(listOf(0, 7, 8, 9), received)
+        Assert.assertEquals(6L, delivery.getStatistics().droppedCount)
+        delivery.dispose()
+    }
+
+    @Test
+    fun test_block_keepsAllItems_withoutWaiting() {
+        // deliver() would not return if an offer waited for the blocked consumer
+        val (received, delivery) = deliver(EnumDeliveryPolicy.BLOCK, 10)
+        Assert.assertEquals((0 until 10).toList(), received)
+        Assert.assertEquals(0L, delivery.getStatistics().droppedCount)
+        Assert.assertEquals(9, delivery.getStatistics().maxDepth)
+        delivery.dispose()
+    }
+
+    @Test
+    fun test_dropNewest_keepsFirstItems() {
+        val (received, delivery) = deliver(EnumDeliveryPolicy.DROP_NEWEST, 10)
+        Assert.assertEquals(listOf(0, 1, 2, 3), received)
+        Assert.assertEquals(6L, delivery.getStatistics().droppedCount)
+        delivery.dispose()
+    }
+
+    @Test
+    fun test_coalesceLatest_keepsOnlyLastItem() {
+        val (received, delivery) = deliver(EnumDeliveryPolicy.COALESCE_LATEST, 10)
+        Assert.assertEquals(listOf(0, 9), received)
+        Assert.assertEquals(8L, delivery.getStatistics().coalescedCount)
+        Assert.assertEquals(2L, delivery.getStatistics().deliveredCount)
+        delivery.dispose()
+    }
+
+    @Test
+    fun test_items_areDeliveredInOrder_acrossBatches() {
+        val done = CountDownLatch(1)
+        val received = mutableListOf<Int>()
+        val delivery = BoundedDelivery<Int>("test-delivery", DeliveryOption(EnumDeliveryPolicy.BLOCK, 3)) {
+            synchronized(received) { received.add(it) }
+            if (it == 99) {
+                done.countDown()
+            }
+        }
+        for (i in 0 until 100) {
+            Assert.assertTrue(delivery.offer(i))
+        }
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS))
+        Assert.assertEquals((0 until 100).toList(), synchronized(received) { received.toList() })
+        delivery.dispose()
+        Assert.assertFalse(delivery.offer(100))
+    }
+
+    @Test
+    fun test_deliveries_shareThePoolThreads() {
+        val nbDeliveries = 4 * BoundedDelivery.poolSize
+        val received = CountDownLatch(nbDeliveries)
+        val threads = mutableSetOf<Thread>()
+        val deliveries = List(nbDeliveries) {
+            BoundedDelivery<Int>("test-delivery", DeliveryOption(EnumDeliveryPolicy.DROP_OLDEST, 3)) {
+                synchronized(threads) { threads.add(Thread.currentThread()) }
+                received.countDown()
+            }
+        }
+        deliveries.forEach { it.offer(1) }
+        Assert.assertTrue(received.await(5, TimeUnit.SECONDS))
+        Assert.assertTrue(threads.size <= BoundedDelivery.poolSize)
+        Assert.assertTrue(threads.all { it.name == "mbt-delivery" })
+        deliveries.forEach { it.dispose() }
+    }
+}
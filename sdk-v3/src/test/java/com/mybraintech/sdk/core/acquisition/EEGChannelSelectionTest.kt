@@ -0,0 +1,84 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import org.junit.Assert
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class EEGChannelSelectionTest {
+
+    @Test
+    fun test_defaultSelection_isAllDeviceChannels() {
+        val melomind = EEGChannelSelection.of(EnumMBTDevice.MELOMIND)
+        Assert.assertEquals(listOf(EnumAcquisitionLocation.P3, EnumAcquisitionLocation.P4), melomind.locations)
+        Assert.assertArrayEquals(intArrayOf(0, 1), melomind.channels)
+
+        val qPlus = EEGChannelSelection.of(EnumMBTDevice.Q_PLUS)
+        Assert.assertArrayEquals(intArrayOf(0, 1, 2, 3), qPlus.channels)
+        Assert.assertEquals(4, qPlus.packetChannels)
+    }
+
+    @Test
+    fun test_selection_followsDeviceLocations() {
+        val selection = EEGChannelSelection.of(
+            EnumMBTDevice.HYPERION, listOf(EnumAcquisitionLocation.AF3, EnumAcquisitionLocation.Cz)
+        )
+        Assert.assertArrayEquals(intArrayOf(2, 0), selection.channels)
+        Assert.assertEquals(3, selection.packetChannels)
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun test_unknownLocation_isRejected() {
+        EEGChannelSelection.of(EnumMBTDevice.MELOMIND, listOf(EnumAcquisitionLocation.AF3))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun test_duplicatedLocation_isRejected() {
+        EEGChannelSelection.of(EnumMBTDevice.MELOMIND, listOf(EnumAcquisitionLocation.P3, EnumAcquisitionLocation.P3))
+    }
+
+    @Test
+    fun test_packets_areCopiedChannelMajor() {
+        val sampleRate = EEGPacketFixtures.SAMPLE_RATE
+        val nbPackets = 3
+        val packets = List(nbPackets) { second -> EEGPacketFixtures.packet(second, 4) }
+        val selection = EEGChannelSelection.of(EnumMBTDevice.Q_PLUS)
+        val signalLength = nbPackets * sampleRate
+        val signals = FloatArray(4 * signalLength)
+        val qualities = FloatArray(4 * nbPackets)
+        selection.copyPackets(packets, signals, signalLength, qualities, sampleRate)
+
+        for (channel in 0 until 4) {
+            for (second in 0 until nbPackets) {
+                Assert.assertEquals(second + channel / 10f, qualities[channel * nbPackets + second], 0f)
+                for (time in 0 until sampleRate) {
+                    val expected = EEGPacketFixtures.sample(second, channel, time)
+                    Assert.assertEquals(expected, signals[channel * signalLength + second * sampleRate + time], 0f)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun test_pool_runsEveryChannel_andRethrows() {
+        val count = AtomicInteger()
+        SignalComputePool.forEachChannel(4) { count.incrementAndGet() }
+        Assert.assertEquals(4, count.get())
+
+        count.set(0)
+        try {
+            SignalComputePool.forEachChannel(4) { channel ->
+                count.incrementAndGet()
+                if (channel == 3) {
+                    throw IllegalStateException("channel 3")
+                }
+            }
+            Assert.fail()
+        } catch (e: IllegalStateException) {
+            Assert.assertEquals("channel 3", e.message)
+        }
+        // the other channels are not cancelled
+        Assert.assertEquals(4, count.get())
+    }
+}
@@ -0,0 +1,43 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+
+/**
+ * One second EEG packets shared by the tests of the computations fed with the packets of the streaming.
+ */
+internal object EEGPacketFixtures {
+
+    const val SAMPLE_RATE = 250
+
+    const val CHANNEL_SHIFT = 100_000
+
+    /**
+     * @return absolute position of the sample + channel * [CHANNEL_SHIFT]
+     */
+    fun sample(second: Int, channel: Int, time: Int): Float {
+        return (second * SAMPLE_RATE + time + channel * CHANNEL_SHIFT).toFloat()
+    }
+
+    /**
+     * A window over a bigger buffer, like the packets of the streaming, filled with [sample].
+     *
+     * @param quality quality of each channel, second + channel / 10 by default
+     */
+    fun packet(
+        second: Int,
+        nbChannels: Int,
+        quality: (channel: Int) -> Float = { second + it / 10f }
+    ): MbtEEGPacket {
+        val offset = 3
+        val stride = SAMPLE_RATE + 7
+        val data = FloatArray(offset + nbChannels * stride)
+        for (channel in 0 until nbChannels) {
+            for (time in 0 until SAMPLE_RATE) {
+                data[offset + channel * stride + time] = sample(second, channel, time)
+            }
+        }
+        val packet = MbtEEGPacket(data, offset, stride, nbChannels, SAMPLE_RATE, null, 0)
+        packet.qualityValues = FloatArray(nbChannels) { quality(it) }
+        return packet
+    }
+}
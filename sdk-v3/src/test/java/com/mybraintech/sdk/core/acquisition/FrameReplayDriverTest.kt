@@ -0,0 +1,114 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.listener.EEGListener
+import com.mybraintech.sdk.core.model.AmpGainConfig2
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import com.mybraintech.sdk.core.model.MbtDataConversion2
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.StreamingParams
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.math.PI
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+class FrameReplayDriverTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val gain = AmpGainConfig2.AMP_GAIN_X8_MEDIUM
+
+    private fun createManager(deviceType: EnumMBTDevice): SignalProcessingManager {
+        // the quality checker is a native library, it is not available on the JVM
+        val params = StreamingParams.Builder()
+            .setQualityChecker(false)
+            .setTriggerStatus(true)
+            .build()
+        return SignalProcessingManager(deviceType, params)
+    }
+
+    private fun collectPackets(manager: SignalProcessingManager, count: Int): Pair<MutableList<MbtEEGPacket>, CountDownLatch> {
+        val packets = Collections.synchronizedList(mutableListOf<MbtEEGPacket>())
+        val latch = CountDownLatch(count)
+        manager.setEEGListener(object : EEGListener {
+            override fun onEEGStatusChange(isEnabled: Boolean) {}
+
+            override fun onEegPacket(mbtEEGPacket: MbtEEGPacket) {
+                packets.add(mbtEEGPacket)
+                latch.countDown()
+            }
+
+            override fun onEegError(error: Throwable) {}
+        })
+        return Pair(packets, latch)
+    }
+
+    @Test
+    fun test_unthrottledReplay_processesAllFrames() {
+        val nbSeconds = 20
+        val manager = createManager(EnumMBTDevice.Q_PLUS)
+        val (packets, latch) = collectPackets(manager, nbSeconds)
+        val timings = PipelineTimings()
+        manager.setPipelineTimings(timings)
+
+        val driver = FrameReplayDriver(manager, manager.getReplayFlowControl())
+        val report = driver.replay(SyntheticFrameSource(EnumMBTDevice.Q_PLUS, nbSeconds, 1), FrameReplayDriver.UNTHROTTLED, timings)
+        println(report)
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS))
+        Assert.assertEquals(nbSeconds * 50L, report.eegFrameCount)
+        Assert.assertEquals(1L, report.otherRecordCount)
+        Assert.assertEquals(report.eegFrameCount, timings.decode.count)
+        Assert.assertEquals(0L, manager.getStreamingStatistics().eegFrameQueue.droppedCount)
+
+        val scale = MbtDataConversion2.getBleSampleScale(gain)
+        val packet = packets[3]
+        for (channel in 0 until 4) {
+            for (sample in 0 until packet.nbSamples) {
+                val raw = (2000.0 * sin(2 * PI * (channel + 1) * 5 * sample / 250)).roundToInt()
+                Assert.assertEquals(raw * scale, packet.getSample(channel, sample), Math.abs(scale))
+            }
+        }
+        Assert.assertEquals(1f, packet.getStatus(0))
+        Assert.assertEquals(0f, packet.getStatus(1))
+        Assert.assertEquals(0f, packet.getStatus(5))
+        manager.dispose()
+    }
+
+    @Test
+    fun test_journalReplay_isPaced() {
+        val file = folder.newFile("session.mbtj")
+        val nbSeconds = 4
+        BleFrameJournal(file, EnumMBTDevice.MELOMIND).use { journal ->
+            SyntheticFrameSource(EnumMBTDevice.MELOMIND, nbSeconds, lostFrameInterval = 7).use { source ->
+                while (true) {
+                    val record = source.next() ?: break
+                    journal.appendEEGFrame(record.timestamp, record.data)
+                }
+            }
+        }
+
+        val manager = createManager(EnumMBTDevice.MELOMIND)
+        val (packets, latch) = collectPackets(manager, nbSeconds)
+        val report = JournalReplaySource(file).use { source ->
+            Assert.assertEquals(EnumMBTDevice.MELOMIND, source.deviceType)
+            FrameReplayDriver(manager, manager.getReplayFlowControl()).replay(source, 20f)
+        }
+        println(report)
+
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS))
+        // 4 seconds at 20 times the real time
+        Assert.assertTrue(report.elapsedMs >= report.recordedDurationMs / 20)
+        Assert.assertEquals(0L, report.lateFrameCount)
+        // the lost frames are filled with NaN
+        Assert.assertTrue(packets[0].getSample(0, 30).isNaN())
+        Assert.assertFalse(packets[0].getSample(0, 29).isNaN())
+        manager.dispose()
+    }
+}
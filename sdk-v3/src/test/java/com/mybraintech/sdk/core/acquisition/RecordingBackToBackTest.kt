@@ -0,0 +1,133 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.listener.EEGListener
+import com.mybraintech.sdk.core.listener.RecordingListener
+import com.mybraintech.sdk.core.model.AmpGainConfig2
+import com.mybraintech.sdk.core.model.DeviceInformation
+import com.mybraintech.sdk.core.model.EnumKwakFormat
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import com.mybraintech.sdk.core.model.KwakBinaryReader
+import com.mybraintech.sdk.core.model.KwakContext
+import com.mybraintech.sdk.core.model.MbtDataConversion2
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.RecordingOption
+import com.mybraintech.sdk.core.model.StreamingParams
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RecordingBackToBackTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    /**
+     * Melomind frames of 5 times, raw sample = time % 10000 + channel * 10000 so that every second differs
+     */
+    private class RampFrameSource(private var frameIndex: Long, private val endFrame: Long) : FrameReplaySource {
+
+        override val deviceType = EnumMBTDevice.MELOMIND
+
+        private val frame = ByteArray(2 + TIMES_PER_FRAME * 2 * 2)
+
+        override fun next(): BleFrameJournalReader.Record? {
+            if (frameIndex >= endFrame) {
+                return null
+            }
+            frame[0] = (frameIndex shr 8).toByte()
+            frame[1] = frameIndex.toByte()
+            var pos = 2
+            for (t in 0 until TIMES_PER_FRAME) {
+                for (channel in 0 until 2) {
+                    val sample = rawSample(channel, frameIndex * TIMES_PER_FRAME + t)
+                    frame[pos++] = (sample shr 8).toByte()
+                    frame[pos++] = sample.toByte()
+                }
+            }
+            val timestamp = frameIndex * TIMES_PER_FRAME * 4
+            frameIndex++
+            return BleFrameJournalReader.Record(EnumFrameJournalRecord.EEG_FRAME, timestamp, frame)
+        }
+    }
+
+    private fun recordingOption(file: File): RecordingOption {
+        return RecordingOption(file, KwakContext(), DeviceInformation(), "back-to-back").apply {
+            format = EnumKwakFormat.BINARY
+        }
+    }
+
+    @Test
+    fun test_recordingStartedDuringSave_doesNotChangeSavedFile() {
+        // the quality checker is a native library, it is not available on the JVM
+        val manager = SignalProcessingManager(
+            EnumMBTDevice.MELOMIND, StreamingParams.Builder().setQualityChecker(false).build()
+        )
+        val firstRecording = CountDownLatch(FIRST_SECONDS)
+        val secondRecording = CountDownLatch(FIRST_SECONDS + SECOND_SECONDS)
+        manager.setEEGListener(object : EEGListener {
+            override fun onEEGStatusChange(isEnabled: Boolean) {}
+
+            override fun onEegPacket(mbtEEGPacket: MbtEEGPacket) {
+                firstRecording.countDown()
+                secondRecording.countDown()
+            }
+
+            override fun onEegError(error: Throwable) {}
+        })
+        val listener = object : RecordingListener {
+            override fun onRecordingSaved(outputFile: File, eegRecordedData: EEGRecordedDatas) {}
+
+            override fun onRecordingError(error: Throwable) {}
+        }
+        val driver = FrameReplayDriver(manager, manager.getReplayFlowControl())
+        val framesPerSecond = 250L / TIMES_PER_FRAME
+
+        val firstFile = File(folder.root, "first.kwak")
+        manager.startRecording(listener, recordingOption(firstFile))
+        driver.replay(RampFrameSource(0, FIRST_SECONDS * framesPerSecond), FrameReplayDriver.UNTHROTTLED)
+        Assert.assertTrue(firstRecording.await(5, TimeUnit.SECONDS))
+
+        // the first file is saved after the second recording has written more than one sample block
+        val isSaverBusy = CountDownLatch(1)
+        RecordingSaver.submit { isSaverBusy.await() }
+        val task = manager.stopRecording()
+        manager.startRecording(listener, recordingOption(File(folder.root, "second.kwak")))
+        driver.replay(
+            RampFrameSource(FIRST_SECONDS * framesPerSecond, (FIRST_SECONDS + SECOND_SECONDS) * framesPerSecond),
+            FrameReplayDriver.UNTHROTTLED
+        )
+        Assert.assertTrue(secondRecording.await(5, TimeUnit.SECONDS))
+        isSaverBusy.countDown()
+
+        Assert.assertEquals(firstFile, task.get(10, TimeUnit.SECONDS))
+        val reader = KwakBinaryReader(firstFile)
+        Assert.assertEquals(FIRST_SECONDS, reader.nbPackets)
+        val scale = MbtDataConversion2.getBleSampleScale(AmpGainConfig2.AMP_GAIN_X8_MEDIUM)
+        for (channel in 0 until 2) {
+            val samples = reader.readEEGChannel(channel)
+            Assert.assertEquals(FIRST_SECONDS * 250, samples.size)
+            for (time in samples.indices) {
+                Assert.assertEquals(rawSample(channel, time.toLong()) * scale, samples[time], Math.abs(scale))
+            }
+        }
+        manager.dispose()
+    }
+
+    companion object {
+        private const val TIMES_PER_FRAME = 5
+        private const val FIRST_SECONDS = 4
+
+        /**
+         * more than the [com.mybraintech.sdk.core.acquisition.eeg.EEGSampleBuffer] block of 16 packets
+         */
+        private const val SECOND_SECONDS = 20
+
+        private fun rawSample(channel: Int, time: Long): Int {
+            return (time % 10000).toInt() + channel * 10000
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.model.EEGStreamingErrorCounter
+import com.mybraintech.sdk.core.model.Kwak
+import com.mybraintech.sdk.core.model.KwakSpool
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.ThreeDimensionalPosition
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class RecordingRolloverTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val segmentLength = 3
+    private val imsSampleRate = 2
+
+    private fun packet(index: Int): MbtEEGPacket {
+        return MbtEEGPacket(FloatArray(4) { index.toFloat() }, 2, 2, null)
+    }
+
+    private fun imsSecond(index: Int): List<ThreeDimensionalPosition> {
+        return List(imsSampleRate) { ThreeDimensionalPosition(index.toFloat(), it.toFloat(), 0f) }
+    }
+
+    private fun readEEG(segment: RecordingRollover.Segment): List<Float> {
+        return segment.spool.openEEGColumn(0).use { column ->
+            List(segment.spool.getEEGSampleCount().toInt() / 2) { column.read().also { column.read() } }
+        }
+    }
+
+    private fun readIMS(segment: RecordingRollover.Segment): List<Float> {
+        return segment.spool.openIMSColumn(0).use { column ->
+            List(segment.spool.getImsSampleCount().toInt()) { column.read() }
+        }
+    }
+
+    @Test
+    fun test_segments_haveNoGapNorDuplicate() {
+        val completed = mutableListOf<RecordingRollover.Segment>()
+        val rollover = RecordingRollover(
+            segmentLength,
+            true,
+            imsSampleRate,
+            { index ->
+                val file = RecordingRollover.getSegmentFile(File(folder.root, "record.json"), 10 + index)
+                RecordingRollover.Segment(index, 10 + index, Kwak(), KwakSpool(KwakSpool.getDirectory(file), 2, false), file)
+            },
+            { completed.add(it) }
+        )
+
+        // the IMS arrive one second after the EEG
+        for (second in 0 until 6) {
+            rollover.appendEEG(packet(second))
+            if (second > 0) {
+                rollover.appendIMS(imsSecond(second - 1))
+            }
+        }
+        Assert.assertEquals(1, completed.size) // the second segment waits for its last IMS second
+        rollover.appendIMS(imsSecond(5))
+        Assert.assertEquals(2, completed.size)
+        Assert.assertEquals(listOf(0f, 1f, 2f), readEEG(completed[0]))
+        Assert.assertEquals(listOf(3f, 3f, 4f, 4f, 5f, 5f), readIMS(completed[1]))
+        Assert.assertEquals("record_11.json", completed[1].outputFile.name)
+
+        rollover.appendEEG(packet(6))
+        rollover.appendIMS(imsSecond(6))
+        rollover.appendEEG(packet(7))
+        val remaining = rollover.finish(7)
+        Assert.assertEquals(1, remaining.size)
+        Assert.assertEquals(listOf(6f), readEEG(remaining[0]))
+        Assert.assertEquals(listOf(6f, 6f), readIMS(remaining[0]))
+        Assert.assertEquals(8, rollover.eegPacketCount)
+    }
+
+    @Test
+    fun test_segments_haveTheirOwnErrorCounters() {
+        val completed = mutableListOf<RecordingRollover.Segment>()
+        val errors = EEGStreamingErrorCounter()
+        val rollover = RecordingRollover(
+            segmentLength,
+            true,
+            0,
+            { index ->
+                val file = RecordingRollover.getSegmentFile(File(folder.root, "record.json"), index)
+                RecordingRollover.Segment(index, index, Kwak(), KwakSpool(KwakSpool.getDirectory(file), 2, false), file)
+            },
+            { completed.add(it) },
+            { errors }
+        )
+
+        // one missing frame per packet, the counter is updated before the packet is appended
+        for (second in 0 until 8) {
+            errors.increaseMissingEegFrame(1)
+            rollover.appendEEG(packet(second))
+        }
+        val remaining = rollover.finish(8)
+        val segments = completed + remaining
+        Assert.assertEquals(listOf(3L, 3L, 2L), segments.map { it.eegErrorData?.missingFrame })
+    }
+}
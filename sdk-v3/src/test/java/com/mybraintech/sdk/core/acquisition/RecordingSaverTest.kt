@@ -0,0 +1,98 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.listener.RecordingListener
+import com.mybraintech.sdk.core.model.EnumKwakFormat
+import com.mybraintech.sdk.core.model.Kwak
+import com.mybraintech.sdk.core.model.KwakHeader
+import com.mybraintech.sdk.core.model.KwakColumnSource
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import com.mybraintech.sdk.core.model.PacketListColumns
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RecordingSaverTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val kwak = Kwak().apply { header = KwakHeader().getMelomindHeader() }
+    private val packets = List(60) { MbtEEGPacket(FloatArray(500) { it.toFloat() }, 2, 250, null) }
+
+    private class Listener : RecordingListener {
+        var savedFile: File? = null
+        var error: Throwable? = null
+        var lastPacketsWritten = 0
+
+        override fun onRecordingSaved(outputFile: File, eegRecordedData: EEGRecordedDatas) {
+            savedFile = outputFile
+        }
+
+        override fun onRecordingError(error: Throwable) {
+            this.error = error
+        }
+
+        override fun onRecordingProgress(outputFile: File, bytesWritten: Long, packetsWritten: Int, nbPackets: Int) {
+            lastPacketsWritten = packetsWritten
+        }
+    }
+
+    private fun write(columns: KwakColumnSource, file: File): Boolean {
+        return kwak.serialize(columns, null, EnumKwakFormat.BINARY, file, 0, 0f)
+    }
+
+    @Test
+    fun test_save_completesTaskAfterListener() {
+        val file = File(folder.root, "record.kwak")
+        val listener = Listener()
+        val task = RecordingSaveTask()
+
+        RecordingSaver.submit(
+            task, file, listener,
+            prepare = { PacketListColumns(2, false, packets, emptyList()) },
+            write = { write(it, file) },
+            onSaved = { listener.onRecordingSaved(file, EEGRecordedDatas()) }
+        )
+
+        Assert.assertEquals(file, task.get(10, TimeUnit.SECONDS))
+        Assert.assertEquals(file, listener.savedFile)
+        Assert.assertEquals(packets.size, listener.lastPacketsWritten)
+        Assert.assertEquals(file.length(), task.bytesWritten)
+    }
+
+    @Test
+    fun test_cancelledSave_writesNoFile() {
+        val file = File(folder.root, "record.kwak")
+        val listener = Listener()
+        val task = RecordingSaveTask()
+        val isBusy = CountDownLatch(1)
+        val isFinished = CountDownLatch(1)
+        RecordingSaver.submit { isBusy.await() }
+
+        RecordingSaver.submit(
+            task, file, listener,
+            prepare = { PacketListColumns(2, false, packets, emptyList()) },
+            write = { write(it, file) },
+            onSaved = {},
+            onFinished = { isFinished.countDown() }
+        )
+        Assert.assertTrue(task.cancel(false))
+        isBusy.countDown()
+
+        Assert.assertTrue(isFinished.await(10, TimeUnit.SECONDS))
+        Assert.assertTrue(task.isCancelled)
+        Assert.assertFalse(file.exists())
+        Assert.assertTrue(listener.error is CancellationException)
+        try {
+            task.get()
+            Assert.fail()
+        } catch (e: CancellationException) {
+            // expected
+        }
+    }
+}
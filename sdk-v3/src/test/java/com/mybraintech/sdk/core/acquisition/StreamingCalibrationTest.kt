@@ -0,0 +1,131 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.sdk.core.listener.EEGCalibrationListener
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import org.junit.Assert
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class StreamingCalibrationTest {
+
+    private val sampleRate = EEGPacketFixtures.SAMPLE_RATE
+
+    /**
+     * the native calibration is not available on the JVM : it only checks the arrays it receives
+     */
+    private class CheckedCalibration(
+        selection: EEGChannelSelection,
+        durationSeconds: Int,
+        listener: EEGCalibrationListener?
+    ) : StreamingCalibration(selection, 250, durationSeconds, listener = listener) {
+
+        var signals: FloatArray? = null
+        var qualities: FloatArray? = null
+
+        override fun calibrate(
+            signals: FloatArray,
+            qualities: FloatArray,
+            nbChannels: Int,
+            sampleRate: Int,
+            durationSeconds: Int
+        ): EEGCalibrateResult {
+            this.signals = signals.copyOf()
+            this.qualities = qualities.copyOf()
+            return EEGCalibrateResult(true, "0")
+        }
+    }
+
+    @Test
+    fun test_packets_areCopiedChannelMajor() {
+        val duration = 10
+        val latch = CountDownLatch(1)
+        var listenerResult: EEGCalibrateResult? = null
+        val calibration = CheckedCalibration(EEGChannelSelection.of(EnumMBTDevice.MELOMIND), duration, object : EEGCalibrationListener {
+            override fun onCalibrationResult(result: EEGCalibrateResult) {
+                listenerResult = result
+                latch.countDown()
+            }
+        })
+
+        for (second in 0 until duration) {
+            Assert.assertFalse(calibration.isComplete())
+            // the Melomind channels are the 2 first ones of the packet
+            Assert.assertTrue(calibration.append(EEGPacketFixtures.packet(second, 4)))
+        }
+        Assert.assertTrue(calibration.isComplete())
+        Assert.assertFalse(calibration.append(EEGPacketFixtures.packet(duration, 4)))
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS))
+        // the result is set before the listener is called
+        Assert.assertSame(listenerResult, calibration.getResult())
+        Assert.assertEquals(true, calibration.awaitResult(1, TimeUnit.SECONDS)?.success)
+
+        val signals = calibration.signals!!
+        val qualities = calibration.qualities!!
+        val signalLength = duration * sampleRate
+        Assert.assertEquals(2 * signalLength, signals.size)
+        Assert.assertEquals(2 * duration, qualities.size)
+        for (channel in 0 until 2) {
+            for (second in 0 until duration) {
+                Assert.assertEquals(second + channel / 10f, qualities[channel * duration + second], 0f)
+                for (time in 0 until sampleRate) {
+                    val expected = EEGPacketFixtures.sample(second, channel, time)
+                    Assert.assertEquals(expected, signals[channel * signalLength + second * sampleRate + time], 0f)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun test_closedCalibration_isNotComputed() {
+        var isCalled = false
+        val calibration = CheckedCalibration(EEGChannelSelection.of(EnumMBTDevice.MELOMIND), 8, object : EEGCalibrationListener {
+            override fun onCalibrationResult(result: EEGCalibrateResult) {
+                isCalled = true
+            }
+        })
+        for (second in 0 until 5) {
+            Assert.assertTrue(calibration.append(EEGPacketFixtures.packet(second, 2)))
+        }
+        calibration.close()
+        Assert.assertFalse(calibration.append(EEGPacketFixtures.packet(5, 2)))
+        Assert.assertNull(calibration.awaitResult(100, TimeUnit.MILLISECONDS))
+        Assert.assertFalse(isCalled)
+        Assert.assertNull(calibration.signals)
+    }
+
+    @Test
+    fun test_selectedChannels_areCopiedInOrder() {
+        val duration = 8
+        val selection = EEGChannelSelection.of(
+            EnumMBTDevice.Q_PLUS, listOf(EnumAcquisitionLocation.AF4, EnumAcquisitionLocation.P3)
+        )
+        val calibration = CheckedCalibration(selection, duration, null)
+        for (second in 0 until duration) {
+            Assert.assertTrue(calibration.append(EEGPacketFixtures.packet(second, 4)))
+        }
+        val result = calibration.awaitResult(5, TimeUnit.SECONDS)
+        Assert.assertEquals(selection.locations, result?.locations)
+
+        val signals = calibration.signals!!
+        val qualities = calibration.qualities!!
+        val signalLength = duration * sampleRate
+        Assert.assertEquals(2 * signalLength, signals.size)
+        // AF4 is the channel 3 of Q+, P3 the channel 0
+        for ((row, channel) in intArrayOf(3, 0).withIndex()) {
+            for (second in 0 until duration) {
+                Assert.assertEquals(second + channel / 10f, qualities[row * duration + second], 0f)
+                val expected = EEGPacketFixtures.sample(second, channel, 42)
+                Assert.assertEquals(expected, signals[row * signalLength + second * sampleRate + 42], 0f)
+            }
+        }
+    }
+
+    @Test
+    fun test_wrongPacket_isRejected() {
+        val calibration = CheckedCalibration(EEGChannelSelection.of(EnumMBTDevice.Q_PLUS), 8, null)
+        Assert.assertFalse(calibration.append(EEGPacketFixtures.packet(0, 2)))
+        Assert.assertEquals(0, calibration.secondCount)
+    }
+}
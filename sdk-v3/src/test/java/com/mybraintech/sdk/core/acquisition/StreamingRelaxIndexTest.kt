@@ -0,0 +1,153 @@
+package com.mybraintech.sdk.core.acquisition
+
+import com.mybraintech.android.jnibrainbox.RelaxIndexSessionOutputData
+import com.mybraintech.sdk.core.listener.EEGRelaxIndexListener
+import com.mybraintech.sdk.core.model.DeliveryOption
+import com.mybraintech.sdk.core.model.EnumAcquisitionLocation
+import com.mybraintech.sdk.core.model.EnumDeliveryPolicy
+import com.mybraintech.sdk.core.model.EnumMBTDevice
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import org.junit.Assert
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class StreamingRelaxIndexTest {
+
+    private val sampleRate = EEGPacketFixtures.SAMPLE_RATE
+
+    private val calibration = EEGCalibrateResult(true, "0").apply {
+        iaf = floatArrayOf(9f, 11f)
+        smoothRms = floatArrayOf(1f, 2f, 3f)
+    }
+
+    /**
+     * the native relax index is not available on the JVM : the volume is the first sample of the window
+     * of the last selected channel, and the window is checked against the absolute sample positions
+     */
+    private class CheckedRelaxIndex(
+        selection: EEGChannelSelection,
+        calibration: EEGCalibrateResult,
+        windowSize: Int,
+        hopSize: Int,
+        listener: EEGRelaxIndexListener
+    ) : StreamingRelaxIndex(
+        selection, 250, calibration, windowSize, hopSize,
+        delivery = DeliveryOption(EnumDeliveryPolicy.BLOCK, 16),
+        listener = listener
+    ) {
+
+        var windowErrors = 0
+
+        override fun computeVolume(
+            signals: FloatArray,
+            offset: Int,
+            channelStride: Int,
+            nbChannels: Int,
+            nbSamples: Int,
+            qualities: FloatArray
+        ): Float {
+            val channels = selection.channels
+            val first = signals[offset]
+            for (row in 0 until nbChannels) {
+                val shift = (channels[row] - channels[0]) * EEGPacketFixtures.CHANNEL_SHIFT
+                for (sample in 0 until nbSamples) {
+                    if (signals[offset + row * channelStride + sample] != first + sample + shift) {
+                        windowErrors++
+                    }
+                }
+                if (qualities[row] != channels[row].toFloat()) {
+                    windowErrors++
+                }
+            }
+            return signals[offset + (nbChannels - 1) * channelStride]
+        }
+
+        override fun endRelaxIndexSession(): RelaxIndexSessionOutputData? {
+            return RelaxIndexSessionOutputData()
+        }
+    }
+
+    /**
+     * the quality of a channel is its index
+     */
+    private fun createPacket(second: Int, nbChannels: Int): MbtEEGPacket {
+        return EEGPacketFixtures.packet(second, nbChannels) { it.toFloat() }
+    }
+
+    @Test
+    fun test_volume_isComputedEveryHop() {
+        val nbSeconds = 10
+        val windowSize = 2 * sampleRate
+        val hopSize = 50
+        val expectedCount = (nbSeconds * sampleRate - windowSize) / hopSize + 1
+        val volumes = Collections.synchronizedList(mutableListOf<Float>())
+        val latch = CountDownLatch(expectedCount)
+        val relaxIndex = CheckedRelaxIndex(melomind, calibration, windowSize, hopSize, object : EEGRelaxIndexListener {
+            override fun onRelaxIndexVolume(volume: Float) {
+                volumes.add(volume)
+                latch.countDown()
+            }
+        })
+
+        for (second in 0 until nbSeconds) {
+            Assert.assertTrue(relaxIndex.append(createPacket(second, 4)))
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS))
+        Assert.assertEquals(0, relaxIndex.windowErrors)
+        Assert.assertEquals(expectedCount.toLong(), relaxIndex.volumeCount)
+        for (i in 0 until expectedCount) {
+            // first sample of the i-th window of the channel 1
+            Assert.assertEquals((i * hopSize + EEGPacketFixtures.CHANNEL_SHIFT).toFloat(), volumes[i], 0f)
+        }
+
+        Assert.assertNotNull(relaxIndex.endSession())
+        Assert.assertFalse(relaxIndex.append(createPacket(nbSeconds, 4)))
+        Assert.assertNull(relaxIndex.endSession())
+    }
+
+    @Test
+    fun test_noVolume_beforeFirstWindow() {
+        val relaxIndex = CheckedRelaxIndex(melomind, calibration, 4 * sampleRate, sampleRate, object : EEGRelaxIndexListener {
+            override fun onRelaxIndexVolume(volume: Float) {
+                Assert.fail()
+            }
+        })
+        for (second in 0 until 3) {
+            relaxIndex.append(createPacket(second, 2))
+        }
+        Assert.assertEquals(0L, relaxIndex.volumeCount)
+        Assert.assertNull(relaxIndex.endSession())
+    }
+
+    @Test
+    fun test_selectedChannels_areComputed() {
+        val selection = EEGChannelSelection.of(
+            EnumMBTDevice.HYPERION, listOf(EnumAcquisitionLocation.AF4, EnumAcquisitionLocation.Pz)
+        )
+        val volumes = Collections.synchronizedList(mutableListOf<Float>())
+        val latch = CountDownLatch(3)
+        val relaxIndex = CheckedRelaxIndex(selection, calibration, sampleRate, sampleRate, object : EEGRelaxIndexListener {
+            override fun onRelaxIndexVolume(volume: Float) {
+                volumes.add(volume)
+                latch.countDown()
+            }
+        })
+        Assert.assertFalse(relaxIndex.append(createPacket(0, 2)))
+        for (second in 0 until 3) {
+            Assert.assertTrue(relaxIndex.append(createPacket(second, 4)))
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS))
+        Assert.assertEquals(0, relaxIndex.windowErrors)
+        for (second in 0 until 3) {
+            // Pz is the channel 1 of Hyperion
+            Assert.assertEquals((second * sampleRate + EEGPacketFixtures.CHANNEL_SHIFT).toFloat(), volumes[second], 0f)
+        }
+        relaxIndex.close()
+    }
+
+    companion object {
+        private val melomind = EEGChannelSelection.of(EnumMBTDevice.MELOMIND)
+    }
+}
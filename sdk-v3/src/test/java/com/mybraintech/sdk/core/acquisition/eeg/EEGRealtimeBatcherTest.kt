@@ -0,0 +1,47 @@
+package com.mybraintech.sdk.core.acquisition.eeg
+
+import com.mybraintech.sdk.core.model.EEGSignalBatch
+import org.junit.Assert
+import org.junit.Test
+
+class EEGRealtimeBatcherTest {
+
+    private val nbChannels = 2
+    private val nbTimes = 5
+
+    private fun frame(index: Long): Array<FloatArray> {
+        return Array(nbChannels) { ch -> FloatArray(nbTimes) { t -> ch * 1000f + index * nbTimes + t } }
+    }
+
+    @Test
+    fun test_add_emitsBatchOfMaxFrames() {
+        val batcher = EEGRealtimeBatcher(nbChannels, 3, 0)
+        val statuses = FloatArray(nbTimes) { Float.NaN }
+        Assert.assertNull(batcher.add(0, 100, frame(0), statuses, nbTimes))
+        Assert.assertNull(batcher.add(1, 120, frame(1), statuses, nbTimes))
+        val batch = batcher.add(3, 160, frame(3), statuses, nbTimes)!!
+
+        Assert.assertEquals(3, batch.nbFrames)
+        Assert.assertEquals(15, batch.nbSamples)
+        Assert.assertArrayEquals(longArrayOf(0, 1, 3), batch.frameIndexes)
+        Assert.assertArrayEquals(longArrayOf(100, 120, 160), batch.frameTimestamps)
+        Assert.assertArrayEquals(intArrayOf(0, 5, 10), batch.frameOffsets)
+        Assert.assertEquals(1000f + 3 * nbTimes + 4, batch.getSample(1, 14), 0f)
+        Assert.assertEquals(nbTimes.toFloat(), batch.getSample(0, 5), 0f)
+    }
+
+    @Test
+    fun test_add_emitsBatchOfMaxDuration() {
+        val batcher = EEGRealtimeBatcher(nbChannels, 0, 50)
+        val statuses = FloatArray(nbTimes)
+        var batch: EEGSignalBatch? = null
+        var index = 0L
+        while (batch == null) {
+            batch = batcher.add(index, index * 20, frame(index), statuses, nbTimes)
+            index++
+        }
+        Assert.assertEquals(4, batch.nbFrames)
+        Assert.assertEquals(nbChannels * 4 * nbTimes, batch.signals.size)
+        Assert.assertEquals(1000f + 19, batch.getSample(1, 19), 0f)
+    }
+}
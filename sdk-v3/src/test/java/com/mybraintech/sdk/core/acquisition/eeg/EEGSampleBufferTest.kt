@@ -0,0 +1,70 @@
+package com.mybraintech.sdk.core.acquisition.eeg
+
+import com.mybraintech.sdk.core.model.MbtEEGPacket
+import org.junit.Assert
+import org.junit.Test
+
+class EEGSampleBufferTest {
+
+    private val nbChannels = 2
+    private val frameSize = 3
+
+    private fun frame(first: Long): Array<FloatArray> {
+        return Array(nbChannels) { ch -> FloatArray(frameSize) { t -> (ch * 1000 + first + t).toFloat() } }
+    }
+
+    private fun assertWindow(first: Long, packet: MbtEEGPacket) {
+        for (ch in 0 until nbChannels) {
+            for (s in 0 until packet.nbSamples) {
+                Assert.assertEquals((ch * 1000 + first + s).toFloat(), packet.getSample(ch, s), 0f)
+            }
+            val copy = FloatArray(packet.nbSamples)
+            packet.getChannel(ch, copy)
+            Assert.assertEquals(packet.channelsData[ch], copy.toList())
+        }
+        Assert.assertEquals(1f, packet.getStatus(packet.nbSamples - 1), 0f)
+    }
+
+    @Test
+    fun test_overlappingWindows_surviveBlockRollover() {
+        val buffer = EEGSampleBuffer(nbChannels, 8)
+        val statuses = FloatArray(frameSize) { 1f }
+        val windowSize = 4
+        val hopSize = 2
+        var nextWindow = 0L
+        val packets = mutableListOf<Pair<Long, MbtEEGPacket>>()
+        repeat(10) {
+            buffer.append(frame(buffer.writtenCount), statuses, frameSize)
+            while (buffer.writtenCount - nextWindow >= windowSize) {
+                packets.add(nextWindow to buffer.window(nextWindow, windowSize))
+                nextWindow += hopSize
+            }
+            buffer.release(nextWindow)
+        }
+        Assert.assertEquals(14, packets.size)
+        for ((first, packet) in packets) {
+            Assert.assertEquals(windowSize, packet.nbSamples)
+            assertWindow(first, packet)
+        }
+
+        buffer.appendNaN(20)
+        val last = buffer.window(nextWindow, (buffer.writtenCount - nextWindow).toInt())
+        Assert.assertTrue(last.getSample(1, last.nbSamples - 1).isNaN())
+    }
+
+    @Test
+    fun test_windowBeforeClear_keepsItsValues() {
+        val buffer = EEGSampleBuffer(nbChannels, 8)
+        val statuses = FloatArray(frameSize) { 1f }
+        buffer.append(frame(0), statuses, frameSize)
+        val packet = buffer.window(0, frameSize)
+
+        buffer.clear()
+        Assert.assertEquals(0L, buffer.writtenCount)
+        repeat(2) {
+            buffer.append(frame(500 + buffer.writtenCount), statuses, frameSize)
+        }
+        assertWindow(0, packet)
+        assertWindow(500, buffer.window(0, frameSize))
+    }
+}
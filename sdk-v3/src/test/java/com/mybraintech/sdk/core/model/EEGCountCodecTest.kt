@@ -0,0 +1,113 @@
+package com.mybraintech.sdk.core.model
+
+import org.junit.Assert
+import org.junit.Assume
+import org.junit.Test
+import java.io.File
+import kotlin.math.PI
+import kotlin.math.roundToInt
+import kotlin.math.sin
+import kotlin.random.Random
+
+class EEGCountCodecTest {
+
+    private val blockSize = KwakBinaryFormat.BLOCK_SIZE
+
+    private fun assertRoundTrip(counts: IntArray): Int {
+        val encoded = ByteArray(EEGCountCodec.getMaxEncodedSize(counts.size))
+        val size = EEGCountCodec.encode(counts, counts.size, encoded)
+        val decoded = IntArray(counts.size)
+        EEGCountCodec.decode(encoded, 0, counts.size, decoded)
+        Assert.assertArrayEquals(counts, decoded)
+        return size
+    }
+
+    /**
+     * alpha rhythm + drift + noise, in raw counts, like a relaxed subject
+     */
+    private fun syntheticEEG(size: Int, seed: Int): IntArray {
+        val random = Random(seed)
+        var drift = 0.0
+        return IntArray(size) { t ->
+            drift += random.nextDouble(-2.0, 2.0)
+            val alpha = 300 * sin(2 * PI * 10 * t / 250)
+            (alpha + drift + random.nextDouble(-40.0, 40.0)).roundToInt().coerceIn(-32767, 32767)
+        }
+    }
+
+    @Test
+    fun test_roundTrip_extremeBlocks() {
+        assertRoundTrip(IntArray(0))
+        assertRoundTrip(IntArray(blockSize) { 42 })
+        assertRoundTrip(IntArray(blockSize) { if (it % 2 == 0) Short.MIN_VALUE.toInt() else Short.MAX_VALUE.toInt() })
+        val random = Random(3)
+        assertRoundTrip(IntArray(blockSize) { random.nextInt(-32768, 32768) })
+        val spiky = syntheticEEG(blockSize, 1).also {
+            for (i in 100 until 200) it[i] = KwakBinaryFormat.INT16_NAN
+            it[1000] = 32767
+        }
+        assertRoundTrip(spiky)
+    }
+
+    @Test
+    fun test_syntheticEEG_isCompressed() {
+        val counts = syntheticEEG(blockSize, 2)
+        val size = assertRoundTrip(counts)
+        Assert.assertTrue("encoded size = $size", size < blockSize * 2 * 0.7)
+    }
+
+    /**
+     * Ratio and throughput of the codec. The recorded data of a binary Kwak file are used when its path is given
+     * with -Dkwak.benchmark.file=..., otherwise 10 minutes of 4 synthetic channels.
+     * Only runs with -Dkwak.benchmark=true.
+     */
+    @Test
+    fun benchmark_ratioAndThroughput() {
+        Assume.assumeTrue("run with -Dkwak.benchmark=true", java.lang.Boolean.getBoolean("kwak.benchmark"))
+        val path = System.getProperty("kwak.benchmark.file")
+        val channels: List<IntArray> = if (path != null) {
+            val reader = KwakBinaryReader(File(path))
+            List(reader.kwak.header.nbChannels) { ch ->
+                val values = reader.readEEGChannel(ch)
+                IntArray(values.size) {
+                    if (values[it].isNaN()) KwakBinaryFormat.INT16_NAN else Math.round(values[it] / reader.sampleScale)
+                }
+            }
+        } else {
+            List(4) { syntheticEEG(250 * 600, it) }
+        }
+
+        val encoded = ByteArray(EEGCountCodec.getMaxEncodedSize(blockSize))
+        val block = IntArray(blockSize)
+        var rawBytes = 0L
+        var encodedBytes = 0L
+        var encodeNs = 0L
+        var decodeNs = 0L
+        for (channel in channels) {
+            var offset = 0
+            while (offset < channel.size) {
+                val size = minOf(blockSize, channel.size - offset)
+                System.arraycopy(channel, offset, block, 0, size)
+                var start = System.nanoTime()
+                val encodedSize = EEGCountCodec.encode(block, size, encoded)
+                encodeNs += System.nanoTime() - start
+                start = System.nanoTime()
+                EEGCountCodec.decode(encoded, 0, size, block)
+                decodeNs += System.nanoTime() - start
+                for (i in 0 until size) {
+                    Assert.assertEquals(channel[offset + i], block[i])
+                }
+                rawBytes += size * 2
+                encodedBytes += encodedSize
+                offset += size
+            }
+        }
+        val samples = rawBytes / 2
+        println(
+            "EEGCountCodec : ${path ?: "synthetic"} | ratio vs int16 = ${"%.2f".format(rawBytes.toDouble() / encodedBytes)}" +
+                    " | ratio vs float32 = ${"%.2f".format(2.0 * rawBytes / encodedBytes)}" +
+                    " | encode = ${"%.1f".format(samples * 1000.0 / encodeNs)} Msamples/s" +
+                    " | decode = ${"%.1f".format(samples * 1000.0 / decodeNs)} Msamples/s"
+        )
+    }
+}
@@ -0,0 +1,60 @@
+package com.mybraintech.sdk.core.model
+
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+class KwakBinaryFormatTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val nbChannels = KwakFixtures.NB_CHANNELS
+    private val nbSamples = KwakFixtures.NB_SAMPLES
+    private val nbPackets = 30
+
+    @Test
+    fun test_binaryKwak_isLossless() {
+        // the sample which is not a raw count is written as float
+        val packets = KwakFixtures.eegPackets(nbPackets, 7)
+        val ims = KwakFixtures.imsPositions(nbPackets)
+        val columns = PacketListColumns(nbChannels, true, packets, ims)
+        val errors = EEGStreamingErrorCounter().apply { missingFrame = 4 }
+        val file = folder.newFile("record.kwak")
+        val kwak = KwakFixtures.kwak()
+
+        file.outputStream().use {
+            KwakBinaryWriter(it).write(
+                kwak, columns, errors, 100, MbtDataConversion2.getBleSampleScale(KwakFixtures.GAIN)
+            )
+        }
+
+        val reader = KwakBinaryReader(file)
+        Assert.assertEquals(kwak.uuidJsonFile, reader.kwak.uuidJsonFile)
+        Assert.assertEquals("0x3D", reader.kwak.header.recordingNb)
+        Assert.assertEquals(kwak.header.acquisitionLocations, reader.kwak.header.acquisitionLocations)
+        Assert.assertEquals(kwak.header.comments, reader.kwak.header.comments)
+        Assert.assertEquals("melo_123", reader.kwak.header.deviceInfo?.bleName)
+        Assert.assertEquals(nbPackets, reader.nbPackets)
+        Assert.assertEquals(4L, reader.recordingErrorData?.missingFrame)
+
+        for (ch in 0 until nbChannels) {
+            val channel = reader.readEEGChannel(ch)
+            Assert.assertEquals(nbPackets * nbSamples, channel.size)
+            for (i in channel.indices) {
+                val expected = packets[i / nbSamples].getSample(ch, i % nbSamples)
+                Assert.assertEquals(expected.toRawBits(), channel[i].toRawBits())
+            }
+            Assert.assertArrayEquals(FloatArray(nbPackets) { packets[it].getQuality(ch) }, reader.readQualities(ch), 0f)
+        }
+        Assert.assertEquals(nbPackets * nbSamples, reader.readStatuses().size)
+        Assert.assertEquals(-5f, reader.readIMS(1)[5], 0f)
+        Assert.assertTrue(reader.readIMS(2)[5].isNaN())
+
+        // most of the EEG blocks are raw counts : about half the size of float32
+        val eegFloatSize = nbPackets * nbSamples * nbChannels * 4
+        val otherSize = (nbPackets * nbSamples + ims.size * 3) * 4
+        Assert.assertTrue(file.length() < eegFloatSize * 0.75 + otherSize)
+    }
+}
@@ -0,0 +1,57 @@
+package com.mybraintech.sdk.core.model
+
+import kotlin.random.Random
+
+/**
+ * Recordings shared by the kwak format tests : a Melomind header, and random packets containing
+ * the values the formats must keep as they are.
+ */
+internal object KwakFixtures {
+
+    const val NB_CHANNELS = 2
+    const val NB_SAMPLES = 250
+    val GAIN = AmpGainConfig2.AMP_GAIN_X8_MEDIUM
+
+    fun kwak(ownerId: String = "owner", comment: String = "session"): Kwak {
+        return Kwak().apply {
+            context.ownerId = ownerId
+            header = KwakHeader().getMelomindHeader().apply {
+                deviceInfo = DeviceInformation().apply {
+                    bleName = "melo_123"
+                    serialNumber = "123"
+                }
+                setRecordingNb(0x3d)
+                comments = listOf(Comment(1500476031054, comment))
+            }
+            recording.recordID = "record"
+        }
+    }
+
+    /**
+     * Random raw counts converted with [GAIN]. The packet 1 has a NaN sample and the packet 2 a sample
+     * which is not a raw count. The statuses of a packet are its index.
+     */
+    fun eegPackets(nbPackets: Int, seed: Int): List<MbtEEGPacket> {
+        val conversion = MbtDataConversion2.generateInstance(EnumMBTDevice.MELOMIND, GAIN)
+        val random = Random(seed)
+        return List(nbPackets) { index ->
+            val frame = random.nextBytes(NB_CHANNELS * NB_SAMPLES * 2)
+            val data = FloatArray(NB_CHANNELS * NB_SAMPLES)
+            conversion.convert(frame, 0, data.size, data, 0)
+            when (index) {
+                1 -> data[10] = Float.NaN
+                2 -> data[20] = 1.2345e-5f // not a raw count
+            }
+            MbtEEGPacket(data, NB_CHANNELS, NB_SAMPLES, FloatArray(NB_SAMPLES) { index.toFloat() }).apply {
+                qualityValues = floatArrayOf(0.25f * index, -1f)
+            }
+        }
+    }
+
+    /**
+     * 100 positions per packet, z is always NaN
+     */
+    fun imsPositions(nbPackets: Int): List<ThreeDimensionalPosition> {
+        return List(nbPackets * 100) { ThreeDimensionalPosition(it * 0.001f, -it.toFloat(), Float.NaN) }
+    }
+}
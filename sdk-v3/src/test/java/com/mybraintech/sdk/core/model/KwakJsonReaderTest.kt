@@ -0,0 +1,97 @@
+package com.mybraintech.sdk.core.model
+
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class KwakJsonReaderTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val nbChannels = KwakFixtures.NB_CHANNELS
+    private val nbSamples = KwakFixtures.NB_SAMPLES
+    private val nbPackets = 20
+    private val gain = KwakFixtures.GAIN
+
+    private val packets: List<MbtEEGPacket> by lazy { KwakFixtures.eegPackets(nbPackets, 3) }
+
+    private val ims = KwakFixtures.imsPositions(nbPackets)
+
+    private fun writeJson(): File {
+        val kwak = KwakFixtures.kwak(comment = "séance \"1\"\n")
+        val file = folder.newFile("record.json")
+        val columns = PacketListColumns(nbChannels, true, packets, ims)
+        val errors = EEGStreamingErrorCounter().apply { missingFrame = 4 }
+        Assert.assertTrue(
+            kwak.serialize(columns, errors, EnumKwakFormat.JSON, file, 100, MbtDataConversion2.getBleSampleScale(gain))
+        )
+        return file
+    }
+
+    private fun assertSameBits(expected: Float, actual: Float) {
+        Assert.assertEquals(expected.toRawBits(), actual.toRawBits())
+    }
+
+    @Test
+    fun test_jsonKwak_isReadBack() {
+        val file = writeJson()
+        val reader = KwakJsonReader(file)
+
+        Assert.assertEquals("0x3D", reader.kwak.header.recordingNb)
+        Assert.assertEquals("séance \"1\"\n", reader.kwak.header.comments?.single()?.text)
+        Assert.assertEquals("melo_123", reader.kwak.header.deviceInfo?.bleName)
+        Assert.assertEquals(EnumAcquisitionLocation.P4, reader.kwak.header.acquisitionLocations[1])
+        Assert.assertEquals(nbPackets, reader.nbPackets)
+        Assert.assertEquals(4L, reader.recordingErrorData?.missingFrame)
+        Assert.assertEquals(100, reader.imsSampleRate)
+        Assert.assertEquals(nbPackets, reader.getNbSeconds())
+
+        for (ch in 0 until nbChannels) {
+            val channel = reader.readEEGChannel(ch)
+            Assert.assertEquals(nbPackets * nbSamples, channel.size)
+            for (i in channel.indices) {
+                assertSameBits(packets[i / nbSamples].getSample(ch, i % nbSamples), channel[i])
+            }
+        }
+        val y = reader.readIMS(1)
+        Assert.assertEquals(ims.size, y.size)
+        for (i in y.indices) {
+            assertSameBits(ims[i].y, y[i])
+        }
+        Assert.assertTrue(reader.readIMS(2).all { it.isNaN() })
+        Assert.assertEquals(nbPackets * nbSamples, reader.readStatuses().size)
+    }
+
+    @Test
+    fun test_timeRange_isReadWithIndexFile() {
+        val file = writeJson()
+        KwakJsonReader(file)
+        val indexFile = KwakJsonReader.getIndexFile(file)
+        Assert.assertTrue(indexFile.exists())
+
+        // the second reader only reads the metadata and the index file
+        val reader = KwakJsonReader(file)
+        val range = reader.readEEGPackets(5, 3)
+        Assert.assertEquals(3, range.size)
+        for ((i, packet) in range.withIndex()) {
+            val expected = packets[5 + i]
+            Assert.assertEquals(nbSamples, packet.nbSamples)
+            assertSameBits(expected.getQuality(0), packet.getQuality(0))
+            assertSameBits(expected.getStatus(7), packet.getStatus(7))
+            for (ch in 0 until nbChannels) {
+                for (s in 0 until nbSamples) {
+                    assertSameBits(expected.getSample(ch, s), packet.getSample(ch, s))
+                }
+            }
+        }
+        Assert.assertEquals(2, reader.readEEG(nbPackets - 2).eegPackets.size)
+        Assert.assertEquals(100, reader.readIMS(0, nbPackets - 1, 5).size)
+
+        // a modified recording is indexed again
+        Assert.assertTrue(file.setLastModified(file.lastModified() - 10_000))
+        Assert.assertEquals(nbPackets, KwakJsonReader(file).readEEGPackets().size)
+    }
+}
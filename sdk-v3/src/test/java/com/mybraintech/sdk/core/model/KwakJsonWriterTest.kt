@@ -0,0 +1,163 @@
+package com.mybraintech.sdk.core.model
+
+import com.google.gson.stream.JsonWriter
+import org.junit.Assert
+import org.junit.Assume
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.FileOutputStream
+import java.io.Writer
+
+class KwakJsonWriterTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val gain = KwakFixtures.GAIN
+
+    private fun kwak(): Kwak {
+        // characters which must be escaped
+        return KwakFixtures.kwak("owner \"1\"", "séance\n\t\\\u2028\u0001")
+    }
+
+    private fun columns(nbPackets: Int): KwakColumnSource {
+        val packets = KwakFixtures.eegPackets(nbPackets, 11)
+        packets[0].qualityValues = floatArrayOf(Float.NaN, -1f)
+        packets[3].data[30] = -0f
+        return PacketListColumns(KwakFixtures.NB_CHANNELS, true, packets, KwakFixtures.imsPositions(nbPackets))
+    }
+
+    /**
+     * The layout written by [MbtJsonBuilder2] before [KwakJsonWriter], with the same writer as
+     * [android.util.JsonWriter] and boxed values.
+     */
+    private fun writeWithJsonWriter(kwak: Kwak, columns: KwakColumnSource, errors: EEGStreamingErrorCounter, writer: Writer) {
+        val json = JsonWriter(writer)
+        json.beginObject()
+        json.name("uuidJsonFile").value(kwak.uuidJsonFile)
+        json.name("context").beginObject().name("ownerId").value(kwak.context.ownerId).endObject()
+        json.name("header").beginObject()
+        val device = kwak.header.deviceInfo!!
+        json.name("deviceInfo").beginObject()
+            .name("productName").value(device.bleName)
+            .name("hardwareVersion").value(device.hardwareVersion)
+            .name("firmwareVersion").value(device.firmwareVersion)
+            .name("uniqueDeviceIdentifier").value(device.serialNumber)
+            .endObject()
+        json.name("recordingNb").value(kwak.header.recordingNb)
+        json.name("comments").beginArray()
+        for (comment in kwak.header.comments!!) {
+            json.beginObject().name("date").value(comment.timestamp).name("comment").value(comment.text).endObject()
+        }
+        json.endArray()
+        json.name("eegPacketLength").value(kwak.header.eegPacketLength.toLong())
+        json.name("sampRate").value(kwak.header.sampleRate.toLong())
+        json.name("nbChannels").value(kwak.header.nbChannels.toLong())
+        json.name("acquisitionLocation").beginArray()
+        kwak.header.acquisitionLocations.forEach { json.value(it.toString()) }
+        json.endArray()
+        json.name("referencesLocation").beginArray()
+        kwak.header.referenceLocations.forEach { json.value(it.toString()) }
+        json.endArray()
+        json.name("groundsLocation").beginArray()
+        kwak.header.groundLocations.forEach { json.value(it.toString()) }
+        json.endArray()
+        json.endObject()
+        json.name("recording").beginObject()
+        json.name("recordID").value(kwak.recording.recordID)
+        val type = kwak.recording.recordingType
+        json.name("recordingType").beginObject()
+            .name("recordType").value(type.recordType.toString())
+            .name("spVersion").value(type.spVersion)
+            .name("source").value(type.source)
+            .name("dataType").value(type.dataType)
+            .endObject()
+        json.name("recordingTime").value(kwak.recording.recordingTime)
+        json.name("nbPackets").value(columns.getNbPackets().toLong())
+        json.name("recordingErrorData").beginObject()
+            .name("missingEegFrame").value(errors.missingFrame)
+            .name("zeroTime").value(errors.zeroTimeNumber)
+            .name("zeroSample").value(errors.zeroSampleNumber)
+            .endObject()
+
+        fun writeColumn(column: FloatColumn, count: Long) {
+            json.beginArray()
+            for (i in 0 until count) {
+                val value = column.read()
+                if (value.isNaN()) json.nullValue() else json.value(java.lang.Float.valueOf(value))
+            }
+            json.endArray()
+            column.close()
+        }
+        json.name("qualities").beginArray()
+        repeat(KwakFixtures.NB_CHANNELS) { writeColumn(columns.openQualityColumn(it), columns.getQualityCount()) }
+        json.endArray()
+        json.name("channelData").beginArray()
+        repeat(KwakFixtures.NB_CHANNELS) { writeColumn(columns.openEEGColumn(it), columns.getEEGSampleCount()) }
+        json.endArray()
+        json.name("ims").beginObject().name("sampRate").value(100L).name("imsData").beginArray()
+        repeat(3) { writeColumn(columns.openIMSColumn(it), columns.getImsSampleCount()) }
+        json.endArray().endObject()
+        json.name("statusData")
+        writeColumn(columns.openStatusColumn(), columns.getStatusCount())
+        json.endObject()
+        json.endObject()
+        json.close()
+    }
+
+    private fun writeWithKwakJsonWriter(kwak: Kwak, columns: KwakColumnSource, errors: EEGStreamingErrorCounter, file: File) {
+        FileOutputStream(file).use {
+            KwakJsonWriter(it, MbtDataConversion2.getBleSampleScale(gain)).write(kwak, columns, errors, 100)
+        }
+    }
+
+    @Test
+    fun test_output_isSameAsJsonWriter() {
+        val kwak = kwak()
+        val columns = columns(5)
+        val errors = EEGStreamingErrorCounter().apply { missingFrame = 4; zeroTimeNumber = 2 }
+        val expectedFile = folder.newFile("expected.json")
+        val actualFile = folder.newFile("actual.json")
+
+        expectedFile.writer(Charsets.UTF_8).use { writeWithJsonWriter(kwak, columns, errors, it) }
+        writeWithKwakJsonWriter(kwak, columns, errors, actualFile)
+
+        val expected = expectedFile.readText()
+        Assert.assertEquals(expected, actualFile.readText())
+        Assert.assertTrue(expected.contains("\"qualities\":[[null,0.25,"))
+        Assert.assertTrue(expected.contains("1.2345E-5"))
+    }
+
+    /**
+     * Writing time of a 1 hour recording of 2 channels, with statuses and IMS, before and after [KwakJsonWriter].
+     * Only runs with -Dkwak.benchmark=true, the duration in minutes can be changed with -Dkwak.benchmark.minutes=...
+     */
+    @Test
+    fun benchmark_oneHourRecording() {
+        Assume.assumeTrue("run with -Dkwak.benchmark=true", java.lang.Boolean.getBoolean("kwak.benchmark"))
+        val nbPackets = System.getProperty("kwak.benchmark.minutes")?.toInt()?.times(60) ?: 3600
+        val kwak = kwak()
+        val columns = columns(nbPackets)
+        val errors = EEGStreamingErrorCounter()
+        val expectedFile = folder.newFile("before.json")
+        val actualFile = folder.newFile("after.json")
+
+        var start = System.nanoTime()
+        expectedFile.bufferedWriter(Charsets.UTF_8).use { writeWithJsonWriter(kwak, columns, errors, it) }
+        val beforeNs = System.nanoTime() - start
+        start = System.nanoTime()
+        writeWithKwakJsonWriter(kwak, columns, errors, actualFile)
+        val afterNs = System.nanoTime() - start
+
+        Assert.assertEquals(expectedFile.length(), actualFile.length())
+        Assert.assertArrayEquals(expectedFile.readBytes(), actualFile.readBytes())
+        val megabytes = actualFile.length() / 1e6
+        println(
+            "KwakJsonWriter : $nbPackets packets, ${"%.1f".format(megabytes)} MB" +
+                    " | before = ${beforeNs / 1_000_000} ms (${"%.1f".format(megabytes * 1e9 / beforeNs)} MB/s)" +
+                    " | after = ${afterNs / 1_000_000} ms (${"%.1f".format(megabytes * 1e9 / afterNs)} MB/s)"
+        )
+    }
+}
@@ -0,0 +1,118 @@
+package com.mybraintech.sdk.core.model
+
+import org.junit.Assert
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.io.RandomAccessFile
+
+class KwakSpoolTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private val nbChannels = 2
+    private val nbSamples = 250
+
+    private fun packet(index: Int): MbtEEGPacket {
+        val data = FloatArray(nbChannels * nbSamples) { (index * 10000 + it).toFloat() }
+        data[3] = Float.NaN
+        val statuses = FloatArray(nbSamples) { index.toFloat() }
+        return MbtEEGPacket(data, nbChannels, nbSamples, statuses).apply {
+            qualityValues = floatArrayOf(index.toFloat(), -index.toFloat())
+        }
+    }
+
+    @Test
+    fun test_spooledColumns_matchRecordedPackets() {
+        val spool = KwakSpool(folder.newFolder("record.json.spool"), nbChannels, true)
+        val nbPackets = 20
+        for (i in 0 until nbPackets) {
+            spool.appendEEG(packet(i))
+            spool.appendIMS(List(100) { ThreeDimensionalPosition(i.toFloat(), it.toFloat(), -1f) })
+        }
+        spool.close()
+        spool.appendEEG(packet(nbPackets)) // ignored once closed
+
+        Assert.assertEquals(nbPackets, spool.eegPacketCount)
+        Assert.assertEquals(nbPackets * 100L, spool.imsSampleCount)
+        Assert.assertEquals(nbPackets * nbSamples.toLong(), spool.getEEGSampleCount())
+
+        for (ch in 0 until nbChannels) {
+            spool.openEEGColumn(ch).use { column ->
+                for (i in 0 until nbPackets) {
+                    val expected = packet(i)
+                    for (s in 0 until nbSamples) {
+                        Assert.assertEquals(expected.getSample(ch, s), column.read())
+                    }
+                }
+            }
+            spool.openQualityColumn(ch).use { column ->
+                for (i in 0 until nbPackets) {
+                    Assert.assertEquals(packet(i).getQuality(ch), column.read())
+                }
+            }
+        }
+        spool.openStatusColumn().use { column ->
+            Assert.assertEquals(0f, column.read())
+        }
+        spool.openIMSColumn(1).use { column ->
+            Assert.assertEquals(0f, column.read())
+            Assert.assertEquals(1f, column.read())
+        }
+
+        spool.delete()
+        Assert.assertFalse(spool.directory.exists())
+    }
+
+    private fun interruptedSpool(nbPackets: Int, withIMS: Boolean): KwakSpool {
+        val spool = KwakSpool(KwakSpool.getDirectory(File(folder.root, "record.kwak")), nbChannels, true)
+        spool.writeMetadata(Kwak().apply { header = KwakHeader().getMelomindHeader() }, 100, 0f)
+        for (i in 0 until nbPackets) {
+            spool.appendEEG(packet(i))
+            if (withIMS) {
+                spool.appendIMS(List(100) { ThreeDimensionalPosition(i.toFloat(), it.toFloat(), -1f) })
+            }
+        }
+        return spool // not closed, as if the app was killed
+    }
+
+    @Test
+    fun test_interruptedSpool_isRecovered() {
+        val nbPackets = 1500 // several segments
+        val spool = interruptedSpool(nbPackets, true)
+        Assert.assertEquals(listOf(spool.directory), KwakRecovery.findInterruptedRecordings(folder.root))
+
+        val file = KwakRecovery.recover(spool.directory, EnumKwakFormat.BINARY)
+
+        Assert.assertEquals(File(folder.root, "record.kwak"), file)
+        Assert.assertFalse(spool.directory.exists())
+        val reader = KwakBinaryReader(file!!)
+        Assert.assertEquals(nbPackets, reader.nbPackets)
+        Assert.assertNull(reader.recordingErrorData)
+        val channel = reader.readEEGChannel(1)
+        Assert.assertEquals(nbPackets * nbSamples, channel.size)
+        Assert.assertEquals(packet(nbPackets - 1).getSample(1, 7), channel[channel.size - nbSamples + 7])
+        Assert.assertEquals(nbPackets * 100L, reader.getImsSampleCount())
+        Assert.assertEquals((nbPackets - 1).toFloat(), reader.readIMS(0).last())
+    }
+
+    @Test
+    fun test_recovery_stopsAtCorruptedBlock() {
+        val nbPackets = 10
+        val spool = interruptedSpool(nbPackets, false)
+        val blockSize = 13 + 5 + 4 * (nbChannels * nbSamples + nbChannels + nbSamples)
+        RandomAccessFile(File(spool.directory, "spool.dat"), "rw").use {
+            val position = 8L + (nbPackets - 2) * blockSize + 100
+            it.seek(position)
+            val value = it.read()
+            it.seek(position)
+            it.write(value xor 0xFF)
+        }
+
+        val file = KwakRecovery.recover(spool.directory, EnumKwakFormat.BINARY)
+
+        Assert.assertEquals(nbPackets - 2, KwakBinaryReader(file!!).nbPackets)
+    }
+}
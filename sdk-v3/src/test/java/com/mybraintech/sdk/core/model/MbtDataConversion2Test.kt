@@ -0,0 +1,66 @@
+package com.mybraintech.sdk.core.model
+
+import org.junit.Assert
+import org.junit.Test
+import kotlin.random.Random
+
+class MbtDataConversion2Test {
+
+    private val nbChannels = 4
+    private val nbTimes = 5
+    private val headerAlloc = 3
+
+    private fun randomFrame(): ByteArray {
+        return Random(42).nextBytes(headerAlloc + nbTimes * nbChannels * 2)
+    }
+
+    @Test
+    fun test_convertRawFrameToEEG_sameAsConvertRawDataToEEG() {
+        val conversion = MbtDataConversion2.generateInstance(EnumMBTDevice.Q_PLUS)
+        val frame = randomFrame()
+
+        val rawSamples = (0 until nbTimes).map { time ->
+            val start = headerAlloc + time * nbChannels * 2
+            RawEEGSample2(
+                (0 until nbChannels).map { ch -> frame.copyOfRange(start + ch * 2, start + ch * 2 + 2) },
+                Float.NaN
+            )
+        }
+        val expected = conversion.convertRawDataToEEG(rawSamples) // [nbTimes][nbChannels]
+
+        val offset = 2
+        val channels = Array(nbChannels) { FloatArray(offset + nbTimes) }
+        conversion.convertRawFrameToEEG(frame, headerAlloc, nbTimes, channels, offset)
+
+        for (time in 0 until nbTimes) {
+            for (ch in 0 until nbChannels) {
+                Assert.assertEquals(expected[time][ch], channels[ch][offset + time], 0f)
+            }
+        }
+    }
+
+    @Test
+    fun test_convert_matchesConvertRawDataToEEG_forAllGains() {
+        val frame = randomFrame()
+        val nbValues = nbTimes * nbChannels
+        for (gain in AmpGainConfig2.values()) {
+            val conversion = MbtDataConversion2.Builder()
+                .setChannelNumber(nbChannels)
+                .setGain(gain)
+                .build()
+            val rawSamples = listOf(
+                RawEEGSample2(
+                    (0 until nbValues).map { i -> frame.copyOfRange(headerAlloc + i * 2, headerAlloc + i * 2 + 2) },
+                    Float.NaN
+                )
+            )
+            val expected = conversion.convertRawDataToEEG(rawSamples)[0]
+
+            val out = FloatArray(1 + nbValues)
+            conversion.convert(frame, headerAlloc, nbValues, out, 1)
+            for (i in 0 until nbValues) {
+                Assert.assertEquals(expected[i], out[1 + i], 0f)
+            }
+        }
+    }
+}